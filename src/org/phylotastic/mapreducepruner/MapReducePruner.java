@@ -13,6 +13,33 @@
  *  d, datadir dirname      name of data directory for actual "taxon database"
  *  t, tempdir dirname      path to temp directory
  *  o, output fileName      path to newick output file
+ *  m, mode prune|local|lca|serve|jackknife|convert|build|buildlocal|update   what to do:
+                            prune the tree (default), prune it in memory without
+                            Hadoop (local), prune it in memory from the LCA's of
+                            the tips (lca), answer prune requests over HTTP (serve),
+                            prune random subsamples of the taxa (jackknife), convert
+                            the "taxon database" to the packed format (convert) or
+                            build it from the Newick tree in the input file, by a
+                            map/reduce job (build) or in this JVM (buildlocal),
+                            or update it to a changed tree in the input file (update)
+ *  f, format directory|packed|index  format of the "taxon database"
+ *  p, pipeline 3pass|2pass map/reduce passes to use for pruning
+ *  s, cachesize MB         size of the taxon path cache (0 => no cache)
+ *  a, fetchthreads number  threads per mapper looking up the taxon paths
+ *  z, splitsize bytes      size of the input splits of pass 1
+                            (0 => planned, see MrpSplitPlan)
+ *  w, port number          port of the prune server (mode serve)
+ *  l, locallimit number    largest number of taxa the prune server prunes in
+                            memory; larger requests go to map/reduce (0 => none)
+ *  g, resultcache dirname  folder of the cache of pruned trees (none => no cache)
+ *  k, resultcachesize MB   maximum size of the cache of pruned trees
+ *  x, replicates number    number of replicates (mode jackknife)
+ *  y, samplesize number    number of taxa in each replicate
+ *  q, seed number          seed of the random numbers of the replicates
+ *  j, batch fileName       file listing "input output" per line: prune all
+                            those lists in one map/reduce run (none => input)
+ *  b, treestats fileName   file to write the statistics of the pruned trees
+                            to, as script/treestats.pl does (none => no stats)
  *
  * Example:
  *  -n -config config.ini -r "c:\Users\Default\Mijn netbeans\Mrp\"
@@ -25,7 +52,10 @@ import java.net.URL;
 import org.apache.commons.cli.*;
 import org.apache.log4j.*;
 import org.apache.hadoop.conf.Configuration;		// sara 23-09-2014
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.util.ToolRunner;		// sara 23-09-2014
+import org.phylotastic.mrpdatabase.PackedDatabaseConverter;
 
 /**
  *     @author(s); Carla Stegehuis, Rutger Vos
@@ -100,7 +130,37 @@ public class MapReducePruner {
         }
         
         // configuration options correctly processed
-        // execute the mapreduce run
-        ToolRunner.run(new Configuration(), new MrpRun(config), args);		// sara 23-09-2014
+        if (config.runMode.is(MrpConfig.MODE_CONVERT)) {
+            // convert the "taxon database" in the data dir to the packed format
+            String dataPath = config.dataPath.getValue();
+            if (!dataPath.endsWith(Path.SEPARATOR))
+                dataPath += Path.SEPARATOR;
+            FileSystem hadoopFS = FileSystem.get(new Configuration());
+            new PackedDatabaseConverter(hadoopFS).convert(dataPath);
+        } else if (config.runMode.is(MrpConfig.MODE_BUILD)) {
+            // build the "taxon database" of the input tree by map/reduce
+            ToolRunner.run(new Configuration(), new MrpBuildRun(config), args);
+        } else if (config.runMode.is(MrpConfig.MODE_BUILDLOCAL)) {
+            // build the "taxon database" of the input tree in this JVM
+            new MrpBuildRun(config).runLocal();
+        } else if (config.runMode.is(MrpConfig.MODE_UPDATE)) {
+            // update the "taxon database" to the changed input tree
+            new MrpBuildRun(config).runUpdate();
+        } else if (config.runMode.is(MrpConfig.MODE_LOCAL)) {
+            // prune in memory, without Hadoop
+            new MrpLocalRun(config).run();
+        } else if (config.runMode.is(MrpConfig.MODE_LCA)) {
+            // prune in memory, from the tree index
+            new MrpLcaRun(config).run();
+        } else if (config.runMode.is(MrpConfig.MODE_SERVE)) {
+            // answer prune requests until the server is stopped
+            new MrpServer(config).run();
+        } else if (config.runMode.is(MrpConfig.MODE_JACKKNIFE)) {
+            // prune random subsamples of the taxa, in memory
+            new MrpJackknifeRun(config).run();
+        } else {
+            // execute the mapreduce run
+            ToolRunner.run(new Configuration(), new MrpRun(config), args);		// sara 23-09-2014
+        }
     }
 }
@@ -0,0 +1,86 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import org.phylotastic.mrpdatabase.TaxonDatabaseBuilder;
+import org.phylotastic.mrpdatabase.TaxonDatabases;
+import org.phylotastic.mrpdatabase.TaxonKey;
+import org.phylotastic.mrpdatabase.TreeIndex;
+
+/**
+ * class: MrpBuildMapper
+ * -------------------------------------------------------------------------
+ *
+ * The (only) mapper of a database build (see MrpBuildRun); the input is
+ * the list of tips, a line "key tab label" per tip. The tip-to-root path
+ * of each tip is walked from the tree index, that is read once per task.
+ * In the directory layout the path is written to the file of the taxon;
+ * in the packed layout key and path are the output of the task.
+ *
+ */
+public class MrpBuildMapper extends Mapper<LongWritable, Text, Text, Text>
+{
+    private final Text keyText              = new Text();
+    private final Text pathText             = new Text();
+
+    private FileSystem hadoopFS;          // hadoop file system for the job
+    private String dataPath;              // the path to the taxon "database"
+    private int hashDepth;                // the hashdepth for the filename encoding
+    private boolean packed;               // true for the packed format
+    private TreeIndex treeIndex;          // the tree of the database
+
+    /**
+     *     method: setup
+     *
+     *     Reads the tree index from the data directory
+     *
+     * @param context   a Hadoop context, giving access to data related to the job
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void setup(Context context) throws IOException, InterruptedException
+    {
+        super.setup(context);
+        Configuration jobConf = context.getConfiguration();
+        this.dataPath = jobConf.get("my.taxondir");
+        this.hashDepth = jobConf.getInt("my.hashdepth", 0);
+        this.packed = TaxonDatabases.FORMAT_PACKED.equals(
+                jobConf.get("my.dbformat", TaxonDatabases.FORMAT_DIRECTORY));
+        this.hadoopFS = FileSystem.get(jobConf);
+        this.treeIndex = TreeIndex.read(this.hadoopFS.open(new Path(this.dataPath + TreeIndex.INDEX_FILE)));
+    }
+
+    /**
+     *     method: map
+     *
+     * @param key       the offset of the line (not used)
+     * @param value     the line of a tip: key tab label
+     * @param context   a Hadoop context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void map(LongWritable key, Text value, Context context)
+            throws IOException, InterruptedException
+    {
+        String line = value.toString();
+        int tab = line.indexOf('\t');
+        String hexKey = line.substring(0, tab);
+        String path = this.treeIndex.getPath(Integer.parseInt(line.substring(tab + 1)));
+        if (this.packed) {
+            this.keyText.set(hexKey);
+            this.pathText.set(path);
+            context.write(this.keyText, this.pathText);
+        } else {
+            TaxonDatabaseBuilder.writeTaxonFile(this.hadoopFS, this.dataPath, this.hashDepth,
+                    TaxonKey.fromHex(hexKey), path);
+        }
+    }
+}
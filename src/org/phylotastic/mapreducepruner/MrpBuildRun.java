@@ -0,0 +1,247 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.NLineInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrpdatabase.DatabaseManifest;
+import org.phylotastic.mrpdatabase.PackedDatabaseWriter;
+import org.phylotastic.mrpdatabase.TaxonDatabaseBuilder;
+import org.phylotastic.mrpdatabase.TaxonDatabaseUpdater;
+import org.phylotastic.mrpdatabase.TaxonDatabases;
+import org.phylotastic.mrpdatabase.TaxonKey;
+
+/**
+ *     Class MrpBuildRun
+ *
+ *     Builds the "taxon database" of the Newick tree in the input file into
+ *     the data directory, in the format of the format option (see
+ *     TaxonDatabaseBuilder); the Java version of script/treeparser.pl.
+ *
+ *     The tree is read, in one stream, by this process. The paths of the
+ *     tips are then written either in this process, by numTasks threads
+ *     (runLocal, mode buildlocal), or by a map/reduce job (run, mode build):
+ *     the tree and name index and the list of tips (see TaxonDatabaseBuilder)
+ *     are written to the data and temp directory, and the map tasks of the
+ *     job, numTasks of them, each write the paths of their part of the list
+ *     (see MrpBuildMapper). In the directory layout they write the taxon
+ *     files themselves; the packed data and index file are written by this
+ *     process from the paths the map tasks return, one after the other.
+ *     The index layout has no paths, so it is always written by this
+ *     process.
+ *
+ *     A database that is there already can also be updated to a changed
+ *     tree (runUpdate, mode update), in this process: only the paths
+ *     that changed are written (see TaxonDatabaseUpdater). Each build and
+ *     update writes the manifest of the database (see DatabaseManifest),
+ *     with a version one higher than that of the database it replaces.
+ */
+public class MrpBuildRun extends Configured implements Tool {
+    private static Logger logger;
+    private final MrpConfig userConfig;     // MrpConfig object holding the configuration options
+
+    /**
+     *
+     * @param _config   the MrpConfig object holding the configuration variables (options)
+     */
+    public MrpBuildRun(MrpConfig _config) {
+        super();
+        userConfig    = _config;
+        logger        = Logger.getLogger(MrpBuildRun.class.getName());
+    }
+
+    /**     Method runLocal
+     * -------------------------------------------------------------------------
+     *     Builds the database in this process
+     *
+     * @return zero when run finished normally
+     * @throws java.io.IOException
+     */
+    public int runLocal() throws IOException {
+        long start = System.currentTimeMillis();
+        FileSystem hadoopFS = FileSystem.get(new Configuration());
+        TaxonDatabaseBuilder builder = this.parseTree(hadoopFS);
+        String dataPath = this.dataPath(hadoopFS);
+        builder.write(hadoopFS, dataPath, this.userConfig.dbFormat.getValue(),
+                this.userConfig.hashDepth.getIntValue(),
+                Math.max(1, this.userConfig.numTasks.getIntValue()));
+        this.writeManifest(hadoopFS, dataPath, builder);
+        logger.info("MrpBuildRun: database built in " + (System.currentTimeMillis() - start) + " ms");
+        return 0;
+    }
+
+    /**     Method runUpdate
+     * -------------------------------------------------------------------------
+     *     Updates the database in the data directory to the tree of the
+     *     input file, in this process (see TaxonDatabaseUpdater)
+     *
+     * @return zero when run finished normally
+     * @throws java.io.IOException
+     */
+    public int runUpdate() throws IOException {
+        long start = System.currentTimeMillis();
+        FileSystem hadoopFS = FileSystem.get(new Configuration());
+        TaxonDatabaseBuilder builder = this.parseTree(hadoopFS);
+        DatabaseManifest manifest = new TaxonDatabaseUpdater(hadoopFS, this.dataPath(hadoopFS)).update(
+                builder, this.userConfig.inputFile.getPath(), this.userConfig.dbFormat.getValue(),
+                this.userConfig.hashDepth.getIntValue(),
+                Math.max(1, this.userConfig.numTasks.getIntValue()));
+        logger.info("MrpBuildRun: database updated to version " + manifest.getVersion() + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return 0;
+    }
+
+    /**     Method Run
+     * -------------------------------------------------------------------------
+     *     Builds the database by a map/reduce job
+     *
+     * @param args arguments for the run (not used)
+     * @return zero when run finished normally
+     * @throws java.io.IOException
+     * @throws java.lang.InterruptedException
+     * @throws java.lang.ClassNotFoundException
+     */
+    @Override
+    public int run(String[] args) throws IOException, InterruptedException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        Configuration hadoopConfig = new Configuration();
+        FileSystem hadoopFS = FileSystem.get(hadoopConfig);
+        String runTemp = this.userConfig.tempDir.getValue();
+        if (!runTemp.endsWith(Path.SEPARATOR))
+            runTemp += Path.SEPARATOR;
+        hadoopFS.delete(new Path(runTemp), true);
+
+        TaxonDatabaseBuilder builder = this.parseTree(hadoopFS);
+        String dataPath = this.dataPath(hadoopFS);
+        if (this.userConfig.dbFormat.is(TaxonDatabases.FORMAT_INDEX)) {
+            // there are no paths to write, only the indexes
+            builder.write(hadoopFS, dataPath, TaxonDatabases.FORMAT_INDEX, 0, 1);
+            this.writeManifest(hadoopFS, dataPath, builder);
+            logger.info("MrpBuildRun: database built in " + (System.currentTimeMillis() - start) + " ms");
+            return 0;
+        }
+        boolean packed = this.userConfig.dbFormat.is(TaxonDatabases.FORMAT_PACKED);
+        // the map tasks read the tree index from the data directory
+        builder.writeIndexes(hadoopFS, dataPath);
+        Path tipsFile = new Path(runTemp + "tips");
+        builder.writeTips(hadoopFS.create(tipsFile, true));
+        int numTasks = Math.max(1, this.userConfig.numTasks.getIntValue());
+        int tipsPerTask = Math.max(1, (builder.getNumberOfTips() + numTasks - 1) / numTasks);
+
+        logger.info("MrpBuildRun: configuring Hadoop job: Build");
+        hadoopConfig.set("my.taxondir", dataPath);
+        hadoopConfig.set("my.dbformat", this.userConfig.dbFormat.getValue());
+        hadoopConfig.setInt("my.hashdepth", this.userConfig.hashDepth.getIntValue());
+        Job job = Job.getInstance(hadoopConfig);
+        job.setJarByClass(MrpBuildRun.class);
+        // a split of tipsPerTask lines of the list of tips per map task
+        NLineInputFormat.setInputPaths(job, tipsFile);
+        NLineInputFormat.setNumLinesPerSplit(job, tipsPerTask);
+        job.setInputFormatClass(NLineInputFormat.class);
+        job.setMapperClass(MrpBuildMapper.class);
+        job.setNumReduceTasks(0);
+        Path buildOutput = new Path(runTemp + "build");
+        if (packed) {
+            // the map tasks return the (hexadecimal) key and path of each tip
+            TextOutputFormat.setOutputPath(job, buildOutput);
+            job.setOutputFormatClass(TextOutputFormat.class);
+        } else {
+            // the map tasks write the taxon files themselves
+            job.setOutputFormatClass(NullOutputFormat.class);
+        }
+        job.setOutputKeyClass(Text.class);
+        job.setOutputValueClass(Text.class);
+        logger.info("MrpBuildRun: starting Hadoop job, " + tipsPerTask + " tips per map task");
+        if (!job.waitForCompletion(true))
+            throw new IOException("MrpBuildRun: Hadoop job failed");
+        logger.info("MrpBuildRun: ending Hadoop job");
+
+        if (packed)
+            this.writePacked(hadoopFS, dataPath, buildOutput);
+        this.writeManifest(hadoopFS, dataPath, builder);
+        logger.info("MrpBuildRun: database built in " + (System.currentTimeMillis() - start) + " ms");
+        return 0;
+    }
+
+    /**
+     *     Reads the tree of the input file
+     */
+    private TaxonDatabaseBuilder parseTree(FileSystem hadoopFS) throws IOException {
+        Path treePath = new Path(this.userConfig.inputFile.getPath());
+        if (!hadoopFS.isFile(treePath)) {
+            logger.error("Tree file not found: " + treePath);
+            throw new FileNotFoundException("Tree file not found: " + treePath);
+        }
+        logger.info("MrpBuildRun: reading the tree in " + treePath);
+        TaxonDatabaseBuilder builder = new TaxonDatabaseBuilder();
+        try (Reader reader = new BufferedReader(new InputStreamReader(
+                hadoopFS.open(treePath), StandardCharsets.UTF_8))) {
+            builder.parse(reader);
+        }
+        return builder;
+    }
+
+    /**
+     *     Returns the data directory to build the database in, ending
+     *     with a separator; it is created if it is not there
+     */
+    private String dataPath(FileSystem hadoopFS) throws IOException {
+        String dataPath = this.userConfig.dataPath.getValue();
+        if (!dataPath.endsWith(Path.SEPARATOR))
+            dataPath += Path.SEPARATOR;
+        hadoopFS.mkdirs(new Path(dataPath));
+        return dataPath;
+    }
+
+    /**
+     *     Writes the manifest of the database built, with a version one
+     *     higher than that of the database it replaces (if any)
+     */
+    private void writeManifest(FileSystem hadoopFS, String dataPath, TaxonDatabaseBuilder builder)
+            throws IOException {
+        DatabaseManifest manifest = new DatabaseManifest();
+        manifest.setVersion(DatabaseManifest.load(hadoopFS, dataPath).getVersion() + 1);
+        manifest.set("format", this.userConfig.dbFormat.getValue());
+        manifest.set("hashDepth", this.userConfig.hashDepth.getIntValue());
+        manifest.set("tree", this.userConfig.inputFile.getPath());
+        manifest.set("taxa", builder.getNumberOfTips());
+        manifest.set("nodes", builder.getTreeIndex().getSize() - 1);
+        manifest.write(hadoopFS, dataPath);
+    }
+
+    /**
+     *     Writes the packed data and index file from the
+     *     "key tab path" lines of the map tasks
+     */
+    private void writePacked(FileSystem hadoopFS, String dataPath, Path buildOutput) throws IOException {
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(hadoopFS, dataPath);
+        FileStatus[] parts = hadoopFS.globStatus(new Path(buildOutput, "part-m-*"));
+        for (FileStatus part : parts) {
+            FSDataInputStream stream = hadoopFS.open(part.getPath());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    int tab = line.indexOf('\t');
+                    writer.add(TaxonKey.fromHex(line.substring(0, tab)), line.substring(tab + 1));
+                }
+            }
+        }
+        writer.close();
+        logger.info("MrpBuildRun: " + writer.getSize() + " taxa written to the packed database");
+    }
+}
@@ -7,6 +7,8 @@ import org.apache.commons.cli.Options; // because ini4j also has getOptions meth
 import org.apache.log4j.*;
 import org.ini4j.*;
 
+import org.phylotastic.mrpdatabase.TaxonDatabases;
+import org.phylotastic.mrpdatabase.TaxonPathCache;
 import org.phylotastic.mrpoption.*;
 
 /**
@@ -43,6 +45,64 @@ import org.phylotastic.mrpoption.*;
  */
 public class MrpConfig {
 
+    /**
+     * run mode: prune the tree for the taxa in the input file
+     */
+    public static final String MODE_PRUNE = "prune";
+
+    /**
+     * run mode: convert a directory layout "taxon database" to the packed layout
+     */
+    public static final String MODE_CONVERT = "convert";
+
+    /**
+     * run mode: prune the tree in memory, in this JVM, without Hadoop
+     */
+    public static final String MODE_LOCAL = "local";
+
+    /**
+     * run mode: prune the tree in memory, from the LCA's of the tips (see MrpLcaRun)
+     */
+    public static final String MODE_LCA = "lca";
+
+    /**
+     * run mode: answer prune requests over HTTP, with the tree index in memory (see MrpServer)
+     */
+    public static final String MODE_SERVE = "serve";
+
+    /**
+     * run mode: prune the tree for random subsamples of the taxa (see MrpJackknifeRun)
+     */
+    public static final String MODE_JACKKNIFE = "jackknife";
+
+    /**
+     * run mode: build the "taxon database" of the Newick tree in the input file,
+     * by a map/reduce job (see MrpBuildRun)
+     */
+    public static final String MODE_BUILD = "build";
+
+    /**
+     * run mode: build the "taxon database" of the Newick tree in the input file,
+     * in this JVM (see MrpBuildRun)
+     */
+    public static final String MODE_BUILDLOCAL = "buildlocal";
+
+    /**
+     * run mode: update the "taxon database" to the (changed) Newick tree in the
+     * input file, in this JVM (see MrpBuildRun, TaxonDatabaseUpdater)
+     */
+    public static final String MODE_UPDATE = "update";
+
+    /**
+     * pipeline: the original three map/reduce passes
+     */
+    public static final String PIPELINE_3PASS = "3pass";
+
+    /**
+     * pipeline: two map/reduce passes; the MRCA's are selected per tip
+     */
+    public static final String PIPELINE_2PASS = "2pass";
+
     /**
      * default name for config file
      */
@@ -93,6 +153,86 @@ public class MrpConfig {
      */
     public MrpIntOption hashDepth = new MrpIntOption();
 
+    /**
+     * program option: the size of the taxon path cache in megabytes
+     */
+    public MrpIntOption cacheSize = new MrpIntOption();
+
+    /**
+     * program option: the number of threads per mapper looking up taxon paths
+     */
+    public MrpIntOption fetchThreads = new MrpIntOption();
+
+    /**
+     * program option: the size of the input splits of pass 1 in bytes; 0 for adaptive
+     */
+    public MrpIntOption splitSize = new MrpIntOption();
+
+    /**
+     * program option: the port the prune server listens on
+     */
+    public MrpIntOption port = new MrpIntOption();
+
+    /**
+     * program option: the largest number of taxa the prune server prunes in memory
+     */
+    public MrpIntOption localLimit = new MrpIntOption();
+
+    /**
+     * program option: the folder of the cache of pruned trees; empty for no cache
+     */
+    public MrpArgumentOption resultCache = new MrpArgumentOption();
+
+    /**
+     * program option: the maximum size of the cache of pruned trees in megabytes
+     */
+    public MrpIntOption resultCacheSize = new MrpIntOption();
+
+    /**
+     * program option: the number of replicates of a jackknife run
+     */
+    public MrpIntOption replicates = new MrpIntOption();
+
+    /**
+     * program option: the number of taxa in each replicate of a jackknife run
+     */
+    public MrpIntOption sampleSize = new MrpIntOption();
+
+    /**
+     * program option: the seed of the random number generator of a jackknife run
+     */
+    public MrpIntOption seed = new MrpIntOption();
+
+    /**
+     * program option: the file listing the input and output files of a batch run;
+     * empty for a run of the one input file
+     */
+    public MrpPathOption batch = new MrpPathOption();
+
+    /**
+     * program option: the file to write the statistics of the pruned trees to;
+     * empty for no statistics
+     */
+    public MrpPathOption treeStats = new MrpPathOption();
+
+    /**
+     * program option: what to do; prune, prune locally, prune from the LCA's,
+     * serve, jackknife, convert, build, build locally or update
+     */
+    public MrpChoiceOption runMode = new MrpChoiceOption(MODE_PRUNE, MODE_LOCAL, MODE_LCA,
+            MODE_SERVE, MODE_JACKKNIFE, MODE_CONVERT, MODE_BUILD, MODE_BUILDLOCAL, MODE_UPDATE);
+
+    /**
+     * program option: the map/reduce pipeline to use; 3pass or 2pass
+     */
+    public MrpChoiceOption pipeline = new MrpChoiceOption(PIPELINE_3PASS, PIPELINE_2PASS);
+
+    /**
+     * program option: the format of the "taxon database"
+     */
+    public MrpChoiceOption dbFormat = new MrpChoiceOption(TaxonDatabases.FORMAT_DIRECTORY,
+            TaxonDatabases.FORMAT_PACKED, TaxonDatabases.FORMAT_INDEX);
+
     /**
      * program option: the url for the "taxon database"
      */
@@ -179,6 +319,106 @@ public class MrpConfig {
      *        -hashdepth {integer value}
      *   ini: [Main] hashDepth = {integer value}
      * 
+     * - What to do: prune the tree (default), prune the tree in
+     *   memory without Hadoop (local), prune it in memory from
+     *   the LCA's of the tips (lca), answer prune requests (serve),
+     *   prune random subsamples (jackknife), convert the "taxon
+     *   database" in the data directory to the packed format or
+     *   build it from the Newick tree in the input file, by a
+     *   map/reduce job (build) or in this JVM (buildlocal), or
+     *   update it to a changed tree in the input file (update)
+     *   cli: -m {prune|local|lca|serve|jackknife|convert|build|buildlocal|update}
+     *        -mode {prune|local|lca|serve|jackknife|convert|build|buildlocal|update}
+     *   ini: [Main] mode = {prune|local|lca|serve|jackknife|convert|build|buildlocal|update}
+     * 
+     * - The map/reduce pipeline: the original three passes (3pass,
+     *   the default) or two passes (2pass), that select the MRCA's
+     *   per tip in the second pass instead of in a separate pass;
+     *   a batch run needs the 2pass pipeline
+     *   cli: -p {3pass|2pass}
+     *        -pipeline {3pass|2pass}
+     *   ini: [Main] pipeline = {3pass|2pass}
+     * 
+     * - The format of the "taxon database": one file per taxon
+     *   (directory, the default), one data and index file (packed)
+     *   or the tree index and a name index, without the paths (index)
+     *   cli: -f {directory|packed|index}
+     *        -format {directory|packed|index}
+     *   ini: [Main] dbFormat = {directory|packed|index}
+     * 
+     * - The size in megabytes of the cache of parsed taxon paths,
+     *   that is shared by the tasks in a JVM; 0 for no cache
+     *   cli: -s {integer value}
+     *        -cachesize {integer value}
+     *   ini: [Main] cacheSize = {integer value}
+     * 
+     * - The number of threads per mapper that look up the taxon
+     *   paths concurrently; 1 (the default) looks them up one by one
+     *   cli: -a {integer value}
+     *        -fetchthreads {integer value}
+     *   ini: [Main] fetchThreads = {integer value}
+     * 
+     * - The size of the input splits of pass 1 in bytes; so the number
+     *   of map tasks. 0 (the default) plans it from the input, the
+     *   cluster and the lookup costs (see MrpSplitPlan)
+     *   cli: -z {integer value}
+     *        -splitsize {integer value}
+     *   ini: [Main] splitSize = {integer value}
+     * 
+     * - The port the prune server (mode serve) listens on
+     *   cli: -w {integer value}
+     *        -port {integer value}
+     *   ini: [Main] port = {integer value}
+     * 
+     * - The largest number of taxa in a request that the prune server
+     *   prunes in memory; larger requests are pruned by map/reduce
+     *   (0 => always in memory)
+     *   cli: -l {integer value}
+     *        -locallimit {integer value}
+     *   ini: [Main] localLimit = {integer value}
+     * 
+     * - The folder (on HDFS or file:// local) of the cache of pruned
+     *   trees, used by MrpRun; none (the default) for no cache
+     *   cli: -g {path to cache folder}
+     *        -resultcache {path to cache folder}
+     *   ini: [Main] resultCache = {path to cache folder}
+     * 
+     * - The maximum size in megabytes of the cache of pruned trees;
+     *   the least recently used trees are removed
+     *   cli: -k {integer value}
+     *        -resultcachesize {integer value}
+     *   ini: [Main] resultCacheSize = {integer value}
+     * 
+     * - The number of replicates of a jackknife run (mode jackknife);
+     *   the output is the folder the replicates are written to
+     *   cli: -x {integer value}
+     *        -replicates {integer value}
+     *   ini: [Main] replicates = {integer value}
+     * 
+     * - The number of taxa in each replicate of a jackknife run
+     *   cli: -y {integer value}
+     *        -samplesize {integer value}
+     *   ini: [Main] sampleSize = {integer value}
+     * 
+     * - The seed of the random number generator of a jackknife run
+     *   cli: -q {integer value}
+     *        -seed {integer value}
+     *   ini: [Main] seed = {integer value}
+     * 
+     * - The file listing the input lists of a batch run (mode prune), one
+     *   "{input file} {output file}" per line; all lists are pruned by the
+     *   same map/reduce passes. None (the default) to prune the input file
+     *   cli: -j {path to batch file}
+     *        -batch {path to batch file}
+     *   ini: [Main] batch = {path to batch file}
+     * 
+     * - The file to write the statistics of the pruned trees to (see
+     *   TreeStats), one tab separated row per tree, as script/treestats.pl
+     *   does; none (the default) for no statistics
+     *   cli: -b {path to statistics file}
+     *        -treestats {path to statistics file}
+     *   ini: [Main] treeStats = {path to statistics file}
+     * 
      * - The the number of hadoop tasks to use for the processes
      *   cli: -n {integer value}
      *        -numTasks {integer value}
@@ -234,6 +474,18 @@ public class MrpConfig {
         // ini file or on the command line
         this.workDir.setValue(System.getProperty("user.dir"));
         this.numTasks.setValue(this.defaultNumTasks);
+        this.cacheSize.setValue(TaxonPathCache.DEFAULT_SIZE);
+        this.fetchThreads.setValue(1);
+        this.splitSize.setValue(0);
+        this.port.setValue(8080);
+        this.localLimit.setValue(1000);
+        this.resultCacheSize.setValue(256);
+        this.replicates.setValue(1000);
+        this.sampleSize.setValue(0);
+        this.seed.setValue(1);
+        this.runMode.setValue(MODE_PRUNE);
+        this.pipeline.setValue(PIPELINE_3PASS);
+        this.dbFormat.setValue(TaxonDatabases.FORMAT_DIRECTORY);
         this.inputFile.setValue("input.txt");
         this.outputFile.setValue("output.txt");
         
@@ -249,6 +501,36 @@ public class MrpConfig {
                 "n", "numtasks" , "integer", "Main", "numTasks");               // value of numTasks option
         this.hashDepth.setProperties("hashdepth for decoding taxonname", 
                 "h", "hashdepth" , "integer", "Main", "hashDepth");             // value of hashDepth option
+        this.cacheSize.setProperties("size of the taxon path cache in MB", 
+                "s", "cachesize" , "integer", "Main", "cacheSize");             // value of cacheSize option
+        this.fetchThreads.setProperties("number of threads per mapper looking up paths", 
+                "a", "fetchthreads" , "integer", "Main", "fetchThreads");       // value of fetchThreads option
+        this.splitSize.setProperties("size of the input splits in bytes", 
+                "z", "splitsize" , "integer", "Main", "splitSize");             // value of splitSize option
+        this.port.setProperties("port of the prune server", 
+                "w", "port" , "integer", "Main", "port");                       // value of port option
+        this.localLimit.setProperties("largest number of taxa pruned in memory by the server", 
+                "l", "locallimit" , "integer", "Main", "localLimit");           // value of localLimit option
+        this.resultCache.setProperties("path to the cache folder of pruned trees", 
+                "g", "resultcache" , "folder path", "Main", "resultCache");     // path to result cache
+        this.resultCacheSize.setProperties("size of the cache of pruned trees in MB", 
+                "k", "resultcachesize" , "integer", "Main", "resultCacheSize"); // value of resultCacheSize option
+        this.replicates.setProperties("number of jackknife replicates", 
+                "x", "replicates" , "integer", "Main", "replicates");           // value of replicates option
+        this.sampleSize.setProperties("number of taxa per jackknife replicate", 
+                "y", "samplesize" , "integer", "Main", "sampleSize");           // value of sampleSize option
+        this.seed.setProperties("seed of the jackknife random numbers", 
+                "q", "seed" , "integer", "Main", "seed");                       // value of seed option
+        this.batch.setProperties("path to the file listing the input and output files of a batch", 
+                "j", "batch" , "file path", "Main", "batch");                   // path to batch file
+        this.treeStats.setProperties("path to the file for the statistics of the pruned trees", 
+                "b", "treestats" , "file path", "Main", "treeStats");           // path to statistics file
+        this.runMode.setProperties("run mode", 
+                "m", "mode" , "mode", "Main", "mode");                          // what to do
+        this.pipeline.setProperties("map/reduce pipeline", 
+                "p", "pipeline" , "pipeline", "Main", "pipeline");              // number of passes
+        this.dbFormat.setProperties("format of the taxon database", 
+                "f", "format" , "format", "Main", "dbFormat");                  // format of the data dir
         this.treeUrl.setProperties("treeURL", 
                 "u", "url", "url", "Tree", "url");                              // tree URL as a string
         this.inputFile.setProperties("path to input file", 
@@ -283,6 +565,21 @@ public class MrpConfig {
         options.addOption(this.configFile.getOption());
         options.addOption(this.numTasks.getOption());
         options.addOption(this.hashDepth.getOption());
+        options.addOption(this.cacheSize.getOption());
+        options.addOption(this.fetchThreads.getOption());
+        options.addOption(this.splitSize.getOption());
+        options.addOption(this.port.getOption());
+        options.addOption(this.localLimit.getOption());
+        options.addOption(this.resultCache.getOption());
+        options.addOption(this.resultCacheSize.getOption());
+        options.addOption(this.replicates.getOption());
+        options.addOption(this.sampleSize.getOption());
+        options.addOption(this.seed.getOption());
+        options.addOption(this.batch.getOption());
+        options.addOption(this.treeStats.getOption());
+        options.addOption(this.runMode.getOption());
+        options.addOption(this.pipeline.getOption());
+        options.addOption(this.dbFormat.getOption());
         options.addOption(this.inputFile.getOption());
         options.addOption(this.tempDir.getOption());
         options.addOption(this.outputFile.getOption());
@@ -360,6 +657,21 @@ public class MrpConfig {
         // the same option when both are specfied
         this.numTasks.setOption(configIni, cmdLine);
         this.hashDepth.setOption(configIni, cmdLine);
+        this.cacheSize.setOption(configIni, cmdLine);
+        this.fetchThreads.setOption(configIni, cmdLine);
+        this.splitSize.setOption(configIni, cmdLine);
+        this.port.setOption(configIni, cmdLine);
+        this.localLimit.setOption(configIni, cmdLine);
+        this.resultCache.setOption(configIni, cmdLine);
+        this.resultCacheSize.setOption(configIni, cmdLine);
+        this.replicates.setOption(configIni, cmdLine);
+        this.sampleSize.setOption(configIni, cmdLine);
+        this.seed.setOption(configIni, cmdLine);
+        this.batch.setOption(configIni, cmdLine);
+        this.treeStats.setOption(configIni, cmdLine);
+        this.runMode.setOption(configIni, cmdLine);
+        this.pipeline.setOption(configIni, cmdLine);
+        this.dbFormat.setOption(configIni, cmdLine);
         this.inputFile.setOption(configIni, cmdLine);
         this.tempDir.setOption(configIni, cmdLine);
         this.outputFile.setOption(configIni, cmdLine);
@@ -428,6 +740,20 @@ public class MrpConfig {
         logger.info("MrpConfig: Num tasks   = " + this.numTasks.getValue());
         logger.info("MrpConfig: Input file  = " + this.inputFile.getPath());
         logger.info("MrpConfig: Hashdepth   = " + this.hashDepth.getValue());
+        logger.info("MrpConfig: Cache size  = " + this.cacheSize.getValue() + " MB");
+        logger.info("MrpConfig: Fetch threads = " + this.fetchThreads.getValue());
+        logger.info("MrpConfig: Split size  = " + this.splitSize.getValue());
+        logger.info("MrpConfig: Port        = " + this.port.getValue());
+        logger.info("MrpConfig: Local limit = " + this.localLimit.getValue());
+        logger.info("MrpConfig: Result cache = " + this.resultCache.getValue()
+                + " (" + this.resultCacheSize.getValue() + " MB)");
+        logger.info("MrpConfig: Replicates  = " + this.replicates.getValue()
+                + " of " + this.sampleSize.getValue() + " taxa, seed " + this.seed.getValue());
+        logger.info("MrpConfig: Batch file  = " + this.batch.getValue());
+        logger.info("MrpConfig: Tree stats  = " + this.treeStats.getValue());
+        logger.info("MrpConfig: Run mode    = " + this.runMode.getValue());
+        logger.info("MrpConfig: Pipeline    = " + this.pipeline.getValue());
+        logger.info("MrpConfig: Data format = " + this.dbFormat.getValue());
         logger.info("MrpConfig: Tree url    = " + this.treeUrl.getValue());
         logger.info("MrpConfig: Data root   = " + this.dataRootDir.getValue());
         logger.info("MrpConfig: Data dir    = " + this.dataDir.getValue());
@@ -440,6 +766,27 @@ public class MrpConfig {
         // throw exeption if not usable
         this.numTasks.checkValue();
         this.hashDepth.checkValue();
+        this.cacheSize.checkValue();
+        this.fetchThreads.checkValue();
+        this.splitSize.checkValue();
+        this.port.checkValue();
+        this.localLimit.checkValue();
+        // the result cache is optional
+        if (this.resultCache.hasValue())
+            this.resultCache.checkValue();
+        this.resultCacheSize.checkValue();
+        this.replicates.checkValue();
+        this.sampleSize.checkValue();
+        this.seed.checkValue();
+        // the batch file is optional
+        if (this.batch.hasValue())
+            this.batch.checkValue();
+        // the statistics file is optional
+        if (this.treeStats.hasValue())
+            this.treeStats.checkValue();
+        this.runMode.checkValue();
+        this.pipeline.checkValue();
+        this.dbFormat.checkValue();
         this.inputFile.checkValue();
         this.tempDir.checkValue();
         this.outputFile.checkValue();
@@ -0,0 +1,190 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrppath.PathNode;
+import org.phylotastic.mrptree.CompactTree;
+import org.phylotastic.mrptree.NewickWriter;
+import org.phylotastic.mrptree.TreeStats;
+
+/**
+ *     Class MrpJackknifeRun
+ *
+ *     Prunes the tree for a number of random subsamples (replicates) of the
+ *     taxa in the input file, like script/sampler.sh does with one process
+ *     per replicate, but in one run: the tips of all taxa are looked up
+ *     once, and the replicates are pruned from those, in memory and at the
+ *     same time (see MrpLcaRun).
+ *
+ *     Each replicate is sampleSize taxa drawn without replacement from the
+ *     lines of the input file that are in the "taxon database"; the others
+ *     are written to the ".missing" file of the output folder, as MrpRun
+ *     does for an output file. The random number generator of each replicate
+ *     is seeded from one generator with the seed option, so the replicates
+ *     are the same for the same seed, whatever the number of threads.
+ *
+ *     The output option names a folder; replicate i (from 1) is written to
+ *     {i}.lst (the sampled taxa) and {i}.dnd (the Newick tree) in there;
+ *     e.g. output/jackknife/{primer}/{site}/1.dnd
+ *
+ *     With the treeStats option the statistics of the replicate trees
+ *     are written to that file, one row per replicate (see TreeStats),
+ *     computed while the replicates are pruned.
+ */
+public class MrpJackknifeRun {
+    private static Logger logger;
+    private final MrpConfig userConfig;     // MrpConfig object holding the configuration options
+
+    /**
+     *
+     * @param _config   the MrpConfig object holding the configuration variables (options)
+     */
+    public MrpJackknifeRun(MrpConfig _config) {
+        super();
+        userConfig    = _config;
+        logger        = Logger.getLogger(MrpJackknifeRun.class.getName());
+    }
+
+    /**     Method Run
+     * -------------------------------------------------------------------------
+     *     Prunes the tree for the replicates of the taxa in the input
+     *     file and writes them to the output folder
+     *
+     * @return zero when run finished normally
+     * @throws java.io.IOException
+     */
+    public int run() throws IOException {
+        long start = System.currentTimeMillis();
+        // check the input file
+        Path inputPath = MrpLocalRun.localPath(this.userConfig.inputFile.getPath());
+        if (!Files.isRegularFile(inputPath)) {
+            logger.error("Input file not found: " + inputPath);
+            throw new FileNotFoundException("Input file not found: " + inputPath);
+        }
+        // read the taxa; Hadoop's TextInputFormat reads them as UTF-8
+        List<String> inputTaxa = MrpLocalRun.readTaxa(inputPath);
+        final int replicates = this.userConfig.replicates.getIntValue();
+        final int sampleSize = this.userConfig.sampleSize.getIntValue();
+        final Path outputDir = MrpLocalRun.localPath(this.userConfig.outputFile.getPath());
+
+        // the statistics of the replicates, when asked for
+        final TreeStats[] stats = (this.userConfig.treeStats.hasValue() ? new TreeStats[replicates] : null);
+        final MrpLcaRun lcaRun = new MrpLcaRun(this.userConfig);
+        lcaRun.open();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, this.userConfig.numTasks.getIntValue()));
+        try {
+            // look up the tip of every taxon once; the replicates
+            // are drawn from the taxa in the "taxon database"
+            List<String> missing = new ArrayList<>();
+            PathNode[] inputTips = lcaRun.lookupTips(inputTaxa, missing);
+            final List<String> taxa = new ArrayList<>(inputTaxa.size());
+            List<PathNode> foundTips = new ArrayList<>(inputTaxa.size());
+            for (int i = 0; i < inputTips.length; i++) {
+                if (inputTips[i] != null) {
+                    taxa.add(inputTaxa.get(i));
+                    foundTips.add(inputTips[i]);
+                }
+            }
+            final PathNode[] tips = foundTips.toArray(new PathNode[foundTips.size()]);
+            logger.info("MrpJackknifeRun: looked up " + inputTips.length + " taxa in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            MrpLocalRun.reportMissing(missing, lcaRun.getFilterRejects());
+            if (sampleSize <= 0 || sampleSize > taxa.size())
+                throw new IllegalArgumentException("MrpJackknifeRun: sample size " + sampleSize
+                        + " is not between 1 and the number of taxa found (" + taxa.size() + ")");
+            logger.info("MrpJackknifeRun: " + replicates + " replicates of " + sampleSize
+                    + " of the " + taxa.size() + " taxa in " + inputPath);
+            Files.createDirectories(outputDir);
+            MrpLocalRun.writeMissing(outputDir, missing);
+
+            // the seeds of the replicates, drawn one after the other
+            Random random = new Random(this.userConfig.seed.getIntValue());
+            final long[] seeds = new long[replicates];
+            for (int i = 0; i < replicates; i++)
+                seeds[i] = random.nextLong();
+
+            MrpLocalRun.forEach(pool, replicates, new MrpLocalRun.IndexAction() {
+                @Override
+                public void apply(int index) throws IOException {
+                    int[] sample = sample(tips.length, sampleSize, new Random(seeds[index]));
+                    PathNode[] sampleTips = new PathNode[sampleSize];
+                    for (int i = 0; i < sampleSize; i++)
+                        sampleTips[i] = tips[sample[i]];
+                    CompactTree tree = lcaRun.prune(sampleTips);
+                    writeReplicate(outputDir, index + 1, taxa, sample, tree);
+                    if (stats != null)
+                        stats[index] = new TreeStats(tree.toTree());
+                }
+            });
+        } finally {
+            pool.shutdown();
+            lcaRun.close();
+        }
+        if (stats != null) {
+            List<String> files = new ArrayList<>(replicates);
+            for (int i = 1; i <= replicates; i++)
+                files.add(outputDir.resolve(i + ".dnd").toString());
+            MrpLocalRun.writeTreeStats(this.userConfig, files, Arrays.asList(stats));
+        }
+        logger.info("MrpJackknifeRun: " + replicates + " replicates written to " + outputDir
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+        return 0;
+    }
+
+    /**
+     *     Draws a sample without replacement: the first k of a
+     *     partial Fisher-Yates shuffle of 0 .. n-1
+     *
+     * @param n         the number of items to draw from
+     * @param k         the size of the sample
+     * @param random    the random number generator
+     * @return          the (indexes of the) k items, in the order they were drawn
+     */
+    protected static int[] sample(int n, int k, Random random) {
+        int[] items = new int[n];
+        for (int i = 0; i < n; i++)
+            items[i] = i;
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int item = items[j];
+            items[j] = items[i];
+            items[i] = item;
+        }
+        int[] sample = new int[k];
+        System.arraycopy(items, 0, sample, 0, k);
+        return sample;
+    }
+
+    /**
+     *     Writes the sampled taxa and the tree of a replicate
+     */
+    private static void writeReplicate(Path outputDir, int replicate, List<String> taxa,
+            int[] sample, CompactTree tree) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(outputDir.resolve(replicate + ".lst"),
+                StandardCharsets.UTF_8)) {
+            for (int i : sample) {
+                writer.write(taxa.get(i));
+                writer.write('\n');
+            }
+        }
+        // the same (default) character set as the other runs
+        try (Writer writer = Files.newBufferedWriter(outputDir.resolve(replicate + ".dnd"),
+                Charset.defaultCharset())) {
+            NewickWriter newickWriter = new NewickWriter(writer);
+            newickWriter.write(tree);
+            newickWriter.flush();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrpdatabase.*;
+import org.phylotastic.mrppath.PathNode;
+import org.phylotastic.mrptree.CompactTree;
+import org.phylotastic.mrptree.NewickWriter;
+import org.phylotastic.mrptree.TreeStats;
+
+/**
+ *     Class MrpLcaRun
+ *
+ *     Prunes the tree like MrpRun and MrpLocalRun do, in memory, but
+ *     without going through the path of every taxon. Instead it uses an
+ *     index of the complete tree (TreeIndex: the parent and branch length
+ *     of every pre-order label) and an LCA index on top of that (LcaIndex).
+ *
+ *     The nodes of the pruned tree are the tips and the lowest common
+ *     ancestors (LCA's) of the tips that are next to each other when
+ *     sorted on their (pre-order) label. In that order the parent of
+ *     each node is the LCA of the node and the one before it, so the
+ *     pruned tree is put together in O(n log n) for n tips.
+ *
+ *     The branch lengths are those of MrpPass2TipReducer / MrpPass3Reducer:
+ *     an internal node gets the sum of the lengths of the nodes from itself
+ *     up to the next node in the pruned tree (for the root: up to the root
+ *     of the complete tree); a tip gets it's own (integer) length, plus 1 if
+ *     nodes were left out between the tip and it's parent in the pruned tree.
+ *     So the resulting Newick tree is identical to that of MrpRun.
+ *     As there, a taxon that is not in the "taxon database" is left out
+ *     of the tree and written to the ".missing" file of the output.
+ */
+public class MrpLcaRun {
+    private static Logger logger;
+    private final MrpConfig userConfig;     // MrpConfig object holding the configuration options
+    private TreeIndex treeIndex;            // the index of the complete tree
+    private LcaIndex lcaIndex;              // the LCA index of the complete tree
+    private TaxonDatabase database;         // the "taxon database" the tips are looked up in
+    private MrpPass1Mapper.Core core;       // looks up the (cached) taxon paths
+    private ForkJoinPool pool;              // the threads looking up the taxa
+
+    /**
+     *
+     * @param _config   the MrpConfig object holding the configuration variables (options)
+     */
+    public MrpLcaRun(MrpConfig _config) {
+        super();
+        userConfig    = _config;
+        logger        = Logger.getLogger(MrpLcaRun.class.getName());
+    }
+
+    /**     Method Run
+     * -------------------------------------------------------------------------
+     *     Prunes the tree for the taxa in the input file and writes
+     *     the result to the output file; see MrpRun.run()
+     *
+     * @return zero when run finished normally
+     * @throws java.io.IOException
+     */
+    public int run() throws IOException {
+        long start = System.currentTimeMillis();
+        // check the input file
+        Path inputPath = MrpLocalRun.localPath(this.userConfig.inputFile.getPath());
+        if (!Files.isRegularFile(inputPath)) {
+            logger.error("Input file not found: " + inputPath);
+            throw new FileNotFoundException("Input file not found: " + inputPath);
+        }
+        this.open();
+        try {
+            // read the taxa; Hadoop's TextInputFormat reads them as UTF-8
+            List<String> taxa = MrpLocalRun.readTaxa(inputPath);
+            logger.info("MrpLcaRun: " + taxa.size() + " taxa in " + inputPath);
+            // build the tree and write the Newick string
+            List<String> missing = new ArrayList<>();
+            CompactTree tree = this.prune(taxa, missing);
+            logger.info("MrpLcaRun: taxon path cache hits = " + this.getCacheHits()
+                    + ", misses = " + this.getCacheMisses());
+            MrpLocalRun.reportMissing(missing, this.getFilterRejects());
+            Path outputPath = MrpLocalRun.localPath(this.userConfig.outputFile.getPath());
+            MrpLocalRun.writeMissing(outputPath, missing);
+            if (outputPath.getParent() != null)
+                Files.createDirectories(outputPath.getParent());
+            // write the Newick string straight to the file
+            try (Writer writer = Files.newBufferedWriter(outputPath, Charset.defaultCharset())) {
+                NewickWriter newickWriter = new NewickWriter(writer);
+                newickWriter.write(tree);
+                newickWriter.flush();
+            }
+            logger.info("MrpLcaRun: Newick Tree written to file: " + outputPath);
+            if (this.userConfig.treeStats.hasValue())
+                MrpLocalRun.writeTreeStats(this.userConfig, Collections.singletonList(outputPath.toString()),
+                        Collections.singletonList(new TreeStats(tree.toTree())));
+        } finally {
+            this.close();
+        }
+        logger.info("MrpLcaRun: run finished in " + (System.currentTimeMillis() - start) + " ms");
+        return 0;
+    }
+
+    /**     Method open
+     * -------------------------------------------------------------------------
+     *     Reads the index of the complete tree and opens the "taxon
+     *     database"; after that any number of prune(taxa) calls can be
+     *     made, until close() is called (e.g. by MrpServer)
+     *
+     * @throws java.io.IOException
+     */
+    public void open() throws IOException {
+        long start = System.currentTimeMillis();
+        // check if path to "taxon database" looks ok
+        String rootDir = this.userConfig.dataRootDir.getValue();
+        if (!rootDir.endsWith("/"))
+            rootDir += "/";
+        Path taxonPath = MrpLocalRun.localPath(rootDir + this.userConfig.dataDir.getValue());
+        if (!Files.isDirectory(taxonPath)) {
+            logger.error("Taxon tree directory not found: " + taxonPath);
+            throw new FileNotFoundException("Taxon tree directory not found: " + taxonPath);
+        }
+        String taxonDir = taxonPath.toString() + File.separator;
+        this.userConfig.dataPath.setValue(taxonDir);
+
+        // the index of the complete tree; without an index file
+        // (see PackedDatabaseConverter) it is read from the taxon paths
+        this.treeIndex = TreeIndex.readLocal(taxonPath);
+        this.lcaIndex = new LcaIndex(this.treeIndex);
+        logger.info("MrpLcaRun: indexed " + this.treeIndex.getSize() + " labels in "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        this.database = TaxonDatabases.openLocal(this.userConfig.dbFormat.getValue(),
+                taxonDir, this.userConfig.hashDepth.getIntValue());
+        this.core = new MrpPass1Mapper.Core();
+        this.core.setup(taxonDir, this.userConfig.hashDepth.getIntValue(), null, File.separator);
+        this.core.setDatabase(this.database);
+        this.core.setFilter(TaxonFilter.loadLocal(taxonPath));
+        this.core.setCache(TaxonPathCache.getShared(this.userConfig.cacheSize.getIntValue()),
+                MrpLocalRun.databaseIdentity(taxonPath, this.userConfig.dbFormat.getValue()));
+        this.pool = new ForkJoinPool(Math.max(1, this.userConfig.numTasks.getIntValue()));
+    }
+
+    /**     Method prune
+     * -------------------------------------------------------------------------
+     *     Prunes the tree for a list of taxa; may be called by more
+     *     than one thread at the same time. The taxa that are not in
+     *     the "taxon database" are left out.
+     *
+     * @param taxa      the (untidy) taxon names
+     * @param missing   receives the (tidy) names of the taxa left out
+     * @return          the pruned (and rooted) tree
+     * @throws java.io.IOException  when none of the taxa is in the "taxon database"
+     */
+    public CompactTree prune(List<String> taxa, List<String> missing) throws IOException {
+        PathNode[] tips = this.lookupTips(taxa, missing);
+        List<PathNode> found = new ArrayList<>(tips.length);
+        for (PathNode tip : tips) {
+            if (tip != null)
+                found.add(tip);
+        }
+        if (found.isEmpty())
+            throw new FileNotFoundException("MrpLcaRun: none of the " + taxa.size()
+                    + " taxa is in the taxon database");
+        return this.prune(found.toArray(new PathNode[found.size()]));
+    }
+
+    /**     Method prune
+     * -------------------------------------------------------------------------
+     *     Prunes the tree for a number of tips that were looked up before
+     *     (see lookupTips); e.g. for subsamples of the same taxa
+     *
+     * @param tips      the (named) tips
+     * @return          the pruned (and rooted) tree
+     */
+    public CompactTree prune(PathNode[] tips) {
+        return prune(this.treeIndex, this.lcaIndex, tips);
+    }
+
+    /**     Method lookupTips
+     * -------------------------------------------------------------------------
+     *     Looks up the tip of each taxon in the "taxon database" (after the
+     *     taxon filter, if the database has one), at the same time; may be
+     *     called by more than one thread
+     *
+     * @param taxa      the (untidy) taxon names
+     * @param missing   receives the (tidy) names of the taxa not in the
+     *                  "taxon database", in the order of the taxa
+     * @return          the tip of each taxon, named by the tidy name;
+     *                  null for a taxon not in the "taxon database"
+     * @throws java.io.IOException
+     */
+    public PathNode[] lookupTips(final List<String> taxa, List<String> missing) throws IOException {
+        final PathNode[] tips = new PathNode[taxa.size()];
+        final String[] missingNames = new String[taxa.size()];
+        MrpLocalRun.forEach(this.pool, taxa.size(), new MrpLocalRun.IndexAction() {
+            @Override
+            public void apply(int index) throws IOException {
+                String taxonName = core.tidyTaxonName(taxa.get(index));
+                TaxonPath path;
+                try {
+                    path = core.lookupTaxonNodes(taxonName);
+                } catch (FileNotFoundException ex) {
+                    missingNames[index] = taxonName;
+                    return;
+                }
+                tips[index] = new PathNode(path.getLabel(0), path.getLength(0), taxonName);
+            }
+        });
+        for (String taxonName : missingNames) {
+            if (taxonName != null)
+                missing.add(taxonName);
+        }
+        return tips;
+    }
+
+    /**
+     * @return  the number of taxa rejected by the taxon filter
+     */
+    protected long getFilterRejects() {
+        return this.core.getFilterRejects();
+    }
+
+    /**
+     * @return  the number of taxon paths found in the cache
+     */
+    protected long getCacheHits() {
+        return this.core.getCacheHits();
+    }
+
+    /**
+     * @return  the number of taxon paths not found in the cache
+     */
+    protected long getCacheMisses() {
+        return this.core.getCacheMisses();
+    }
+
+    /**     Method close
+     * -------------------------------------------------------------------------
+     *     Closes the "taxon database" and stops the lookup threads
+     *
+     * @throws java.io.IOException
+     */
+    public void close() throws IOException {
+        try {
+            if (this.database != null)
+                this.database.close();
+        } finally {
+            if (this.pool != null)
+                this.pool.shutdown();
+            this.database = null;
+            this.pool = null;
+        }
+    }
+
+    /**
+     *     Builds the pruned tree for a number of tips
+     *
+     * @param treeIndex     the complete tree
+     * @param lcaIndex      the LCA index of the complete tree
+     * @param tips          the (named) tips; the same tip may be in there
+     *                      more than once, then the last name is used
+     * @return              the pruned (and rooted) tree
+     */
+    protected static CompactTree prune(TreeIndex treeIndex, LcaIndex lcaIndex, PathNode[] tips) {
+        // the pruned tree has at most 2n - 1 nodes
+        CompactTree tree = new CompactTree(2 * tips.length);
+        if (tips.length == 0)
+            return tree;
+        // the tips sorted on label, without doubles
+        int[] tipLabels = new int[tips.length];
+        for (int i = 0; i < tips.length; i++)
+            tipLabels[i] = tips[i].getLabel();
+        Arrays.sort(tipLabels);
+        int tipCount = 0;
+        for (int i = 0; i < tipLabels.length; i++) {
+            if (i == 0 || tipLabels[i] != tipLabels[tipCount - 1])
+                tipLabels[tipCount++] = tipLabels[i];
+        }
+        // the nodes of the pruned tree: the tips and the LCA's of neighbouring tips
+        int[] labels = Arrays.copyOf(tipLabels, 2 * tipCount - 1);
+        for (int i = 1; i < tipCount; i++)
+            labels[tipCount + i - 1] = lcaIndex.lca(tipLabels[i - 1], tipLabels[i]);
+        Arrays.sort(labels);
+        int nodeCount = 0;
+        for (int i = 0; i < labels.length; i++) {
+            if (i == 0 || labels[i] != labels[nodeCount - 1])
+                labels[nodeCount++] = labels[i];
+        }
+        // the parent (in the pruned tree) of each node; the first one is the root
+        int[] parents = new int[nodeCount];
+        for (int i = 1; i < nodeCount; i++)
+            parents[i] = lcaIndex.lca(labels[i - 1], labels[i]);
+        // the (integer) length and the name of the tips; as in MrpPass2TipReducer
+        int[] tipLengths = new int[tipCount];
+        String[] tipNames = new String[tipCount];
+        for (PathNode tip : tips) {
+            int i = Arrays.binarySearch(tipLabels, 0, tipCount, tip.getLabel());
+            tipLengths[i] += tip.getLength();
+            tipNames[i] = tip.getName();
+        }
+        int[] nodes = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int label = labels[i];
+            int tip = Arrays.binarySearch(tipLabels, 0, tipCount, label);
+            if (tip >= 0) {
+                // the tip; 1 longer if nodes with just this tip were left out
+                int length = tipLengths[tip];
+                if (treeIndex.getParent(label) != parents[i])
+                    length += 1;
+                nodes[i] = tree.addNode(label, length, tipNames[tip]);
+            } else {
+                // the MRCA; with the lengths of the nodes left out above it
+                double length = treeIndex.getLength(label);
+                for (int node = treeIndex.getParent(label); node != parents[i]; node = treeIndex.getParent(node))
+                    length += treeIndex.getLength(node);
+                nodes[i] = tree.addNode(label, length);
+            }
+            if (i > 0)
+                tree.setChild(nodes[Arrays.binarySearch(labels, 0, i, parents[i])], nodes[i]);
+        }
+        tree.rootTheTree();
+        return tree;
+    }
+}
@@ -0,0 +1,414 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrpdatabase.*;
+import org.phylotastic.mrppath.*;
+import org.phylotastic.mrptree.CompactTree;
+import org.phylotastic.mrptree.NewickWriter;
+import org.phylotastic.mrptree.TreeStats;
+
+/**
+ *     Class MrpLocalRun
+ *
+ *     Prunes the tree like MrpRun does, but in memory, in a single JVM,
+ *     without Hadoop. For the smaller inputs (a few hundred to a few
+ *     thousand taxa) the start up of the Hadoop jobs takes much more
+ *     time than the pruning itself.
+ *
+ *     The steps are those of the (2-pass) map/reduce pipeline, spread
+ *     over the threads of a ForkJoinPool (numTasks threads):
+ *
+ *     map-1:       look up the path of each taxon in the "taxon database"
+ *                  (read through java.nio, memory mapped; see TaxonDatabases.openLocal);
+ *                  a taxon that is not in there is left out, and written
+ *                  to the ".missing" file of the output, as MrpRun does
+ *     reduce-1:    count the tips of each internal node
+ *     reduce-2:    select the MRCA's on the path of each tip and remove
+ *                  the nodes that subtend only 1 tip (MrpPass2TipReducer.Core)
+ *     result:      build the tree and write the Newick string (MrpResult)
+ *
+ *     So the resulting Newick tree is identical to that of MrpRun.
+ */
+public class MrpLocalRun {
+    private static Logger logger;
+    private final MrpConfig userConfig;     // MrpConfig object holding the configuration options
+
+    /**
+     *
+     * @param _config   the MrpConfig object holding the configuration variables (options)
+     */
+    public MrpLocalRun(MrpConfig _config) {
+        super();
+        userConfig    = _config;
+        logger        = Logger.getLogger(MrpLocalRun.class.getName());
+    }
+
+    /**     Method Run
+     * -------------------------------------------------------------------------
+     *     Prunes the tree for the taxa in the input file and writes
+     *     the result to the output file; see MrpRun.run()
+     *
+     * @return zero when run finished normally
+     * @throws java.io.IOException
+     */
+    public int run() throws IOException {
+        long start = System.currentTimeMillis();
+        // check the input file
+        Path inputPath = localPath(this.userConfig.inputFile.getPath());
+        if (!Files.isRegularFile(inputPath)) {
+            logger.error("Input file not found: " + inputPath);
+            throw new FileNotFoundException("Input file not found: " + inputPath);
+        }
+        // check if path to "taxon database" looks ok
+        String rootDir = this.userConfig.dataRootDir.getValue();
+        if (!rootDir.endsWith("/"))
+            rootDir += "/";
+        Path taxonPath = localPath(rootDir + this.userConfig.dataDir.getValue());
+        if (!Files.isDirectory(taxonPath)) {
+            logger.error("Taxon tree directory not found: " + taxonPath);
+            throw new FileNotFoundException("Taxon tree directory not found: " + taxonPath);
+        }
+        String taxonDir = taxonPath.toString() + File.separator;
+        this.userConfig.dataPath.setValue(taxonDir);
+
+        // read the taxa; Hadoop's TextInputFormat reads them as UTF-8
+        List<String> taxa = readTaxa(inputPath);
+        logger.info("MrpLocalRun: " + taxa.size() + " taxa in " + inputPath);
+        Path outputPath = localPath(this.userConfig.outputFile.getPath());
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, this.userConfig.numTasks.getIntValue()));
+        TaxonDatabase database = TaxonDatabases.openLocal(this.userConfig.dbFormat.getValue(),
+                taxonDir, this.userConfig.hashDepth.getIntValue());
+        try {
+            // map-1: look up the paths
+            final List<PathNode> tips = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            final List<List<PathNode>> paths = this.lookupPaths(pool, database, taxa, tips, missing);
+            writeMissing(outputPath, missing);
+            // group the taxa per tip; the same tip may be in the input more than once
+            final Map<Integer, List<Integer>> tipTaxa = new LinkedHashMap<>();
+            int maxLabel = 0;
+            for (int i = 0; i < tips.size(); i++) {
+                List<Integer> taxonIndexes = tipTaxa.get(tips.get(i).getLabel());
+                if (taxonIndexes == null) {
+                    taxonIndexes = new ArrayList<>();
+                    tipTaxa.put(tips.get(i).getLabel(), taxonIndexes);
+                }
+                taxonIndexes.add(i);
+                for (PathNode node : paths.get(i))
+                    maxLabel = Math.max(maxLabel, node.getLabel());
+            }
+            final List<List<Integer>> tipGroups = new ArrayList<>(tipTaxa.values());
+            // reduce-1: count the tips of each internal node
+            final AtomicIntegerArray tipCounts = new AtomicIntegerArray(maxLabel + 1);
+            forEach(pool, tipGroups.size(), new IndexAction() {
+                @Override
+                public void apply(int index) {
+                    for (PathNode node : paths.get(tipGroups.get(index).get(0)))
+                        tipCounts.incrementAndGet(node.getLabel());
+                }
+            });
+            // reduce-2: the pruned path of each tip
+            final PathNode[] resultTips = new PathNode[tipGroups.size()];
+            final PathNodeSet[] resultPaths = new PathNodeSet[tipGroups.size()];
+            forEach(pool, tipGroups.size(), new IndexAction() {
+                @Override
+                public void apply(int index) {
+                    MrpPass2TipReducer.Core core = new MrpPass2TipReducer.Core();
+                    core.reset();
+                    List<Integer> taxonIndexes = tipGroups.get(index);
+                    for (int i : taxonIndexes) {
+                        PathNode tip = tips.get(i);
+                        PathNodeInternal namedTip = new PathNodeInternal(tip.getLabel(), tip.getLength(), 1);
+                        namedTip.setName(tip.getName());
+                        core.addNode(namedTip);
+                    }
+                    for (PathNode node : paths.get(taxonIndexes.get(0)))
+                        core.addNode(new PathNodeInternal(node, tipCounts.get(node.getLabel())));
+                    resultTips[index] = core.getTip();
+                    resultPaths[index] = core.getPath();
+                }
+            });
+            // result: build the tree and write the Newick string
+            MrpResult mrpResult = new MrpResult();
+            CompactTree tree = new CompactTree(2 * resultTips.length);
+            for (int i = 0; i < resultTips.length; i++)
+                mrpResult.addPath(tree, resultTips[i], resultPaths[i]);
+            tree.rootTheTree();
+            if (outputPath.getParent() != null)
+                Files.createDirectories(outputPath.getParent());
+            // write the Newick string straight to the file
+            try (Writer writer = Files.newBufferedWriter(outputPath, Charset.defaultCharset())) {
+                NewickWriter newickWriter = new NewickWriter(writer);
+                newickWriter.write(tree);
+                newickWriter.flush();
+            }
+            logger.info("MrpLocalRun: Newick Tree written to file: " + outputPath);
+            if (this.userConfig.treeStats.hasValue())
+                writeTreeStats(this.userConfig, Collections.singletonList(outputPath.toString()),
+                        Collections.singletonList(new TreeStats(tree.toTree())));
+        } finally {
+            database.close();
+            pool.shutdown();
+        }
+        logger.info("MrpLocalRun: run finished in " + (System.currentTimeMillis() - start) + " ms");
+        return 0;
+    }
+
+    /**
+     *     map-1: look up the tip-to-root path of each taxon; a taxon
+     *     that is not in the "taxon database" is left out
+     *
+     * @param pool          the pool to run the lookups in
+     * @param database      the "taxon database"
+     * @param taxa          the (untidy) taxon names
+     * @param tips          receives the (named) tip of each taxon found
+     * @param missing       receives the (tidy) name of each taxon not found
+     * @return              the internal nodes on the path of each taxon found
+     * @throws IOException
+     */
+    private List<List<PathNode>> lookupPaths(ForkJoinPool pool, TaxonDatabase database,
+            final List<String> taxa, List<PathNode> tips, List<String> missing) throws IOException {
+        final MrpPass1Mapper.Core core = new MrpPass1Mapper.Core();
+        core.setup(this.userConfig.dataPath.getValue(),
+                this.userConfig.hashDepth.getIntValue(), null, File.separator);
+        core.setDatabase(database);
+        core.setFilter(TaxonFilter.loadLocal(localPath(this.userConfig.dataPath.getValue())));
+        core.setCache(TaxonPathCache.getShared(this.userConfig.cacheSize.getIntValue()),
+                databaseIdentity(localPath(this.userConfig.dataPath.getValue()),
+                        this.userConfig.dbFormat.getValue()));
+        final PathNode[] tipNodes = new PathNode[taxa.size()];
+        final String[] missingNames = new String[taxa.size()];
+        final List<List<PathNode>> taxonPaths = new ArrayList<>();
+        for (int i = 0; i < taxa.size(); i++)
+            taxonPaths.add(null);
+        forEach(pool, taxa.size(), new IndexAction() {
+            @Override
+            public void apply(int index) throws IOException {
+                String taxonName = core.tidyTaxonName(taxa.get(index));
+                List<PathNode> taxonNodes;
+                try {
+                    taxonNodes = core.getTaxonNodes(core.lookupTaxonNodes(taxonName));
+                } catch (FileNotFoundException ex) {
+                    missingNames[index] = taxonName;
+                    return;
+                }
+                PathNode tipNode = taxonNodes.get(0);
+                tipNode.setName(taxonName);
+                tipNodes[index] = tipNode;
+                taxonPaths.set(index, taxonNodes.subList(1, taxonNodes.size()));
+            }
+        });
+        List<List<PathNode>> paths = new ArrayList<>();
+        for (int i = 0; i < taxa.size(); i++) {
+            if (tipNodes[i] != null) {
+                tips.add(tipNodes[i]);
+                paths.add(taxonPaths.get(i));
+            } else {
+                missing.add(missingNames[i]);
+            }
+        }
+        logger.info("MrpLocalRun: taxon path cache hits = " + core.getCacheHits()
+                + ", misses = " + core.getCacheMisses());
+        reportMissing(missing, core.getFilterRejects());
+        return paths;
+    }
+
+    /**
+     *     Reads the taxa of an input file, one per line (UTF-8, as Hadoop's
+     *     TextInputFormat reads them); empty lines are skipped, as
+     *     MrpServer.readTaxa does
+     *
+     * @param inputPath     the input file
+     * @return              the (untidy) taxon names
+     * @throws IOException
+     */
+    protected static List<String> readTaxa(Path inputPath) throws IOException {
+        List<String> taxa = new ArrayList<>();
+        for (String line : Files.readAllLines(inputPath, StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty())
+                taxa.add(line);
+        }
+        return taxa;
+    }
+
+    /**
+     *     Logs the number of taxa not in the "taxon database", like
+     *     MrpRun does for the counters of pass 1
+     *
+     * @param missing       the (tidy) names of the taxa not found
+     * @param filtered      the number of those rejected by the taxon filter
+     */
+    protected static void reportMissing(List<String> missing, long filtered) {
+        if (missing.isEmpty())
+            return;
+        // a static method: the logger is set by the constructor
+        Logger.getLogger(MrpLocalRun.class.getName()).warn(missing.size()
+                + " taxa not in the taxon database (" + filtered
+                + " rejected by the taxon filter); they are left out of the tree");
+    }
+
+    /**
+     *     Writes the taxa not in the "taxon database" to the output file
+     *     name followed by ".missing", one per line, as MrpRun does; when
+     *     there are none, a file left by an earlier run is removed
+     *
+     * @param outputPath    the (local) output file
+     * @param missing       the (tidy) names of the taxa not found
+     * @throws IOException
+     */
+    protected static void writeMissing(Path outputPath, List<String> missing) throws IOException {
+        Path missingPath = outputPath.resolveSibling(outputPath.getFileName() + MrpResultCache.MISSING_EXTENSION);
+        if (missing.isEmpty()) {
+            Files.deleteIfExists(missingPath);
+            return;
+        }
+        if (missingPath.getParent() != null)
+            Files.createDirectories(missingPath.getParent());
+        Files.write(missingPath, missing, StandardCharsets.UTF_8);
+        Logger.getLogger(MrpLocalRun.class.getName()).warn(
+                "Taxa not in the taxon database written to file: " + missingPath);
+    }
+
+    /**
+     *     Returns the identity of a local "taxon database", as
+     *     MrpResultCache.databaseIdentity does; the key of it's
+     *     paths in the taxon path cache
+     *
+     * @param dataDir   the folder of the database
+     * @param dbFormat  the format of the database
+     * @return          the identity; null if the database has none,
+     *                  and it's paths are not cached
+     * @throws IOException
+     */
+    protected static String databaseIdentity(Path dataDir, String dbFormat) throws IOException {
+        String identity = MrpResultCache.databaseIdentity(FileSystem.getLocal(new Configuration()),
+                new org.apache.hadoop.fs.Path(dataDir.toUri()), dbFormat);
+        if (identity == null)
+            Logger.getLogger(MrpLocalRun.class.getName()).warn("The taxon database in " + dataDir
+                    + " has no manifest, so a rebuild can not be told; the path cache is not used");
+        return identity;
+    }
+
+    /**
+     *     Converts a path or file: URI to a local (java.nio) path
+     *
+     * @param path      the path, like: data/bik or file:///data/bik
+     * @return          the local path
+     */
+    protected static Path localPath(String path) {
+        if (path.startsWith("file:"))
+            return Paths.get(URI.create(path));
+        return Paths.get(path);
+    }
+
+    /**
+     *     Writes the statistics of a number of trees to the (local) treeStats
+     *     file of the configuration, if that is given: a header line and a
+     *     tab separated row per tree (see TreeStats)
+     *
+     * @param config    the configuration
+     * @param files     the file (name) of each tree
+     * @param stats     the statistics of each tree
+     * @throws IOException
+     */
+    protected static void writeTreeStats(MrpConfig config, List<String> files, List<TreeStats> stats)
+            throws IOException {
+        if (!config.treeStats.hasValue())
+            return;
+        Path statsPath = localPath(config.treeStats.getPath());
+        if (statsPath.getParent() != null)
+            Files.createDirectories(statsPath.getParent());
+        try (Writer writer = Files.newBufferedWriter(statsPath, StandardCharsets.UTF_8)) {
+            TreeStats.writeHeader(writer);
+            for (int i = 0; i < stats.size(); i++)
+                stats.get(i).writeRow(writer, files.get(i));
+        }
+        // a static method: the logger is set by the constructor
+        Logger.getLogger(MrpLocalRun.class.getName()).info("Tree statistics written to file: " + statsPath);
+    }
+
+    /**
+     *     An action on one of a range of indexes
+     */
+    protected interface IndexAction {
+        void apply(int index) throws IOException;
+    }
+
+    /**
+     *     Applies an action to each index in 0 .. size-1, in the pool.
+     *     The indexes are split in halves until at most THRESHOLD remain.
+     */
+    private static class IndexTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 16;
+        private final IndexAction action;
+        private final int from;
+        private final int to;
+
+        IndexTask(IndexAction _action, int _from, int _to) {
+            this.action = _action;
+            this.from = _from;
+            this.to = _to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= THRESHOLD) {
+                for (int i = this.from; i < this.to; i++) {
+                    try {
+                        this.action.apply(i);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new IndexTask(this.action, this.from, middle),
+                        new IndexTask(this.action, middle, this.to));
+            }
+        }
+    }
+
+    /**
+     *     Applies an action to each index in 0 .. size-1, in the pool,
+     *     and waits for all of them to finish
+     *
+     * @param pool      the pool to run the action in
+     * @param size      the number of indexes
+     * @param action    the action
+     * @throws IOException  the first IOException thrown by the action
+     */
+    protected static void forEach(ForkJoinPool pool, int size, IndexAction action) throws IOException {
+        try {
+            pool.invoke(new IndexTask(action, 0, size));
+        } catch (RuntimeException ex) {
+            for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException)
+                    throw (IOException)cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import org.phylotastic.mrppath.*;
+
+/**
+ * class: Pass1Combiner
+ * -------------------------------------------------------------------------
+ *
+ * a Reducer class, used as the combiner of pass 1 (of both pipelines)
+ *
+ * The mapper writes a record for every internal node on the path of every
+ * taxon, so the same internal nodes (e.g. the root) come along once for
+ * every taxon of a mapper. The combiner merges the tips of each internal
+ * node, on the map side, into one sorted run of tips (PathNodeRun), so
+ * per mapper only one record per internal node is shuffled. The reducers
+ * merge the sorted runs of the mappers.
+ *
+ * The records of the ID node (label 0) are passed on as they are; the
+ * same taxon may be in the input more than once, and then each of it's
+ * records counts.
+ *
+ */
+public class MrpPass1Combiner extends Reducer<PathNode, PathNodeRun, PathNode, PathNodeRun>
+{
+    /**
+     *     method: reduce
+     *     ---------------------------------------------------------------------
+     *
+     * @param node      the internal node, or the ID node (label 0)
+     * @param nodeTips  the runs of external nodes with "node" in their path
+     * @param context   the Hadoop output context for writing the results
+     * @throws java.io.IOException
+     * @throws java.lang.InterruptedException
+     */
+    @Override
+    public void reduce(PathNode node, Iterable<PathNodeRun> nodeTips, Context context) throws IOException, InterruptedException
+    {
+        if (node.getLabel() == 0) {
+            for (PathNodeRun nodeTip : nodeTips)
+                context.write(node, nodeTip);
+        } else {
+            context.write(node, mergeRuns(nodeTips));
+        }
+    }
+
+    /**
+     *     method: mergeRuns
+     *     ---------------------------------------------------------------------
+     *
+     *     Merges the runs of tips of a node into one; Hadoop reuses
+     *     the run object, so each run is copied
+     *
+     * @param nodeTips  the runs of external nodes with a node in their path
+     * @return          the merged run
+     */
+    protected static PathNodeRun mergeRuns(Iterable<PathNodeRun> nodeTips)
+    {
+        List<PathNodeRun> runs = new ArrayList<>();
+        for (PathNodeRun nodeTip : nodeTips)
+            runs.add(new PathNodeRun(nodeTip));
+        return PathNodeRun.merge(runs);
+    }
+}
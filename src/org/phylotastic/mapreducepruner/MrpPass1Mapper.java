@@ -1,24 +1,35 @@
 package org.phylotastic.mapreducepruner;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.log4j.Logger;
 
+import org.phylotastic.mrpdatabase.*;
 import org.phylotastic.mrppath.PathNode;
+import org.phylotastic.mrppath.PathNodeRun;
+import org.phylotastic.mrppath.SamplePathNode;
 
 /** 
  * class: Pass1Mapper
@@ -32,21 +43,54 @@ import org.phylotastic.mrppath.PathNode;
  *     Version: V2.0
  * 
  */
-public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text> 
+public class MrpPass1Mapper extends Mapper<LongWritable, Text, PathNode, PathNodeRun> 
 {
     /**
      * core mapper methods for pass1Mapper
      */
     protected final Core core               = new Core();       // core mapper methods
     
-    private final Text IDtext               = new Text("(=)");
+    /**
+     * the Hadoop counters of the taxon path cache
+     */
+    public static enum CacheCounter { HITS, MISSES }
+    
+    /**
+     * the Hadoop counters of the taxa not in the taxon "database":
+     * all of them, and those of them rejected by the taxon filter
+     */
+    public static enum TaxonCounter { MISSING, FILTERED }
+    
+    /**
+     * the name of the side output of the taxa not in the taxon "database"
+     */
+    public static final String MISSING_OUTPUT   = "missing";
+    
+    /**
+     * the folder of the side output of the missing taxa, in the output
+     * folder of pass 1; hidden ("_") for the input of pass 2
+     */
+    public static final String MISSING_FOLDER   = "_missing";
+    
+    private final PathNode IDnode           = new PathNode();  // label 0 => "(=)"
+    private final PathNodeRun tipRun        = new PathNodeRun(); // the value: a run of 1 tip
     private final String hfsSeparator       = Path.SEPARATOR;   // hadoop file separator => "/"
     private final static Logger logger      = Logger.getLogger(MrpPass1Mapper.class.getName());
     
     private FileSystem hadoopFS;     	  // hadoop file system for the job
     private int hashDepth;                // the hashdepth for the filename encoding
     private String dataPath;              // the path to the taxon "database"
+    private String dbFormat;              // the format of the taxon "database"
     private Configuration jobConf;        // the hadoop job configuration
+    private Core.FetchOutput fetchOutput; // writes the records of the taxa looked up
+    private SamplePathNode sampleKey;     // the key tagged with the sample; null if not a batch run
+    private MultipleOutputs<PathNode, PathNodeRun> missingOutput;  // the side output of the missing taxa
+    private String missingFile;           // the base name of the side output file
+    
+    /**
+     * the number of taxa per fetch thread in a batch
+     */
+    protected static final int FETCH_BATCH = 8;
     
     
     /**
@@ -70,10 +114,118 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
         this.jobConf = context.getConfiguration();
         this.dataPath = jobConf.get("my.taxondir");
         this.hashDepth = jobConf.getInt("my.hashdepth", 0);
+        this.dbFormat = jobConf.get("my.dbformat", TaxonDatabases.FORMAT_DIRECTORY);
 //        logger.info("Map: dataPath is: " + dataPath);
 //        logger.info("Map: hashDepth is: " + hashDepth);
         this.hadoopFS = FileSystem.get(jobConf);
         this.core.setup(this.dataPath, this.hashDepth, this.hadoopFS, this.hfsSeparator);
+        /* the directory format is the default of the core; other formats
+         * are opened once per task, e.g. the packed index is read here;
+         * on a file:// file system they are memory mapped instead */
+        if (!TaxonDatabases.FORMAT_DIRECTORY.equals(this.dbFormat))
+            this.core.setDatabase(TaxonDatabases.open(this.dbFormat, 
+                    this.hadoopFS, this.dataPath, this.hashDepth));
+        /* taxa not in the filter of the database are not looked up */
+        this.core.setFilter(TaxonFilter.load(this.hadoopFS, this.dataPath));
+        /* the parsed paths are cached for all tasks in this JVM,
+         * under the identity of the database that MrpRun found;
+         * not cached for a database without one */
+        this.core.setCache(TaxonPathCache.getShared(
+                jobConf.getInt("my.cachesize", TaxonPathCache.DEFAULT_SIZE)),
+                jobConf.get("my.databaseid"));
+        /* with more than 1 fetch thread the paths are looked up concurrently */
+        this.core.setFetchThreads(jobConf.getInt("my.fetchthreads", 1));
+        final Context outputContext = context;
+        this.fetchOutput = new Core.FetchOutput() {
+            @Override
+            public void found(String taxonName, TaxonPath taxonPath) 
+                    throws IOException, InterruptedException {
+                writeTaxon(taxonName, taxonPath, outputContext);
+            }
+
+            @Override
+            public void missing(String taxonName) 
+                    throws IOException, InterruptedException {
+                writeMissing(taxonName, outputContext);
+            }
+        };
+        /* in a batch run the keys are tagged with the sample of the input file */
+        int samples = jobConf.getInt("my.samples", 0);
+        this.missingFile = MISSING_FOLDER + "/part";
+        if (samples > 0) {
+            int sample = this.findSample(context, samples);
+            this.sampleKey = new SamplePathNode(sample);
+            this.missingFile = MISSING_FOLDER + "/" + MrpPass2TipReducer.SAMPLE_FOLDER + sample + "/part";
+        }
+        this.missingOutput = new MultipleOutputs<>(context);
+    }
+    
+    /**
+     *     method: findSample
+     * 
+     *     Returns the sample (ID) of the input file of this task's split;
+     *     MrpRun sets the (qualified) input file of each sample
+     *     in the job configuration: "my.sample.{ID}"
+     *
+     * @param context   a Hadoop context, giving access to the input split
+     * @param samples   the number of samples
+     * @return          the ID of the sample
+     * @throws IOException
+     */
+    private int findSample(Context context, int samples) throws IOException
+    {
+        Path splitPath = ((FileSplit)context.getInputSplit()).getPath();
+        String inputFile = splitPath.getFileSystem(jobConf).makeQualified(splitPath).toString();
+        for (int sample = 0; sample < samples; sample++) {
+            if (inputFile.equals(jobConf.get("my.sample." + sample)))
+                return sample;
+        }
+        throw new IOException("Map: input file is not in the batch: " + inputFile);
+    }
+    
+    /**
+     *     method: sampleKey
+     * 
+     *     Returns the key to write a node's record with: in a batch
+     *     run the node tagged with the sample, else the node itself
+     */
+    private PathNode sampleKey(PathNode node)
+    {
+        if (this.sampleKey == null)
+            return node;
+        this.sampleKey.setLabel(node.getLabel());
+        this.sampleKey.setLength(node.getLength());
+        this.sampleKey.setName(node.getName());
+        return this.sampleKey;
+    }
+    
+    /**
+     *     method: cleanup
+     * 
+     *     This method is called once for each mapper task, after the 
+     *     last call to map. It writes the records of the last batch
+     *     of taxa (see Core.fetchBatch), reports the hits and misses of
+     *     the taxon path cache and the taxa rejected by the taxon
+     *     filter, and releases the taxon "database".
+     *
+     * @param context   a Hadoop context, giving access to data related to the pass1 job
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void cleanup(Context context) throws IOException, InterruptedException
+    {
+        try {
+            this.core.fetchBatch(this.fetchOutput);
+        } finally {
+            this.core.closeFetch();
+        }
+        context.getCounter(CacheCounter.HITS).increment(this.core.getCacheHits());
+        context.getCounter(CacheCounter.MISSES).increment(this.core.getCacheMisses());
+        context.getCounter(TaxonCounter.FILTERED).increment(this.core.getFilterRejects());
+        this.missingOutput.close();
+        this.core.close();
+        super.cleanup(context);
     }
     
     /**
@@ -105,6 +257,10 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
      *       /  \   \   \   \                            \  /
      *      A    B   C   D   E                           (n1)
      *
+     *     The records are written as (binary) PathNodes, with the tip as a
+     *     PathNodeRun of one node (merged by MrpPass1Combiner); "(=)" stands
+     *     for the ID record: the empty PathNode with label 0.
+     * 
      *     if the taxons specified for extraction are A and C and D, Map-1() emits the records:
      *     (=)  A:Agoracea
      *     n4   A
@@ -154,6 +310,9 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
      *     Map is called once for eacht taxon name in the input file
      *     The name is encoded to the file location of the path file
      *     The path is read in and split up into it's constituent nodes
+     *     A taxon that is not in the taxon "database" is skipped: it is
+     *     written to the side output of the missing taxa (see writeMissing)
+     *     instead, so the job goes on with the other taxa
      *     For eacht node a record is written out for the reduce step;
      *     for the parkia example
      *       taxon: parkia
@@ -177,21 +336,56 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
     @Override
     public void map(LongWritable key1, Text taxon, Context context) throws IOException, InterruptedException
     {
+        /* a blank line is no taxon, as in MrpServer.readTaxa */
+        if (taxon.toString().trim().isEmpty())
+            return;
         String taxonName = this.core.tidyTaxonName(taxon.toString());
         logger.info("input is taxon: " + taxonName);
         logger.info("Map: " + taxonName);
-        /* decode the name to a file location in the taxon "database" */
-        String taxonFile = null;
-        try {
-            taxonFile = this.core.determineTaxonFile(taxonName);
-        } catch (NoSuchAlgorithmException ex) {
-            logger.fatal("NoSuchAlgorithmException");
-            throw new IOException(ex);
-        }
-        logger.info("Map: " + taxonName + "\tFile =\t" + taxonFile);
-        /* read the taxon path from the file */
-        String taxonPath = this.core.readTaxonPath(taxonFile);
-        logger.info("Map: " + taxonName + "\tPath =\t" + taxonPath);
+        /* look up the taxon path in the taxon "database" (with more than
+         * 1 fetch thread a batch at a time, see Core.fetch) and write
+         * it's records, or it's name to the missing taxa */
+        this.core.fetch(taxonName, this.fetchOutput);
+    }
+    
+    /**
+     *     method: writeMissing
+     *     ---------------------------------------------------------------------
+     * 
+     *     Writes the name of a taxon that is not in the taxon "database"
+     *     to the side output of the missing taxa and counts it
+     *
+     * @param taxonName the (tidy) name of the taxon
+     * @param context   the Hadoop output context
+     * @throws java.io.IOException
+     * @throws java.lang.InterruptedException
+     */
+    private void writeMissing(String taxonName, Context context) 
+            throws IOException, InterruptedException
+    {
+        logger.info("Map: " + taxonName + "\tnot in the taxon database");
+        context.getCounter(TaxonCounter.MISSING).increment(1);
+        this.missingOutput.write(MISSING_OUTPUT, new Text(taxonName), NullWritable.get(), 
+                this.missingFile);
+    }
+    
+    /**
+     *     method: writeTaxon
+     *     ---------------------------------------------------------------------
+     * 
+     *     Writes the tip record and the internal node records for a taxon,
+     *     see map
+     *
+     * @param taxonName the (tidy) name of the taxon
+     * @param taxonPath the tip-to-root path of the taxon
+     * @param context   the Hadoop output context for writing the result
+     * @throws java.io.IOException
+     * @throws java.lang.InterruptedException
+     */
+    private void writeTaxon(String taxonName, TaxonPath taxonPath, Context context) 
+            throws IOException, InterruptedException
+    {
+        logger.info("Map: " + taxonName + "\tPath =\t" + taxonPath.size() + " nodes");
         /* break up the path into a list of nodes */
         List<PathNode> taxonNodes = this.core.getTaxonNodes(taxonPath);
 
@@ -201,20 +395,22 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
          * "628:18" where:
          * 628 is the nodelabel
          * 18 is the brach length   */
-        String tipString = tipNode.toString();
+        PathNode tipLabel = new PathNode(tipNode.getLabel(), tipNode.getLength());
         /* write the tip "record" e.g.
          * "(=)       628:18:parkia" */
         tipNode.setName(taxonName);
         logger.info("Map: " + taxonName + "\tTip =\t" + tipNode.toString());
-        context.write(IDtext, new Text(tipNode.toString()));
+        this.tipRun.set(tipNode);
+        context.write(this.sampleKey(IDnode), this.tipRun);
         /* write a node "record" for each of the internal nodes: e.g.
          *  625:1     628:18
          *  623:1     628:18
          *  ...       ...   */
+        this.tipRun.set(tipLabel);
         for ( int i = 1; i < taxonNodes.size(); i++ ) {
-            String nodeString = taxonNodes.get(i).toString();
-            logger.info("Map: " + taxon + "\tOutput =\t" + nodeString + "\t:\t" + tipString);
-            context.write(new Text(nodeString), new Text(tipString)); 
+            PathNode internalNode = taxonNodes.get(i);
+            logger.info("Map: " + taxonName + "\tOutput =\t" + internalNode.toString() + "\t:\t" + tipLabel.toString());
+            context.write(this.sampleKey(internalNode), this.tipRun); 
         /* notice this inverts the key from taxon (tip) to internal node */
         }
     }
@@ -263,6 +459,74 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
          */
         protected String dataPath;
         
+        /**
+         * the taxon "database" the paths are looked up in
+         */
+        protected TaxonDatabase taxonDatabase;
+        
+        /**
+         * the cache of parsed taxon paths; null for no cache
+         */
+        protected TaxonPathCache pathCache;
+        
+        /**
+         * the identity of the taxon "database" the paths are cached under
+         */
+        protected String databaseId;
+        
+        /**
+         * the number of paths found in / not found in the cache
+         */
+        protected final AtomicLong cacheHits = new AtomicLong();
+        protected final AtomicLong cacheMisses = new AtomicLong();
+        
+        /**
+         * the filter of the taxa in the taxon "database"; null for no filter
+         */
+        protected TaxonFilter taxonFilter;
+        
+        /**
+         * the number of taxa rejected by the filter
+         */
+        protected final AtomicLong filterRejects = new AtomicLong();
+        
+        /**
+         * the number of threads looking up paths, and the threads; null for none
+         */
+        protected int fetchThreads = 1;
+        protected ExecutorService fetchPool;
+        
+        /**
+         * the taxa of the current batch
+         */
+        protected final List<String> fetchTaxa = new ArrayList<>();
+        
+        /**
+         * (static) interface: FetchOutput
+         * ---------------------------------------------------------------------
+         * 
+         * Receives the taxa looked up by fetch, in the order of the input
+         */
+        protected interface FetchOutput
+        {
+            /**
+             * @param taxonName the (tidy) name of a taxon in the database
+             * @param taxonPath it's tip-to-root path
+             * @throws java.io.IOException
+             * @throws java.lang.InterruptedException
+             */
+            void found(String taxonName, TaxonPath taxonPath) 
+                    throws IOException, InterruptedException;
+            
+            /**
+             * @param taxonName the (tidy) name of a taxon not in the database
+             * @throws java.io.IOException
+             * @throws java.lang.InterruptedException
+             */
+            void missing(String taxonName) 
+                    throws IOException, InterruptedException;
+        }
+        
         /**
          * Constructor
          * 
@@ -290,6 +554,93 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
         this.hashDepth = _hashDepth;
         this.hadoopFS = _hadoopFs;
         this.hfsSeparator = _hfsSeparator;
+        this.taxonDatabase = new DirectoryTaxonDatabase(_hadoopFs, _dataPath, 
+                _hashDepth, _hfsSeparator);
+        }
+        
+        /**
+         * Method: setDatabase
+         * ---------------------------------------------------------------------
+         * 
+         * Replaces the default (directory layout) taxon "database"
+         * by one in another format
+         * 
+         * @param _taxonDatabase    the taxon "database" to look up the paths in
+         */
+        protected void setDatabase(TaxonDatabase _taxonDatabase) {
+            this.taxonDatabase = _taxonDatabase;
+        }
+        
+        /**
+         * Method: setCache
+         * ---------------------------------------------------------------------
+         * 
+         * @param _pathCache    the cache of parsed taxon paths; null for no cache
+         * @param _databaseId   the identity of the taxon "database" (see
+         *                      MrpResultCache.databaseIdentity); null for
+         *                      no cache, as the paths can not be told
+         *                      from those of a database rebuilt in place
+         */
+        protected void setCache(TaxonPathCache _pathCache, String _databaseId) {
+            this.pathCache = (_databaseId == null ? null : _pathCache);
+            this.databaseId = _databaseId;
+        }
+        
+        /**
+         * Method: setFilter
+         * ---------------------------------------------------------------------
+         * 
+         * @param _taxonFilter  the filter of the taxa in the taxon "database";
+         *                      null for no filter
+         */
+        protected void setFilter(TaxonFilter _taxonFilter) {
+            this.taxonFilter = _taxonFilter;
+        }
+        
+        /**
+         * Method: setFetchThreads
+         * ---------------------------------------------------------------------
+         * 
+         * @param _fetchThreads the number of threads looking up paths;
+         *                      with more than 1 a batch at a time
+         */
+        protected void setFetchThreads(int _fetchThreads) {
+            this.fetchThreads = _fetchThreads;
+            if (_fetchThreads > 1)
+                this.fetchPool = Executors.newFixedThreadPool(_fetchThreads);
+        }
+        
+        /**
+         * @return  the number of taxa rejected by the filter of this core
+         */
+        protected long getFilterRejects() {
+            return this.filterRejects.get();
+        }
+        
+        /**
+         * @return  the number of lookups by this core found in the cache
+         */
+        protected long getCacheHits() {
+            return this.cacheHits.get();
+        }
+        
+        /**
+         * @return  the number of lookups by this core not found in the cache
+         */
+        protected long getCacheMisses() {
+            return this.cacheMisses.get();
+        }
+        
+        /**
+         * Method: close
+         * ---------------------------------------------------------------------
+         * 
+         * Releases the taxon "database"
+         * 
+         * @throws IOException
+         */
+        protected void close() throws IOException {
+            this.taxonDatabase.close();
         }
         
         /** 
@@ -304,11 +655,8 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
          * @return      the "tidy" file name
          */
         protected String tidyTaxonName(String name) {
-            String tidyName = name.trim();
-            tidyName = tidyName.replace("_", " ");
-            tidyName = tidyName.toLowerCase();
-            tidyName = StringUtils.capitalize(tidyName);
-            return tidyName;
+            // the same names as the taxon "database" is keyed on
+            return TaxonKey.tidyName(name);
         }
 
         /** 
@@ -341,13 +689,8 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
             /* determine the path to the taxon file
              * take the dataPath and a number of subdirectories depending on 
              * the hashdepth; both are options found in config */
-            StringBuilder taxonFilePath = new StringBuilder(this.dataPath);
-            for ( int i = 0; i < this.hashDepth; i++ )
-            {
-                taxonFilePath.append(safeString.charAt(i)).append(this.hfsSeparator);
-            }
-            taxonFilePath.append(safeString);
-            return taxonFilePath.toString();
+            return DirectoryTaxonDatabase.taxonFile(this.dataPath, this.hashDepth, 
+                    this.hfsSeparator, safeString);
         }
     
         /**
@@ -363,15 +706,7 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
          */
         protected String makeSafeString(String unsafeString) throws NoSuchAlgorithmException
         {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            md.update(unsafeString.getBytes());
-            byte byteData[] = md.digest();
-            StringBuilder safeString = new StringBuilder();
-            for (int i = 0; i < byteData.length; i++)
-            {
-                safeString.append(Integer.toString((byteData[i] & 0xff) + 0x100, 16).substring(1));
-            }
-            return safeString.toString();
+            return TaxonKey.toHex(TaxonKey.digest(unsafeString));
         }   
 
         /**
@@ -404,6 +739,192 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
             return line;
         }
 
+        /**
+         * method: lookupTaxonPath
+         * -------------------------------------------------------------------------
+         * 
+         * Looks up a taxon's tip-to-root path in the taxon "database",
+         * whatever the format of that database.
+         * 
+         * For the parkia example it would return the string
+         * 628:18|625:1|624:1|623:1|622:1|621:1|581:1|513:1|505:1| ..... |5:1|4:1|3:1|2:1|1:1
+         * 
+         * @param taxonName the (tidy) name of the taxon
+         * @return  the tip-to-root path
+         * @throws java.io.IOException
+         */
+        protected String lookupTaxonPath(String taxonName) throws IOException
+        {
+            return this.taxonDatabase.readTaxonPath(taxonName);
+        }
+
+        /**
+         * method: lookupTaxonNodes
+         * -------------------------------------------------------------------------
+         * 
+         * Looks up a taxon's parsed tip-to-root path; in the cache
+         * if there is one, or else in the taxon "database"
+         * A taxon that is not in the filter (if there is one) is not
+         * looked up in the database
+         * 
+         * @param taxonName the (tidy) name of the taxon
+         * @return  the parsed tip-to-root path
+         * @throws java.io.FileNotFoundException when the taxon is not in the database
+         * @throws java.io.IOException
+         */
+        protected TaxonPath lookupTaxonNodes(String taxonName) throws IOException
+        {
+            if (this.pathCache == null) {
+                this.checkFilter(taxonName);
+                return this.readTaxonNodes(taxonName);
+            }
+            TaxonPath taxonPath = this.pathCache.get(this.databaseId, taxonName);
+            if (taxonPath != null) {
+                this.cacheHits.incrementAndGet();
+                return taxonPath;
+            }
+            this.cacheMisses.incrementAndGet();
+            this.checkFilter(taxonName);
+            taxonPath = this.readTaxonNodes(taxonName);
+            this.pathCache.put(this.databaseId, taxonName, taxonPath);
+            return taxonPath;
+        }
+
+        /**
+         * method: fetch
+         * -------------------------------------------------------------------------
+         * 
+         * Looks up a taxon and passes it to the output; with more than 1
+         * fetch thread the taxa are collected and looked up a batch at a
+         * time (see fetchBatch), so the last batch is passed on by a last
+         * call to fetchBatch
+         * 
+         * @param taxonName the (tidy) name of the taxon
+         * @param output    receives the taxa looked up
+         * @throws java.io.IOException
+         * @throws java.lang.InterruptedException
+         */
+        protected void fetch(String taxonName, FetchOutput output) 
+                throws IOException, InterruptedException
+        {
+            if (this.fetchPool != null) {
+                this.fetchTaxa.add(taxonName);
+                if (this.fetchTaxa.size() >= this.fetchThreads * FETCH_BATCH)
+                    this.fetchBatch(output);
+                return;
+            }
+            TaxonPath taxonPath;
+            try {
+                taxonPath = this.lookupTaxonNodes(taxonName);
+            } catch (FileNotFoundException ex) {
+                output.missing(taxonName);
+                return;
+            }
+            output.found(taxonName, taxonPath);
+        }
+        
+        /**
+         * method: fetchBatch
+         * -------------------------------------------------------------------------
+         * 
+         * Looks up the paths of the taxa collected by fetch concurrently, in
+         * the threads of the fetch pool, and passes them to the output in
+         * the order of the input. Looking up a path is mostly waiting for
+         * the (HDFS) file system, so this cuts the time of a mapper by about
+         * the number of threads.
+         * 
+         * @param output    receives the taxa looked up
+         * @throws java.io.IOException
+         * @throws java.lang.InterruptedException
+         */
+        protected void fetchBatch(FetchOutput output) 
+                throws IOException, InterruptedException
+        {
+            List<Future<TaxonPath>> taxonPaths = new ArrayList<>(this.fetchTaxa.size());
+            for (final String taxonName : this.fetchTaxa) {
+                taxonPaths.add(this.fetchPool.submit(new Callable<TaxonPath>() {
+                    @Override
+                    public TaxonPath call() throws IOException {
+                        return lookupTaxonNodes(taxonName);
+                    }
+                }));
+            }
+            for (int i = 0; i < taxonPaths.size(); i++) {
+                TaxonPath taxonPath;
+                try {
+                    taxonPath = taxonPaths.get(i).get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof FileNotFoundException) {
+                        output.missing(this.fetchTaxa.get(i));
+                        continue;
+                    }
+                    for (Future<TaxonPath> taxonFuture : taxonPaths)
+                        taxonFuture.cancel(true);
+                    if (ex.getCause() instanceof IOException)
+                        throw (IOException)ex.getCause();
+                    throw new IOException(ex.getCause());
+                }
+                output.found(this.fetchTaxa.get(i), taxonPath);
+            }
+            this.fetchTaxa.clear();
+        }
+        
+        /**
+         * Method: closeFetch
+         * ---------------------------------------------------------------------
+         * 
+         * Stops the fetch threads, if any
+         */
+        protected void closeFetch() {
+            if (this.fetchPool != null)
+                this.fetchPool.shutdownNow();
+        }
+
+        /**
+         * method: checkFilter
+         * -------------------------------------------------------------------------
+         * 
+         * Checks a taxon against the filter of the taxon "database", if
+         * there is one; a taxon that is not in the filter is certainly
+         * not in the database
+         * 
+         * @param taxonName the (tidy) name of the taxon
+         * @throws java.io.FileNotFoundException when the taxon is not in the filter
+         * @throws java.io.IOException
+         */
+        protected void checkFilter(String taxonName) throws IOException
+        {
+            if (this.taxonFilter == null)
+                return;
+            try {
+                if (this.taxonFilter.mightContain(TaxonKey.digest(taxonName)))
+                    return;
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IOException(ex);
+            }
+            this.filterRejects.incrementAndGet();
+            throw new FileNotFoundException("Taxon not in the database filter: " + taxonName);
+        }
+
+        /**
+         * method: readTaxonNodes
+         * -------------------------------------------------------------------------
+         * 
+         * Reads a taxon's parsed tip-to-root path from the taxon "database";
+         * straight from the bytes (memory mapped) or numbers of the database
+         * if it can (see TaxonNodeDatabase), or else by parsing the path read
+         * 
+         * @param taxonName the (tidy) name of the taxon
+         * @return  the parsed tip-to-root path
+         * @throws java.io.IOException
+         */
+        protected TaxonPath readTaxonNodes(String taxonName) throws IOException
+        {
+            if (this.taxonDatabase instanceof TaxonNodeDatabase)
+                return ((TaxonNodeDatabase)this.taxonDatabase).readTaxonNodes(taxonName);
+            return TaxonPath.parse(this.lookupTaxonPath(taxonName));
+        }
+
         /**
          * method: getTaxonNodes
          * -------------------------------------------------------------------------
@@ -429,6 +950,24 @@ public class MrpPass1Mapper extends Mapper<LongWritable, Text, Text, Text>
             }
             return nodeList;
         }
+
+        /**
+         * method: getTaxonNodes
+         * -------------------------------------------------------------------------
+         * 
+         * Returns the nodes of a parsed tip-to-root path; see above
+         * 
+         * @param taxonPath the parsed taxon tip-to-root path
+         * @return a List&<&> of PathNode objects representing the tip-to-root path
+         */
+        protected List<PathNode> getTaxonNodes(TaxonPath taxonPath)
+        {
+            List<PathNode> nodeList = new ArrayList<>(taxonPath.size());
+            for (int i = 0; i < taxonPath.size(); i++) {
+                nodeList.add(new PathNode(taxonPath.getLabel(i), taxonPath.getLength(i)));
+            }
+            return nodeList;
+        }
     }
     
 }
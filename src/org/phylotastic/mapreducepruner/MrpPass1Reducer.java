@@ -2,8 +2,9 @@ package org.phylotastic.mapreducepruner;
 
 import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.log4j.Logger;
 
 import org.phylotastic.mrppath.*;
@@ -14,18 +15,34 @@ import org.phylotastic.mrppath.*;
  * 
  * a Reducer class, an element of the Hadoop MapReduce framework
  *
+ * The tip sets are written as a fixed size TipSetKey (lowest label, highest
+ * label, size) instead of the complete set. The exact sets can be found back
+ * from the sorted list of all tips; for that the label of every tip is also
+ * written to a side output: the "_tips" folder in the output folder (hidden
+ * from pass 2, that reads the output folder). See MrpPass3Mapper.
+ *
  *     @author(s); Carla Stegehuis, Rutger Vos
  *     Contributed to:
  *     Date: 3/11/'14
  *     Version: V2.0
  * 
  */
-public class MrpPass1Reducer extends Reducer<Text, Text, Text, Text>
+public class MrpPass1Reducer extends Reducer<PathNode, PathNodeRun, TipSetKey, PathNodeInternal>
 {
-    private static final Text IDtext            = new Text("(=)");    
+    /**
+     * the name of the side output with the labels of the tips
+     */
+    public static final String TIPS_OUTPUT      = "tips";
+    /**
+     * the folder of the side output, in the output folder of the job
+     */
+    public static final String TIPS_FOLDER      = "_tips";
+
+    private static final TipSetKey IDset        = new TipSetKey();      // empty => "(=)"
     private static final Logger logger          = Logger.getLogger(MrpPass1Reducer.class.getName());
     
     private Configuration jobConf;        // the hadoop job configuration
+    private MultipleOutputs<TipSetKey, PathNodeInternal> tipsOutput;    // the side output of the tips
     
     /**
      * method: setup
@@ -37,17 +54,35 @@ public class MrpPass1Reducer extends Reducer<Text, Text, Text, Text>
      *     only once, like getting the path of the distributed cache,
      *     passing and getting parameters to reducers, etc.
      * 
-     *     The method has no real function here yet; it is added for completeness
+     *     Here it opens the side output of the tips
      *
      * @param context   a Hadoop context, giving access to data related to the pass1 job
      * @throws IOException
      * @throws InterruptedException
      */
     @Override
-    public void setup(Reducer.Context context) throws IOException, InterruptedException
+    public void setup(Context context) throws IOException, InterruptedException
     {
         super.setup(context);         
         this.jobConf = context.getConfiguration();
+        this.tipsOutput = new MultipleOutputs<>(context);
+    }
+    
+    /**
+     * method: cleanup
+     * 
+     *     This method is called once for each reducer task, after the last
+     *     reduce call; it closes the side output of the tips
+     *
+     * @param context   a Hadoop context, giving access to data related to the pass1 job
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void cleanup(Context context) throws IOException, InterruptedException
+    {
+        this.tipsOutput.close();
+        super.cleanup(context);
     }
     
     /** 
@@ -86,16 +121,22 @@ public class MrpPass1Reducer extends Reducer<Text, Text, Text, Text>
      *     A,C          n3,2
      *     A            n4,1
      * 
+     *     where the (=) records are written with an empty TipSetKey as key
+     *     and the named tip as a PathNodeInternal with a tipcount of 1; the
+     *     labels of the tips (A, C and D) also go to the side output.
+     *     The tip sets are written as TipSetKeys: A,C,D as 3:A..D, A,C as
+     *     2:A..C and A as 1:A..A
+     * 
      * @param node      the internal node
-     * @param nodeTips  the external nodes with "node" in their path
+     * @param nodeTips  the (runs of) external nodes with "node" in their path
      * @param context   the Hadoop output context for writing the results
      * @throws java.io.IOException
      * @throws java.lang.InterruptedException
      */
     @Override
-    public void reduce(Text node, Iterable<Text> nodeTips, Context context) throws IOException, InterruptedException
+    public void reduce(PathNode node, Iterable<PathNodeRun> nodeTips, Context context) throws IOException, InterruptedException
     {
-        if (node.equals(IDtext)) {
+        if (node.getLabel() == 0) {
             /*     then it is a taxon name set like this:
              *     "(=)	{A:Agoracea,C:Catonacea,D:Draconacea}
              *     where (=) is the node
@@ -105,9 +146,17 @@ public class MrpPass1Reducer extends Reducer<Text, Text, Text, Text>
              *     (=)          C:Catonacea
              *     (=)          D:Draconacea
              */
-            for (Text taxonID : nodeTips) {
-//                logger.info("Reduce: input = " + "(=)" + "\t:\t" + taxonID.toString());
-                context.write(node, taxonID);
+            PathNodeInternal taxonID = new PathNodeInternal();
+            for (PathNodeRun nodeTip : nodeTips) {
+                for (int i = 0; i < nodeTip.getSize(); i++) {
+                    taxonID.setLabel(nodeTip.getLabel(i));
+                    taxonID.setLength(nodeTip.getLength(i));
+                    taxonID.setName(nodeTip.getName(i));
+                    taxonID.setTipCount(1);
+                    context.write(IDset, taxonID);
+                    this.tipsOutput.write(TIPS_OUTPUT, new PathNode(nodeTip.getLabel(i), 0.0),
+                            NullWritable.get(), TIPS_FOLDER + "/part");
+                }
 //                logger.info("Reduce: output = " + "(=)" + "\t:\t" + taxonID.toString());
             }
         } else {
@@ -120,21 +169,18 @@ public class MrpPass1Reducer extends Reducer<Text, Text, Text, Text>
              *     A,C,D       n1,3
              *     read the internal node's data
              */
-            PathNode internalNode = new PathNode(node.toString());
-            /* read the nodeTips into a sorted list of tipnodes
-             * (i.e. into a pathNodeSet) */
-            PathNodeSet tipSet = new PathNodeSet();
-            for (Text nodeTip : nodeTips) {
-                tipSet.addNode(new PathNode(nodeTip.toString()));
-//                logger.info("Reduce: input = " + node.toString() + "\t:\t" + nodeTip.toString());
-            }
+            PathNode internalNode = new PathNode(node.getLabel(), node.getLength());
+            /* merge the sorted runs of nodeTips (see MrpPass1Combiner);
+             * the tip set is keyed on it's first and last tip and it's size */
+            PathNodeRun tipRun = MrpPass1Combiner.mergeRuns(nodeTips);
+            TipSetKey tipSet = new TipSetKey(tipRun);
             /* create an internal node with a count */
             PathNodeInternal countedInternalNode = 
                     new PathNodeInternal(internalNode, tipSet.getSize());
 //            logger.info("Reduce: output = " + node.toString() + "\t:\t" + 
 //                    tipSet.toString() + " : " + countedInternalNode.toString());
             /* write out the counted node set as one record. */
-            context.write(new Text(tipSet.toString()), new Text(countedInternalNode.toString()));
+            context.write(tipSet, countedInternalNode);
         }
     }
     
@@ -0,0 +1,135 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.IOException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrppath.*;
+
+/**
+ * class: Pass1TipReducer
+ * -------------------------------------------------------------------------
+ *
+ * a Reducer class, an element of the Hadoop MapReduce framework
+ *
+ * The pass 1 reducer of the 2-pass pipeline. It counts the tips of each
+ * internal node like MrpPass1Reducer does, but writes the counted node
+ * keyed by each of it's tips (like MrpPass3Mapper does), instead of
+ * keyed by the set of tips. This makes pass 2 of the 3-pass pipeline,
+ * with it's identity mapper, superfluous; the MRCA's are selected per
+ * tip in MrpPass2TipReducer.
+ *
+ */
+public class MrpPass1TipReducer extends Reducer<PathNode, PathNodeRun, PathNode, PathNodeInternal>
+{
+    private static final Logger logger          = Logger.getLogger(MrpPass1TipReducer.class.getName());
+
+    private Configuration jobConf;        // the hadoop job configuration
+
+    /**
+     * method: setup
+     *
+     *     This method is called once for each reducer task. So if 10 reducers
+     *     were spawned for a job, then for each of those reducers it will be
+     *     called once
+     *
+     *     The method has no real function here yet; it is added for completeness
+     *
+     * @param context   a Hadoop context, giving access to data related to the pass1 job
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void setup(Context context) throws IOException, InterruptedException
+    {
+        super.setup(context);
+        this.jobConf = context.getConfiguration();
+    }
+
+    /**
+     *     method: reduce
+     *     ---------------------------------------------------------------------
+     *
+     *     For example, for tree
+     *
+     *             (n1)                           A        C   D
+     *             /  \	                           \      /   /
+     *           (n2)  \                           (n4)  /   /
+     *           /  \   \                            \  /   /
+     *         (n3)  \   \                           (n3)  /
+     *         /  \   \   \                            \  /
+     *       (n4)  \   \   \                           (n2)
+     *       /  \   \   \   \                            \
+     *      A    B   C   D   E                          (n1)
+     *
+     *     if taxons are A and C and D, Reduce-1() receives the records:
+     *     (=)  {A:Agoracea,C:Catonacea,D:Draconacea}   // {} = iterable list
+     *     n1   {A,C,D}                                 // {} = iterable list
+     *     n2   {A,C,D}                                 // {} = iterable list
+     *     n3   {A,C}                                   // {} = iterable list
+     *     n4   {A}                                     // {} = iterable list
+     *
+     *     after processing Reduce-1() emits the records:
+     *     labelOf(A)   A:Agoracea
+     *     labelOf(C)   C:Catonacea
+     *     labelOf(D)   D:Draconacea
+     *     labelOf(A)   n1,3
+     *     labelOf(C)   n1,3
+     *     labelOf(D)   n1,3
+     *     labelOf(A)   n2,3
+     *     labelOf(C)   n2,3
+     *     labelOf(D)   n2,3
+     *     labelOf(A)   n3,2
+     *     labelOf(C)   n3,2
+     *     labelOf(A)   n4,1
+     *
+     * @param node      the internal node, or the ID node (label 0)
+     * @param nodeTips  the (runs of) external nodes with "node" in their path
+     * @param context   the Hadoop output context for writing the results
+     * @throws java.io.IOException
+     * @throws java.lang.InterruptedException
+     */
+    @Override
+    public void reduce(PathNode node, Iterable<PathNodeRun> nodeTips, Context context) throws IOException, InterruptedException
+    {
+        // in a batch run the new key keeps the sample of the node
+        PathNode tipLabel = SamplePathNode.keyLike(node);
+        if (node.getLabel() == 0) {
+            /*     then it is a taxon name set like this:
+             *     "(=)	{A:Agoracea,C:Catonacea,D:Draconacea}
+             *     write out keyed by the tip's label: e.g.
+             *     labelOf(A)   A:Agoracea
+             */
+            PathNodeInternal taxonID = new PathNodeInternal();
+            for (PathNodeRun nodeTip : nodeTips) {
+                for (int i = 0; i < nodeTip.getSize(); i++) {
+                    tipLabel.setLabel(nodeTip.getLabel(i));
+                    taxonID.setLabel(nodeTip.getLabel(i));
+                    taxonID.setLength(nodeTip.getLength(i));
+                    taxonID.setName(nodeTip.getName(i));
+                    taxonID.setTipCount(1);
+                    context.write(tipLabel, taxonID);
+                }
+            }
+        } else {
+            /*     it is a set of taxon nodes like this:
+             *     "n1 {A,C,D}"
+             *     count the tips, then write the counted node
+             *     for each of the tips: e.g.
+             *     labelOf(A)   n1,3
+             *     labelOf(C)   n1,3
+             *     labelOf(D)   n1,3
+             *     the sorted runs of tips (see MrpPass1Combiner) are merged
+             */
+            PathNodeRun tipRun = MrpPass1Combiner.mergeRuns(nodeTips);
+            PathNodeInternal countedInternalNode =
+                    new PathNodeInternal(node, tipRun.getSize());
+            for (int i = 0; i < tipRun.getSize(); i++) {
+                tipLabel.setLabel(tipRun.getLabel(i));
+                context.write(tipLabel, countedInternalNode);
+            }
+        }
+    }
+
+}
@@ -2,10 +2,11 @@ package org.phylotastic.mapreducepruner;
 
 import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
+import org.phylotastic.mrppath.*;
+
 /** class: Pass2Mapper
  * -------------------------------------------------------------------------
  * 
@@ -16,9 +17,8 @@ import org.apache.log4j.Logger;
  *     Date: 3/11/'14
  *     Version: V2.0
  */
-public class MrpPass2Mapper extends Mapper<Text, Text, Text, Text>
+public class MrpPass2Mapper extends Mapper<TipSetKey, PathNodeInternal, TipSetKey, PathNodeInternal>
 {
-    private static final Text IDtext            = new Text("(=)");    
     private static final Logger logger          = Logger.getLogger(MrpPass2Mapper.class.getName());
     
     private Configuration jobConf;        // the hadoop job configuration
@@ -94,19 +94,18 @@ public class MrpPass2Mapper extends Mapper<Text, Text, Text, Text>
      *     A,C,D        n1,3
      *     A,C,D        n2,3
      * 
-     *     input format = key-value pairs !!
+     *     input format = key-value pairs (sequence file) !!
      * 
-     * @param tipSet    the tipset or IDtext
+     * @param tipSet    the tipset (a TipSetKey, see MrpPass1Reducer) or the empty (ID) set
      * @param node      the internal node(+ node count)
      * @param context   the Hadoop output context for writing the results
      * @throws java.io.IOException
      * @throws java.lang.InterruptedException
      */
     @Override
-    public void map(Text tipSet, Text node, Context context) throws IOException, InterruptedException
+    public void map(TipSetKey tipSet, PathNodeInternal node, Context context) throws IOException, InterruptedException
     {
-        String tipString = tipSet.toString();
-        if (tipSet.equals(IDtext)) {
+        if (tipSet.getSize() == 0) {
             /*     it is a tip name record like:
              *     "(=)         A:Agoracea"
              *     write out without further processing: e.g.
@@ -121,10 +120,9 @@ public class MrpPass2Mapper extends Mapper<Text, Text, Text, Text>
              *     write out without further processing: e.g.
              *     A,C,D        n1,3
              */
-            String nodeString = node.toString();
-//            logger.info("Map: input = " + tipString + "\t:\t" + nodeString);
+//            logger.info("Map: input = " + tipSet.toString() + "\t:\t" + node.toString());
             context.write(tipSet, node);
-//            debugLogger.debug("Map: output = " + tipString + "\t:\t" + nodeString);
+//            debugLogger.debug("Map: output = " + tipSet.toString() + "\t:\t" + node.toString());
         }            
     }
     
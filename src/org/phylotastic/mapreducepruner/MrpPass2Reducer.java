@@ -2,7 +2,6 @@ package org.phylotastic.mapreducepruner;
 
 import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 
@@ -20,9 +19,8 @@ import org.phylotastic.mrppath.*;
  *     Date: 3/11/'14
  *     Version: V2.0
  */
-public class MrpPass2Reducer extends Reducer<Text, Text, Text, Text>
+public class MrpPass2Reducer extends Reducer<TipSetKey, PathNodeInternal, TipSetKey, PathNodeInternal>
 {
-    private static final Text IDtext            = new Text("(=)");    
     private static final Logger logger          = Logger.getLogger(MrpPass2Reducer.class.getName());
     
     private Configuration jobConf;        // the hadoop job configuration
@@ -106,16 +104,16 @@ public class MrpPass2Reducer extends Reducer<Text, Text, Text, Text>
      *       /      \   \                             \  /
      *      A        C   D                            (n2)
      * 
-     * @param tipText   the tipset or IDtext
+     * @param tipText   the tipset (a TipSetKey, see MrpPass1Reducer) or the empty (ID) set
      * @param nodes     the internal nodes that are on the path of the tipset
      * @param context   the Hadoop output context for writing the results
      * @throws java.io.IOException
      * @throws java.lang.InterruptedException
      */
     @Override
-    public void reduce(Text tipText, Iterable<Text> nodes, Context context) throws IOException, InterruptedException
+    public void reduce(TipSetKey tipText, Iterable<PathNodeInternal> nodes, Context context) throws IOException, InterruptedException
     {
-        if (tipText.equals(IDtext)) {
+        if (tipText.getSize() == 0) {
             /*     it is a taxon name set like this:
              *     "(=)         {A:Agoracea,C:Catonacea,D:Draconacea}
              *     where (=) is in tipText
@@ -125,7 +123,7 @@ public class MrpPass2Reducer extends Reducer<Text, Text, Text, Text>
              *     (=)          C:Catonacea
              *     (=)          D:Draconacea
              */
-            for (Text taxonID : nodes) {
+            for (PathNodeInternal taxonID : nodes) {
 //                logger.info("Reduce: input = " + "(=)" + "\t:\t" + taxonID.toString());
                 context.write(tipText, taxonID);
 //                logger.info("Reduce: output = " + "(=)" + "\t:\t" + taxonID.toString());
@@ -151,11 +149,9 @@ public class MrpPass2Reducer extends Reducer<Text, Text, Text, Text>
              *     like n2 in: "A,C,D    {n1,3; n2,3}"
              *     or the only one there is, like n3 in: "A,C    n3,2"
              */
-            for(Text node : nodes)
+            for(PathNodeInternal ancestor : nodes)
             {
-                String nodeString = node.toString();
-//                logger.info("Reduce: input = " + tipText.toString() + "\t:\t" + nodeString);
-                PathNodeInternal ancestor = PathNodeInternal.fromString(nodeString);
+//                logger.info("Reduce: input = " + tipText.toString() + "\t:\t" + ancestor.toString());
                 /* accumulate the branch length */
                 accumulatedBranchLengths += ancestor.getLength();
                 /* not interested in unbranched parents of tips
@@ -172,7 +168,7 @@ public class MrpPass2Reducer extends Reducer<Text, Text, Text, Text>
              */
             PathNodeInternal mrca = 
                     new PathNodeInternal(nearestNodeId, accumulatedBranchLengths, tipCount);
-            context.write(tipText, new Text(mrca.toString()));
+            context.write(tipText, mrca);
 //            logger.info("Reduce: output = " + tipText.toString() + "\t:\t" + mrca.toString());
         }
     }
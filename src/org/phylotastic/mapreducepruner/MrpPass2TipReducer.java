@@ -0,0 +1,240 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrppath.*;
+
+/**
+ * class: Pass2TipReducer
+ * -------------------------------------------------------------------------
+ *
+ * Reducer class, an element of the Hadoop MapReduce framework
+ *
+ * The pass 2 reducer of the 2-pass pipeline. It receives all the counted
+ * nodes on the path of one tip, as written by MrpPass1TipReducer, and
+ * does the work of both MrpPass2Reducer and MrpPass3Reducer for that tip.
+ *
+ * Along the path of one tip the sets of tips are nested: the further
+ * from the tip, the larger the set. So on that path, nodes with the same
+ * tip count have the same set of tips, which means that selecting the
+ * MRCA per tip set (pass 2 of the 3-pass pipeline) is the same as
+ * selecting it per tip count on the path of each tip.
+ *
+ * In a batch run (see MrpRun) the keys are SamplePathNodes, and the paths
+ * of each sample are written to a folder of their own: sample-{ID}.
+ */
+public class MrpPass2TipReducer extends Reducer<PathNode, PathNodeInternal, PathNode, PathNodeSet>
+{
+    /**
+     * the prefix of the output folder of each sample in a batch run
+     */
+    public static final String SAMPLE_FOLDER = "sample-";
+
+    private static final Logger logger          = Logger.getLogger(MrpPass2TipReducer.class.getName());
+
+    private final Core core                     = new Core();   // core reducer methods
+
+    private Configuration jobConf;        // the hadoop job configuration
+    private MultipleOutputs<PathNode, PathNodeSet> sampleOutputs;   // the output per sample; null if not a batch run
+
+    /**
+     *     method: setup
+     *
+     *     This method is called once for each reducer task.
+     *     In a batch run it opens the outputs of the samples
+     *
+     * @param context   a Hadoop context, giving access to data related to the pass2 job
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void setup(Context context) throws IOException, InterruptedException
+    {
+        super.setup(context);
+        this.jobConf = context.getConfiguration();
+        if (this.jobConf.getInt("my.samples", 0) > 0)
+            this.sampleOutputs = new MultipleOutputs<>(context);
+    }
+
+    /**
+     *     method: cleanup
+     *
+     *     This method is called once for each reducer task, after the last
+     *     call to reduce. In a batch run it closes the outputs of the samples
+     *
+     * @param context   a Hadoop context, giving access to data related to the pass2 job
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Override
+    public void cleanup(Context context) throws IOException, InterruptedException
+    {
+        if (this.sampleOutputs != null)
+            this.sampleOutputs.close();
+        super.cleanup(context);
+    }
+
+    /**
+     *     method: reduce
+     *
+     *     For example, for tree
+     *
+     *             (n1)                           A        C   D
+     *             /  \                            \      /   /
+     *           (n2)  \                           (n4)  /   /
+     *           /  \   \                            \  /   /
+     *         (n3)  \   \                           (n3)  /
+     *         /  \   \   \                            \  /
+     *       (n4)  \   \   \                           (n2)
+     *       /  \   \   \   \                            \
+     *      A    B   C   D   E                           (n1)
+     *
+     *     if taxons are A and C and D, Reduce-2() receives:
+     *     A    {n1,3;n2,3;n3,2;n4,1;A:Agoracea}    // {} = iterable list
+     *     C    {n1,3;n2,3;n3,2;C:Catonacea}        // {} = iterable list
+     *     D    {n1,3;n2,3;D:Draconacea}            // {} = iterable list
+     *
+     *     processing will:
+     *     - keep, per tip count, only the MRCA (the highest label), adding
+     *       the branch lengths of the neglected nodes to it; like n2 for n1,n2
+     *     - remove internal nodes that only subtend 1 tip
+     *
+     *     after processing Reduce-2() emits the records:
+     *     A:Agoracea           n2,n3
+     *     C:Catonacea          n2,n3
+     *     D:Draconacea         n2
+     *
+     *     the same records as Reduce-3() of the 3-pass pipeline.
+     *
+     * @param tipText   the key of the taxons external node
+     * @param nodes     (all) the nodes on the taxons path
+     * @param context   the Hadoop output context for writing the results
+     * @throws java.io.IOException
+     * @throws java.lang.InterruptedException
+     */
+    @Override
+    public void reduce(PathNode tipText, Iterable<PathNodeInternal> nodes, Context context) throws IOException, InterruptedException
+    {
+        this.core.reset();
+        for (PathNodeInternal taxonNode : nodes)
+            this.core.addNode(taxonNode);
+        if (tipText instanceof SamplePathNode)
+            this.sampleOutputs.write(this.core.getTip(), this.core.getPath(),
+                    SAMPLE_FOLDER + ((SamplePathNode)tipText).getSample() + "/part");
+        else
+            context.write(this.core.getTip(), this.core.getPath());
+    }
+
+    /**
+     *     (static) class: Core
+     *     -------------------------------------------------------------------------
+     *
+     *     Collects the nodes on the path of one tip and turns them into the
+     *     pruned path of that tip; separated from the reducer, like
+     *     MrpPass1Mapper.Core, so it can be used and tested without Hadoop.
+     *
+     *     The tip's length is calculated exactly as MrpPass3Reducer does:
+     *     as an integer, adding 1 if there are nodes that subtend only
+     *     this tip.
+     */
+    protected static class Core
+    {
+        /**
+         * the MRCA found so far for each tip count
+         */
+        protected final Map<Integer, PathNodeInternal> mrcas = new HashMap<>();
+
+        /**
+         * the (named) tip
+         */
+        protected PathNode taxonTip;
+
+        /**
+         * the (integer) length of the tip
+         */
+        protected int taxonLength;
+
+        /**
+         * Constructor
+         */
+        protected Core() {
+            super();
+        }
+
+        /**
+         * Method: reset
+         * ---------------------------------------------------------------------
+         *
+         * Prepare for the path of the next tip
+         */
+        protected void reset() {
+            this.mrcas.clear();
+            this.taxonTip = null;
+            this.taxonLength = 0;
+        }
+
+        /**
+         * Method: addNode
+         * ---------------------------------------------------------------------
+         *
+         * Add a node on the path of the tip; either the named tip
+         * itself or a counted internal node. The node is copied.
+         *
+         * @param node      the node to add
+         */
+        protected void addNode(PathNodeInternal node) {
+            if (!node.getName().isEmpty()) {
+                /* it is the name node */
+                this.taxonTip = new PathNode(node.getLabel(), node.getLength(), node.getName());
+                this.taxonLength += node.getLength();
+                return;
+            }
+            /* the MRCA is the one with the highest ID (= label)
+             * the lengths of all nodes with the same count are added */
+            PathNodeInternal mrca = this.mrcas.get(node.getTipCount());
+            if (mrca == null) {
+                this.mrcas.put(node.getTipCount(), new PathNodeInternal(
+                        node.getLabel(), node.getLength(), node.getTipCount()));
+            } else {
+                mrca.setLength(mrca.getLength() + node.getLength());
+                if (node.getLabel() > mrca.getLabel())
+                    mrca.setLabel(node.getLabel());
+            }
+        }
+
+        /**
+         * Method: getTip
+         * ---------------------------------------------------------------------
+         *
+         * @return      the named tip, with it's length adjusted
+         */
+        protected PathNode getTip() {
+            int length = this.taxonLength;
+            if (this.mrcas.containsKey(1))
+                length += 1;
+            return new PathNode(this.taxonTip.getLabel(), length, this.taxonTip.getName());
+        }
+
+        /**
+         * Method: getPath
+         * ---------------------------------------------------------------------
+         *
+         * @return      the MRCA's on the tip's path that subtend more than one tip
+         */
+        protected PathNodeSet getPath() {
+            PathNodeSet taxonPath = new PathNodeSet();
+            for (PathNodeInternal mrca : this.mrcas.values()) {
+                if (mrca.getTipCount() != 1)
+                    taxonPath.addNode(new PathNode(mrca.getLabel(), mrca.getLength()));
+            }
+            return taxonPath;
+        }
+    }
+
+}
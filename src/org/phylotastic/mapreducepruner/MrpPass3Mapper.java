@@ -1,8 +1,13 @@
 package org.phylotastic.mapreducepruner;
 
 import java.io.IOException;
+import java.util.Arrays;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
@@ -15,17 +20,22 @@ import org.phylotastic.mrppath.*;
  * 
  * Mapper class, an element of the Hadoop MapReduce framework
  *
+ * The tip sets come in as TipSetKeys (see MrpPass1Reducer). The tips of
+ * a set are the run of tips from it's lowest up to it's highest label,
+ * in the sorted labels of all tips; those are read from the side output
+ * of pass 1 (my.tipsdir) when the mapper is set up.
+ *
  *     @author(s); Carla Stegehuis, Rutger Vos
  *     Contributed to:
  *     Date: 3/11/'14
  *     Version: V2.0
  */
-public class MrpPass3Mapper extends Mapper<Text, Text, Text, Text> 
+public class MrpPass3Mapper extends Mapper<TipSetKey, PathNodeInternal, PathNode, PathNodeInternal> 
 {
-    private static final Text IDtext            = new Text("(=)");    
     private static final Logger logger          = Logger.getLogger(MrpPass3Mapper.class.getName());
     
     private Configuration jobConf;        // the hadoop job configuration
+    private int[] tips;                   // the labels of all tips; sorted, without doubles
     
     /**
      *     method: setup
@@ -37,7 +47,7 @@ public class MrpPass3Mapper extends Mapper<Text, Text, Text, Text>
      *     only once, like getting the path of the distributed cache,
      *     passing and getting parameters to mappers, etc.
      * 
-     *     The method has no real function here yet; it is added for completeness
+     *     Here it reads the labels of all tips, from the side output of pass 1
      *
      * @param context   a Hadoop context, giving access to data related to the pass1 job
      * @throws IOException
@@ -48,6 +58,64 @@ public class MrpPass3Mapper extends Mapper<Text, Text, Text, Text>
     {
         super.setup(context);        
         this.jobConf = context.getConfiguration();
+        Path tipsDir = new Path(this.jobConf.get("my.tipsdir"));
+        this.tips = readTips(tipsDir.getFileSystem(this.jobConf), tipsDir);
+        logger.info("Setup: " + this.tips.length + " tips read from " + tipsDir);
+    }
+    
+    /**
+     *     Reads the labels of the tips from the side output of pass 1
+     *
+     * @param fileSystem    the (hadoop) filesystem
+     * @param tipsDir       the folder of the side output
+     * @return              the labels; sorted, without doubles
+     * @throws IOException
+     */
+    protected static int[] readTips(FileSystem fileSystem, Path tipsDir) throws IOException
+    {
+        int[] labels = new int[1024];
+        int count = 0;
+        if (fileSystem.exists(tipsDir)) {
+            PathNode tip = new PathNode();
+            for (FileStatus file : fileSystem.listStatus(tipsDir)) {
+                String fileName = file.getPath().getName();
+                if (!file.isFile() || fileName.startsWith("_") || fileName.startsWith("."))
+                    continue;
+                try (SequenceFile.Reader reader = new SequenceFile.Reader(fileSystem.getConf(),
+                        SequenceFile.Reader.file(file.getPath()))) {
+                    while (reader.next(tip, NullWritable.get())) {
+                        if (count == labels.length)
+                            labels = Arrays.copyOf(labels, 2 * count);
+                        labels[count++] = tip.getLabel();
+                    }
+                }
+            }
+        }
+        Arrays.sort(labels, 0, count);
+        int tipCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || labels[i] != labels[tipCount - 1])
+                labels[tipCount++] = labels[i];
+        }
+        return Arrays.copyOf(labels, tipCount);
+    }
+    
+    /**
+     *     Return the position of the first tip of a tip set
+     *     in the labels of all tips
+     *
+     * @param tips      the labels of all tips; sorted, without doubles
+     * @param tipSet    the tip set
+     * @return          the position of the lowest label of the tip set
+     * @throws IOException when the tip set is not a run of the tips
+     */
+    protected static int findTipSet(int[] tips, TipSetKey tipSet) throws IOException
+    {
+        int first = Arrays.binarySearch(tips, tipSet.getMinLabel());
+        int last = first + tipSet.getSize() - 1;
+        if (first < 0 || last >= tips.length || tips[last] != tipSet.getMaxLabel())
+            throw new IOException("Tip set " + tipSet + " not found in the " + tips.length + " tips");
+        return first;
     }
 
     /** 
@@ -80,7 +148,8 @@ public class MrpPass3Mapper extends Mapper<Text, Text, Text, Text>
      *     in no perticular following order
      *
      *     processing will:
-     *     - split the tipsets into ID/node pairs
+     *     - split the tipsets into ID/node pairs; the tips of a
+     *       tipset are looked up in the (sorted) labels of all tips
      *     - split the name-item into an ID/name pair
      *
      *     after processing Map-3() emits the records:
@@ -94,12 +163,10 @@ public class MrpPass3Mapper extends Mapper<Text, Text, Text, Text>
      *     labelOf(C)   n3,3
      *     labelOf(A)   n4,1
      * 
-     *     instead of the tipNode.toString() value, now the integer value of tipNode.getLabel()
-     *     is used as the key-part of the map output. node.toString() is the value-part.
-     *     This is not a necessity for the process, but the label's integer value prefixed
-     *     with zeroes to 6 positions (String.format("%06d", node.getLabel())) should give
-     *     a cleaner sort result and therefore an easier to (manually) check output.
-     *     It might also be of help for further processing of the result into a tree.
+     *     instead of the tipNode itself, a PathNode holding only the label
+     *     of the tipNode is used as the key-part of the map output, so all
+     *     records of a tip meet in the same reduce call.
+     *     The name record is recognised by it's (non empty) name.
      *
      *     Before being presented to the Reduce-3() method, the emited records are sorted, giving
      *     A    n2,3
@@ -114,35 +181,30 @@ public class MrpPass3Mapper extends Mapper<Text, Text, Text, Text>
      * 
      *     where it says A, C and D the integer labels of those nodes are meant.
      *     like in the case of the parkia:
-     *     "000628       623:1"
-     *     "000628       625:1"
-     *     "000628       =628:18:parkia"
+     *     "628       623:1"
+     *     "628       625:1"
+     *     "628       =628:18:parkia"
      * 
-     * @param tipText   the tipset or IDtext
-     * @param nodeText  the internal node (+count)
+     * @param tipSet    the tipset or the empty (ID) set
+     * @param node      the internal node (+count) or the named tip
      * @param context   the Hadoop output context for writing the results
      * @throws java.io.IOException
      * @throws java.lang.InterruptedException
      */
     @Override
-    public void map(Text tipText, Text nodeText, Context context) throws IOException, InterruptedException
+    public void map(TipSetKey tipSet, PathNodeInternal node, Context context) throws IOException, InterruptedException
     {
-        String tipString = tipText.toString();
-        String nodeString = nodeText.toString();
-        if (tipText.equals(IDtext)) {
+        if (tipSet.getSize() == 0) {
             /*     it is a tip name record like:
              *     "(=)		628:18:parkia"
-             *     write out exchanging IDtext with the tip's label
-             *     "000628      628:18:parkia"
+             *     write out exchanging the ID with the tip's label
+             *     "628      628:18:parkia"
              */
-//            logger.info("Map: input = " + "(=)" + "\t:\t" + nodeString);
-            PathNode tipNode = PathNode.fromString(nodeString);
-            /* get a string representation of the label,
-             * prefixed with zeroes to 6 positions */
-            String tipLabel = String.format("%06d", tipNode.getLabel());
+//            logger.info("Map: input = " + "(=)" + "\t:\t" + node.toString());
+            PathNode tipLabel = new PathNode(node.getLabel(), 0.0);
             /* write the new name record */
-            context.write(new Text(tipLabel), new Text("=" + nodeString));
-//            logger.info("Map: output = " + tipLabel + "\t:\t" + nodeString);
+            context.write(tipLabel, node);
+//            logger.info("Map: output = " + tipLabel + "\t:\t" + node.toString());
         } else {
             /*     it is a tip set like:
              *     A,C,D	n2,3
@@ -150,19 +212,19 @@ public class MrpPass3Mapper extends Mapper<Text, Text, Text, Text>
              *     labelOf(A)	n2,3
              *     labelOf(C)	n2,3
              *     labelOf(D)	n2,3
-             *     where only the tip's 6 position label represents the tip
+             *     where only the tip's label represents the tip
              *     like in the case of the parkia:
-             *     "000628       623:1"
-             *     "000628       625:1"
+             *     "628       623:1"
+             *     "628       625:1"
              */
-//            logger.info("Map: input = " + tipString + "\t:\t" + nodeString);
-            /* split line into tipSet and ancestor */
-            PathNodeSet tipSet = PathNodeSet.fromString(tipString);
+//            logger.info("Map: input = " + tipSet.toString() + "\t:\t" + node.toString());
             /* for each tip write the record. */
-            for ( PathNode tipNode : tipSet.getSet() ) {
-                String tipLabel = String.format("%06d", tipNode.getLabel());
-                context.write(new Text(tipLabel), nodeText);
-//                logger.info("Map: output = " + tipLabel + "\t:\t" + nodeString);
+            PathNode tipLabel = new PathNode();
+            int first = findTipSet(this.tips, tipSet);
+            for ( int i = first; i < first + tipSet.getSize(); i++ ) {
+                tipLabel.setLabel(this.tips[i]);
+                context.write(tipLabel, node);
+//                logger.info("Map: output = " + tipLabel + "\t:\t" + node.toString());
             }
         }
     }
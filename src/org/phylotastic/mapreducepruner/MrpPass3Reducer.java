@@ -2,7 +2,6 @@ package org.phylotastic.mapreducepruner;
 
 import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 
@@ -19,9 +18,8 @@ import org.phylotastic.mrppath.*;
  *     Date: 3/11/'14
  *     Version: V2.0
  */
-public class MrpPass3Reducer extends Reducer<Text, Text, Text, Text>
+public class MrpPass3Reducer extends Reducer<PathNode, PathNodeInternal, PathNode, PathNodeSet>
 {
-    private static final Text IDtext            = new Text("(=)");    
     private static final Logger logger          = Logger.getLogger(MrpPass3Reducer.class.getName());
     
     private Configuration jobConf;        // the hadoop job configuration
@@ -100,31 +98,29 @@ public class MrpPass3Reducer extends Reducer<Text, Text, Text, Text>
      * @throws java.lang.InterruptedException
      */
     @Override
-    public void reduce(Text tipText, Iterable<Text> nodes, Context context) throws IOException, InterruptedException
+    public void reduce(PathNode tipText, Iterable<PathNodeInternal> nodes, Context context) throws IOException, InterruptedException
     {
         /*     this is a taxon node set like this:
          *     A        n2,3; n3,2; n4,1 and =A:Agoracea
          *     where A is the external node's label tipText
          *     and n2,n3,n4, and =A:Agoracea are the taxon's path nodes
          *     like in the case of the parkia:
-         *     "000628      623:1, 625:1 and =628:18:parkia"
+         *     "628      623:1, 625:1 and =628:18:parkia"
+         *     the name node is the one that has a name
          */
         PathNode taxonTip = null;
-        PathNodeInternal taxonNode = null;
         PathNodeSet taxonPath = new PathNodeSet();
         int taxonLength = 0;
-        for(Text node : nodes)
+        for(PathNodeInternal taxonNode : nodes)
         {
-            String nodeString = node.toString();
-//            logger.info("reduce: input = " + tipText.toString() + "\t:\t" + nodeString);
-            if (nodeString.startsWith("=")) {
+//            logger.info("reduce: input = " + tipText.toString() + "\t:\t" + taxonNode.toString());
+            if (!taxonNode.getName().isEmpty()) {
                 /* it is the name node */
-                taxonTip = PathNode.fromString(nodeString.substring(1));
+                taxonTip = new PathNode(taxonNode.getLabel(), taxonNode.getLength(), taxonNode.getName());
                 taxonLength += taxonTip.getLength();
             } else {
                 /* it is an internal node; neglect those only subtending
                  * one tip; add their length to that of the tip node  */
-                taxonNode = PathNodeInternal.fromString(nodeString);
                 int tipCount = taxonNode.getTipCount();
                 if (tipCount == (int)1)
                     taxonLength += tipCount;
@@ -135,8 +131,9 @@ public class MrpPass3Reducer extends Reducer<Text, Text, Text, Text>
         /* adjust the taxons branch length */
         taxonTip.setLength(taxonLength);
         /* write the result: e.g.
-         * "628:18:parkia   ..., 622:1, 623:1, ..." */
-        context.write(new Text(taxonTip.toString()), new Text(taxonPath.toString()));
+         * "628:18:parkia   ..., 622:1, 623:1, ..."
+         * (as text; TextOutputFormat writes the toString() of both) */
+        context.write(taxonTip, taxonPath);
 //        logger.info("Reduce: output = " + taxonTip.toString() + "\t:\t" + taxonPath.toString());
     }
     
@@ -1,8 +1,14 @@
 package org.phylotastic.mapreducepruner;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.hadoop.fs.*;
 import org.apache.log4j.*;
 
@@ -42,45 +48,98 @@ public class MrpResult {
      *     Process the mapreduce results into a newick tree
      *     and write that to a diskfile.
      *
+     *     With more than one result (part) file, the files are read at the
+     *     same time, each into a partial tree of it's own; the partial trees
+     *     are then merged into the result tree, one pass over each.
+     *
      * @param inputDir      the Hadoop Path for directory with the result of the MapReduce process
      * @param outputFile    the Hadoop Path for the file where the resulting Newick tree is to be written to
+     * @return              the (rooted) tree
+     * @throws FileNotFoundException when there are no result (part) files,
+     *                      e.g. when the job that should have written them failed
      * @throws IOException
      */
-    public void process(Path inputDir, Path outputFile) throws IOException 
+    public CompactTree process(Path inputDir, Path outputFile) throws IOException 
     {
         // The mapreduce result can be spread over one or more result files
-        // Create an empty tree and add each of the files to it
         // There can be other items in the inputDir than only result files
-        Tree tree = new Tree();
         // get a list of the available result files
         // these are all files with no extension, that start with: "part-r-0"
         List<Path> pathList = this.getFilePaths(inputDir, "part-r-0*");
-        int count = 0;
+        if (pathList.isEmpty())
+            throw new FileNotFoundException("No result (part-r-*) files in: " + inputDir);
         logger.info("Start processing result (part) files");
-        for (Path file : pathList) {
-            String fileName = file.getName();
-            count++;
-            logger.info("File " + count + " = " + fileName);
-            this.addFile(tree, file);
+        CompactTree tree;
+        if (pathList.size() == 1) {
+            // Create an empty (compact) tree and add the file to it
+            tree = new CompactTree();
+            logger.info("File 1 = " + pathList.get(0).getName());
+            this.addFile(tree, pathList.get(0));
+        } else {
+            tree = this.addFiles(pathList);
         }
         // Roots the tree on the node with the lowest label value
         tree.rootTheTree();
-        // Create the newick string
-        String newickTree = tree.toNewick();
-        // Write the Newick string to the file
-        this.writeResult(newickTree, outputFile);
+        // Write the newick string straight to the file
+        this.writeResult(tree, outputFile);
         logger.info("Done processing result");
         logger.info("Newick Tree written to file: " + outputFile.toString());      
+        return tree;
+    }
+    
+    /** method: addFiles
+     * Read a number of MR result files at the same time, each into a
+     * partial tree, and merge those (in the order of the files)
+     *
+     * @param files     the files to add the taxons from (Hadoop)
+     * @return          the (unrooted) tree of all taxons
+     * @throws IOException
+     */
+    public CompactTree addFiles(List<Path> files) throws IOException {
+        CompactTree tree = new CompactTree();
+        if (files.isEmpty())
+            return tree;
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CompactTree>> partials = new ArrayList<>();
+            for (final Path file : files) {
+                partials.add(pool.submit(new Callable<CompactTree>() {
+                    @Override
+                    public CompactTree call() throws IOException {
+                        CompactTree partial = new CompactTree();
+                        addFile(partial, file);
+                        return partial;
+                    }
+                }));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                logger.info("File " + (i + 1) + " = " + files.get(i).getName());
+                try {
+                    tree.addTree(partials.get(i).get());
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException("Reading " + files.get(i) + " interrupted");
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException)
+                        throw (IOException)ex.getCause();
+                    throw new IOException(ex.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info(files.size() + " files read by " + threads + " threads");
+        return tree;
     }
     
     /** method: addFile
      * Add the taxons in a given MR result file to the given tree
      *
-     * @param tree      the mrptree.tree to add the taxons to
+     * @param tree      the mrptree.CompactTree to add the taxons to
      * @param file      the file to add the taxons from (Hadoop)
      * @throws IOException
      */
-    public void addFile(Tree tree, Path file) throws IOException {
+    public void addFile(CompactTree tree, Path file) throws IOException {
         // add the taxons in the file to the tree
         try{
             // open the file and read the first line
@@ -90,36 +149,10 @@ public class MrpResult {
             // iterate over the lines (taxons) in the file
             while( line != null ) {
                 // split line into tip and ancestorlist on tab character
-                String[] tuple = line.split("\t");
-                PathNode tipNode = PathNode.fromString(tuple[0]);
-                PathNodeSet ancestors = PathNodeSet.fromString(tuple[1]);
-                // create node for focal tip
-                TreeNode child = tree.addNode(tipNode);
-                // iterate over ancestors (are sorted from young to old)
-                for ( PathNode ancestor : ancestors.getSet() )
-                {
-                    int ancestorID = ancestor.getLabel();
-                    // already seen this (ancestor) node along the path of a previous taxon?
-                    if (tree.hasNode(ancestorID)) {
-                        // yes already seen this node
-                        // set this.node as a child of that ancestor
-                        TreeNode parent = tree.getNode(ancestorID);
-                        tree.setChild(parent, child);
-                        // don't continue farther, processing youngest first, 
-                        // so thís parents' ancestors should already have been done.
-                        break;
-                    }
-                    else {
-                        // not yet seen this ancestor;
-                        // instantiate new ancestor node
-                        // and add it to the tree
-                        TreeNode parent = tree.addNode(ancestor);
-                        tree.setChild(parent, child);
-                        // continue processing this (younger) ancestors' possible own (older) ancestor
-                        // so this ancestor becomes the current child and the loop continues
-                        child = parent;
-                    }
-                }
+                int tab = line.indexOf('\t');
+                PathNode tipNode = PathNode.fromString(line.substring(0, tab));
+                PathNodeSet ancestors = PathNodeSet.fromString(line.substring(tab + 1));
+                this.addPath(tree, tipNode, ancestors);
                 line = inputReader.readLine();
             }
             inputReader.close();
@@ -129,6 +162,43 @@ public class MrpResult {
         }   
     }
     
+    /** method: addPath
+     * Add a taxon, with the (pruned) path to it's root, to the given tree
+     *
+     * @param tree      the mrptree.CompactTree to add the taxon to
+     * @param tipNode   the taxon's (external) node
+     * @param ancestors the ancestors of the taxon; sorted from young to old
+     */
+    public void addPath(CompactTree tree, PathNode tipNode, PathNodeSet ancestors) {
+        // create node for focal tip
+        int child = tree.addNode(tipNode);
+        // iterate over ancestors (are sorted from young to old)
+        for ( PathNode ancestor : ancestors.getSet() )
+        {
+            int ancestorID = ancestor.getLabel();
+            // already seen this (ancestor) node along the path of a previous taxon?
+            int parent = tree.indexOf(ancestorID);
+            if (parent != CompactTree.NONE) {
+                // yes already seen this node
+                // set this.node as a child of that ancestor
+                tree.setChild(parent, child);
+                // don't continue farther, processing youngest first, 
+                // so thís parents' ancestors should already have been done.
+                break;
+            }
+            else {
+                // not yet seen this ancestor;
+                // instantiate new ancestor node
+                // and add it to the tree
+                parent = tree.addNode(ancestor);
+                tree.setChild(parent, child);
+                // continue processing this (younger) ancestors' possible own (older) ancestor
+                // so this ancestor becomes the current child and the loop continues
+                child = parent;
+            }
+        }
+    }
+    
     /**
      *     Writes the given newick string to a specified disk file
      *
@@ -154,6 +224,41 @@ public class MrpResult {
         }
     }
     
+    /**
+     *     Writes the given tree as a newick string to a specified disk file,
+     *     without building the string in memory first
+     *
+     * @param tree          the (rooted) tree to be written
+     * @param outputFile    the file to write the tree to
+     * @throws IOException
+     */
+    public void writeResult(CompactTree tree, Path outputFile) throws IOException {
+        try (Writer writer = new OutputStreamWriter(hadoopFS.create(outputFile, true))) {
+            NewickWriter newickWriter = new NewickWriter(writer);
+            newickWriter.write(tree);
+            newickWriter.flush();
+        }
+    }
+    
+    /**
+     *     Writes the statistics of a number of trees to a file: a
+     *     header line and a tab separated row per tree (see TreeStats)
+     *
+     * @param files         the file (name) of each tree
+     * @param stats         the statistics of each tree
+     * @param statsFile     the file to write the statistics to
+     * @throws IOException
+     */
+    public void writeTreeStats(List<String> files, List<TreeStats> stats, Path statsFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                hadoopFS.create(statsFile, true), StandardCharsets.UTF_8))) {
+            TreeStats.writeHeader(writer);
+            for (int i = 0; i < stats.size(); i++)
+                stats.get(i).writeRow(writer, files.get(i));
+        }
+        logger.info("Tree statistics written to file: " + statsFile.toString());
+    }
+    
     /**
      *     Returns a list of File's in a given directory
      *     taking into account a filename filter
@@ -167,6 +272,9 @@ public class MrpResult {
         List<Path> filePaths = new ArrayList<>();
         Path filterPath = new Path(directory.toString()+ this.hfsSeparator + filter);
         FileStatus[] listStatus = hadoopFS.globStatus(filterPath);
+        // no list at all if the directory is not there
+        if (listStatus == null)
+            return filePaths;
         for (FileStatus fStatus : listStatus) {
             if(fStatus.isFile())
                 filePaths.add(fStatus.getPath());
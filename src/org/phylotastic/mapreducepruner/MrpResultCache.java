@@ -0,0 +1,400 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrpdatabase.DatabaseManifest;
+import org.phylotastic.mrpdatabase.TaxonDatabases;
+import org.phylotastic.mrpdatabase.TaxonKey;
+import org.phylotastic.mrptree.CompactTree;
+import org.phylotastic.mrptree.NewickWriter;
+
+/**
+ *     Class MrpResultCache
+ *
+ *     A cache of pruned trees, in a folder on HDFS or on the local disk
+ *     (e.g. file:///var/cache/mrp). The same taxon lists are pruned again
+ *     and again; with a hit MrpRun copies the tree from the cache and
+ *     skips all of the map/reduce passes.
+ *
+ *     The key of a tree is a digest of the identity of the "taxon database"
+ *     (see databaseIdentity) and of the sorted, tidy taxon names of the
+ *     input. The names are not made unique: a taxon that is in the input
+ *     twice gets a longer branch (see MrpPass2TipReducer).
+ *
+ *     An entry is two files: {key}.dnd with the Newick tree and {key}.stats
+ *     with the statistics of the nodes of the tree (see writeNodeStats),
+ *     plus {key}.missing with the taxa of the input that are not in the
+ *     "taxon database", if there are any. On a hit that list is copied
+ *     next to the output file, as MrpRun writes it after the passes.
+ *     When the files of the cache take more than the maximum size, the
+ *     least recently used entries are removed; a hit sets the modification
+ *     time of the entry, so that is the time it was last used.
+ */
+public class MrpResultCache {
+    /**
+     *     the extension of the Newick file of an entry
+     */
+    public static final String NEWICK_EXTENSION = ".dnd";
+
+    /**
+     *     the extension of the node statistics file of an entry
+     */
+    public static final String STATS_EXTENSION = ".stats";
+
+    /**
+     *     the extension of the file of the missing taxa of an entry,
+     *     and of the file next to the output file they are copied to
+     */
+    public static final String MISSING_EXTENSION = ".missing";
+
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private static Logger logger;
+    private final FileSystem cacheFS;       // the file system of the cache
+    private final Path cacheDir;            // the folder of the cache
+    private final long maxSize;             // the maximum size of the files in bytes
+    private final Configuration hadoopConfig;
+
+    /**
+     *     Constructor
+     *
+     * @param _cacheDir     the folder of the cache; on HDFS or (file:) local
+     * @param _maxSize      the maximum size of the cached files in bytes
+     * @param _hadoopConfig the Hadoop configuration
+     * @throws IOException
+     */
+    public MrpResultCache(Path _cacheDir, long _maxSize, Configuration _hadoopConfig) throws IOException {
+        super();
+        logger = Logger.getLogger(MrpResultCache.class.getName());
+        this.hadoopConfig = _hadoopConfig;
+        this.cacheFS = _cacheDir.getFileSystem(_hadoopConfig);
+        this.cacheDir = this.cacheFS.makeQualified(_cacheDir);
+        this.maxSize = _maxSize;
+        this.cacheFS.mkdirs(this.cacheDir);
+    }
+
+    /**
+     *     Returns the identity of a "taxon database": it's (full) path and
+     *     format, the name, size and modification time of the files and
+     *     folders in it's folder, and the version in it's manifest (see
+     *     DatabaseManifest), which every build and update raises.
+     *
+     *     Without a manifest the files in the folder only tell the identity
+     *     of a packed or index database, whose files are all in the folder.
+     *     A directory database without one (like one of script/treeparser.pl)
+     *     has no identity: it's taxon files are in the subfolders, and are
+     *     rewritten when it is built again in place.
+     *
+     * @param hadoopFS      the file system of the database
+     * @param dataDir       the folder of the database
+     * @param dbFormat      the format of the database
+     * @return              the identity; null if the database has none
+     * @throws IOException
+     */
+    public static String databaseIdentity(FileSystem hadoopFS, Path dataDir, String dbFormat) throws IOException {
+        DatabaseManifest manifest = DatabaseManifest.load(hadoopFS, dataDir.toString() + Path.SEPARATOR);
+        if (manifest.getVersion() == 0 && TaxonDatabases.FORMAT_DIRECTORY.equals(dbFormat))
+            return null;
+        FileStatus[] entries = hadoopFS.listStatus(dataDir);
+        Arrays.sort(entries, new Comparator<FileStatus>() {
+            @Override
+            public int compare(FileStatus a, FileStatus b) {
+                return a.getPath().getName().compareTo(b.getPath().getName());
+            }
+        });
+        StringBuilder identity = new StringBuilder();
+        identity.append(hadoopFS.makeQualified(dataDir)).append('|').append(dbFormat)
+                .append("|version:").append(manifest.getVersion());
+        for (FileStatus entry : entries) {
+            identity.append('|').append(entry.getPath().getName())
+                    .append(':').append(entry.getLen())
+                    .append(':').append(entry.getModificationTime());
+        }
+        return identity.toString();
+    }
+
+    /**
+     *     Returns the key of the tree for a number of taxa
+     *
+     * @param databaseId    the identity of the "taxon database"
+     * @param taxa          the tidy taxon names, in any order
+     * @return              the (hexadecimal) key
+     * @throws IOException
+     */
+    public static String makeKey(String databaseId, List<String> taxa) throws IOException {
+        List<String> sorted = new ArrayList<>(taxa);
+        Collections.sort(sorted);
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(databaseId.getBytes(StandardCharsets.UTF_8));
+            for (String taxon : sorted) {
+                md.update((byte)'\n');
+                md.update(taxon.getBytes(StandardCharsets.UTF_8));
+            }
+            return TaxonKey.toHex(md.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private Path entryFile(String key, String extension) {
+        return new Path(this.cacheDir, key + extension);
+    }
+
+    /**
+     *     Copies the cached tree for a key to a file, and the missing taxa
+     *     (if any) to that file name followed by ".missing"; on a hit
+     *     the entry becomes the most recently used one
+     *
+     * @param key           the key of the tree
+     * @param outputFS      the file system of the output file
+     * @param outputFile    the file to write the Newick tree to
+     * @return              true on a hit; false if the tree is not in the cache
+     * @throws IOException
+     */
+    public boolean get(String key, FileSystem outputFS, Path outputFile) throws IOException {
+        Path newickFile = this.entryFile(key, NEWICK_EXTENSION);
+        if (!this.cacheFS.exists(newickFile))
+            return false;
+        if (!FileUtil.copy(this.cacheFS, newickFile, outputFS, outputFile, false, true, this.hadoopConfig))
+            return false;
+        // the same report of the missing taxa as the run that put the entry
+        Path missingFile = this.entryFile(key, MISSING_EXTENSION);
+        Path missingOutput = new Path(outputFile.toString() + MISSING_EXTENSION);
+        boolean missing = this.cacheFS.exists(missingFile);
+        if (missing)
+            FileUtil.copy(this.cacheFS, missingFile, outputFS, missingOutput, false, true, this.hadoopConfig);
+        else
+            outputFS.delete(missingOutput, false);
+        long now = System.currentTimeMillis();
+        this.cacheFS.setTimes(newickFile, now, -1);
+        Path statsFile = this.entryFile(key, STATS_EXTENSION);
+        if (this.cacheFS.exists(statsFile))
+            this.cacheFS.setTimes(statsFile, now, -1);
+        if (missing)
+            this.cacheFS.setTimes(missingFile, now, -1);
+        return true;
+    }
+
+    /**
+     *     Returns the cached tree for a key, read from it's node statistics;
+     *     e.g. to compute the statistics of the tree (see TreeStats)
+     *
+     * @param key           the key of the tree
+     * @return              the (rooted) tree; null if it is not in the cache
+     * @throws IOException
+     */
+    public CompactTree getTree(String key) throws IOException {
+        Path statsFile = this.entryFile(key, STATS_EXTENSION);
+        if (!this.cacheFS.exists(statsFile))
+            return null;
+        try (Reader reader = new InputStreamReader(this.cacheFS.open(statsFile), StandardCharsets.UTF_8)) {
+            return readNodeStats(reader);
+        }
+    }
+
+    /**
+     *     Adds a tree, with no missing taxa, to the cache; see below
+     *
+     * @param key       the key of the tree
+     * @param tree      the (rooted) tree
+     * @throws IOException
+     */
+    public void put(String key, CompactTree tree) throws IOException {
+        this.put(key, tree, new ArrayList<String>());
+    }
+
+    /**
+     *     Adds a tree to the cache, and removes the least recently
+     *     used entries when the cache has grown too large. The files
+     *     are written under a temporary name first, so another run never
+     *     reads half an entry.
+     *
+     * @param key       the key of the tree
+     * @param tree      the (rooted) tree
+     * @param missing   the (tidy) names of the taxa of the input that are
+     *                  not in the "taxon database"
+     * @throws IOException
+     */
+    public void put(String key, CompactTree tree, List<String> missing) throws IOException {
+        Path newickTemp = this.entryFile(key, NEWICK_EXTENSION + TEMP_EXTENSION);
+        Path statsTemp = this.entryFile(key, STATS_EXTENSION + TEMP_EXTENSION);
+        Path missingTemp = this.entryFile(key, MISSING_EXTENSION + TEMP_EXTENSION);
+        // the same (default) character set MrpResult writes the tree in
+        try (Writer writer = new OutputStreamWriter(this.cacheFS.create(newickTemp, true))) {
+            NewickWriter newickWriter = new NewickWriter(writer);
+            newickWriter.write(tree);
+            newickWriter.flush();
+        }
+        try (Writer writer = new OutputStreamWriter(this.cacheFS.create(statsTemp, true), StandardCharsets.UTF_8)) {
+            writeNodeStats(tree, writer);
+        }
+        if (missing.isEmpty()) {
+            this.cacheFS.delete(this.entryFile(key, MISSING_EXTENSION), false);
+        } else {
+            try (Writer writer = new OutputStreamWriter(this.cacheFS.create(missingTemp, true), StandardCharsets.UTF_8)) {
+                for (String taxon : missing) {
+                    writer.write(taxon);
+                    writer.write('\n');
+                }
+            }
+            this.rename(missingTemp, this.entryFile(key, MISSING_EXTENSION));
+        }
+        // the stats first: an entry exists once it's Newick file is there
+        this.rename(statsTemp, this.entryFile(key, STATS_EXTENSION));
+        this.rename(newickTemp, this.entryFile(key, NEWICK_EXTENSION));
+        this.evict();
+    }
+
+    private void rename(Path from, Path to) throws IOException {
+        this.cacheFS.delete(to, false);
+        if (!this.cacheFS.rename(from, to))
+            throw new IOException("MrpResultCache: can not rename " + from + " to " + to);
+    }
+
+    /**
+     *     Removes the least recently used entries until the files
+     *     of the cache take no more than the maximum size
+     *
+     * @throws IOException
+     */
+    public void evict() throws IOException {
+        // the size and last use of each entry
+        final Map<String, long[]> entries = new HashMap<>();
+        long total = 0;
+        for (FileStatus file : this.cacheFS.listStatus(this.cacheDir)) {
+            String name = file.getPath().getName();
+            int dot = name.indexOf('.');
+            if (!file.isFile() || dot < 0 || name.endsWith(TEMP_EXTENSION))
+                continue;
+            long[] entry = entries.get(name.substring(0, dot));
+            if (entry == null) {
+                entry = new long[2];
+                entries.put(name.substring(0, dot), entry);
+            }
+            entry[0] += file.getLen();
+            if (name.endsWith(NEWICK_EXTENSION))
+                entry[1] = file.getModificationTime();
+            total += file.getLen();
+        }
+        if (total <= this.maxSize)
+            return;
+        List<String> keys = new ArrayList<>(entries.keySet());
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Long.compare(entries.get(a)[1], entries.get(b)[1]);
+            }
+        });
+        for (String key : keys) {
+            if (total <= this.maxSize)
+                break;
+            // the Newick file first, so the entry is gone before it is half gone
+            this.cacheFS.delete(this.entryFile(key, NEWICK_EXTENSION), false);
+            this.cacheFS.delete(this.entryFile(key, STATS_EXTENSION), false);
+            this.cacheFS.delete(this.entryFile(key, MISSING_EXTENSION), false);
+            total -= entries.get(key)[0];
+            logger.info("MrpResultCache: evicted " + key);
+        }
+    }
+
+    /**
+     *     Writes the statistics of the nodes of a tree, one tab separated
+     *     line per node, in pre-order: the label, the label of the parent
+     *     (empty for the root), the branch length, the distance from the
+     *     root, the number of tips below the node and the taxon name
+     *
+     * @param tree      the (rooted) tree
+     * @param writer    the output
+     * @throws IOException
+     */
+    public static void writeNodeStats(CompactTree tree, Writer writer) throws IOException {
+        writer.write("label\tparent\tlength\tdepth\ttips\tname\n");
+        int size = tree.getSize();
+        if (tree.getRoot() == CompactTree.NONE)
+            return;
+        // the nodes in pre-order, walked by the child and sibling links
+        int[] order = new int[size];
+        int count = 0;
+        int node = tree.getRoot();
+        while (node != CompactTree.NONE) {
+            order[count++] = node;
+            if (tree.getFirstChild(node) != CompactTree.NONE) {
+                node = tree.getFirstChild(node);
+            } else {
+                while (node != CompactTree.NONE && tree.getNextSibling(node) == CompactTree.NONE)
+                    node = tree.getParent(node);
+                if (node != CompactTree.NONE)
+                    node = tree.getNextSibling(node);
+            }
+        }
+        // the depths top down, the tip counts bottom up
+        double[] depths = new double[size];
+        int[] tips = new int[size];
+        for (int i = 0; i < count; i++) {
+            int parent = tree.getParent(order[i]);
+            depths[order[i]] = (parent == CompactTree.NONE ? 0.0 : depths[parent] + tree.getLength(order[i]));
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            if (tree.getFirstChild(order[i]) == CompactTree.NONE)
+                tips[order[i]]++;
+            int parent = tree.getParent(order[i]);
+            if (parent != CompactTree.NONE)
+                tips[parent] += tips[order[i]];
+        }
+        for (int i = 0; i < count; i++) {
+            int index = order[i];
+            int parent = tree.getParent(index);
+            writer.write(tree.getLabel(index) + "\t"
+                    + (parent == CompactTree.NONE ? "" : String.valueOf(tree.getLabel(parent))) + "\t"
+                    + tree.getLength(index) + "\t" + depths[index] + "\t"
+                    + tips[index] + "\t" + tree.getName(index) + "\n");
+        }
+    }
+
+    /**
+     *     Reads a tree from it's node statistics, as written by writeNodeStats
+     *
+     * @param reader    the input
+     * @return          the (rooted) tree
+     * @throws IOException
+     */
+    public static CompactTree readNodeStats(Reader reader) throws IOException {
+        CompactTree tree = new CompactTree();
+        BufferedReader lines = new BufferedReader(reader);
+        // skip the header
+        String line = lines.readLine();
+        for (line = lines.readLine(); line != null; line = lines.readLine()) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length < 6)
+                throw new IOException("MrpResultCache: not a node statistics line: " + line);
+            int node = tree.addNode(Integer.parseInt(fields[0]), Double.parseDouble(fields[2]), fields[5]);
+            // the nodes are in pre-order, so the parent is there already
+            if (!fields[1].isEmpty())
+                tree.setChild(tree.indexOf(Integer.parseInt(fields[1])), node);
+        }
+        tree.rootTheTree();
+        return tree;
+    }
+}
@@ -1,18 +1,39 @@
 package org.phylotastic.mapreducepruner;
  
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.hadoop.fs.*;
-import org.apache.hadoop.io.*;
 import org.apache.hadoop.util.Tool;				// sara 23-09-2014
 import org.apache.hadoop.conf.Configured;                       // sara 23-09-2014
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Cluster;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
-import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.log4j.Logger;
 
+import org.phylotastic.mrpdatabase.*;
+import org.phylotastic.mrpoption.MrpPathOption;
+import org.phylotastic.mrppath.*;
+import org.phylotastic.mrptree.CompactTree;
+import org.phylotastic.mrptree.TreeStats;
+
 /**
  *     @author(s); Carla Stegehuis, Rutger Vos
  *     Contributed to:
@@ -79,6 +100,14 @@ public class MrpRun extends Configured implements Tool {
      *     Step 2 (map-2/reduce-2) removes any unbranched internal nodes like (n1)
      *     Step 3 (map-3/reduce-3) removes any remaining internal nodes that subtend
      *     only 1 tip like (n4).
+     *     In the 2-pass pipeline reduce-1 writes the counted nodes per
+     *     tip and reduce-2 does the work of both steps for each tip at once; see
+     *     MrpPass1TipReducer and MrpPass2TipReducer.
+     *     With the batch option a number of input files (samples) are pruned
+     *     by the same passes: the keys are tagged with the sample (see
+     *     SamplePathNode), so a taxon that is in more than one sample is
+     *     looked up by the same tasks, and pass 2 writes the paths of each
+     *     sample to a folder of it's own, that gives the tree of the sample.
      *
      *     The names of the extracted taxons are carried all the way to reduce-3,
      *     where they are re-attached to the concerning (external) node, giving:
@@ -113,18 +142,33 @@ public class MrpRun extends Configured implements Tool {
         
         // configure MapReduce job for pass 1
         // ---------------------------------------------------------------------
+        // the passes hand their results to each other as sequence files of
+        // (binary) PathNode(Set)s; only the result of pass 3 is written as text
+        // the keys are sorted and grouped on their (serialized) labels
         logger.info("MrpRun: configuring Hadoop job: Pass 1");
-        String path1In = this.userConfig.inputFile.getPath();
-        Path path1Input = new Path(path1In);
-        // check if input path exists
-        if (!hadoopFS.exists(path1Input)) {
-            logger.error("Input file not found: " + path1In);
-            throw new FileNotFoundException("Input file not found: " + path1In);
+        // the input files and the files to write their trees to: the input
+        // and output file, or in a batch run the lists in the batch file
+        List<Path> inputs = new ArrayList<>();
+        List<Path> outputs = new ArrayList<>();
+        boolean batch = this.userConfig.batch.hasValue();
+        if (batch) {
+            this.readBatch(new Path(this.userConfig.batch.getPath()), inputs, outputs);
         } else {
-            // check if path is a file
-            if (!hadoopFS.isFile(path1Input)) {
-                logger.error("Input file is not a file: " + path1In);
-                throw new FileNotFoundException("Input file is not a file: " + path1In);
+            inputs.add(new Path(this.userConfig.inputFile.getPath()));
+            outputs.add(new Path(this.userConfig.outputFile.getPath()));
+        }
+        for (Path path1Input : inputs) {
+            String path1In = path1Input.toString();
+            // check if input path exists
+            if (!hadoopFS.exists(path1Input)) {
+                logger.error("Input file not found: " + path1In);
+                throw new FileNotFoundException("Input file not found: " + path1In);
+            } else {
+                // check if path is a file
+                if (!hadoopFS.isFile(path1Input)) {
+                    logger.error("Input file is not a file: " + path1In);
+                    throw new FileNotFoundException("Input file is not a file: " + path1In);
+                }
             }
         }
         
@@ -149,24 +193,144 @@ public class MrpRun extends Configured implements Tool {
         if (!taxonDir.endsWith(this.hfsSeparator)) 
             taxonDir += this.hfsSeparator;
         this.userConfig.dataPath.setValue(taxonDir);
+        // check if the packed files are there when the packed format is used
+        String dbFormat = this.userConfig.dbFormat.getValue();
+        if (this.userConfig.dbFormat.is(TaxonDatabases.FORMAT_PACKED) &&
+                !PackedTaxonDatabase.exists(hadoopFS, taxonDir)) {
+            logger.error("Packed taxon database not found in: " + taxonDir);
+            throw new FileNotFoundException("Packed taxon database not found in: " + taxonDir);
+        }
+        if (this.userConfig.dbFormat.is(TaxonDatabases.FORMAT_INDEX) &&
+                !IndexTaxonDatabase.exists(hadoopFS, taxonDir)) {
+            logger.error("Index taxon database not found in: " + taxonDir);
+            throw new FileNotFoundException("Index taxon database not found in: " + taxonDir);
+        }
+        
+        // the 2-pass pipeline selects the MRCA's per tip in it's second pass,
+        // so the tip set pass (pass 2 of the 3-pass pipeline) is not needed
+        boolean twoPass = this.userConfig.pipeline.is(MrpConfig.PIPELINE_2PASS);
+        if (batch && !twoPass)
+            throw new IllegalArgumentException("MrpRun: a batch run needs the "
+                    + MrpConfig.PIPELINE_2PASS + " pipeline");
+        
+        // the identity of the database; the key of the trees in the
+        // result cache and of the paths in the taxon path cache
+        String databaseId = MrpResultCache.databaseIdentity(hadoopFS, taxonPath, dbFormat);
+        if (databaseId == null)
+            logger.warn("MrpRun: the taxon database in " + taxonDir + " has no manifest, so a"
+                    + " rebuild can not be told; the result and path caches are not used");
+
+        // look the taxa up in the cache of pruned trees; on a hit
+        // the tree is copied from the cache and the input is skipped;
+        // when all trees are copied, the passes are skipped
+        MrpResultCache resultCache = null;
+        List<String> cacheKeys = new ArrayList<>();
+        // the statistics of the trees, when asked for
+        boolean treeStats = this.userConfig.treeStats.hasValue();
+        List<String> statsFiles = new ArrayList<>();
+        List<TreeStats> stats = new ArrayList<>();
+        if (this.userConfig.resultCache.hasValue() && databaseId != null) {
+            resultCache = new MrpResultCache(new Path(this.userConfig.resultCache.getValue()),
+                    this.userConfig.resultCacheSize.getIntValue() * 1024L * 1024L, hadoopConfig);
+            for (int sample = inputs.size() - 1; sample >= 0; sample--) {
+                String cacheKey = MrpResultCache.makeKey(databaseId, this.readTaxa(inputs.get(sample)));
+                Path newickOutput = outputs.get(sample);
+                if (resultCache.get(cacheKey, hadoopFS, newickOutput)) {
+                    logger.info("MrpRun: result cache hit " + cacheKey + "; " + inputs.get(sample) + " skipped");
+                    logger.info("Newick Tree written to file: " + newickOutput.toString());
+                    CompactTree tree = (treeStats ? resultCache.getTree(cacheKey) : null);
+                    if (tree != null) {
+                        statsFiles.add(0, newickOutput.toString());
+                        stats.add(0, new TreeStats(tree.toTree()));
+                    }
+                    inputs.remove(sample);
+                    outputs.remove(sample);
+                } else {
+                    logger.info("MrpRun: result cache miss " + cacheKey);
+                    cacheKeys.add(0, cacheKey);
+                }
+            }
+            if (inputs.isEmpty()) {
+                logger.info("MrpRun: all trees found in the result cache; passes skipped");
+                this.writeTreeStats(statsFiles, stats);
+                return 0;
+            }
+        }
 
         hadoopConfig.set("my.taxondir", taxonDir);						// sara 23-09-2014
+        hadoopConfig.set("my.dbformat", dbFormat);
+        if (databaseId != null)
+            hadoopConfig.set("my.databaseid", databaseId);
+        else
+            hadoopConfig.unset("my.databaseid");
         hadoopConfig.setInt("my.hashdepth", this.userConfig.hashDepth.getIntValue());		// sara 23-09-2014					// new
-        hadoopConfig.setInt("mapreduce.input.fileinputformat.split.maxsize", 2000);		// sara 23-09-2014
+        hadoopConfig.setInt("my.cachesize", this.userConfig.cacheSize.getIntValue());
+        hadoopConfig.setInt("my.fetchthreads", this.userConfig.fetchThreads.getIntValue());
+        // in a batch run the mappers find the sample (ID) of their
+        // input file, the index in the list, in the configuration
+        hadoopConfig.setInt("my.samples", batch ? inputs.size() : 0);
+        for (int sample = 0; batch && sample < inputs.size(); sample++) {
+            Path input = inputs.get(sample);
+            hadoopConfig.set("my.sample." + sample,
+                    input.getFileSystem(hadoopConfig).makeQualified(input).toString());
+        }
+        // the size of the input splits, so the number of map tasks of pass 1
+        long inputLength = 0;
+        long inputLines = 0;
+        for (Path input : inputs) {
+            inputLength += hadoopFS.getFileStatus(input).getLen();
+            inputLines += this.countLines(input);
+        }
+        MrpSplitPlan splitPlan = new MrpSplitPlan(inputLength, inputLines, this.mapSlots(),
+                this.userConfig.fetchThreads.getIntValue(), this.userConfig.splitSize.getIntValue());
+        logger.info("MrpRun: split plan: " + splitPlan.toString());
+        
+        logger.info("MrpRun: using the " + this.userConfig.pipeline.getValue() + " pipeline");
+        if (batch)
+            logger.info("MrpRun: pruning a batch of " + inputs.size() + " input files");
+        // in a batch run the keys are tagged with the sample, so
+        // the records of the samples are sorted and grouped apart
+        Class<? extends PathNode> keyClass = batch ? SamplePathNode.class : PathNode.class;
+        Class<? extends WritableComparator> keyComparator = batch ?
+                SamplePathNode.LabelComparator.class : PathNode.LabelComparator.class;
+        List<Job> jobs = new ArrayList<>();
         
         String path1Out = runTemp + "pass1" + this.hfsSeparator;
         Path path1Output = new Path(path1Out);
         
         Job jobPass1 = Job.getInstance(hadoopConfig);
-        TextInputFormat.setInputPaths(jobPass1, path1Input);
+        TextInputFormat.setInputPaths(jobPass1, inputs.toArray(new Path[inputs.size()]));
+        // only the input of pass 1 is split on the plan; the
+        // later passes use the (block size) splits of Hadoop
+        TextInputFormat.setMaxInputSplitSize(jobPass1, splitPlan.getSplitSize());
         TextOutputFormat.setOutputPath(jobPass1, path1Output);
         jobPass1.setJarByClass(MrpRun.class);
         jobPass1.setMapperClass(MrpPass1Mapper.class);
-        jobPass1.setReducerClass(MrpPass1Reducer.class);
+        // the tips of each node are merged into sorted runs on the map side
+        jobPass1.setCombinerClass(MrpPass1Combiner.class);
         jobPass1.setInputFormatClass(TextInputFormat.class);
-        jobPass1.setOutputFormatClass(TextOutputFormat.class);
-        jobPass1.setOutputKeyClass(Text.class);
+        jobPass1.setOutputFormatClass(SequenceFileOutputFormat.class);
+        jobPass1.setMapOutputKeyClass(keyClass);
+        jobPass1.setMapOutputValueClass(PathNodeRun.class);
+        // the taxa not in the taxon "database" go to a side output
+        MultipleOutputs.addNamedOutput(jobPass1, MrpPass1Mapper.MISSING_OUTPUT,
+                TextOutputFormat.class, Text.class, NullWritable.class);
+        if (twoPass) {
+            jobPass1.setReducerClass(MrpPass1TipReducer.class);
+            jobPass1.setOutputKeyClass(keyClass);
+        } else {
+            jobPass1.setReducerClass(MrpPass1Reducer.class);
+            jobPass1.setOutputKeyClass(TipSetKey.class);
+            // the labels of the tips go to a side output, to find
+            // back the tips of each (fixed size) tip set in pass 3
+            MultipleOutputs.addNamedOutput(jobPass1, MrpPass1Reducer.TIPS_OUTPUT,
+                    SequenceFileOutputFormat.class, PathNode.class, NullWritable.class);
+        }
+        jobPass1.setOutputValueClass(PathNodeInternal.class);
+        jobPass1.setSortComparatorClass(keyComparator);
+        jobPass1.setGroupingComparatorClass(keyComparator);
         jobPass1.setNumReduceTasks(this.userConfig.numTasks.getIntValue());
+        jobs.add(jobPass1);
         
         // configure MapReduce job for pass 2
         // ---------------------------------------------------------------------
@@ -175,85 +339,317 @@ public class MrpRun extends Configured implements Tool {
         Path path2Output = new Path(path2Out);
         
         Job jobPass2 = Job.getInstance(hadoopConfig);
-        TextInputFormat.setInputPaths(jobPass2, path1Output);
-        TextOutputFormat.setOutputPath(jobPass2, path2Output);
+        SequenceFileInputFormat.setInputPaths(jobPass2, path1Output);
         jobPass2.setJarByClass(MrpRun.class);
-        jobPass2.setMapperClass(MrpPass2Mapper.class);
-        jobPass2.setReducerClass(MrpPass2Reducer.class);
-        jobPass2.setInputFormatClass(KeyValueTextInputFormat.class);
-        jobPass2.setOutputFormatClass(TextOutputFormat.class);
-        jobPass2.setOutputKeyClass(Text.class);
-        jobPass2.setOutputValueClass(Text.class);
+        jobPass2.setInputFormatClass(SequenceFileInputFormat.class);
+        if (twoPass) {
+            // the (identity) mapper only passes the records to the reducer;
+            // this pipeline saves the tip set job, not this map step: the
+            // records of pass 1 are still written to and read from pass1
+            TextOutputFormat.setOutputPath(jobPass2, path2Output);
+            jobPass2.setMapperClass(Mapper.class);
+            jobPass2.setReducerClass(MrpPass2TipReducer.class);
+            if (batch)
+                // the paths go to the folder of their sample only
+                LazyOutputFormat.setOutputFormatClass(jobPass2, TextOutputFormat.class);
+            else
+                jobPass2.setOutputFormatClass(TextOutputFormat.class);
+            jobPass2.setMapOutputKeyClass(keyClass);
+            jobPass2.setMapOutputValueClass(PathNodeInternal.class);
+            jobPass2.setOutputKeyClass(PathNode.class);
+            jobPass2.setOutputValueClass(PathNodeSet.class);
+            jobPass2.setSortComparatorClass(keyComparator);
+            jobPass2.setGroupingComparatorClass(keyComparator);
+        } else {
+            SequenceFileOutputFormat.setOutputPath(jobPass2, path2Output);
+            jobPass2.setMapperClass(MrpPass2Mapper.class);
+            jobPass2.setReducerClass(MrpPass2Reducer.class);
+            jobPass2.setOutputFormatClass(SequenceFileOutputFormat.class);
+            jobPass2.setOutputKeyClass(TipSetKey.class);
+            jobPass2.setOutputValueClass(PathNodeInternal.class);
+            jobPass2.setSortComparatorClass(TipSetKey.LabelComparator.class);
+            jobPass2.setGroupingComparatorClass(TipSetKey.LabelComparator.class);
+        }
         jobPass2.setNumReduceTasks(this.userConfig.numTasks.getIntValue());
+        jobs.add(jobPass2);
+        Path resultPath = path2Output;
         
-        // configure MapReduce job for pass 3
-        // ---------------------------------------------------------------------
-        logger.info("MrpRun: configuring Hadoop job: Pass 3");
-        String path3Out = runTemp + "pass3" + this.hfsSeparator;
-        Path path3Output = new Path(path3Out);
-        
-        Job jobPass3 = Job.getInstance(hadoopConfig);
-        TextInputFormat.setInputPaths(jobPass3, path2Output);
-        TextOutputFormat.setOutputPath(jobPass3, path3Output);
-        jobPass3.setJarByClass(MrpRun.class);
-        jobPass3.setMapperClass(MrpPass3Mapper.class);
-        jobPass3.setReducerClass(MrpPass3Reducer.class);
-        jobPass3.setInputFormatClass(KeyValueTextInputFormat.class);
-        jobPass3.setOutputFormatClass(TextOutputFormat.class);
-        jobPass3.setOutputKeyClass(Text.class);
-        jobPass3.setOutputValueClass(Text.class);
-        jobPass2.setNumReduceTasks(this.userConfig.numTasks.getIntValue());
+        if (!twoPass) {
+            // configure MapReduce job for pass 3
+            // -----------------------------------------------------------------
+            logger.info("MrpRun: configuring Hadoop job: Pass 3");
+            String path3Out = runTemp + "pass3" + this.hfsSeparator;
+            Path path3Output = new Path(path3Out);
+
+            Job jobPass3 = Job.getInstance(hadoopConfig);
+            jobPass3.getConfiguration().set("my.tipsdir", path1Out + MrpPass1Reducer.TIPS_FOLDER);
+            SequenceFileInputFormat.setInputPaths(jobPass3, path2Output);
+            TextOutputFormat.setOutputPath(jobPass3, path3Output);
+            jobPass3.setJarByClass(MrpRun.class);
+            jobPass3.setMapperClass(MrpPass3Mapper.class);
+            jobPass3.setReducerClass(MrpPass3Reducer.class);
+            jobPass3.setInputFormatClass(SequenceFileInputFormat.class);
+            jobPass3.setOutputFormatClass(TextOutputFormat.class);
+            jobPass3.setMapOutputKeyClass(PathNode.class);
+            jobPass3.setMapOutputValueClass(PathNodeInternal.class);
+            jobPass3.setOutputKeyClass(PathNode.class);
+            jobPass3.setOutputValueClass(PathNodeSet.class);
+            jobPass3.setSortComparatorClass(PathNode.LabelComparator.class);
+            jobPass3.setGroupingComparatorClass(PathNode.LabelComparator.class);
+            jobPass3.setNumReduceTasks(this.userConfig.numTasks.getIntValue());
+            jobs.add(jobPass3);
+            resultPath = path3Output;
+        }
         
         // configure local job to process the MapReduce result
         // ---------------------------------------------------------------------
         logger.info("MrpRun: configuring Hadoop job: Result");
         mrpResult     = new MrpResult();
-        String newickOut = this.userConfig.outputFile.getPath();
-        Path newickOutput = new Path(newickOut);
         mrpResult.setEnviron(hadoopFS);
         
-        // run MapReduce job for pass 1
-        // ---------------------------------------------------------------------
-        logger.info("MrpRun: starting Hadoop job pass 1");
-        try {
-            jobPass1.waitForCompletion(true);
-            logger.info("MrpRun: ending Hadoop job pass 1");
-        } catch (IOException | ClassNotFoundException | InterruptedException exp) {
-            logger.fatal( "MrpRun: Pass 1 exception: ", exp );
-            throw exp;
-        }
-        
-        // run MapReduce job for pass 2
+        // run the MapReduce jobs, one pass after the other; a pass that
+        // fails stops the run, so no (partial) result is processed or cached
         // ---------------------------------------------------------------------
-        logger.info("MrpRun: starting Hadoop job pass 2");
-        try {
-            jobPass2.waitForCompletion(true);
-            logger.info("MrpRun: ending Hadoop job pass 2");
-        } catch (IOException | ClassNotFoundException | InterruptedException exp) {
-            logger.fatal( "MrpRun: Pass 2 exception: ", exp );
-            throw exp;
+        for (int pass = 1; pass <= jobs.size(); pass++) {
+            logger.info("MrpRun: starting Hadoop job pass " + pass);
+            boolean completed;
+            try {
+                completed = jobs.get(pass - 1).waitForCompletion(true);
+            } catch (IOException | ClassNotFoundException | InterruptedException exp) {
+                logger.fatal( "MrpRun: Pass " + pass + " exception: ", exp );
+                throw exp;
+            }
+            if (!completed) {
+                logger.fatal("MrpRun: Hadoop job pass " + pass + " failed");
+                throw new IOException("MrpRun: Hadoop job pass " + pass + " failed");
+            }
+            logger.info("MrpRun: ending Hadoop job pass " + pass);
         }
         
-        // run MapReduce job for pass 3
-        // ---------------------------------------------------------------------
-        logger.info("MrpRun: starting Hadoop job pass 3");
-        try {
-            jobPass3.waitForCompletion(true);
-            logger.info("MrpRun: ending Hadoop job pass 3");
-        } catch (IOException | ClassNotFoundException | InterruptedException exp) {
-            logger.fatal( "MrpRun: Pass 3 exception: ", exp );
-            throw exp;
-        }
+        List<List<String>> missingTaxa = this.reportMissing(jobPass1,
+                new Path(path1Output, MrpPass1Mapper.MISSING_FOLDER), outputs, batch);
         
         // run job to process the combined MapReduce result
         // ---------------------------------------------------------------------
         logger.info("MRP: start processing mapreduce result");
         try {
-            mrpResult.process(path3Output, newickOutput);
+            // in a batch run each sample has a result folder of it's own
+            for (int sample = 0; sample < inputs.size(); sample++) {
+                Path samplePath = batch ?
+                        new Path(resultPath, MrpPass2TipReducer.SAMPLE_FOLDER + sample) : resultPath;
+                if (batch && !hadoopFS.exists(samplePath)) {
+                    // the passes succeeded, but wrote nothing for this sample:
+                    // none of it's taxa are in the taxon "database"
+                    logger.warn("MrpRun: no taxa of " + inputs.get(sample) + " in the taxon database");
+                    mrpResult.writeResult(new CompactTree(), outputs.get(sample));
+                    continue;
+                }
+                CompactTree tree = mrpResult.process(samplePath, outputs.get(sample));
+                if (resultCache != null) {
+                    resultCache.put(cacheKeys.get(sample), tree, missingTaxa.get(sample));
+                    logger.info("MrpRun: result cached as " + cacheKeys.get(sample));
+                }
+                if (treeStats) {
+                    statsFiles.add(outputs.get(sample).toString());
+                    stats.add(new TreeStats(tree.toTree()));
+                }
+            }
+            this.writeTreeStats(statsFiles, stats);
         } catch (IOException e) {
             throw e;
         }
         logger.info("MRP: mapreduce run finished");
         return 0;									// new
     }
+    
+    /**
+     *     Reports the taxa of the input that are not in the taxon "database",
+     *     as counted and written (to a side output) by the mappers of pass 1:
+     *     they are written to a file next to the output file of their input,
+     *     the output file name followed by ".missing" (see writeMissing)
+     *
+     * @param jobPass1      the (completed) job of pass 1
+     * @param missingPath   the folder of the side output of the missing taxa
+     * @param outputs       the output file of each input file
+     * @param batch         true for a batch run; then each input file has
+     *                      a folder of it's own in the side output
+     * @return              the (tidy) names of the missing taxa of each input file
+     * @throws IOException
+     */
+    private List<List<String>> reportMissing(Job jobPass1, Path missingPath, List<Path> outputs, boolean batch)
+            throws IOException {
+        long missing = jobPass1.getCounters().findCounter(MrpPass1Mapper.TaxonCounter.MISSING).getValue();
+        if (missing > 0) {
+            long filtered = jobPass1.getCounters().findCounter(MrpPass1Mapper.TaxonCounter.FILTERED).getValue();
+            logger.warn("MrpRun: " + missing + " taxa not in the taxon database (" + filtered
+                    + " rejected by the taxon filter); they are left out of the tree");
+        }
+        List<List<String>> missingTaxa = new ArrayList<>();
+        for (int sample = 0; sample < outputs.size(); sample++) {
+            List<String> taxa = new ArrayList<>();
+            Path samplePath = batch ?
+                    new Path(missingPath, MrpPass2TipReducer.SAMPLE_FOLDER + sample) : missingPath;
+            FileStatus[] parts = (missing > 0 ? hadoopFS.globStatus(new Path(samplePath, "part-m-*")) : null);
+            for (int part = 0; parts != null && part < parts.length; part++) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        hadoopFS.open(parts[part].getPath()), StandardCharsets.UTF_8))) {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine())
+                        taxa.add(line);
+                }
+            }
+            this.writeMissing(outputs.get(sample), taxa);
+            missingTaxa.add(taxa);
+        }
+        return missingTaxa;
+    }
+    
+    /**
+     *     Writes the taxa of an input that are not in the taxon "database"
+     *     to the output file name followed by ".missing", one per line;
+     *     when there are none, a file left by an earlier run is removed
+     *
+     * @param outputPath    the output file of the input
+     * @param taxa          the (tidy) names of the missing taxa
+     * @throws IOException
+     */
+    private void writeMissing(Path outputPath, List<String> taxa) throws IOException {
+        Path missingFile = new Path(outputPath.toString() + MrpResultCache.MISSING_EXTENSION);
+        if (taxa.isEmpty()) {
+            hadoopFS.delete(missingFile, false);
+            return;
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                hadoopFS.create(missingFile, true), StandardCharsets.UTF_8))) {
+            for (String taxon : taxa) {
+                writer.write(taxon);
+                writer.write('\n');
+            }
+        }
+        logger.warn("Taxa not in the taxon database written to file: " + missingFile);
+    }
+    
+    /**
+     *     Counts the lines (taxa) of the input file
+     *
+     * @param inputPath     the path of the input file
+     * @return              the number of lines
+     * @throws IOException
+     */
+    private long countLines(Path inputPath) throws IOException {
+        long lines = 0;
+        int last = '\n';
+        byte[] buffer = new byte[65536];
+        try (FSDataInputStream input = hadoopFS.open(inputPath)) {
+            for (int read = input.read(buffer); read > 0; read = input.read(buffer)) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n')
+                        lines++;
+                }
+                last = buffer[read - 1];
+            }
+        }
+        // the last line need not end with a new line
+        return last == '\n' ? lines : lines + 1;
+    }
+    
+    /**
+     *     Writes the statistics of the trees to the treeStats file,
+     *     if that is given
+     *
+     * @param files     the (output) file of each tree
+     * @param stats     the statistics of each tree
+     * @throws IOException
+     */
+    private void writeTreeStats(List<String> files, List<TreeStats> stats) throws IOException {
+        if (!this.userConfig.treeStats.hasValue())
+            return;
+        MrpResult statsResult = new MrpResult();
+        statsResult.setEnviron(hadoopFS);
+        statsResult.writeTreeStats(files, stats, new Path(this.userConfig.treeStats.getPath()));
+    }
+    
+    /**
+     *     Reads the batch file: one input file and the file to write it's
+     *     tree to per line, separated by white space. Empty lines and lines
+     *     starting with # are skipped. Relative paths are local paths, as
+     *     for the input and output options (see MrpPathOption).
+     *
+     * @param batchPath     the batch file
+     * @param inputs        the list to add the input files to
+     * @param outputs       the list to add the output files to
+     * @throws IOException
+     */
+    private void readBatch(Path batchPath, List<Path> inputs, List<Path> outputs) throws IOException {
+        if (!hadoopFS.isFile(batchPath)) {
+            logger.error("Batch file not found: " + batchPath);
+            throw new FileNotFoundException("Batch file not found: " + batchPath);
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(hadoopFS.open(batchPath), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] files = line.split("\\s+");
+                if (files.length != 2)
+                    throw new IOException("Batch file " + batchPath + ": not \"input output\": " + line);
+                MrpPathOption input = new MrpPathOption();
+                input.setValue(files[0]);
+                MrpPathOption output = new MrpPathOption();
+                output.setValue(files[1]);
+                Path inputPath = new Path(input.getPath());
+                if (inputs.contains(inputPath))
+                    throw new IOException("Batch file " + batchPath + ": input file listed twice: " + files[0]);
+                inputs.add(inputPath);
+                outputs.add(new Path(output.getPath()));
+            }
+        }
+        if (inputs.isEmpty())
+            throw new IOException("Batch file " + batchPath + ": no input files");
+    }
+    
+    /**
+     *     Returns the taxa in the input file, tidied like
+     *     MrpPass1Mapper does (UTF-8, as TextInputFormat reads them);
+     *     empty lines are skipped, as MrpServer.readTaxa does
+     *
+     * @param inputPath     the input file
+     * @return              the tidy taxon names
+     * @throws IOException
+     */
+    private List<String> readTaxa(Path inputPath) throws IOException {
+        MrpPass1Mapper.Core core = new MrpPass1Mapper.Core();
+        List<String> taxa = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(hadoopFS.open(inputPath), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.trim().isEmpty())
+                    taxa.add(core.tidyTaxonName(line));
+            }
+        }
+        return taxa;
+    }
+    
+    /**
+     *     Returns the number of map slots of the cluster; or, if the
+     *     cluster can not tell, the number of tasks (numTasks option)
+     *
+     * @return      the number of map slots
+     */
+    private int mapSlots() {
+        int slots = 0;
+        try {
+            Cluster cluster = new Cluster(hadoopConfig);
+            try {
+                slots = cluster.getClusterStatus().getMapSlotCapacity();
+            } finally {
+                cluster.close();
+            }
+        } catch (IOException | InterruptedException ex) {
+            logger.warn("MrpRun: can not get the cluster status: " + ex.getMessage());
+        }
+        if (slots <= 0)
+            slots = this.userConfig.numTasks.getIntValue();
+        return slots;
+    }
 }
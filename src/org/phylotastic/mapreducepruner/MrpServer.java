@@ -0,0 +1,362 @@
+package org.phylotastic.mapreducepruner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import org.phylotastic.mrptree.CompactTree;
+import org.phylotastic.mrptree.NewickWriter;
+
+/**
+ *     Class MrpServer
+ *
+ *     Answers prune requests over HTTP, so the tree is not read again (and
+ *     no Hadoop job is started) for every request. The index of the tree
+ *     and the "taxon database" are opened once, as in MrpLcaRun, and stay
+ *     in memory while the server runs.
+ *
+ *     A request is a POST to /prune with the taxa in the body, one per line,
+ *     like the input file; the answer is the Newick tree (text/plain, UTF-8).
+ *     A taxon that is not in the "taxon database" is left out of the tree
+ *     (by both ways of pruning) and named in the X-Missing-Taxa header:
+ *     the (tidy) names, URL encoded in UTF-8, separated by commas. When
+ *     none of the taxa is in the "taxon database" the answer is a 404.
+ *
+ *     Requests of up to localLimit taxa are pruned in memory (MrpLcaRun),
+ *     at the same time; larger ones by the map/reduce passes (MrpRun), one
+ *     at a time, as those share the temp dir. With a localLimit of 0 all
+ *     requests are pruned in memory.
+ *
+ *     The server listens on the loopback address only.
+ */
+public class MrpServer {
+    /**
+     *     the path prune requests are posted to
+     */
+    public static final String PRUNE_PATH = "/prune";
+
+    /**
+     *     the header that names the taxa not in the "taxon database"
+     */
+    public static final String MISSING_HEADER = "X-Missing-Taxa";
+
+    private static Logger logger;
+    private final MrpConfig userConfig;     // MrpConfig object holding the configuration options
+    private final MrpLcaRun lcaRun;         // prunes the tree in memory
+    private final Object mapReduceLock;     // one map/reduce run at a time
+    private final AtomicLong requests;      // the number of requests so far
+    private final CountDownLatch stopped;   // released when the server stops
+    private HttpServer server;              // the HTTP server
+    private ExecutorService executor;       // the threads handling the requests
+
+    /**
+     *
+     * @param _config   the MrpConfig object holding the configuration variables (options)
+     */
+    public MrpServer(MrpConfig _config) {
+        super();
+        this.userConfig    = _config;
+        this.lcaRun        = new MrpLcaRun(_config);
+        this.mapReduceLock = new Object();
+        this.requests      = new AtomicLong();
+        this.stopped       = new CountDownLatch(1);
+        logger             = Logger.getLogger(MrpServer.class.getName());
+    }
+
+    /**     Method Run
+     * -------------------------------------------------------------------------
+     *     Starts the server and waits until it is stopped
+     *     (by stop(), or when the JVM shuts down)
+     *
+     * @return zero when the server stopped normally
+     * @throws java.io.IOException
+     * @throws java.lang.InterruptedException
+     */
+    public int run() throws IOException, InterruptedException {
+        this.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                MrpServer.this.stop();
+            }
+        });
+        this.stopped.await();
+        return 0;
+    }
+
+    /**     Method start
+     * -------------------------------------------------------------------------
+     *     Opens the tree index and the "taxon database" and starts
+     *     listening for requests
+     *
+     * @throws java.io.IOException
+     */
+    public void start() throws IOException {
+        long start = System.currentTimeMillis();
+        this.lcaRun.open();
+        int port = this.userConfig.port.getIntValue();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext(PRUNE_PATH, new PruneHandler());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, this.userConfig.numTasks.getIntValue()));
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        logger.info("MrpServer: listening on http://localhost:" + this.getPort() + PRUNE_PATH
+                + " (started in " + (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    /**     Method stop
+     * -------------------------------------------------------------------------
+     *     Stops listening, and closes the "taxon database"
+     */
+    public synchronized void stop() {
+        if (this.server == null)
+            return;
+        this.server.stop(0);
+        this.executor.shutdown();
+        this.server = null;
+        try {
+            this.lcaRun.close();
+        } catch (IOException ex) {
+            logger.error("MrpServer: closing the taxon database failed", ex);
+        }
+        logger.info("MrpServer: stopped after " + this.requests.get() + " requests");
+        this.stopped.countDown();
+    }
+
+    /**
+     * @return  the port the server listens on
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     *     Returns true if a request is pruned in memory; false if it
+     *     is pruned by the map/reduce passes
+     *
+     * @param taxonCount    the number of taxa in the request
+     * @param localLimit    the largest number of taxa pruned in memory;
+     *                      0 for no limit
+     * @return              true if pruned in memory
+     */
+    protected static boolean pruneInMemory(int taxonCount, int localLimit) {
+        return localLimit <= 0 || taxonCount <= localLimit;
+    }
+
+    /**
+     *     Reads the taxa of a request, one per line; empty lines are skipped
+     *
+     * @param body      the body of the request
+     * @return          the taxa
+     * @throws IOException
+     */
+    protected static List<String> readTaxa(InputStream body) throws IOException {
+        List<String> taxa = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty())
+                taxa.add(line);
+        }
+        return taxa;
+    }
+
+    /**     Method missingHeader
+     * -------------------------------------------------------------------------
+     *     Returns the value of the X-Missing-Taxa header: the names URL
+     *     encoded in UTF-8 (so a comma in a name is encoded too) and
+     *     separated by commas
+     *
+     * @param missing   the (tidy) names of the taxa not in the "taxon database"
+     * @return          the header value
+     */
+    protected static String missingHeader(List<String> missing) {
+        StringBuilder header = new StringBuilder();
+        try {
+            for (String taxon : missing) {
+                if (header.length() > 0)
+                    header.append(',');
+                header.append(URLEncoder.encode(taxon, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException ex) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(ex);
+        }
+        return header.toString();
+    }
+
+    /**
+     *     Prunes the tree for the taxa by the map/reduce passes and returns
+     *     the Newick tree. The taxa are written to an input
+     *     file next to the temp dir, the input and output file of the
+     *     configuration are set to that request for the run, and then put back.
+     *     The taxa that MrpRun wrote to the ".missing" file are added to missing.
+     */
+    private String pruneMapReduce(List<String> taxa, List<String> missing, long request) throws IOException {
+        synchronized (this.mapReduceLock) {
+            FileSystem hadoopFS = FileSystem.get(new Configuration());
+            String requestDir = this.userConfig.tempDir.getValue();
+            if (requestDir.endsWith(Path.SEPARATOR))
+                requestDir = requestDir.substring(0, requestDir.length() - 1);
+            requestDir += "_requests" + Path.SEPARATOR;
+            String inputValue = this.userConfig.inputFile.getValue();
+            String outputValue = this.userConfig.outputFile.getValue();
+            String batchValue = this.userConfig.batch.getValue();
+            try {
+                this.userConfig.inputFile.setValue(requestDir + "request-" + request + ".txt");
+                this.userConfig.outputFile.setValue(requestDir + "request-" + request + ".dnd");
+                this.userConfig.batch.setValue("");
+                Path inputPath = new Path(this.userConfig.inputFile.getPath());
+                Path outputPath = new Path(this.userConfig.outputFile.getPath());
+                Path missingPath = outputPath.suffix(MrpResultCache.MISSING_EXTENSION);
+                // Hadoop's TextInputFormat reads the taxa as UTF-8
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        hadoopFS.create(inputPath, true), StandardCharsets.UTF_8))) {
+                    for (String taxon : taxa) {
+                        writer.write(taxon);
+                        writer.write('\n');
+                    }
+                }
+                try {
+                    ToolRunner.run(new Configuration(), new MrpRun(this.userConfig), new String[0]);
+                } catch (IOException ex) {
+                    hadoopFS.delete(missingPath, false);
+                    throw ex;
+                } catch (Exception ex) {
+                    hadoopFS.delete(missingPath, false);
+                    throw new IOException("MrpServer: map/reduce run failed", ex);
+                }
+                // MrpRun writes the missing taxa in UTF-8, one per line
+                if (hadoopFS.exists(missingPath)) {
+                    try (FSDataInputStream stream = hadoopFS.open(missingPath)) {
+                        BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(stream, StandardCharsets.UTF_8));
+                        String line;
+                        while ((line = reader.readLine()) != null)
+                            missing.add(line);
+                    }
+                    hadoopFS.delete(missingPath, false);
+                }
+                // MrpResult writes the tree in the default character set
+                StringBuilder newick = new StringBuilder();
+                try (FSDataInputStream stream = hadoopFS.open(outputPath)) {
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(stream, Charset.defaultCharset()));
+                    char[] buffer = new char[8192];
+                    for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer))
+                        newick.append(buffer, 0, read);
+                }
+                hadoopFS.delete(inputPath, false);
+                hadoopFS.delete(outputPath, false);
+                return newick.toString();
+            } finally {
+                this.userConfig.inputFile.setValue(inputValue);
+                this.userConfig.outputFile.setValue(outputValue);
+                this.userConfig.batch.setValue(batchValue);
+            }
+        }
+    }
+
+    /**
+     *     Handles the prune requests
+     */
+    private class PruneHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.currentTimeMillis();
+            long request = requests.incrementAndGet();
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    this.sendError(exchange, 405, "Post the taxa to " + PRUNE_PATH + ", one per line");
+                    return;
+                }
+                List<String> taxa = readTaxa(exchange.getRequestBody());
+                if (taxa.isEmpty()) {
+                    this.sendError(exchange, 400, "No taxa in request");
+                    return;
+                }
+                boolean inMemory = pruneInMemory(taxa.size(), userConfig.localLimit.getIntValue());
+                List<String> missing = new ArrayList<>();
+                try {
+                    if (inMemory) {
+                        // prune before sending the headers, so no taxon found gives a 404
+                        CompactTree tree = lcaRun.prune(taxa, missing);
+                        try (Writer out = this.sendNewick(exchange, missing)) {
+                            NewickWriter newickWriter = new NewickWriter(out);
+                            newickWriter.write(tree);
+                            newickWriter.flush();
+                        }
+                    } else {
+                        String newick = pruneMapReduce(taxa, missing, request);
+                        try (Writer out = this.sendNewick(exchange, missing)) {
+                            out.write(newick);
+                        }
+                    }
+                } catch (FileNotFoundException ex) {
+                    this.sendError(exchange, 404, ex.getMessage());
+                    return;
+                }
+                logger.info("MrpServer: request " + request + ": " + taxa.size() + " taxa pruned "
+                        + (inMemory ? "in memory" : "by map/reduce") + " in "
+                        + (System.currentTimeMillis() - start) + " ms"
+                        + (missing.isEmpty() ? "" : ", " + missing.size() + " not in the taxon database"));
+            } catch (IOException | RuntimeException ex) {
+                logger.error("MrpServer: request " + request + " failed", ex);
+                this.sendError(exchange, 500, String.valueOf(ex.getMessage()));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private Writer sendNewick(HttpExchange exchange, List<String> missing) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            if (!missing.isEmpty())
+                exchange.getResponseHeaders().set(MISSING_HEADER, missingHeader(missing));
+            exchange.sendResponseHeaders(200, 0);
+            return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        }
+
+        private void sendError(HttpExchange exchange, int status, String message) {
+            logger.warn("MrpServer: " + status + ": " + message);
+            try {
+                byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (IOException ex) {
+                // the headers were sent already, or the client is gone
+                logger.warn("MrpServer: could not send error: " + ex.getMessage());
+            }
+        }
+    }
+}
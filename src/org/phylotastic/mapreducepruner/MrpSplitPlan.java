@@ -0,0 +1,102 @@
+package org.phylotastic.mapreducepruner;
+
+/**
+ *     Class MrpSplitPlan
+ *
+ *     Determines the size of the input splits of pass 1, so the number of
+ *     map tasks. Every map task pays the start up of a container and JVM,
+ *     so a split should hold enough taxa for the lookups to outweigh that;
+ *     on the other hand a large input should be spread over all the map
+ *     slots of the cluster, in a single wave.
+ *
+ *     taxa per split  = max(STARTUP_FACTOR * TASK_STARTUP_MS / cost per taxon,
+ *                           taxa / slots)
+ *     cost per taxon  = TAXON_COST_MS / fetch threads
+ *     split size      = taxa per split * average line length (bytes)
+ *
+ *     A split size given by the user (splitSize option) overrides the plan.
+ */
+public class MrpSplitPlan {
+
+    /**
+     * the estimated start up time of a map task, in milliseconds
+     */
+    public static final double TASK_STARTUP_MS = 3000.0;
+
+    /**
+     * the estimated time to look up the path of a taxon, in milliseconds
+     */
+    public static final double TAXON_COST_MS = 5.0;
+
+    /**
+     * the minimal lookup time of a map task, as a multiple of it's start up time
+     */
+    public static final double STARTUP_FACTOR = 2.0;
+
+    private final long inputBytes;      // the size of the input file
+    private final long taxa;            // the number of lines (taxa) in the input file
+    private final int slots;            // the number of map slots of the cluster
+    private final long taxaPerSplit;    // the planned number of taxa per split
+    private final long splitSize;       // the planned split size in bytes
+    private final boolean override;     // the split size was given by the user
+
+    /**
+     *     Constructor; makes the plan
+     *
+     * @param _inputBytes       the size of the input file in bytes
+     * @param _taxa             the number of lines (taxa) in the input file
+     * @param _slots            the number of map slots of the cluster
+     * @param _fetchThreads     the number of threads per mapper looking up paths
+     * @param _splitSize        the split size given by the user; 0 for none
+     */
+    public MrpSplitPlan(long _inputBytes, long _taxa, int _slots, int _fetchThreads, long _splitSize) {
+        this.inputBytes = _inputBytes;
+        this.taxa = Math.max(1, _taxa);
+        this.slots = Math.max(1, _slots);
+        double lineBytes = Math.max(1.0, (double)this.inputBytes / this.taxa);
+        if (_splitSize > 0) {
+            this.override = true;
+            this.splitSize = _splitSize;
+            this.taxaPerSplit = Math.max(1, (long)(this.splitSize / lineBytes));
+        } else {
+            this.override = false;
+            double taxonCost = TAXON_COST_MS / Math.max(1, _fetchThreads);
+            long minTaxa = (long)Math.ceil(STARTUP_FACTOR * TASK_STARTUP_MS / taxonCost);
+            long waveTaxa = (this.taxa + this.slots - 1) / this.slots;
+            this.taxaPerSplit = Math.min(this.taxa, Math.max(minTaxa, waveTaxa));
+            this.splitSize = (long)Math.ceil(this.taxaPerSplit * lineBytes);
+        }
+    }
+
+    /**
+     * @return      the planned split size in bytes
+     */
+    public long getSplitSize() {
+        return this.splitSize;
+    }
+
+    /**
+     * @return      the planned number of taxa per split
+     */
+    public long getTaxaPerSplit() {
+        return this.taxaPerSplit;
+    }
+
+    /**
+     * @return      the (approximate) number of splits, so of map tasks
+     */
+    public long getSplits() {
+        return Math.max(1, (this.inputBytes + this.splitSize - 1) / this.splitSize);
+    }
+
+    /**
+     * @return      the plan, for the log
+     */
+    @Override
+    public String toString() {
+        return this.taxa + " taxa (" + this.inputBytes + " bytes), " + this.slots + " map slots, "
+                + (this.override ? "split size from config" : "adaptive") + ": "
+                + this.taxaPerSplit + " taxa per split => " + this.getSplits()
+                + " splits of " + this.splitSize + " bytes";
+    }
+}
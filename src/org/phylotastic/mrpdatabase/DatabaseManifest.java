@@ -0,0 +1,142 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ *     Class DatabaseManifest
+ *
+ *     The manifest of a "taxon database": a (Java) properties file in the
+ *     data directory, that tells which version of the database is there,
+ *     from which tree and in which format it was built, and what the last
+ *     update changed:
+ *
+ *     version         1 higher than the version of the database replaced,
+ *                     for every build and update
+ *     format          the layout: directory, packed or index
+ *     hashDepth       the number of subdirectories of the directory layout
+ *     tree            the Newick tree file the database was built from
+ *     taxa, nodes     the number of taxa and nodes of the tree
+ *     update.*        the number of taxa unchanged, changed, added and
+ *                     removed by the last update (see TaxonDatabaseUpdater)
+ *     clades.*        the number of clades kept, added and removed by it
+ *     packed.garbage  the bytes of the packed data file no longer used
+ *                     (packed layout only)
+ *
+ *     A database without a manifest (e.g. one of script/treeparser.pl)
+ *     is taken to be version 0.
+ */
+public class DatabaseManifest {
+
+    /**
+     *     the name of the manifest file
+     */
+    public static final String MANIFEST_FILE = "manifest";
+
+    /**
+     *     Static method: load
+     *
+     *     Read the manifest of the database in a data directory
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @return              the manifest; an empty one (version 0) if
+     *                      the database has none
+     * @throws IOException
+     */
+    public static DatabaseManifest load(FileSystem hadoopFS, String dataPath) throws IOException {
+        DatabaseManifest manifest = new DatabaseManifest();
+        Path manifestPath = new Path(dataPath + MANIFEST_FILE);
+        if (hadoopFS.isFile(manifestPath)) {
+            try (InputStream stream = hadoopFS.open(manifestPath)) {
+                manifest.properties.load(stream);
+            }
+        }
+        return manifest;
+    }
+
+    private final Properties properties = new Properties();    // the entries of the manifest
+
+    /**
+     *     Constructor
+     *     An empty manifest (version 0)
+     */
+    public DatabaseManifest() {
+        super();
+    }
+
+    /**
+     * @return      the version of the database; 0 if it has no manifest
+     */
+    public int getVersion() {
+        return (int)this.getLong("version");
+    }
+
+    /**
+     * @param version   the version of the database
+     */
+    public void setVersion(int version) {
+        this.set("version", version);
+    }
+
+    /**
+     * @return      the format (layout) of the database; null if unknown
+     */
+    public String getFormat() {
+        return this.get("format");
+    }
+
+    /**
+     * @param key   the name of an entry
+     * @return      the value of the entry; null if there is none
+     */
+    public String get(String key) {
+        return this.properties.getProperty(key);
+    }
+
+    /**
+     * @param key   the name of an entry
+     * @return      the (integer) value of the entry; 0 if there is none
+     */
+    public long getLong(String key) {
+        String value = this.properties.getProperty(key);
+        return (value == null ? 0 : Long.parseLong(value.trim()));
+    }
+
+    /**
+     * @param key       the name of an entry
+     * @param value     the value of the entry
+     */
+    public void set(String key, String value) {
+        this.properties.setProperty(key, value);
+    }
+
+    /**
+     * @param key       the name of an entry
+     * @param value     the value of the entry
+     */
+    public void set(String key, long value) {
+        this.properties.setProperty(key, Long.toString(value));
+    }
+
+    /**
+     *     Write the manifest to the data directory of the database,
+     *     under a temporary name that then replaces the manifest
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @throws IOException
+     */
+    public void write(FileSystem hadoopFS, String dataPath) throws IOException {
+        Path manifestFile = new Path(dataPath + MANIFEST_FILE);
+        try (OutputStream stream = TaxonDatabases.createTemp(hadoopFS, manifestFile)) {
+            this.properties.store(stream, "taxon database manifest");
+        }
+        TaxonDatabases.replace(hadoopFS, manifestFile);
+    }
+}
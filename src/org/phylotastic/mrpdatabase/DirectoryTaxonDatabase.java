@@ -0,0 +1,110 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ *     Class DirectoryTaxonDatabase
+ *
+ *     The original layout of the "taxon database": one file per taxon,
+ *     named after the MD5 key of the taxon name and stored in a number
+ *     (the hashDepth) of subdirectories named after the first characters
+ *     of that key. For "Parkia" with hashDepth 5:
+ *     ..... /0/0/1/8/8/001888798bb50357c4ab8bea57ddfe81
+ *
+ *     Every lookup opens one file on the (Hadoop) file system.
+ */
+public class DirectoryTaxonDatabase implements TaxonDatabase {
+
+    /**
+     *     Static method: taxonFile
+     *
+     *     Constructs the location of the file that holds the tip-to-root path
+     *     of a taxon, given the hexadecimal key of its name
+     *
+     * @param dataPath      path to the taxon "database", ending with a separator
+     * @param hashDepth     the number of subdirectories
+     * @param separator     the path separator => "/"
+     * @param hexKey        the hexadecimal key, like: "001888798bb50357c4ab8bea57ddfe81"
+     * @return              the path to the taxon file
+     */
+    public static String taxonFile(String dataPath, int hashDepth, String separator, String hexKey) {
+        StringBuilder taxonFilePath = new StringBuilder(dataPath);
+        for ( int i = 0; i < hashDepth; i++ )
+        {
+            taxonFilePath.append(hexKey.charAt(i)).append(separator);
+        }
+        taxonFilePath.append(hexKey);
+        return taxonFilePath.toString();
+    }
+
+    private final FileSystem hadoopFS;      // the file system holding the database
+    private final String dataPath;          // the path to the database, ending with a separator
+    private final int hashDepth;            // the number of subdirectories
+    private final String hfsSeparator;      // hadoop file separator => "/"
+
+    /**
+     *     Constructor
+     *
+     * @param _hadoopFS     the file system holding the database
+     * @param _dataPath     path to the taxon "database", ending with a separator
+     * @param _hashDepth    the number of subdirectories
+     * @param _separator    the path separator => "/"
+     */
+    public DirectoryTaxonDatabase(FileSystem _hadoopFS, String _dataPath,
+            int _hashDepth, String _separator) {
+        this.hadoopFS = _hadoopFS;
+        this.dataPath = _dataPath;
+        this.hashDepth = _hashDepth;
+        this.hfsSeparator = _separator;
+    }
+
+    /**
+     *     Return the path of the file for a taxon
+     *
+     * @param taxonName     the (tidy) name of the taxon
+     * @return              the path to the taxon file
+     * @throws NoSuchAlgorithmException
+     */
+    public String getTaxonFile(String taxonName) throws NoSuchAlgorithmException {
+        return taxonFile(this.dataPath, this.hashDepth, this.hfsSeparator,
+                TaxonKey.toHex(TaxonKey.digest(taxonName)));
+    }
+
+    /**
+     *     Reads the first line of a taxon file
+     *
+     * @param _filePath     the path of the file
+     * @return              the line read from the file
+     * @throws IOException
+     */
+    public String readFile(String _filePath) throws IOException {
+        FSDataInputStream inputStream = this.hadoopFS.open(new Path(_filePath));
+        try {
+            BufferedReader inputReader = new BufferedReader(new InputStreamReader(inputStream));
+            return inputReader.readLine();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Override
+    public String readTaxonPath(String taxonName) throws IOException {
+        try {
+            return this.readFile(this.getTaxonFile(taxonName));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // every lookup closes its own file
+    }
+}
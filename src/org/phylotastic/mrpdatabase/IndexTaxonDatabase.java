@@ -0,0 +1,265 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ *     Class IndexTaxonDatabase
+ *
+ *     The "index" layout of the "taxon database": instead of the path of
+ *     every taxon, with the nodes near the root stored once per tip, only
+ *     the tree itself is stored, once, as the parent and branch length of
+ *     each node (see TreeIndex), with the label of the tip of each taxon:
+ *
+ *     tree.idx    the tree index (see TreeIndex)
+ *     names.idx   a header:  int magic, int version, int count
+ *                 followed by count records, sorted on the key:
+ *                 byte[16] MD5 key, int label
+ *
+ *     A lookup is a binary search in the name index, after which the
+ *     path is put together by walking from the tip to the root in the
+ *     tree index; the paths are the same as the other layouts store,
+ *     except for the notation of the lengths (see TreeIndex.formatLength).
+ *     The parsed path (readTaxonNodes) is taken from the tree index as it
+ *     is, without formatting and parsing the numbers.
+ *     The storage is of the order of the number of nodes, instead of the
+ *     number of tips times the depth of the tree.
+ *
+ *     On the local file system (through java.nio) both files are memory
+ *     mapped, so only the pages walked are read; through a Hadoop file
+ *     system they are read into memory once. The lookups only read the
+ *     buffers, so the database can be used by several threads at the same
+ *     time.
+ */
+public class IndexTaxonDatabase implements TaxonNodeDatabase {
+
+    /**
+     *     the name of the name index file
+     */
+    public static final String NAMES_FILE = "names.idx";
+
+    /**
+     *     the magic number at the start of the name index file => "MRPN"
+     */
+    public static final int MAGIC = 0x4D52504E;
+
+    /**
+     *     the version of the name index file layout
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER = 12;                       // magic, version, count
+    private static final int RECORD = TaxonKey.LENGTH + 4;      // key, label
+
+    /**
+     *     Static method: exists
+     *
+     *     Check if a data directory holds an index database
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @return              true if both the tree and the name index exist
+     * @throws IOException
+     */
+    public static boolean exists(FileSystem hadoopFS, String dataPath) throws IOException {
+        return hadoopFS.isFile(new Path(dataPath + TreeIndex.INDEX_FILE)) &&
+                hadoopFS.isFile(new Path(dataPath + NAMES_FILE));
+    }
+
+    private final ByteBuffer names;     // the name index
+    private final ByteBuffer tree;      // the tree index
+    private final int count;            // the number of taxa
+    private final int size;             // the number of labels in the tree index
+    private final int lengthsStart;     // the offset of the lengths in the tree index
+
+    /**
+     *     Constructor
+     *     Reads the tree and name index from a Hadoop file system
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @throws IOException
+     */
+    public IndexTaxonDatabase(FileSystem hadoopFS, String dataPath) throws IOException {
+        this(readFully(hadoopFS, new Path(dataPath + NAMES_FILE)), dataPath + NAMES_FILE,
+                readFully(hadoopFS, new Path(dataPath + TreeIndex.INDEX_FILE)),
+                dataPath + TreeIndex.INDEX_FILE);
+    }
+
+    /**
+     *     Constructor
+     *     Maps the tree and name index on the local file system
+     *
+     * @param dataDir       the local data directory
+     * @throws IOException
+     */
+    public IndexTaxonDatabase(java.nio.file.Path dataDir) throws IOException {
+        this(map(dataDir.resolve(NAMES_FILE)), dataDir.resolve(NAMES_FILE).toString(),
+                map(dataDir.resolve(TreeIndex.INDEX_FILE)), dataDir.resolve(TreeIndex.INDEX_FILE).toString());
+    }
+
+    private IndexTaxonDatabase(ByteBuffer _names, String namesName,
+            ByteBuffer _tree, String treeName) throws IOException {
+        if (_names.getInt(0) != MAGIC)
+            throw new IOException("Not a name index: " + namesName);
+        if (_names.getInt(4) != VERSION)
+            throw new IOException("Unsupported name index version " + _names.getInt(4) +
+                    ": " + namesName);
+        if (_tree.getInt(0) != TreeIndex.MAGIC || _tree.getInt(4) != TreeIndex.VERSION)
+            throw new IOException("Not a tree index (version " + TreeIndex.VERSION + "): " + treeName);
+        this.names = _names;
+        this.tree = _tree;
+        this.count = _names.getInt(8);
+        this.size = _tree.getInt(8);
+        this.lengthsStart = HEADER + 4 * this.size;
+    }
+
+    private static ByteBuffer readFully(FileSystem hadoopFS, Path file) throws IOException {
+        long length = hadoopFS.getFileStatus(file).getLen();
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Index too large to read: " + file);
+        byte[] bytes = new byte[(int)length];
+        try (FSDataInputStream stream = hadoopFS.open(file)) {
+            stream.readFully(0, bytes);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static ByteBuffer map(java.nio.file.Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     *     Return the number of taxa in the database
+     *
+     * @return      the number of taxa
+     */
+    public int getSize() {
+        return this.count;
+    }
+
+    /**
+     *     Return the label of the tip of a key
+     *
+     * @param key   the key to search for
+     * @return      the label of the tip, or -1 if the key is not in the index
+     */
+    public int find(byte[] key) {
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = this.compare(key, middle);
+            if (comparison > 0)
+                low = middle + 1;
+            else if (comparison < 0)
+                high = middle - 1;
+            else
+                return this.names.getInt(HEADER + middle * RECORD + TaxonKey.LENGTH);
+        }
+        return -1;
+    }
+
+    /**
+     * @param position  the position of an entry in the name index
+     * @return          the key of the entry
+     */
+    public byte[] getKey(int position) {
+        byte[] key = new byte[TaxonKey.LENGTH];
+        for (int i = 0; i < TaxonKey.LENGTH; i++)
+            key[i] = this.names.get(HEADER + position * RECORD + i);
+        return key;
+    }
+
+    /**
+     * @param position  the position of an entry in the name index
+     * @return          the label of the tip of the entry
+     */
+    public int getTipLabel(int position) {
+        return this.names.getInt(HEADER + position * RECORD + TaxonKey.LENGTH);
+    }
+
+    private int compare(byte[] key, int index) {
+        int offset = HEADER + index * RECORD;
+        for (int i = 0; i < TaxonKey.LENGTH; i++) {
+            int a = key[i] & 0xff;
+            int b = this.names.get(offset + i) & 0xff;
+            if (a != b)
+                return a - b;
+        }
+        return 0;
+    }
+
+    /**
+     * @param label     the label of a node
+     * @return          the label of it's parent; 0 for the root
+     */
+    public int getParent(int label) {
+        return this.tree.getInt(HEADER + 4 * label);
+    }
+
+    /**
+     * @param label     the label of a node
+     * @return          the length of the branch to it's parent
+     */
+    public double getLength(int label) {
+        return this.tree.getDouble(this.lengthsStart + 8 * label);
+    }
+
+    private int locate(String taxonName) throws IOException {
+        int label;
+        try {
+            label = this.find(TaxonKey.digest(taxonName));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        if (label < 0)
+            throw new FileNotFoundException("Taxon not found in index database: " + taxonName);
+        return label;
+    }
+
+    @Override
+    public String readTaxonPath(String taxonName) throws IOException {
+        int label = this.locate(taxonName);
+        StringBuilder path = new StringBuilder();
+        for (int node = label; node != 0; node = this.getParent(node)) {
+            if (node != label)
+                path.append('|');
+            path.append(node).append(':').append(TreeIndex.formatLength(this.getLength(node)));
+        }
+        return path.toString();
+    }
+
+    @Override
+    public TaxonPath readTaxonNodes(String taxonName) throws IOException {
+        int label = this.locate(taxonName);
+        int size = 0;
+        for (int node = label; node != 0; node = this.getParent(node))
+            size++;
+        int[] labels = new int[size];
+        double[] lengths = new double[size];
+        int node = label;
+        for (int i = 0; i < size; i++) {
+            labels[i] = node;
+            lengths[i] = this.getLength(node);
+            node = this.getParent(node);
+        }
+        return new TaxonPath(labels, lengths);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the buffers are released with the object
+    }
+}
@@ -0,0 +1,91 @@
+package org.phylotastic.mrpdatabase;
+
+/**
+ *     Class LcaIndex
+ *
+ *     Finds the lowest common ancestor (LCA) of two nodes of the tree
+ *     of a TreeIndex, in O(log depth), by "binary lifting": for every
+ *     node it keeps the ancestors 1, 2, 4, 8, ... levels up.
+ *
+ *     The labels must be pre-order labels: the parent of a node
+ *     has a lower label than the node itself.
+ */
+public class LcaIndex {
+
+    private final int[] depths;         // the number of levels below the root of each label
+    private final int[][] ancestors;    // ancestors[k][label] is the ancestor 2^k levels up; 0 above the root
+
+    /**
+     *     Constructor
+     *
+     * @param index     the tree to index
+     */
+    public LcaIndex(TreeIndex index) {
+        int size = index.getSize();
+        this.depths = new int[size];
+        int maxDepth = 0;
+        int[] parents = new int[size];
+        for (int label = 1; label < size; label++) {
+            int parent = index.getParent(label);
+            if (parent >= label)
+                throw new IllegalArgumentException("Not a pre-order label: " + label
+                        + " has parent " + parent);
+            parents[label] = parent;
+            this.depths[label] = parent == 0 ? 0 : this.depths[parent] + 1;
+            maxDepth = Math.max(maxDepth, this.depths[label]);
+        }
+        int levels = 1;
+        while ((1 << levels) <= maxDepth)
+            levels++;
+        this.ancestors = new int[levels][];
+        this.ancestors[0] = parents;
+        for (int k = 1; k < levels; k++) {
+            int[] half = this.ancestors[k - 1];
+            int[] full = new int[size];
+            for (int label = 1; label < size; label++)
+                full[label] = half[half[label]];
+            this.ancestors[k] = full;
+        }
+    }
+
+    /**
+     * @param label     the label of a node
+     * @return          the number of levels of the node below the root
+     */
+    public int getDepth(int label) {
+        return this.depths[label];
+    }
+
+    /**
+     *     Return the lowest common ancestor of two nodes; which is one
+     *     of the nodes itself if it is an ancestor of the other
+     *
+     * @param a     the label of a node
+     * @param b     the label of another node
+     * @return      the label of their lowest common ancestor;
+     *              0 if they are not in the same tree
+     */
+    public int lca(int a, int b) {
+        if (this.depths[a] < this.depths[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        // lift the deeper node to the depth of the other one
+        int lift = this.depths[a] - this.depths[b];
+        for (int k = 0; lift != 0; k++, lift >>>= 1) {
+            if ((lift & 1) != 0)
+                a = this.ancestors[k][a];
+        }
+        if (a == b)
+            return a;
+        // lift both to just below their common ancestor
+        for (int k = this.ancestors.length - 1; k >= 0; k--) {
+            if (this.ancestors[k][a] != this.ancestors[k][b]) {
+                a = this.ancestors[k][a];
+                b = this.ancestors[k][b];
+            }
+        }
+        return this.ancestors[0][a];
+    }
+}
@@ -0,0 +1,69 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ *     Class LocalDirectoryTaxonDatabase
+ *
+ *     The directory layout of the "taxon database" (see DirectoryTaxonDatabase)
+ *     on the local file system, read through java.nio instead of through
+ *     a Hadoop file system; for use outside of Hadoop.
+ */
+public class LocalDirectoryTaxonDatabase implements TaxonDatabase {
+
+    private final String dataPath;          // the path to the database, ending with a separator
+    private final int hashDepth;            // the number of subdirectories
+
+    /**
+     *     Constructor
+     *
+     * @param _dataPath     path to the taxon "database", ending with a separator
+     * @param _hashDepth    the number of subdirectories
+     */
+    public LocalDirectoryTaxonDatabase(String _dataPath, int _hashDepth) {
+        this.dataPath = _dataPath;
+        this.hashDepth = _hashDepth;
+    }
+
+    /**
+     *     Return the path of the file for a taxon
+     *
+     * @param taxonName     the (tidy) name of the taxon
+     * @return              the path to the taxon file
+     * @throws NoSuchAlgorithmException
+     */
+    public Path getTaxonFile(String taxonName) throws NoSuchAlgorithmException {
+        return Paths.get(DirectoryTaxonDatabase.taxonFile(this.dataPath, this.hashDepth,
+                File.separator, TaxonKey.toHex(TaxonKey.digest(taxonName))));
+    }
+
+    @Override
+    public String readTaxonPath(String taxonName) throws IOException {
+        Path taxonFile;
+        try {
+            taxonFile = this.getTaxonFile(taxonName);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        // the same (default) character set as DirectoryTaxonDatabase
+        try (BufferedReader reader = Files.newBufferedReader(taxonFile, Charset.defaultCharset())) {
+            return reader.readLine();
+        } catch (NoSuchFileException ex) {
+            throw new FileNotFoundException("Taxon not found: " + taxonName + " (" + taxonFile + ")");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // every lookup closes its own file
+    }
+}
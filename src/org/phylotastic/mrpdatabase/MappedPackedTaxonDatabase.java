@@ -0,0 +1,194 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ *     Class MappedPackedTaxonDatabase
+ *
+ *     The packed layout of the "taxon database" (see PackedTaxonDatabase)
+ *     on the local file system, read through memory mapped files: both
+ *     the index and the data file are mapped, so a lookup is a binary
+ *     search in the mapped index and a walk over the mapped bytes of the
+ *     path, with only the pages touched read from disk, and no copy of
+ *     the index on the heap.
+ *
+ *     The path can be parsed straight from the mapped bytes (see
+ *     readTaxonNodes and TaxonPath.parse), without making a String of it.
+ *
+ *     A buffer can map at most 2GB, so a larger data file is mapped in
+ *     segments of 1GB; each segment also maps the longest path beyond
+ *     its end, so every path lies within the segment it starts in.
+ *
+ *     The index and data file are mapped again when they are not of the
+ *     same generation, as when the data file was just written as a whole
+ *     (see PackedTaxonDatabase).
+ *
+ *     The lookups only read the buffers, so the database can be used by
+ *     several threads at the same time.
+ */
+public class MappedPackedTaxonDatabase implements TaxonNodeDatabase {
+
+    private static final int HEADER = 20;                           // magic, version, count, generation
+    private static final int RECORD = TaxonKey.LENGTH + 8 + 4;      // key, offset, length
+    private static final int SEGMENT_BITS = 30;                     // segments of 1GB
+
+    private final ByteBuffer index;         // the mapped index file
+    private final ByteBuffer[] segments;    // the mapped data file
+    private final int count;                // the number of taxa
+
+    /**
+     *     Constructor
+     *     Maps the index and data file on the local file system
+     *
+     * @param dataDir       the local data directory
+     * @throws IOException
+     */
+    public MappedPackedTaxonDatabase(Path dataDir) throws IOException {
+        ByteBuffer mappedIndex;
+        ByteBuffer[] mappedData;
+        for (int tries = 1; ; tries++) {
+            mappedIndex = mapIndex(dataDir.resolve(PackedTaxonDatabase.INDEX_FILE));
+            byte[] header = PackedTaxonDatabase.dataHeader(mappedIndex.getLong(12));
+            mappedData = mapData(dataDir.resolve(PackedTaxonDatabase.DATA_FILE), mappedIndex);
+            if (mappedData[0].limit() >= header.length) {
+                byte[] dataHeader = new byte[header.length];
+                mappedData[0].duplicate().get(dataHeader);
+                if (Arrays.equals(header, dataHeader))
+                    break;
+            }
+            PackedTaxonDatabase.retryOpen(tries, dataDir.toString());
+        }
+        this.index = mappedIndex;
+        this.segments = mappedData;
+        this.count = mappedIndex.getInt(8);
+    }
+
+    private static ByteBuffer mapIndex(Path indexFile) throws IOException {
+        ByteBuffer index;
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Packed taxon index too large to map: " + indexFile);
+            // the mapping stays valid after the channel is closed
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (index.getInt(0) != PackedTaxonDatabase.MAGIC)
+            throw new IOException("Not a packed taxon index: " + indexFile);
+        if (index.getInt(4) != PackedTaxonDatabase.VERSION)
+            throw new IOException("Unsupported packed taxon index version " + index.getInt(4) +
+                    ": " + indexFile);
+        return index;
+    }
+
+    private static ByteBuffer[] mapData(Path dataFile, ByteBuffer index) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int maxLength = 0;
+            if (size > (1L << SEGMENT_BITS)) {
+                int count = index.getInt(8);
+                for (int i = 0; i < count; i++)
+                    maxLength = Math.max(maxLength, index.getInt(HEADER + i * RECORD + TaxonKey.LENGTH + 8));
+            }
+            ByteBuffer[] segments = new ByteBuffer[(int)((size >>> SEGMENT_BITS) + 1)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long)i << SEGMENT_BITS;
+                long length = Math.min(size - start, (1L << SEGMENT_BITS) + maxLength);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            return segments;
+        }
+    }
+
+    /**
+     *     Return the number of taxa in the database
+     *
+     * @return      the number of taxa
+     */
+    public int getSize() {
+        return this.count;
+    }
+
+    /**
+     *     Return the position of a key in the index
+     *
+     * @param key   the key to search for
+     * @return      the position of the key, or -1 if it is not in the index
+     */
+    public int find(byte[] key) {
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = this.compare(key, middle);
+            if (comparison > 0)
+                low = middle + 1;
+            else if (comparison < 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    private int compare(byte[] key, int position) {
+        int offset = HEADER + position * RECORD;
+        for (int i = 0; i < TaxonKey.LENGTH; i++) {
+            int a = key[i] & 0xff;
+            int b = this.index.get(offset + i) & 0xff;
+            if (a != b)
+                return a - b;
+        }
+        return 0;
+    }
+
+    private long getOffset(int position) {
+        return this.index.getLong(HEADER + position * RECORD + TaxonKey.LENGTH);
+    }
+
+    private int getLength(int position) {
+        return this.index.getInt(HEADER + position * RECORD + TaxonKey.LENGTH + 8);
+    }
+
+    private int locate(String taxonName) throws IOException {
+        int position;
+        try {
+            position = this.find(TaxonKey.digest(taxonName));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        if (position < 0)
+            throw new FileNotFoundException("Taxon not found in packed database: " + taxonName);
+        return position;
+    }
+
+    @Override
+    public String readTaxonPath(String taxonName) throws IOException {
+        int position = this.locate(taxonName);
+        long offset = this.getOffset(position);
+        ByteBuffer segment = this.segments[(int)(offset >>> SEGMENT_BITS)].duplicate();
+        segment.position((int)(offset & ((1L << SEGMENT_BITS) - 1)));
+        byte[] buffer = new byte[this.getLength(position)];
+        segment.get(buffer);
+        return new String(buffer, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public TaxonPath readTaxonNodes(String taxonName) throws IOException {
+        int position = this.locate(taxonName);
+        long offset = this.getOffset(position);
+        return TaxonPath.parse(this.segments[(int)(offset >>> SEGMENT_BITS)],
+                (int)(offset & ((1L << SEGMENT_BITS) - 1)), this.getLength(position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mappings are released with the buffers
+    }
+}
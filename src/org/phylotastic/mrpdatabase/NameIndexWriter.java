@@ -0,0 +1,94 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ *     Class NameIndexWriter
+ *
+ *     Writes the name index of an "index" taxon database (see
+ *     IndexTaxonDatabase): the label of the tip of each taxon, under
+ *     the MD5 key of the taxon name. The tips can be added in any
+ *     order; they are kept in memory and are sorted and written on
+ *     write. The Bloom filter of the same tips is written next to it
+ *     (see TaxonFilter).
+ */
+public class NameIndexWriter {
+
+    /**
+     *     an entry of the index: key and label of a tip
+     */
+    private static class Entry {
+        final byte[] key;
+        final int label;
+
+        Entry(byte[] _key, int _label) {
+            this.key = _key;
+            this.label = _label;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();     // the index entries
+
+    /**
+     *     Add the tip of a taxon
+     *
+     * @param key       the MD5 key of the taxon name
+     * @param label     the (pre-order) label of the tip
+     */
+    public void add(byte[] key, int label) {
+        this.entries.add(new Entry(key, label));
+    }
+
+    /**
+     *     Return the number of tips added so far
+     *
+     * @return      the number of tips
+     */
+    public int getSize() {
+        return this.entries.size();
+    }
+
+    /**
+     *     Write the sorted index
+     *
+     * @param stream    the stream to write the index to; it is closed
+     * @throws IOException
+     */
+    public void write(OutputStream stream) throws IOException {
+        Collections.sort(this.entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return TaxonKey.compare(a.key, b.key);
+            }
+        });
+        try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(stream))) {
+            index.writeInt(IndexTaxonDatabase.MAGIC);
+            index.writeInt(IndexTaxonDatabase.VERSION);
+            index.writeInt(this.entries.size());
+            for (Entry entry : this.entries) {
+                index.write(entry.key);
+                index.writeInt(entry.label);
+            }
+        }
+    }
+
+    /**
+     *     Write the Bloom filter of the tips added (see TaxonFilter)
+     *
+     * @param stream    the stream to write the filter to; it is closed
+     * @throws IOException
+     */
+    public void writeFilter(OutputStream stream) throws IOException {
+        TaxonFilter filter = new TaxonFilter(this.entries.size());
+        for (Entry entry : this.entries)
+            filter.add(entry.key);
+        filter.write(stream);
+    }
+}
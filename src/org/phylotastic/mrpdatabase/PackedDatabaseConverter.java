@@ -0,0 +1,86 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.log4j.Logger;
+
+/**
+ *     Class PackedDatabaseConverter
+ *
+ *     Converts a "taxon database" in the directory layout:
+ *     data/<dataDir>/x/x/x/x/x/<md5>
+ *     into the packed layout (see PackedTaxonDatabase).
+ *     The packed files are written into the same data directory,
+ *     next to the subdirectories of the directory layout, so the
+ *     same dataDir option can be used for both formats.
+ *     The converter also writes the tree index (see TreeIndex),
+ *     that is put together from the same paths, and the name index
+ *     of the tips, so the directory can be used in the index format
+ *     as well (see IndexTaxonDatabase), and the filter of the tips
+ *     (see TaxonFilter).
+ */
+public class PackedDatabaseConverter {
+    private static final Logger logger = Logger.getLogger(PackedDatabaseConverter.class.getName());
+
+    private final FileSystem hadoopFS;      // the file system holding the database
+
+    /**
+     *     Constructor
+     *
+     * @param _hadoopFS     the file system holding the database
+     */
+    public PackedDatabaseConverter(FileSystem _hadoopFS) {
+        this.hadoopFS = _hadoopFS;
+    }
+
+    /**
+     *     Convert the directory layout database in a data directory.
+     *     Every file named after an MD5 key, at any depth, is taken
+     *     to be a taxon file.
+     *
+     * @param dataPath      path to the data directory, ending with a separator
+     * @return              the number of taxa converted
+     * @throws IOException
+     */
+    public int convert(String dataPath) throws IOException {
+        logger.info("PackedDatabaseConverter: converting " + dataPath);
+        DirectoryTaxonDatabase source = new DirectoryTaxonDatabase(this.hadoopFS, dataPath, 0, Path.SEPARATOR);
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(this.hadoopFS, dataPath);
+        TreeIndex.Builder treeIndex = new TreeIndex.Builder();
+        NameIndexWriter nameIndex = new NameIndexWriter();
+        RemoteIterator<LocatedFileStatus> files = this.hadoopFS.listFiles(new Path(dataPath), true);
+        while (files.hasNext()) {
+            Path file = files.next().getPath();
+            byte[] key = TaxonKey.fromHex(file.getName());
+            if (key == null)
+                // not a taxon file; e.g. the packed files themselves
+                continue;
+            String taxonPath = source.readFile(file.toString());
+            writer.add(key, taxonPath);
+            treeIndex.addPath(taxonPath);
+            // the path starts with the label of the tip
+            nameIndex.add(key, Integer.parseInt(taxonPath.substring(0, taxonPath.indexOf(':'))));
+            // report progress every 1000 taxa
+            if (writer.getSize() % 1000 == 0)
+                logger.info("PackedDatabaseConverter: converted " + writer.getSize() + " taxa");
+        }
+        // as TaxonDatabaseBuilder.writeIndexes: the name index after the
+        // tree and the filter, and those before the packed index
+        Path treeFile = new Path(dataPath + TreeIndex.INDEX_FILE);
+        Path namesFile = new Path(dataPath + IndexTaxonDatabase.NAMES_FILE);
+        Path filterFile = new Path(dataPath + TaxonFilter.FILTER_FILE);
+        treeIndex.build().write(TaxonDatabases.createTemp(this.hadoopFS, treeFile));
+        nameIndex.write(TaxonDatabases.createTemp(this.hadoopFS, namesFile));
+        nameIndex.writeFilter(TaxonDatabases.createTemp(this.hadoopFS, filterFile));
+        TaxonDatabases.replace(this.hadoopFS, treeFile);
+        TaxonDatabases.replace(this.hadoopFS, filterFile);
+        TaxonDatabases.replace(this.hadoopFS, namesFile);
+        writer.close();
+        logger.info("PackedDatabaseConverter: done converting " + writer.getSize() + " taxa");
+        return writer.getSize();
+    }
+}
@@ -0,0 +1,205 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ *     Class PackedDatabaseWriter
+ *
+ *     Writes a packed "taxon database" (see PackedTaxonDatabase).
+ *     Paths can be added in any order; they are appended to the
+ *     data file straight away, the index entries are kept in memory
+ *     and are sorted and written to the index file on close.
+ *
+ *     A writer can also append to the data file of a database, to
+ *     update it (see TaxonDatabaseUpdater): the paths that are still
+ *     the same are kept where they are (keep), the new ones are
+ *     appended (add), and the index of both is written on close.
+ *     The offsets of the old index stay valid while the data file is
+ *     appended to, so the database can be read meanwhile.
+ *
+ *     Otherwise the data file, and in both cases the index file, are
+ *     written under a temporary name and renamed on close (see
+ *     TaxonDatabases.replace), the index last. A data file written as a
+ *     whole gets a new generation, so a reader that gets it with the old
+ *     index opens both again (see PackedTaxonDatabase); appending keeps
+ *     the generation of the data file.
+ *
+ *     A key that is added more than once (a name that is in the input
+ *     twice) gets one index entry, that of the path added last, as in
+ *     the directory layout, where the last one overwrites the file.
+ */
+public class PackedDatabaseWriter {
+
+    /**
+     *     an entry of the index: key, offset and length of a path
+     */
+    private static class Entry {
+        final byte[] key;
+        final long offset;
+        final int length;
+
+        Entry(byte[] _key, long _offset, int _length) {
+            this.key = _key;
+            this.offset = _offset;
+            this.length = _length;
+        }
+    }
+
+    private final FileSystem hadoopFS;              // the file system to write to
+    private final String dataPath;                  // the data directory, ending with a separator
+    private final boolean append;                   // true if appending to the data file
+    private final FSDataOutputStream dataStream;    // the data file being written
+    private final long generation;                  // the generation of the data file
+    private List<Entry> entries;                    // the index entries
+    private long offset;                            // the current offset in the data file
+
+    /**
+     *     Constructor
+     *     Creates the (temporary) data file
+     *
+     * @param _hadoopFS     the file system to write to
+     * @param _dataPath     path to the data directory, ending with a separator
+     * @throws IOException
+     */
+    public PackedDatabaseWriter(FileSystem _hadoopFS, String _dataPath) throws IOException {
+        this(_hadoopFS, _dataPath, false);
+    }
+
+    /**
+     *     Constructor
+     *     Creates the (temporary) data file or appends to the data file
+     *
+     * @param _hadoopFS     the file system to write to
+     * @param _dataPath     path to the data directory, ending with a separator
+     * @param append        true to append to the data file
+     * @throws IOException
+     */
+    public PackedDatabaseWriter(FileSystem _hadoopFS, String _dataPath, boolean append) throws IOException {
+        this.hadoopFS = _hadoopFS;
+        this.dataPath = _dataPath;
+        this.append = append;
+        Path dataFile = new Path(_dataPath + PackedTaxonDatabase.DATA_FILE);
+        this.entries = new ArrayList<>();
+        if (append) {
+            byte[] header = new byte[PackedTaxonDatabase.DATA_HEADER_LENGTH];
+            try (FSDataInputStream data = _hadoopFS.open(dataFile)) {
+                data.readFully(0, header);
+            }
+            this.generation = PackedTaxonDatabase.parseDataHeader(header);
+        } else {
+            this.generation = new Random().nextLong() & Long.MAX_VALUE;
+        }
+        if (!append) {
+            this.dataStream = TaxonDatabases.createTemp(_hadoopFS, dataFile);
+            this.dataStream.write(PackedTaxonDatabase.dataHeader(this.generation));
+            this.offset = PackedTaxonDatabase.DATA_HEADER_LENGTH;
+        } else if (_hadoopFS instanceof LocalFileSystem) {
+            // the local checksum file system can not append; the raw one
+            // can, after which the checksum file no longer fits: drop it
+            LocalFileSystem localFS = (LocalFileSystem)_hadoopFS;
+            localFS.delete(localFS.getChecksumFile(dataFile), false);
+            this.offset = localFS.getFileStatus(dataFile).getLen();
+            this.dataStream = localFS.getRaw().append(dataFile);
+        } else {
+            this.offset = _hadoopFS.getFileStatus(dataFile).getLen();
+            this.dataStream = _hadoopFS.append(dataFile);
+        }
+    }
+
+    /**
+     *     Add the path of a taxon
+     *
+     * @param key       the MD5 key of the taxon name
+     * @param path      the tip-to-root path, like: 628:18|625:1| ..... |2:1|1:1
+     * @throws IOException
+     */
+    public void add(byte[] key, String path) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        this.dataStream.write(bytes);
+        this.dataStream.write('\n');
+        this.entries.add(new Entry(key, this.offset, bytes.length));
+        this.offset += bytes.length + 1;
+    }
+
+    /**
+     *     Keep the path of a taxon that is in the data file already
+     *
+     * @param key       the MD5 key of the taxon name
+     * @param offset    the offset of the path in the data file
+     * @param length    the length (in bytes) of the path
+     */
+    public void keep(byte[] key, long offset, int length) {
+        this.entries.add(new Entry(key, offset, length));
+    }
+
+    /**
+     *     Return the length of the data file written so far
+     *
+     * @return      the length in bytes
+     */
+    public long getDataLength() {
+        return this.offset;
+    }
+
+    /**
+     *     Return the number of paths added (or kept) so far
+     *
+     * @return      the number of paths
+     */
+    public int getSize() {
+        return this.entries.size();
+    }
+
+    /**
+     *     Close the data file and write the sorted index, with one
+     *     entry per key
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        this.dataStream.close();
+        // a stable sort, so the last entry of a key is the one added last
+        Collections.sort(this.entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return TaxonKey.compare(a.key, b.key);
+            }
+        });
+        List<Entry> unique = new ArrayList<>(this.entries.size());
+        for (Entry entry : this.entries) {
+            if (!unique.isEmpty() && TaxonKey.compare(unique.get(unique.size() - 1).key, entry.key) == 0)
+                unique.set(unique.size() - 1, entry);
+            else
+                unique.add(entry);
+        }
+        this.entries = unique;
+        Path indexPath = new Path(this.dataPath + PackedTaxonDatabase.INDEX_FILE);
+        try (DataOutputStream index = TaxonDatabases.createTemp(this.hadoopFS, indexPath)) {
+            index.writeInt(PackedTaxonDatabase.MAGIC);
+            index.writeInt(PackedTaxonDatabase.VERSION);
+            index.writeInt(this.entries.size());
+            index.writeLong(this.generation);
+            for (Entry entry : this.entries) {
+                index.write(entry.key);
+                index.writeLong(entry.offset);
+                index.writeInt(entry.length);
+            }
+        }
+        if (!this.append)
+            TaxonDatabases.replace(this.hadoopFS, new Path(this.dataPath + PackedTaxonDatabase.DATA_FILE));
+        TaxonDatabases.replace(this.hadoopFS, indexPath);
+    }
+}
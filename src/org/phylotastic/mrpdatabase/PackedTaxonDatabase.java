@@ -0,0 +1,270 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ *     Class PackedTaxonDatabase
+ *
+ *     The packed layout of the "taxon database": all tip-to-root paths
+ *     are stored in one data file and looked up through one index file,
+ *     both in the data directory of the tree:
+ *
+ *     paths.dat   a header line: '#' and the generation in 16 hex digits,
+ *                 then the paths, each one followed by a newline:
+ *                 628:18|625:1|624:1| ..... |2:1|1:1\n
+ *     paths.idx   a header:  int magic, int version, int count,
+ *                 long generation
+ *                 followed by count records, sorted on the key:
+ *                 byte[16] MD5 key, long offset, int length
+ *
+ *     The generation ties an index to the data file it was written for:
+ *     a data file written as a whole gets a new one, appending to it
+ *     keeps it. The data file is renamed into place before the index,
+ *     so a reader that opens them in between gets the old index and the
+ *     new data file; it sees that by the generation and opens both
+ *     again, instead of reading paths at the wrong offsets.
+ *
+ *     The index is read into memory once; every lookup then is a binary
+ *     search in memory and a single positioned read in the data file,
+ *     instead of a file open per taxon.
+ *
+ *     Positioned reads do not change the state of the data stream, so
+ *     the database can be used by several threads at the same time.
+ *
+ *     This class reads the database through a Hadoop file system; on the
+ *     local file system it is memory mapped (see MappedPackedTaxonDatabase).
+ */
+public class PackedTaxonDatabase implements TaxonDatabase {
+
+    /**
+     *     the name of the data file
+     */
+    public static final String DATA_FILE = "paths.dat";
+
+    /**
+     *     the name of the index file
+     */
+    public static final String INDEX_FILE = "paths.idx";
+
+    /**
+     *     the magic number at the start of the index file => "MRPI"
+     */
+    public static final int MAGIC = 0x4D525049;
+
+    /**
+     *     the version of the index file layout
+     */
+    public static final int VERSION = 2;
+
+    /**
+     *     the length of the header line of the data file
+     */
+    public static final int DATA_HEADER_LENGTH = 18;
+
+    private static final int OPEN_TRIES = 5;            // the times to open an index and data file
+    private static final long OPEN_RETRY_DELAY = 100;   // milliseconds between the tries
+
+    /**
+     *     Return the header line of the data file of a generation
+     *
+     * @param generation    the generation, not negative
+     * @return              the header line: '#' and 16 hex digits
+     */
+    static byte[] dataHeader(long generation) {
+        return String.format("#%016x\n", generation).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     *     Return the generation of the header line of a data file
+     *
+     * @param header        the header line
+     * @return              the generation
+     * @throws IOException  if it is not a header line
+     */
+    static long parseDataHeader(byte[] header) throws IOException {
+        String line = new String(header, StandardCharsets.US_ASCII);
+        if (header.length != DATA_HEADER_LENGTH || line.charAt(0) != '#' || line.charAt(17) != '\n')
+            throw new IOException("Not a packed taxon data file header: " + line);
+        try {
+            return Long.parseLong(line.substring(1, 17), 16);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Not a packed taxon data file header: " + line, ex);
+        }
+    }
+
+    /**
+     *     Wait to open an index and data file again, after they did not
+     *     have the same generation; fails after the last try
+     *
+     * @param tries         the number of tries so far
+     * @param dataPath      path to the data directory
+     * @throws IOException
+     */
+    static void retryOpen(int tries, String dataPath) throws IOException {
+        if (tries >= OPEN_TRIES)
+            throw new IOException("Packed taxon index and data file do not match: " + dataPath);
+        try {
+            Thread.sleep(OPEN_RETRY_DELAY);
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("Opening packed taxon database interrupted: " + dataPath);
+        }
+    }
+
+    /**
+     *     Static method: exists
+     *
+     *     Check if a data directory holds a packed database
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @return              true if both the data and the index file exist
+     * @throws IOException
+     */
+    public static boolean exists(FileSystem hadoopFS, String dataPath) throws IOException {
+        return hadoopFS.isFile(new Path(dataPath + DATA_FILE)) &&
+                hadoopFS.isFile(new Path(dataPath + INDEX_FILE));
+    }
+
+    private final byte[] keys;                      // the sorted keys, 16 bytes each
+    private final long[] offsets;                   // offset of each path in the data file
+    private final int[] lengths;                    // length (in bytes) of each path
+    private final FSDataInputStream dataStream;     // the open data file
+
+    /**
+     *     Constructor
+     *     Reads the index and opens the data file on a Hadoop file system
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @throws IOException
+     */
+    public PackedTaxonDatabase(FileSystem hadoopFS, String dataPath) throws IOException {
+        String indexName = dataPath + INDEX_FILE;
+        byte[] keys;
+        long[] offsets;
+        int[] lengths;
+        FSDataInputStream data;
+        for (int tries = 1; ; tries++) {
+            long generation;
+            try (DataInputStream index = hadoopFS.open(new Path(indexName))) {
+                if (index.readInt() != MAGIC)
+                    throw new IOException("Not a packed taxon index: " + indexName);
+                int version = index.readInt();
+                if (version != VERSION)
+                    throw new IOException("Unsupported packed taxon index version " + version +
+                            ": " + indexName);
+                int count = index.readInt();
+                generation = index.readLong();
+                keys = new byte[count * TaxonKey.LENGTH];
+                offsets = new long[count];
+                lengths = new int[count];
+                for (int i = 0; i < count; i++) {
+                    index.readFully(keys, i * TaxonKey.LENGTH, TaxonKey.LENGTH);
+                    offsets[i] = index.readLong();
+                    lengths[i] = index.readInt();
+                }
+            }
+            data = hadoopFS.open(new Path(dataPath + DATA_FILE));
+            byte[] header = new byte[DATA_HEADER_LENGTH];
+            try {
+                data.readFully(0, header);
+                if (Arrays.equals(header, dataHeader(generation)))
+                    break;
+            } catch (EOFException ex) {
+                // shorter than a header: not the data file of the index either
+            }
+            data.close();
+            retryOpen(tries, dataPath);
+        }
+        this.keys = keys;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.dataStream = data;
+    }
+
+    /**
+     *     Return the number of taxa in the database
+     *
+     * @return      the number of taxa
+     */
+    public int getSize() {
+        return this.offsets.length;
+    }
+
+    /**
+     *     Return the position of a key in the index
+     *
+     * @param key   the key to search for
+     * @return      the position of the key, or -1 if it is not in the index
+     */
+    public int find(byte[] key) {
+        int low = 0;
+        int high = this.offsets.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = TaxonKey.compare(key, this.keys, middle);
+            if (comparison > 0)
+                low = middle + 1;
+            else if (comparison < 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * @param position  the position of an entry in the index
+     * @return          the key of the entry
+     */
+    byte[] getKey(int position) {
+        return Arrays.copyOfRange(this.keys, position * TaxonKey.LENGTH, (position + 1) * TaxonKey.LENGTH);
+    }
+
+    /**
+     * @param position  the position of an entry in the index
+     * @return          the offset of the path of the entry in the data file
+     */
+    long getOffset(int position) {
+        return this.offsets[position];
+    }
+
+    /**
+     * @param position  the position of an entry in the index
+     * @return          the length (in bytes) of the path of the entry
+     */
+    int getLength(int position) {
+        return this.lengths[position];
+    }
+
+    @Override
+    public String readTaxonPath(String taxonName) throws IOException {
+        int position;
+        try {
+            position = this.find(TaxonKey.digest(taxonName));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        if (position < 0)
+            throw new FileNotFoundException("Taxon not found in packed database: " + taxonName);
+        byte[] buffer = new byte[this.lengths[position]];
+        this.dataStream.readFully(this.offsets[position], buffer);
+        return new String(buffer, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.dataStream.close();
+    }
+}
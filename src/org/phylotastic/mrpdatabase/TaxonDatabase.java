@@ -0,0 +1,33 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.IOException;
+
+/**
+ *     Interface TaxonDatabase
+ *
+ *     A "taxon database" holds the tip-to-root path of every taxon
+ *     in a tree. For the parkia example the path would be:
+ *     628:18|625:1|624:1|623:1|622:1|621:1|581:1|513:1|505:1| ..... |5:1|4:1|3:1|2:1|1:1
+ *
+ *     The paths can be stored in different layouts; each of these
+ *     implements this interface.
+ */
+public interface TaxonDatabase {
+
+    /**
+     *     Return the tip-to-root path for a taxon
+     *
+     * @param taxonName     the (tidy) name of the taxon, like: "Parkia"
+     * @return              the path, like: 628:18|625:1| ..... |2:1|1:1
+     * @throws java.io.FileNotFoundException when the taxon is not in the database
+     * @throws IOException
+     */
+    String readTaxonPath(String taxonName) throws IOException;
+
+    /**
+     *     Release the resources (open files) held by the database
+     *
+     * @throws IOException
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,473 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+/**
+ *     Class TaxonDatabaseBuilder
+ *
+ *     Builds the "taxon database" of a Newick tree, as script/treeparser.pl
+ *     does, without putting the tree together in memory: the Newick text is
+ *     read one character at a time, keeping only the labels of the open
+ *     (internal) nodes on a stack, one per depth level. The nodes are
+ *     labeled in pre-order, from 1 for the root, in the order of the text;
+ *     the parent and branch length of each node go into the arrays of a
+ *     TreeIndex, and the name and label of each tip into a list. The branch
+ *     of the root gets length 0, as treeparser.pl does.
+ *
+ *     Once the tree is read the tip-to-root path of each tip is walked from
+ *     the index (see TreeIndex.getPath), and written under the MD5 key of
+ *     it's tidy name (see TaxonKey.tidyName), by a number of threads: one
+ *     file per taxon in the directory layout (without a line end, like
+ *     treeparser.pl writes them), or the data and index file of the packed
+ *     layout (see PackedTaxonDatabase). The tree index itself, and the name
+ *     index of the tips, are written to the data directory as well; they
+ *     are all there is of the index layout (see IndexTaxonDatabase), that
+ *     does not store the paths.
+ *
+ *     A tip without a branch length gets length 0. Comments ([...]) and
+ *     the labels of internal nodes (e.g. bootstrap values) are skipped.
+ */
+public class TaxonDatabaseBuilder {
+    private static final Logger logger = Logger.getLogger(TaxonDatabaseBuilder.class.getName());
+    private static final int CHUNK_SIZE = 1000;         // the number of tips per writer task
+
+    private int[] parents = new int[1024];              // the parent label of each label
+    private double[] lengths = new double[1024];        // the branch length of each label
+    private int size = 1;                               // the highest label + 1
+    private int[] tipLabels = new int[1024];            // the label of each tip
+    private final List<String> tipNames = new ArrayList<>();    // the (tidy) name of each tip
+
+    private Reader reader;                              // the Newick text being parsed
+    private int current;                                // the current character; -1 at the end
+    private final StringBuilder token = new StringBuilder();
+
+    /**
+     *     Constructor
+     */
+    public TaxonDatabaseBuilder() {
+        super();
+    }
+
+    /**
+     *     Parse a (the first) Newick tree
+     *
+     * @param _reader   the Newick text; it is not closed
+     * @throws IOException when the text can not be read or is not Newick
+     */
+    public void parse(Reader _reader) throws IOException {
+        this.reader = (_reader instanceof BufferedReader ? _reader : new BufferedReader(_reader));
+        int[] stack = new int[64];          // the labels of the open nodes
+        int depth = 0;
+        this.next();
+        this.skipBlanks();
+        while (true) {
+            // the start of a node: a subtree or a tip
+            int node = this.addNode(depth > 0 ? stack[depth - 1] : 0);
+            if (this.current == '(') {
+                if (depth == stack.length)
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                stack[depth++] = node;
+                this.next();
+                this.skipBlanks();
+                continue;
+            }
+            this.addTip(node, this.readLabel());
+            this.lengths[node] = this.readLength();
+            // close the subtrees that end here
+            while (this.current == ')') {
+                if (depth == 0)
+                    throw new IOException("TaxonDatabaseBuilder: unbalanced ')' after node " + node);
+                node = stack[--depth];
+                this.next();
+                this.skipBlanks();
+                this.readLabel();
+                this.lengths[node] = this.readLength();
+            }
+            if (this.current == ',') {
+                if (depth == 0)
+                    throw new IOException("TaxonDatabaseBuilder: ',' outside of the tree after node " + node);
+                this.next();
+                this.skipBlanks();
+            } else if (this.current == ';' || this.current < 0) {
+                if (depth != 0)
+                    throw new IOException("TaxonDatabaseBuilder: " + depth + " subtrees not closed");
+                break;
+            } else {
+                throw new IOException("TaxonDatabaseBuilder: unexpected '" + (char)this.current
+                        + "' after node " + node);
+            }
+        }
+        // the root has no branch, as treeparser.pl sets it
+        if (this.size > 1)
+            this.lengths[1] = 0.0;
+        this.reader = null;
+        logger.info("TaxonDatabaseBuilder: parsed " + (this.size - 1) + " nodes, "
+                + this.tipNames.size() + " tips");
+    }
+
+    private int addNode(int _parent) {
+        if (this.size == this.parents.length) {
+            this.parents = Arrays.copyOf(this.parents, 2 * this.size);
+            this.lengths = Arrays.copyOf(this.lengths, 2 * this.size);
+        }
+        this.parents[this.size] = _parent;
+        this.lengths[this.size] = 0.0;
+        return this.size++;
+    }
+
+    private void addTip(int _label, String _name) {
+        int tip = this.tipNames.size();
+        if (tip == this.tipLabels.length)
+            this.tipLabels = Arrays.copyOf(this.tipLabels, 2 * tip);
+        this.tipLabels[tip] = _label;
+        this.tipNames.add(TaxonKey.tidyName(_name));
+    }
+
+    private void next() throws IOException {
+        this.current = this.reader.read();
+    }
+
+    /**
+     *     Skip white space and comments
+     */
+    private void skipBlanks() throws IOException {
+        while (true) {
+            if (this.current == '[') {
+                while (this.current >= 0 && this.current != ']')
+                    this.next();
+                if (this.current < 0)
+                    throw new IOException("TaxonDatabaseBuilder: comment not closed");
+            } else if (this.current < 0 || !Character.isWhitespace(this.current)) {
+                return;
+            }
+            this.next();
+        }
+    }
+
+    private boolean isDelimiter(int _char) {
+        return _char < 0 || _char == '(' || _char == ')' || _char == ',' || _char == ':'
+                || _char == ';' || _char == '[';
+    }
+
+    /**
+     *     Read a label: quoted ('' for a quote) or up to the next delimiter
+     */
+    private String readLabel() throws IOException {
+        this.token.setLength(0);
+        if (this.current == '\'') {
+            while (true) {
+                this.next();
+                if (this.current < 0)
+                    throw new IOException("TaxonDatabaseBuilder: quoted label not closed");
+                if (this.current == '\'') {
+                    this.next();
+                    if (this.current != '\'')
+                        break;
+                }
+                this.token.append((char)this.current);
+            }
+        } else {
+            while (!this.isDelimiter(this.current)) {
+                this.token.append((char)this.current);
+                this.next();
+            }
+        }
+        this.skipBlanks();
+        return this.token.toString();
+    }
+
+    /**
+     *     Read the branch length, if there is one
+     */
+    private double readLength() throws IOException {
+        if (this.current != ':')
+            return 0.0;
+        this.next();
+        this.skipBlanks();
+        this.token.setLength(0);
+        while (!this.isDelimiter(this.current) && !Character.isWhitespace(this.current)) {
+            this.token.append((char)this.current);
+            this.next();
+        }
+        this.skipBlanks();
+        try {
+            return Double.parseDouble(this.token.toString());
+        } catch (NumberFormatException ex) {
+            throw new IOException("TaxonDatabaseBuilder: not a branch length: " + this.token);
+        }
+    }
+
+    /**
+     * @return      the number of tips parsed
+     */
+    public int getNumberOfTips() {
+        return this.tipNames.size();
+    }
+
+    /**
+     * @param tip       the index of a tip, in the order of the text
+     * @return          the (pre-order) label of the tip
+     */
+    public int getTipLabel(int tip) {
+        return this.tipLabels[tip];
+    }
+
+    /**
+     * @param tip       the index of a tip, in the order of the text
+     * @return          the (tidy) name of the tip
+     */
+    public String getTipName(int tip) {
+        return this.tipNames.get(tip);
+    }
+
+    /**
+     * @return      the tree index of the nodes parsed
+     */
+    public TreeIndex getTreeIndex() {
+        return new TreeIndex(Arrays.copyOf(this.parents, this.size),
+                Arrays.copyOf(this.lengths, this.size));
+    }
+
+    /**
+     *     Write the tips, one line per tip: the hexadecimal key of it's
+     *     name and it's label, separated by a tab; the input of the
+     *     writers of a map/reduce build (see MrpBuildRun)
+     *
+     * @param stream    the stream to write the tips to; it is closed
+     * @throws IOException
+     */
+    public void writeTips(OutputStream stream) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+            for (int tip = 0; tip < this.tipNames.size(); tip++) {
+                if (this.tipNames.get(tip).isEmpty())
+                    continue;
+                writer.write(TaxonKey.toHex(digest(this.tipNames.get(tip))));
+                writer.write('\t');
+                writer.write(Integer.toString(this.tipLabels[tip]));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     *     Write the tree index, the name index and the filter (see
+     *     TaxonFilter) of the tree parsed. Each is written under a
+     *     temporary name and then renamed (see TaxonDatabases.replace),
+     *     the name index last: a taxon can be found by name once the
+     *     tree and the filter it passes are there.
+     *
+     * @param hadoopFS      the file system to write to
+     * @param dataPath      path to the data directory, ending with a separator
+     * @return              the number of taxa in the name index
+     * @throws IOException
+     */
+    public int writeIndexes(FileSystem hadoopFS, String dataPath) throws IOException {
+        Path treeFile = new Path(dataPath + TreeIndex.INDEX_FILE);
+        Path namesFile = new Path(dataPath + IndexTaxonDatabase.NAMES_FILE);
+        Path filterFile = new Path(dataPath + TaxonFilter.FILTER_FILE);
+        this.getTreeIndex().write(TaxonDatabases.createTemp(hadoopFS, treeFile));
+        NameIndexWriter nameIndex = new NameIndexWriter();
+        for (int tip = 0; tip < this.tipNames.size(); tip++) {
+            if (!this.tipNames.get(tip).isEmpty())
+                nameIndex.add(digest(this.tipNames.get(tip)), this.tipLabels[tip]);
+        }
+        nameIndex.write(TaxonDatabases.createTemp(hadoopFS, namesFile));
+        nameIndex.writeFilter(TaxonDatabases.createTemp(hadoopFS, filterFile));
+        TaxonDatabases.replace(hadoopFS, treeFile);
+        TaxonDatabases.replace(hadoopFS, filterFile);
+        TaxonDatabases.replace(hadoopFS, namesFile);
+        return nameIndex.getSize();
+    }
+
+    /**
+     *     Write the database of the tree parsed, and it's tree and name index
+     *
+     * @param hadoopFS      the file system to write to
+     * @param dataPath      path to the data directory, ending with a separator
+     * @param format        the layout: TaxonDatabases.FORMAT_DIRECTORY, FORMAT_PACKED
+     *                      or FORMAT_INDEX
+     * @param hashDepth     the number of subdirectories of the directory layout
+     * @param threads       the number of threads writing the paths
+     * @return              the number of taxa written
+     * @throws IOException
+     */
+    public int write(final FileSystem hadoopFS, final String dataPath, String format,
+            final int hashDepth, int threads) throws IOException {
+        logger.info("TaxonDatabaseBuilder: writing " + this.tipNames.size() + " taxa to "
+                + dataPath + " (" + format + ")");
+        if (TaxonDatabases.FORMAT_INDEX.equals(format)) {
+            // the index layout has no paths
+            int written = this.writeIndexes(hadoopFS, dataPath);
+            logger.info("TaxonDatabaseBuilder: done writing " + written + " taxa");
+            return written;
+        }
+        final TreeIndex treeIndex = this.getTreeIndex();
+        final boolean packed = TaxonDatabases.FORMAT_PACKED.equals(format);
+        PackedDatabaseWriter packedWriter = (packed ? new PackedDatabaseWriter(hadoopFS, dataPath) : null);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        // at most two chunks per thread wait to be written, in the order of the tips
+        Deque<Future<Chunk>> chunks = new ArrayDeque<>();
+        int written = 0;
+        try {
+            for (int from = 0; from < this.tipNames.size() || !chunks.isEmpty(); from += CHUNK_SIZE) {
+                if (from < this.tipNames.size()) {
+                    final int start = from;
+                    final int end = Math.min(from + CHUNK_SIZE, this.tipNames.size());
+                    chunks.add(pool.submit(new Callable<Chunk>() {
+                        @Override
+                        public Chunk call() throws IOException {
+                            Chunk chunk = paths(treeIndex, start, end);
+                            if (!packed) {
+                                for (int i = 0; i < chunk.size; i++)
+                                    writeTaxonFile(hadoopFS, dataPath, hashDepth,
+                                            chunk.keys[i], chunk.paths[i]);
+                            }
+                            return chunk;
+                        }
+                    }));
+                    if (chunks.size() < 2 * Math.max(1, threads))
+                        continue;
+                }
+                Chunk chunk = get(chunks.remove());
+                if (packed) {
+                    for (int i = 0; i < chunk.size; i++)
+                        packedWriter.add(chunk.keys[i], chunk.paths[i]);
+                }
+                written += chunk.size;
+                // report progress every 100000 taxa
+                if (written / 100000 != (written - chunk.size) / 100000)
+                    logger.info("TaxonDatabaseBuilder: written " + written + " taxa");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        // the filter before the packed index, that makes the taxa found
+        this.writeIndexes(hadoopFS, dataPath);
+        if (packed)
+            packedWriter.close();
+        logger.info("TaxonDatabaseBuilder: done writing " + written + " taxa");
+        return written;
+    }
+
+    /**
+     *     the keys and paths of a range of tips
+     */
+    private static class Chunk {
+        final byte[][] keys;
+        final String[] paths;
+        int size;
+
+        Chunk(int _capacity) {
+            this.keys = new byte[_capacity][];
+            this.paths = new String[_capacity];
+        }
+    }
+
+    private Chunk paths(TreeIndex treeIndex, int from, int to) throws IOException {
+        Chunk chunk = new Chunk(to - from);
+        for (int tip = from; tip < to; tip++) {
+            String name = this.tipNames.get(tip);
+            if (name.isEmpty())
+                // a tip without a name can not be looked up
+                continue;
+            chunk.keys[chunk.size] = digest(name);
+            chunk.paths[chunk.size] = treeIndex.getPath(this.tipLabels[tip]);
+            chunk.size++;
+        }
+        return chunk;
+    }
+
+    private static Chunk get(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("TaxonDatabaseBuilder: writing interrupted");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException)ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private static byte[] digest(String taxonName) throws IOException {
+        try {
+            return TaxonKey.digest(taxonName);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     *     Static method: writeTaxonFile
+     *
+     *     Write the file of a taxon in the directory layout, as
+     *     treeparser.pl does: the path without a line end; an
+     *     existing file (of a tip with the same name) is replaced
+     *
+     * @param hadoopFS      the file system to write to
+     * @param dataPath      path to the data directory, ending with a separator
+     * @param hashDepth     the number of subdirectories
+     * @param key           the MD5 key of the taxon name
+     * @param path          the tip-to-root path
+     * @throws IOException
+     */
+    public static void writeTaxonFile(FileSystem hadoopFS, String dataPath, int hashDepth,
+            byte[] key, String path) throws IOException {
+        writeTaxonFile(hadoopFS, dataPath, hashDepth, key, path, false);
+    }
+
+    /**
+     *     Static method: writeTaxonFile
+     *
+     *     Write the file of a taxon in the directory layout; in a
+     *     database that is being read, under a temporary name that
+     *     then replaces the file (see TaxonDatabases.replace)
+     *
+     * @param hadoopFS      the file system to write to
+     * @param dataPath      path to the data directory, ending with a separator
+     * @param hashDepth     the number of subdirectories
+     * @param key           the MD5 key of the taxon name
+     * @param path          the tip-to-root path
+     * @param replace       true to write under a temporary name
+     * @throws IOException
+     */
+    public static void writeTaxonFile(FileSystem hadoopFS, String dataPath, int hashDepth,
+            byte[] key, String path, boolean replace) throws IOException {
+        Path file = new Path(DirectoryTaxonDatabase.taxonFile(dataPath, hashDepth,
+                Path.SEPARATOR, TaxonKey.toHex(key)));
+        // no checksum file next to each taxon file on a local file system
+        FileSystem fileSystem = (hadoopFS instanceof LocalFileSystem ?
+                ((LocalFileSystem)hadoopFS).getRaw() : hadoopFS);
+        try (FSDataOutputStream stream = (replace ? TaxonDatabases.createTemp(fileSystem, file)
+                : fileSystem.create(file, true))) {
+            stream.write(path.getBytes());
+        }
+        if (replace)
+            TaxonDatabases.replace(fileSystem, file);
+    }
+}
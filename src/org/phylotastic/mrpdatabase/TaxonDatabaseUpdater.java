@@ -0,0 +1,410 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+/**
+ *     Class TaxonDatabaseUpdater
+ *
+ *     Updates a "taxon database" to a changed tree (e.g. re-rooted by
+ *     script/midrooter.pl or script/ogrooter.pl, or with tips grafted on
+ *     or pruned off), instead of building it again from scratch: only the
+ *     paths that changed are written.
+ *
+ *     The old tree is read from the tree and name index of the database
+ *     (see TreeIndex, IndexTaxonDatabase), the new one is parsed by a
+ *     TaxonDatabaseBuilder. The labels of both are pre-order labels, so a
+ *     node of the new tree is the same as the node with it's label in the
+ *     old tree when it has the same parent and branch length, and it's
+ *     parent is the same as well; which is found for all nodes in one walk
+ *     down from the root. The path of a tip is unchanged when it's tip is
+ *     the same node, under the same label. The others are written:
+ *
+ *     directory   the files of the changed and new taxa are (over)written,
+ *                 those of the taxa no longer in the tree are deleted
+ *     packed      the paths of the changed and new taxa are appended to
+ *                 the data file, the unchanged ones are kept where they
+ *                 are, and the index of both is written; once more than
+ *                 half of the data file is no longer used, the database
+ *                 is written again as a whole instead
+ *     index       (no paths)
+ *
+ *     after which the tree and name index, the filter (see TaxonFilter)
+ *     and the manifest (see DatabaseManifest) are written again.
+ *
+ *     The database can be read while it is updated: no file is written
+ *     in place, each is written under a temporary name and renamed (see
+ *     TaxonDatabases.replace), the filter before the index that makes a
+ *     new taxon found, and the manifest last. Only appending to the
+ *     packed data file is done in place, as the old index stays valid.
+ *
+ *     As the labels are pre-order labels, a change renumbers the nodes
+ *     that come after it in the Newick text: a tip grafted on near the
+ *     end of the tree changes few paths, a new root most of them. The
+ *     trees are also compared by clade membership (the tips under each
+ *     node), to report the clades kept, added and removed, whatever
+ *     their labels.
+ */
+public class TaxonDatabaseUpdater {
+    private static final Logger logger = Logger.getLogger(TaxonDatabaseUpdater.class.getName());
+    private static final int CHUNK_SIZE = 1000;         // the number of taxa per writer task
+
+    private final FileSystem hadoopFS;      // the file system holding the database
+    private final String dataPath;          // the data directory, ending with a separator
+
+    private long unchanged;                 // the number of taxa with the same path
+    private long changed;                   // the number of taxa with a changed path
+    private long added;                     // the number of taxa new in the tree
+    private long removed;                   // the number of taxa no longer in the tree
+    private long cladesKept;                // the number of clades in both trees
+    private long cladesAdded;               // the number of clades only in the new tree
+    private long cladesRemoved;             // the number of clades only in the old tree
+
+    /**
+     *     Constructor
+     *
+     * @param _hadoopFS     the file system holding the database
+     * @param _dataPath     path to the data directory, ending with a separator
+     */
+    public TaxonDatabaseUpdater(FileSystem _hadoopFS, String _dataPath) {
+        this.hadoopFS = _hadoopFS;
+        this.dataPath = _dataPath;
+    }
+
+    /**
+     *     Update the database to the tree parsed by a builder
+     *
+     * @param builder       the builder that parsed the new tree
+     * @param tree          the name of the file of the new tree, for the manifest
+     * @param format        the layout: TaxonDatabases.FORMAT_DIRECTORY, FORMAT_PACKED
+     *                      or FORMAT_INDEX
+     * @param hashDepth     the number of subdirectories of the directory layout
+     * @param threads       the number of threads writing the taxon files
+     * @return              the new manifest of the database
+     * @throws IOException
+     */
+    public DatabaseManifest update(TaxonDatabaseBuilder builder, String tree, String format,
+            int hashDepth, int threads) throws IOException {
+        DatabaseManifest manifest = DatabaseManifest.load(this.hadoopFS, this.dataPath);
+        if (manifest.getFormat() != null && !manifest.getFormat().equals(format))
+            throw new IOException("The taxon database in " + this.dataPath + " is in the "
+                    + manifest.getFormat() + " format, not in the " + format + " format");
+        if (!IndexTaxonDatabase.exists(this.hadoopFS, this.dataPath))
+            throw new FileNotFoundException("No tree and name index in " + this.dataPath
+                    + "; build or convert the database first");
+        if (TaxonDatabases.FORMAT_PACKED.equals(format) &&
+                !PackedTaxonDatabase.exists(this.hadoopFS, this.dataPath))
+            throw new FileNotFoundException("Packed taxon database not found in: " + this.dataPath);
+        logger.info("TaxonDatabaseUpdater: updating " + this.dataPath + " (" + format + ")");
+        TreeIndex oldTree = TreeIndex.read(this.hadoopFS.open(new Path(this.dataPath + TreeIndex.INDEX_FILE)));
+        IndexTaxonDatabase oldNames = new IndexTaxonDatabase(this.hadoopFS, this.dataPath);
+        TreeIndex newTree = builder.getTreeIndex();
+
+        // the key of each (named) tip of the new tree, and if it's path is the same
+        boolean[] sameNodes = sameNodes(oldTree, newTree);
+        int tips = builder.getNumberOfTips();
+        byte[][] keys = new byte[tips][];
+        boolean[] samePaths = new boolean[tips];
+        Set<ByteBuffer> newKeys = new HashSet<>();
+        this.unchanged = this.changed = this.added = 0;
+        for (int tip = 0; tip < tips; tip++) {
+            if (builder.getTipName(tip).isEmpty())
+                // a tip without a name can not be looked up
+                continue;
+            keys[tip] = digest(builder.getTipName(tip));
+            newKeys.add(ByteBuffer.wrap(keys[tip]));
+            int oldLabel = oldNames.find(keys[tip]);
+            int label = builder.getTipLabel(tip);
+            samePaths[tip] = (oldLabel == label && sameNodes[label]);
+            if (samePaths[tip])
+                this.unchanged++;
+            else if (oldLabel < 0)
+                this.added++;
+            else
+                this.changed++;
+        }
+        // the taxa of the old tree that are not in the new one
+        List<byte[]> removedKeys = new ArrayList<>();
+        for (int position = 0; position < oldNames.getSize(); position++) {
+            byte[] key = oldNames.getKey(position);
+            if (!newKeys.contains(ByteBuffer.wrap(key)))
+                removedKeys.add(key);
+        }
+        this.removed = removedKeys.size();
+        this.diffClades(oldTree, oldNames, newTree, builder, keys);
+        oldNames.close();
+        logger.info("TaxonDatabaseUpdater: " + this.unchanged + " taxa unchanged, " + this.changed
+                + " changed, " + this.added + " added, " + this.removed + " removed; "
+                + this.cladesKept + " clades kept, " + this.cladesAdded + " added, "
+                + this.cladesRemoved + " removed");
+
+        long garbage = 0;
+        if (TaxonDatabases.FORMAT_DIRECTORY.equals(format)) {
+            this.updateDirectory(builder, newTree, keys, samePaths, removedKeys, hashDepth, threads);
+            builder.writeIndexes(this.hadoopFS, this.dataPath);
+        } else if (TaxonDatabases.FORMAT_PACKED.equals(format)) {
+            garbage = this.updatePacked(builder, newTree, keys, samePaths, hashDepth, threads);
+        } else if (TaxonDatabases.FORMAT_INDEX.equals(format)) {
+            builder.writeIndexes(this.hadoopFS, this.dataPath);
+        } else {
+            throw new IllegalArgumentException("Unknown taxon database format: " + format);
+        }
+
+        manifest.setVersion(manifest.getVersion() + 1);
+        manifest.set("format", format);
+        manifest.set("hashDepth", hashDepth);
+        manifest.set("tree", tree);
+        manifest.set("taxa", this.unchanged + this.changed + this.added);
+        manifest.set("nodes", newTree.getSize() - 1);
+        manifest.set("update.unchanged", this.unchanged);
+        manifest.set("update.changed", this.changed);
+        manifest.set("update.added", this.added);
+        manifest.set("update.removed", this.removed);
+        manifest.set("clades.kept", this.cladesKept);
+        manifest.set("clades.added", this.cladesAdded);
+        manifest.set("clades.removed", this.cladesRemoved);
+        if (TaxonDatabases.FORMAT_PACKED.equals(format))
+            manifest.set("packed.garbage", garbage);
+        manifest.write(this.hadoopFS, this.dataPath);
+        logger.info("TaxonDatabaseUpdater: database updated to version " + manifest.getVersion());
+        return manifest;
+    }
+
+    /**
+     *     Return, for each label of the new tree, if it is the same node
+     *     as in the old tree: with the same parent and branch length, and
+     *     a parent that is the same as well; so with the same path
+     */
+    private static boolean[] sameNodes(TreeIndex oldTree, TreeIndex newTree) {
+        boolean[] same = new boolean[newTree.getSize()];
+        // with pre-order labels the parent of a node is done before the node
+        for (int label = 1; label < newTree.getSize(); label++) {
+            int parent = newTree.getParent(label);
+            same[label] = label < oldTree.getSize()
+                    && oldTree.getParent(label) == parent
+                    && Double.compare(oldTree.getLength(label), newTree.getLength(label)) == 0
+                    && (parent == 0 || same[parent]);
+        }
+        return same;
+    }
+
+    /**
+     *     Compare the clades (internal nodes) of the trees by their tips:
+     *     the sum of the hashes of the tips under a node stands for it's
+     *     set of tips, whatever the label of the node is
+     */
+    private void diffClades(TreeIndex oldTree, IndexTaxonDatabase oldNames,
+            TreeIndex newTree, TaxonDatabaseBuilder builder, byte[][] keys) {
+        long[] oldHashes = new long[oldTree.getSize()];
+        for (int position = 0; position < oldNames.getSize(); position++)
+            oldHashes[oldNames.getTipLabel(position)] += ByteBuffer.wrap(oldNames.getKey(position)).getLong();
+        long[] newHashes = new long[newTree.getSize()];
+        for (int tip = 0; tip < keys.length; tip++) {
+            if (keys[tip] != null)
+                newHashes[builder.getTipLabel(tip)] += ByteBuffer.wrap(keys[tip]).getLong();
+        }
+        Set<Long> oldClades = clades(oldTree, oldHashes);
+        Set<Long> newClades = clades(newTree, newHashes);
+        this.cladesKept = 0;
+        for (Long clade : newClades) {
+            if (oldClades.contains(clade))
+                this.cladesKept++;
+        }
+        this.cladesAdded = newClades.size() - this.cladesKept;
+        this.cladesRemoved = oldClades.size() - this.cladesKept;
+    }
+
+    private static Set<Long> clades(TreeIndex tree, long[] hashes) {
+        boolean[] internal = new boolean[tree.getSize()];
+        // with pre-order labels the children of a node are done before the node
+        for (int label = tree.getSize() - 1; label > 0; label--) {
+            int parent = tree.getParent(label);
+            if (parent != 0) {
+                hashes[parent] += hashes[label];
+                internal[parent] = true;
+            }
+        }
+        Set<Long> clades = new HashSet<>();
+        for (int label = 1; label < tree.getSize(); label++) {
+            if (internal[label])
+                clades.add(hashes[label]);
+        }
+        return clades;
+    }
+
+    /**
+     *     Write the files of the changed and new taxa, by a number
+     *     of threads, and delete the files of the removed taxa
+     */
+    private void updateDirectory(final TaxonDatabaseBuilder builder, final TreeIndex newTree,
+            final byte[][] keys, boolean[] samePaths, List<byte[]> removedKeys,
+            final int hashDepth, int threads) throws IOException {
+        final List<Integer> writes = new ArrayList<>();
+        for (int tip = 0; tip < keys.length; tip++) {
+            if (keys[tip] != null && !samePaths[tip])
+                writes.add(tip);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (int from = 0; from < writes.size(); from += CHUNK_SIZE) {
+                final int start = from;
+                final int end = Math.min(from + CHUNK_SIZE, writes.size());
+                chunks.add(pool.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        for (int i = start; i < end; i++) {
+                            int tip = writes.get(i);
+                            TaxonDatabaseBuilder.writeTaxonFile(hadoopFS, dataPath, hashDepth,
+                                    keys[tip], newTree.getPath(builder.getTipLabel(tip)), true);
+                        }
+                        return end - start;
+                    }
+                }));
+            }
+            for (Future<Integer> chunk : chunks)
+                get(chunk);
+        } finally {
+            pool.shutdownNow();
+        }
+        for (byte[] key : removedKeys) {
+            this.hadoopFS.delete(new Path(DirectoryTaxonDatabase.taxonFile(this.dataPath, hashDepth,
+                    Path.SEPARATOR, TaxonKey.toHex(key))), false);
+        }
+    }
+
+    /**
+     *     Append the paths of the changed and new taxa to the packed data
+     *     file and write the index; or write the database as a whole when
+     *     more than half of the data file would no longer be used.
+     *     Returns the number of bytes of the data file no longer used.
+     */
+    private long updatePacked(TaxonDatabaseBuilder builder, TreeIndex newTree, byte[][] keys,
+            boolean[] samePaths, int hashDepth, int threads) throws IOException {
+        // the positions of the old paths are read from the old index;
+        // the header line of the data file is kept as well
+        long kept = PackedTaxonDatabase.DATA_HEADER_LENGTH;
+        int[] positions = new int[keys.length];
+        long[] offsets = new long[keys.length];
+        int[] lengths = new int[keys.length];
+        PackedTaxonDatabase oldPaths = new PackedTaxonDatabase(this.hadoopFS, this.dataPath);
+        try {
+            for (int tip = 0; tip < keys.length; tip++) {
+                positions[tip] = (keys[tip] == null ? -1 : oldPaths.find(keys[tip]));
+                if (samePaths[tip] && positions[tip] >= 0) {
+                    offsets[tip] = oldPaths.getOffset(positions[tip]);
+                    lengths[tip] = oldPaths.getLength(positions[tip]);
+                    // the bytes used by the path and it's line end
+                    kept += lengths[tip] + 1;
+                }
+            }
+        } finally {
+            oldPaths.close();
+        }
+        long dataLength = this.hadoopFS.getFileStatus(
+                new Path(this.dataPath + PackedTaxonDatabase.DATA_FILE)).getLen();
+        if (dataLength - kept > kept) {
+            logger.info("TaxonDatabaseUpdater: writing the packed database as a whole");
+            builder.write(this.hadoopFS, this.dataPath, TaxonDatabases.FORMAT_PACKED, hashDepth, threads);
+            return 0;
+        }
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(this.hadoopFS, this.dataPath, true);
+        for (int tip = 0; tip < keys.length; tip++) {
+            if (keys[tip] == null)
+                continue;
+            if (samePaths[tip] && positions[tip] >= 0)
+                writer.keep(keys[tip], offsets[tip], lengths[tip]);
+            else
+                writer.add(keys[tip], newTree.getPath(builder.getTipLabel(tip)));
+        }
+        // the filter before the packed index, that makes the new taxa found
+        builder.writeIndexes(this.hadoopFS, this.dataPath);
+        writer.close();
+        return dataLength - kept;
+    }
+
+    private static void get(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException("TaxonDatabaseUpdater: writing interrupted");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException)ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private static byte[] digest(String taxonName) throws IOException {
+        try {
+            return TaxonKey.digest(taxonName);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * @return  the number of taxa with the same path, in the last update
+     */
+    public long getUnchanged() {
+        return this.unchanged;
+    }
+
+    /**
+     * @return  the number of taxa with a changed path, in the last update
+     */
+    public long getChanged() {
+        return this.changed;
+    }
+
+    /**
+     * @return  the number of taxa new in the tree, in the last update
+     */
+    public long getAdded() {
+        return this.added;
+    }
+
+    /**
+     * @return  the number of taxa no longer in the tree, in the last update
+     */
+    public long getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * @return  the number of clades in both trees, in the last update
+     */
+    public long getCladesKept() {
+        return this.cladesKept;
+    }
+
+    /**
+     * @return  the number of clades only in the new tree, in the last update
+     */
+    public long getCladesAdded() {
+        return this.cladesAdded;
+    }
+
+    /**
+     * @return  the number of clades only in the old tree, in the last update
+     */
+    public long getCladesRemoved() {
+        return this.cladesRemoved;
+    }
+}
@@ -0,0 +1,156 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.UnsupportedFileSystemException;
+import org.apache.log4j.Logger;
+
+/**
+ *     Class TaxonDatabases
+ *
+ *     Names of the available "taxon database" layouts (formats)
+ *     and methods to open a database in one of them; on a Hadoop
+ *     file system or on the local file system.
+ *
+ *     The packed and index databases on the local file system are
+ *     memory mapped (see MappedPackedTaxonDatabase, IndexTaxonDatabase),
+ *     also when they are opened through a Hadoop file system with the
+ *     file:// scheme, like in a local (or pseudo distributed) Hadoop run;
+ *     their paths are then also parsed straight from the mapped bytes
+ *     (see TaxonNodeDatabase).
+ *
+ *     The files of a database that is being read are not written in
+ *     place (createTemp, replace), as that would change a file under
+ *     the feet of a reader, or of the memory it is mapped to.
+ */
+public class TaxonDatabases {
+    private static final Logger logger = Logger.getLogger(TaxonDatabases.class.getName());
+
+    /**
+     *     format: one file per taxon in a hashDepth deep directory tree
+     */
+    public static final String FORMAT_DIRECTORY = "directory";
+
+    /**
+     *     format: one data file and one sorted index file
+     */
+    public static final String FORMAT_PACKED = "packed";
+
+    /**
+     *     format: the tree index and a name index (see IndexTaxonDatabase)
+     */
+    public static final String FORMAT_INDEX = "index";
+
+    /**
+     *     the extension of a file of a database while it is written
+     */
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    private TaxonDatabases() {
+    }
+
+    /**
+     *     Create the temporary file to write a file of a database to;
+     *     it takes the place of the file by replace
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param file          the file of the database
+     * @return              the stream to write the file to
+     * @throws IOException
+     */
+    public static FSDataOutputStream createTemp(FileSystem hadoopFS, Path file) throws IOException {
+        return hadoopFS.create(file.suffix(TEMP_EXTENSION), true);
+    }
+
+    /**
+     *     Rename the temporary file of createTemp to the file. A reader
+     *     that opened the old file keeps reading (or mapping) that one, a
+     *     new reader gets the new one; there is no moment without the file.
+     *
+     *     On a local file system the rename replaces the file at once. A
+     *     file system that does not rename over an existing file (HDFS)
+     *     is asked to rename with overwrite through its FileContext,
+     *     which HDFS does at once as well. Only a file system that has no
+     *     FileContext has the old file deleted before the rename; a reader
+     *     that opens the file in between does not find it.
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param file          the file of the database
+     * @throws IOException
+     */
+    public static void replace(FileSystem hadoopFS, Path file) throws IOException {
+        Path temp = file.suffix(TEMP_EXTENSION);
+        if (hadoopFS.rename(temp, file))
+            return;
+        FileContext context;
+        try {
+            context = FileContext.getFileContext(hadoopFS.getUri(), hadoopFS.getConf());
+        } catch (UnsupportedFileSystemException ex) {
+            logger.warn("TaxonDatabases: " + hadoopFS.getUri().getScheme()
+                    + " can not rename with overwrite, deleting " + file + " first");
+            hadoopFS.delete(file, false);
+            if (!hadoopFS.rename(temp, file))
+                throw new IOException("Can not rename " + temp + " to " + file);
+            return;
+        }
+        context.rename(hadoopFS.makeQualified(temp), hadoopFS.makeQualified(file),
+                Options.Rename.OVERWRITE);
+    }
+
+    /**
+     *     Open a taxon database
+     *
+     * @param format        the database format, like: "packed"
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @param hashDepth     the number of subdirectories (directory format only)
+     * @return              the opened database
+     * @throws IOException
+     */
+    public static TaxonDatabase open(String format, FileSystem hadoopFS,
+            String dataPath, int hashDepth) throws IOException {
+        if (!FORMAT_DIRECTORY.equals(format) && "file".equals(hadoopFS.getUri().getScheme()))
+            return openLocal(format, Paths.get(hadoopFS.makeQualified(new Path(dataPath)).toUri())
+                    + File.separator, hashDepth);
+        switch (format) {
+            case FORMAT_DIRECTORY:
+                return new DirectoryTaxonDatabase(hadoopFS, dataPath, hashDepth, Path.SEPARATOR);
+            case FORMAT_PACKED:
+                return new PackedTaxonDatabase(hadoopFS, dataPath);
+            case FORMAT_INDEX:
+                return new IndexTaxonDatabase(hadoopFS, dataPath);
+            default:
+                throw new IllegalArgumentException("Unknown taxon database format: " + format);
+        }
+    }
+
+    /**
+     *     Open a taxon database on the local file system, through java.nio
+     *
+     * @param format        the database format, like: "packed"
+     * @param dataPath      path to the data directory, ending with a separator
+     * @param hashDepth     the number of subdirectories (directory format only)
+     * @return              the opened database
+     * @throws IOException
+     */
+    public static TaxonDatabase openLocal(String format, String dataPath,
+            int hashDepth) throws IOException {
+        switch (format) {
+            case FORMAT_DIRECTORY:
+                return new LocalDirectoryTaxonDatabase(dataPath, hashDepth);
+            case FORMAT_PACKED:
+                return new MappedPackedTaxonDatabase(Paths.get(dataPath));
+            case FORMAT_INDEX:
+                return new IndexTaxonDatabase(Paths.get(dataPath));
+            default:
+                throw new IllegalArgumentException("Unknown taxon database format: " + format);
+        }
+    }
+}
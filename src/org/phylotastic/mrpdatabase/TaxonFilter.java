@@ -0,0 +1,192 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ *     Class TaxonFilter
+ *
+ *     A Bloom filter of the taxa in a "taxon database", written next to
+ *     the database (names.bloom) when it is built or converted:
+ *
+ *     names.bloom  a header:  int magic, int version, int hashes, int words
+ *                  followed by the bits: words longs
+ *
+ *     A taxon that is not in the filter is certainly not in the database,
+ *     so it can be rejected without a look up; for the directory layout
+ *     that is a failed file open, on HDFS a round trip to the NameNode.
+ *     A taxon that is in the filter is in the database, except for about
+ *     1 in 100 of the taxa that are not (false positives).
+ *
+ *     The filter uses the MD5 key of the taxon name (see TaxonKey), that
+ *     already is a good hash: the bits of a key are found by double
+ *     hashing on the two halves of the key.
+ */
+public class TaxonFilter {
+
+    /**
+     *     the name of the filter file
+     */
+    public static final String FILTER_FILE = "names.bloom";
+
+    /**
+     *     the magic number at the start of the filter file => "MRPF"
+     */
+    public static final int MAGIC = 0x4D525046;
+
+    /**
+     *     the version of the filter file layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     *     the number of bits per taxon; with HASHES hashes a false
+     *     positive rate of about 1%
+     */
+    public static final int BITS_PER_TAXON = 10;
+
+    /**
+     *     the number of hashes (bits) per taxon
+     */
+    public static final int HASHES = 7;
+
+    /**
+     *     Static method: load
+     *
+     *     Read the filter of the database in a data directory, if it has one
+     *
+     * @param hadoopFS      the file system holding the database
+     * @param dataPath      path to the data directory, ending with a separator
+     * @return              the filter, or null if the database has none
+     * @throws IOException
+     */
+    public static TaxonFilter load(FileSystem hadoopFS, String dataPath) throws IOException {
+        Path filterPath = new Path(dataPath + FILTER_FILE);
+        if (!hadoopFS.isFile(filterPath))
+            return null;
+        return read(hadoopFS.open(filterPath));
+    }
+
+    /**
+     *     Static method: loadLocal
+     *
+     *     Read the filter of the database in a local data directory
+     *     (through java.nio), if it has one
+     *
+     * @param dataDir       the local data directory
+     * @return              the filter, or null if the database has none
+     * @throws IOException
+     */
+    public static TaxonFilter loadLocal(java.nio.file.Path dataDir) throws IOException {
+        java.nio.file.Path filterPath = dataDir.resolve(FILTER_FILE);
+        if (!Files.isRegularFile(filterPath))
+            return null;
+        return read(Files.newInputStream(filterPath));
+    }
+
+    /**
+     *     Static method: read
+     *
+     * @param stream    the stream to read the filter from; it is closed
+     * @return          the filter read
+     * @throws IOException
+     */
+    public static TaxonFilter read(InputStream stream) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            if (input.readInt() != MAGIC)
+                throw new IOException("Not a taxon filter");
+            int version = input.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported taxon filter version " + version);
+            int hashes = input.readInt();
+            long[] bits = new long[input.readInt()];
+            for (int i = 0; i < bits.length; i++)
+                bits[i] = input.readLong();
+            return new TaxonFilter(bits, hashes);
+        }
+    }
+
+    private final long[] bits;      // the bits of the filter
+    private final int hashes;       // the number of bits per key
+
+    /**
+     *     Constructor
+     *     An empty filter for a number of taxa
+     *
+     * @param taxa      the (expected) number of taxa
+     */
+    public TaxonFilter(int taxa) {
+        this(new long[(int)Math.max(1, ((long)taxa * BITS_PER_TAXON + 63) / 64)], HASHES);
+    }
+
+    private TaxonFilter(long[] _bits, int _hashes) {
+        this.bits = _bits;
+        this.hashes = _hashes;
+    }
+
+    /**
+     *     Add a taxon
+     *
+     * @param key   the MD5 key of the taxon name
+     */
+    public void add(byte[] key) {
+        long size = 64L * this.bits.length;
+        long hash1 = half(key, 0);
+        long hash2 = half(key, 8);
+        for (int i = 0; i < this.hashes; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % size;
+            this.bits[(int)(bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     *     Check if a taxon might be in the database
+     *
+     * @param key   the MD5 key of the taxon name
+     * @return      false if the taxon is certainly not in the database
+     */
+    public boolean mightContain(byte[] key) {
+        long size = 64L * this.bits.length;
+        long hash1 = half(key, 0);
+        long hash2 = half(key, 8);
+        for (int i = 0; i < this.hashes; i++) {
+            long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % size;
+            if ((this.bits[(int)(bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static long half(byte[] key, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++)
+            value = (value << 8) | (key[i] & 0xff);
+        return value;
+    }
+
+    /**
+     *     Write the filter
+     *
+     * @param stream    the stream to write the filter to; it is closed
+     * @throws IOException
+     */
+    public void write(OutputStream stream) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(this.hashes);
+            output.writeInt(this.bits.length);
+            for (long word : this.bits)
+                output.writeLong(word);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.phylotastic.mrpdatabase;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ *     Class TaxonKey
+ *
+ *     Helper methods for the MD5 keys under which the tip-to-root
+ *     paths of the taxa are stored in a "taxon database".
+ *     In the directory layout the hexadecimal version of the key
+ *     is used as the file name, e.g. for "Parkia":
+ *     001888798bb50357c4ab8bea57ddfe81
+ *     in the packed layout the 16 raw bytes of the key are stored
+ *     in a sorted index.
+ */
+public class TaxonKey {
+
+    /**
+     *     the number of bytes in a key
+     */
+    public static final int LENGTH = 16;
+
+    private TaxonKey() {
+    }
+
+    /**
+     *     Return the tidy version of a taxon name, under which it's path is
+     *     stored and looked up: whitespace trimmed, "_" characters replaced
+     *     by spaces, lower case with the first character capitalized
+     *
+     * @param name      the "dirty" taxon name, like: " banksia_Spinulosa "
+     * @return          the "tidy" taxon name, like: "Banksia spinulosa"
+     */
+    public static String tidyName(String name) {
+        String tidyName = name.trim();
+        tidyName = tidyName.replace("_", " ");
+        tidyName = tidyName.toLowerCase();
+        return StringUtils.capitalize(tidyName);
+    }
+
+    /**
+     *     Return the MD5 digest of a (tidy) taxon name
+     *
+     * @param taxonName     the taxon name, like: "Parkia"
+     * @return              the 16 byte digest
+     * @throws NoSuchAlgorithmException
+     */
+    public static byte[] digest(String taxonName) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        md.update(taxonName.getBytes());
+        return md.digest();
+    }
+
+    /**
+     *     Return the hexadecimal string for a key,
+     *     like: "001888798bb50357c4ab8bea57ddfe81"
+     *
+     * @param key   the key bytes
+     * @return      the (lower case) hexadecimal representation
+     */
+    public static String toHex(byte[] key) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < key.length; i++) {
+            hex.append(Integer.toString((key[i] & 0xff) + 0x100, 16).substring(1));
+        }
+        return hex.toString();
+    }
+
+    /**
+     *     Return the key bytes for a hexadecimal string
+     *     or null if the string is not a valid key;
+     *     used to recognise the taxon files of the
+     *     directory layout
+     *
+     * @param hex   the hexadecimal key, like: "001888798bb50357c4ab8bea57ddfe81"
+     * @return      the key bytes or null
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex.length() != 2 * LENGTH)
+            return null;
+        byte[] key = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+                return null;
+            key[i] = (byte)((high << 4) | low);
+        }
+        return key;
+    }
+
+    /**
+     *     Compare a key with the key stored at a given
+     *     position in an array of keys; bytes are compared
+     *     unsigned, so the order is that of the hexadecimal strings
+     *
+     * @param key       the key to compare
+     * @param keys      the array of consecutive keys
+     * @param index     the index of the key in the array
+     * @return          negative, zero or positive
+     */
+    public static int compare(byte[] key, byte[] keys, int index) {
+        int offset = index * LENGTH;
+        for (int i = 0; i < LENGTH; i++) {
+            int a = key[i] & 0xff;
+            int b = keys[offset + i] & 0xff;
+            if (a != b)
+                return a - b;
+        }
+        return 0;
+    }
+
+    /**
+     *     Compare two keys; bytes are compared unsigned
+     *
+     * @param a     the first key
+     * @param b     the second key
+     * @return      negative, zero or positive
+     */
+    public static int compare(byte[] a, byte[] b) {
+        return compare(a, b, 0);
+    }
+}
@@ -0,0 +1,24 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.IOException;
+
+/**
+ *     Interface TaxonNodeDatabase
+ *
+ *     A "taxon database" that can return the tip-to-root path of a taxon
+ *     already parsed (see TaxonPath), from the stored bytes or numbers,
+ *     without first making a String of it that is then parsed again.
+ */
+public interface TaxonNodeDatabase extends TaxonDatabase {
+
+    /**
+     *     Return the parsed tip-to-root path for a taxon
+     *
+     * @param taxonName     the (tidy) name of the taxon, like: "Parkia"
+     * @return              the parsed path; the same as TaxonPath.parse
+     *                      of readTaxonPath
+     * @throws java.io.FileNotFoundException when the taxon is not in the database
+     * @throws IOException
+     */
+    TaxonPath readTaxonNodes(String taxonName) throws IOException;
+}
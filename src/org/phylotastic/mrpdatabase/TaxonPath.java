@@ -0,0 +1,212 @@
+package org.phylotastic.mrpdatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *     Class TaxonPath
+ *
+ *     A parsed tip-to-root path of a taxon, like:
+ *     628:18|625:1|624:1| ..... |2:1|1:1
+ *     held in two primitive arrays instead of a list of PathNodes;
+ *     index 0 is the tip, the last index the root.
+ */
+public class TaxonPath {
+
+    private final int[] labels;         // the node labels, from tip to root
+    private final double[] lengths;     // the branch lengths, from tip to root
+
+    /**
+     *     Constructor
+     *
+     * @param _labels       the node labels, from tip to root
+     * @param _lengths      the branch lengths, from tip to root
+     */
+    public TaxonPath(int[] _labels, double[] _lengths) {
+        this.labels = _labels;
+        this.lengths = _lengths;
+    }
+
+    /**
+     *     Static method: parse
+     *
+     * @param path      the path, like: 628:18|625:1| ..... |2:1|1:1
+     * @return          the parsed path
+     */
+    public static TaxonPath parse(String path) {
+        int size = 1;
+        for (int i = path.indexOf('|'); i >= 0; i = path.indexOf('|', i + 1))
+            size++;
+        int[] labels = new int[size];
+        double[] lengths = new double[size];
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            int end = path.indexOf('|', start);
+            if (end < 0)
+                end = path.length();
+            int colon = path.indexOf(':', start);
+            labels[i] = Integer.parseInt(path.substring(start, colon));
+            lengths[i] = Double.parseDouble(path.substring(colon + 1, end));
+            start = end + 1;
+        }
+        return new TaxonPath(labels, lengths);
+    }
+
+    /**
+     *     Static method: parse
+     *
+     *     Parses a path straight from the (UTF-8) bytes of a buffer, as
+     *     they are stored in the packed data file, without making Strings
+     *     of it; the buffer's position is not used or changed.
+     *
+     * @param buffer    the buffer holding the path
+     * @param offset    the offset of the path in the buffer
+     * @param length    the length of the path in bytes
+     * @return          the parsed path
+     * @throws NumberFormatException when the bytes are not a path
+     */
+    public static TaxonPath parse(ByteBuffer buffer, int offset, int length) {
+        int end = offset + length;
+        int size = 1;
+        for (int i = offset; i < end; i++) {
+            if (buffer.get(i) == '|')
+                size++;
+        }
+        int[] labels = new int[size];
+        double[] lengths = new double[size];
+        int position = offset;
+        for (int i = 0; i < size; i++) {
+            int label = 0;
+            int start = position;
+            for (; position < end && buffer.get(position) != ':'; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9)
+                    throw new NumberFormatException("Not a label: " + text(buffer, start, end));
+                label = label * 10 + digit;
+            }
+            if (position == start || position == end)
+                throw new NumberFormatException("Not a path node: " + text(buffer, start, end));
+            start = ++position;
+            while (position < end && buffer.get(position) != '|')
+                position++;
+            labels[i] = label;
+            lengths[i] = parseLength(buffer, start, position);
+            position++;
+        }
+        return new TaxonPath(labels, lengths);
+    }
+
+    // the powers of ten that are exact doubles
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     *     Parses a branch length, like: 18, 0.00279 or 1.5E-4
+     *
+     *     The lengths of the trees are short decimals, so the digits fit
+     *     in a long and the value is one multiplication or division of two
+     *     exact doubles; which gives the same (correctly rounded) double
+     *     as Double.parseDouble. Anything else is left to Double.parseDouble.
+     */
+    private static double parseLength(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        boolean negative = (position < end && buffer.get(position) == '-');
+        if (negative)
+            position++;
+        long mantissa = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean point = false;
+        for (; position < end; position++) {
+            byte b = buffer.get(position);
+            if (b >= '0' && b <= '9') {
+                if (mantissa >= (1L << 53) / 10)
+                    return Double.parseDouble(text(buffer, start, end));
+                mantissa = mantissa * 10 + (b - '0');
+                if (point)
+                    exponent--;
+                digits = true;
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (position < end) {
+            byte b = buffer.get(position);
+            if (!digits || (b != 'E' && b != 'e'))
+                return Double.parseDouble(text(buffer, start, end));
+            // the exponent: a small number, like in 1.5E-4
+            int sign = 1;
+            if (++position < end && (buffer.get(position) == '-' || buffer.get(position) == '+'))
+                sign = (buffer.get(position++) == '-' ? -1 : 1);
+            int value = 0;
+            int first = position;
+            for (; position < end; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9 || value > 1000)
+                    return Double.parseDouble(text(buffer, start, end));
+                value = value * 10 + digit;
+            }
+            if (position == first)
+                return Double.parseDouble(text(buffer, start, end));
+            exponent += sign * value;
+        }
+        if (!digits)
+            return Double.parseDouble(text(buffer, start, end));
+        double length;
+        if (exponent == 0)
+            length = mantissa;
+        else if (exponent > 0 && exponent < POWERS.length)
+            length = mantissa * POWERS[exponent];
+        else if (exponent < 0 && -exponent < POWERS.length)
+            length = mantissa / POWERS[-exponent];
+        else
+            return Double.parseDouble(text(buffer, start, end));
+        return (negative ? -length : length);
+    }
+
+    /**
+     *     Returns the bytes as a String; only for the rare lengths
+     *     parseLength leaves to Double.parseDouble, and for messages
+     */
+    private static String text(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return      the number of nodes on the path, including the tip
+     */
+    public int size() {
+        return this.labels.length;
+    }
+
+    /**
+     * @param index     the index of a node; 0 for the tip
+     * @return          the label of the node
+     */
+    public int getLabel(int index) {
+        return this.labels[index];
+    }
+
+    /**
+     * @param index     the index of a node; 0 for the tip
+     * @return          the branch length of the node
+     */
+    public double getLength(int index) {
+        return this.lengths[index];
+    }
+
+    /**
+     * @return      the (approximate) number of bytes of memory taken by the path
+     */
+    public int getMemorySize() {
+        // object headers and references, plus the array contents
+        return 64 + 4 * this.labels.length + 8 * this.lengths.length;
+    }
+}
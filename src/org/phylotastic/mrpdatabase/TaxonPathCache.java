@@ -0,0 +1,156 @@
+package org.phylotastic.mrpdatabase;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *     Class TaxonPathCache
+ *
+ *     A least recently used (LRU) cache of parsed taxon paths, bounded
+ *     by the (approximate) memory the paths take. When several input
+ *     lists are pruned after one another, like the pre/post lists of
+ *     the sites or the replicates of script/sampler.sh, the same paths
+ *     are otherwise read and parsed over and over again.
+ *
+ *     There is one cache per JVM (see getShared), so it is shared by
+ *     the tasks that run in the same JVM: those of the local engines
+ *     and, with Hadoop, the tasks of an uber job or the local job runner.
+ *     The paths are cached per identity of the "taxon database" (see
+ *     MrpResultCache.databaseIdentity), so more than one database can be
+ *     cached at the same time, and the paths of a database that is
+ *     rebuilt or updated in place (see TaxonDatabaseUpdater) are not
+ *     taken for those of the new one; the paths of a database without
+ *     an identity are not cached. All methods are thread safe.
+ */
+public class TaxonPathCache {
+
+    /**
+     *     the default size of the cache, in megabytes
+     */
+    public static final int DEFAULT_SIZE = 64;
+
+    private static TaxonPathCache shared;   // the cache of this JVM
+
+    /**
+     *     Static method: getShared
+     *
+     *     Return the cache of this JVM, resized to the given size
+     *
+     * @param sizeMB    the size of the cache in megabytes; 0 for no cache
+     * @return          the cache of this JVM; null when sizeMB is 0
+     */
+    public static synchronized TaxonPathCache getShared(int sizeMB) {
+        if (sizeMB <= 0)
+            return null;
+        if (shared == null)
+            shared = new TaxonPathCache((long)sizeMB << 20);
+        else
+            shared.setMaxSize((long)sizeMB << 20);
+        return shared;
+    }
+
+    private final LinkedHashMap<String, TaxonPath> paths;  // the paths, least recently used first
+    private long maxSize;                   // the maximum size in bytes
+    private long size;                      // the current size in bytes
+    private long hits;                      // the number of lookups found in the cache
+    private long misses;                    // the number of lookups not found in the cache
+
+    /**
+     *     Constructor
+     *
+     * @param _maxSize  the maximum size of the cache in bytes
+     */
+    public TaxonPathCache(long _maxSize) {
+        this.paths = new LinkedHashMap<>(1024, 0.75f, true);
+        this.maxSize = _maxSize;
+    }
+
+    /**
+     *     Return the path of a taxon, if it is in the cache
+     *
+     * @param database      the identity of the "taxon database"
+     * @param taxonName     the (tidy) name of the taxon
+     * @return              the parsed path; null if it is not in the cache
+     */
+    public synchronized TaxonPath get(String database, String taxonName) {
+        TaxonPath path = this.paths.get(key(database, taxonName));
+        if (path != null)
+            this.hits++;
+        else
+            this.misses++;
+        return path;
+    }
+
+    /**
+     *     Add the path of a taxon to the cache; the least recently
+     *     used paths are removed when the cache gets too big
+     *
+     * @param database      the identity of the "taxon database"
+     * @param taxonName     the (tidy) name of the taxon
+     * @param path          the parsed path
+     */
+    public synchronized void put(String database, String taxonName, TaxonPath path) {
+        String key = key(database, taxonName);
+        TaxonPath old = this.paths.put(key, path);
+        if (old != null)
+            this.size -= entrySize(key, old);
+        this.size += entrySize(key, path);
+        this.evict();
+    }
+
+    private static String key(String database, String taxonName) {
+        return database + '\n' + taxonName;
+    }
+
+    private static long entrySize(String key, TaxonPath path) {
+        return path.getMemorySize() + 2 * key.length() + 64;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, TaxonPath>> entries = this.paths.entrySet().iterator();
+        while (this.size > this.maxSize && entries.hasNext()) {
+            Map.Entry<String, TaxonPath> entry = entries.next();
+            this.size -= entrySize(entry.getKey(), entry.getValue());
+            entries.remove();
+        }
+    }
+
+    /**
+     * @param _maxSize  the maximum size of the cache in bytes;
+     *                  the least recently used paths are removed
+     *                  until the cache fits
+     */
+    public synchronized void setMaxSize(long _maxSize) {
+        this.maxSize = _maxSize;
+        this.evict();
+    }
+
+    /**
+     * @return      the number of paths in the cache
+     */
+    public synchronized int getCount() {
+        return this.paths.size();
+    }
+
+    /**
+     * @return      the (approximate) size of the cache in bytes
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return      the number of lookups found in the cache so far
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return      the number of lookups not found in the cache so far
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+}
@@ -0,0 +1,264 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ *     Class TreeIndex
+ *
+ *     The complete tree of a "taxon database" as two arrays, indexed on
+ *     the (pre-order) node label: the label of the parent of each node and
+ *     the length of the branch to that parent. The root has parent 0.
+ *
+ *     The index is put together from the tip-to-root paths of all the
+ *     taxa in the database. It is stored in the data directory of the
+ *     tree, next to the taxon files, as:
+ *
+ *     tree.idx    a header:  int magic, int version, int size
+ *                 followed by size parent labels (int)
+ *                 and size lengths (double), for label 0 .. size-1
+ */
+public class TreeIndex {
+
+    /**
+     *     the name of the index file
+     */
+    public static final String INDEX_FILE = "tree.idx";
+
+    /**
+     *     the magic number at the start of the index file => "MRPT"
+     */
+    public static final int MAGIC = 0x4D525054;
+
+    /**
+     *     the version of the index file layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     *     Class Builder
+     *
+     *     Puts a TreeIndex together from tip-to-root paths,
+     *     added in any order
+     */
+    public static class Builder {
+        private int[] parents = new int[1024];
+        private double[] lengths = new double[1024];
+        private int size = 1;
+
+        /**
+         *     Add the nodes of a tip-to-root path
+         *
+         * @param path      the path, like: 628:18|625:1| ..... |2:1|1:1
+         */
+        public void addPath(String path) {
+            int child = 0;
+            int start = 0;
+            while (start < path.length()) {
+                int end = path.indexOf('|', start);
+                if (end < 0)
+                    end = path.length();
+                int colon = path.indexOf(':', start);
+                int label = Integer.parseInt(path.substring(start, colon));
+                int next = path.indexOf(':', colon + 1);
+                double length = Double.parseDouble(path.substring(colon + 1,
+                        next < 0 || next > end ? end : next));
+                this.ensureSize(label + 1);
+                this.lengths[label] = length;
+                if (child != 0)
+                    this.parents[child] = label;
+                child = label;
+                start = end + 1;
+            }
+        }
+
+        private void ensureSize(int _size) {
+            if (_size > this.parents.length) {
+                int capacity = Math.max(_size, this.parents.length * 2);
+                this.parents = Arrays.copyOf(this.parents, capacity);
+                this.lengths = Arrays.copyOf(this.lengths, capacity);
+            }
+            this.size = Math.max(this.size, _size);
+        }
+
+        /**
+         * @return      the index of the paths added so far
+         */
+        public TreeIndex build() {
+            return new TreeIndex(Arrays.copyOf(this.parents, this.size),
+                    Arrays.copyOf(this.lengths, this.size));
+        }
+    }
+
+    /**
+     *     Static method: read
+     *
+     * @param stream    the stream to read the index from; it is closed
+     * @return          the index read
+     * @throws IOException
+     */
+    public static TreeIndex read(InputStream stream) throws IOException {
+        try (DataInputStream index = new DataInputStream(new java.io.BufferedInputStream(stream))) {
+            if (index.readInt() != MAGIC)
+                throw new IOException("Not a tree index");
+            int version = index.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported tree index version " + version);
+            int size = index.readInt();
+            int[] parents = new int[size];
+            double[] lengths = new double[size];
+            for (int i = 0; i < size; i++)
+                parents[i] = index.readInt();
+            for (int i = 0; i < size; i++)
+                lengths[i] = index.readDouble();
+            return new TreeIndex(parents, lengths);
+        }
+    }
+
+    /**
+     *     Static method: readLocal
+     *
+     *     Read the index of a data directory on the local file system;
+     *     if there is no index file, put it together from the taxon
+     *     paths, that are read from the packed data file if there is
+     *     one, or else from the taxon files.
+     *
+     * @param dataDir   the local data directory
+     * @return          the index
+     * @throws IOException
+     */
+    public static TreeIndex readLocal(Path dataDir) throws IOException {
+        Path indexFile = dataDir.resolve(INDEX_FILE);
+        if (Files.isRegularFile(indexFile))
+            return read(Files.newInputStream(indexFile));
+        Builder builder = new Builder();
+        Path packedData = dataDir.resolve(PackedTaxonDatabase.DATA_FILE);
+        if (Files.isRegularFile(packedData)) {
+            try (BufferedReader reader = Files.newBufferedReader(packedData, StandardCharsets.UTF_8)) {
+                reader.readLine();      // the header line (see PackedTaxonDatabase)
+                for (String line = reader.readLine(); line != null; line = reader.readLine())
+                    builder.addPath(line);
+            }
+        } else {
+            addTaxonFiles(builder, dataDir);
+        }
+        return builder.build();
+    }
+
+    private static void addTaxonFiles(Builder builder, Path directory) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    addTaxonFiles(builder, entry);
+                } else if (TaxonKey.fromHex(entry.getFileName().toString()) != null) {
+                    try (BufferedReader reader = Files.newBufferedReader(entry, Charset.defaultCharset())) {
+                        builder.addPath(reader.readLine());
+                    }
+                }
+            }
+        }
+    }
+
+    private final int[] parents;        // the parent label of each label
+    private final double[] lengths;     // the branch length of each label
+
+    /**
+     *     Constructor
+     *
+     * @param _parents      the parent label of each label (0 for the root)
+     * @param _lengths      the branch length of each label
+     */
+    public TreeIndex(int[] _parents, double[] _lengths) {
+        this.parents = _parents;
+        this.lengths = _lengths;
+    }
+
+    /**
+     *     Write the index
+     *
+     * @param stream    the stream to write the index to; it is closed
+     * @throws IOException
+     */
+    public void write(OutputStream stream) throws IOException {
+        try (DataOutputStream index = new DataOutputStream(new java.io.BufferedOutputStream(stream))) {
+            index.writeInt(MAGIC);
+            index.writeInt(VERSION);
+            index.writeInt(this.parents.length);
+            for (int parent : this.parents)
+                index.writeInt(parent);
+            for (double length : this.lengths)
+                index.writeDouble(length);
+        }
+    }
+
+    /**
+     * @return      the number of labels in the index (the highest label + 1)
+     */
+    public int getSize() {
+        return this.parents.length;
+    }
+
+    /**
+     * @param label     the label of a node
+     * @return          the label of it's parent; 0 for the root
+     */
+    public int getParent(int label) {
+        return this.parents[label];
+    }
+
+    /**
+     * @param label     the label of a node
+     * @return          the length of the branch to it's parent
+     */
+    public double getLength(int label) {
+        return this.lengths[label];
+    }
+
+    /**
+     *     Return the tip-to-root path of a node, as it is stored in
+     *     the "taxon database" (see formatLength for the lengths)
+     *
+     * @param label     the label of a node
+     * @return          the path, like: 628:18|625:1| ..... |2:1|1:0
+     */
+    public String getPath(int label) {
+        StringBuilder path = new StringBuilder();
+        for (int node = label; node != 0; node = this.parents[node]) {
+            if (node != label)
+                path.append('|');
+            path.append(node).append(':').append(formatLength(this.lengths[node]));
+        }
+        return path.toString();
+    }
+
+    /**
+     *     Static method: formatLength
+     *
+     *     Formats a branch length for a taxon path: the shortest decimal
+     *     notation that reads back as the same double, without an exponent
+     *     and without a fraction for whole numbers, like Perl prints it;
+     *     e.g. "0", "18", "0.00015"
+     *
+     * @param length    the branch length
+     * @return          the formatted length
+     */
+    public static String formatLength(double length) {
+        String text = Double.toString(length);
+        if (text.indexOf('E') >= 0)
+            return new BigDecimal(text).stripTrailingZeros().toPlainString();
+        if (text.endsWith(".0"))
+            return text.substring(0, text.length() - 2);
+        return text;
+    }
+}
@@ -0,0 +1,82 @@
+package org.phylotastic.mrpoption;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *     Class MrpChoiceOption
+ *
+ *     An implementation of the MrpArgumentOption class
+ *     for options that take one value out of a fixed list
+ *     of choices, like the format of the "taxon database":
+ *     "-format packed"
+ *     "[Main]"
+ *     "dbFormat = packed"
+ *
+ *     Values are compared case insensitive and stored
+ *     in lower case.
+ */
+public class MrpChoiceOption extends MrpArgumentOption {
+
+    /**
+     *     the values that are allowed for this option
+     */
+    protected final List<String> choices;
+
+    /**
+     *     default constructor
+     *
+     * @param _choices          the values that are allowed for this option
+     */
+    public MrpChoiceOption(String... _choices) {
+        super();
+        this.choices = Arrays.asList(_choices);
+    }
+
+    /**
+     *     This is the method that sets the actual attribute
+     *     value for a specific config value (option)
+     *
+     * @param _value
+     */
+    @Override
+    public void setValue(String _value) {
+        this.value = _value.trim().toLowerCase();
+    }
+
+    /**
+     *     Return true if the value of this option
+     *     equals the given choice
+     *
+     * @param _choice   the choice to compare the value with
+     * @return          true if the value equals the choice
+     */
+    public boolean is(String _choice) {
+        return this.value.equalsIgnoreCase(_choice);
+    }
+
+    /**
+     *     Return the values that are allowed for this option
+     *
+     * @return  the list of allowed values
+     */
+    public List<String> getChoices() {
+        return this.choices;
+    }
+
+    /**
+     *     check if one of the allowed values was specified for this.option;
+     *     otherwise @throw an IllegalArgumentException
+     *
+     * @throws IllegalArgumentException
+    */
+    @Override
+    public void checkValue() throws IllegalArgumentException {
+        if (this.value.isEmpty())
+            throw new IllegalArgumentException("No value has been specified for: "
+                    + this.description);
+        else if (!this.choices.contains(this.value))
+            throw new IllegalArgumentException("Option: " + this.description +
+                    ": " + this.value + "  is not one of: " + this.choices.toString());
+    }
+}
@@ -1,7 +1,14 @@
 package org.phylotastic.mrppath;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
 
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
 /**
  *     Class: PathNode
  * 
@@ -9,17 +16,53 @@ import java.util.Objects;
  *     Pathnode objects help to store and convert nodes in the paths from the
  *     taxons to their root nodes.
  *
+ *     Pathnodes are also (Hadoop) Writables, so they can be passed between
+ *     the map and reduce steps in binary form instead of as Text that has
+ *     to be parsed again; serialized as: int label, double length, name
+ *
  *     @author(s); Carla Stegehuis, Rutger Vos
  *     Contributed to:
  *     Date: 3/11/'14
  *     Version: V2.0
  */
-public class PathNode implements Comparable<PathNode> {
+public class PathNode implements WritableComparable<PathNode> {
     /**
      *     Static variables:
      */
     // none
     
+    /**
+     *     Static class: LabelComparator
+     * 
+     *     A (Hadoop) RawComparator for serialized pathnodes, to be used as
+     *     sort and grouping comparator for keys in the map/reduce shuffle.
+     *     It compares the label (the first 4 bytes) only, without creating
+     *     the objects, and sorts in ascending order: the pre-order of the
+     *     labels. Beware: this is the opposite of compareTo(), that sorts
+     *     the nodes of a PathNodeSet in descending order.
+     */
+    public static class LabelComparator extends WritableComparator {
+        
+        public LabelComparator() {
+            super(PathNode.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            return compareLabels(readInt(b1, s1), readInt(b2, s2));
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public int compare(WritableComparable a, WritableComparable b) {
+            return compareLabels(((PathNode)a).getLabel(), ((PathNode)b).getLabel());
+        }
+
+        static int compareLabels(int thisValue, int thatValue) {
+            return (thisValue < thatValue ? -1 : (thisValue > thatValue ? 1 : 0));
+        }
+    }
+    
     /**
      *     Static method: fromString()
      * 
@@ -45,6 +88,17 @@ public class PathNode implements Comparable<PathNode> {
     double mLength;
     String mName;
 
+    /**
+     *     Constructor
+     *     Creates an empty pathnode (label 0); needed by Hadoop to
+     *     create the object before reading it's fields
+     */
+    public PathNode() {
+        mLabel = 0;
+        mLength = 0.0;
+        mName = "";
+    }
+
     /**
      *     Constructor
      *
@@ -164,6 +218,32 @@ public class PathNode implements Comparable<PathNode> {
             return mLabel + ":" + mLength + ":" + mName;
     }
 
+    /**
+     *     Writes this pathnode's fields (implements Writable)
+     *
+     * @param out       the output to write to
+     * @throws IOException
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mLabel);
+        out.writeDouble(mLength);
+        Text.writeString(out, mName);
+    }
+
+    /**
+     *     Reads this pathnode's fields (implements Writable)
+     *
+     * @param in        the input to read from
+     * @throws IOException
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        mLabel = in.readInt();
+        mLength = in.readDouble();
+        mName = Text.readString(in);
+    }
+
     /**
      *     compareTo implements (part of) the Coparable interface
      * 
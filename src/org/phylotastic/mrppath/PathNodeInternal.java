@@ -1,5 +1,9 @@
 package org.phylotastic.mrppath;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Class PathNodeInternal
  * 
@@ -7,6 +11,8 @@ package org.phylotastic.mrppath;
  * PathNode class with the interger TipCount
  * This count expresses how many (external) tip nodes
  * have the particular (internal) node in their path.
+ * 
+ * Serialized (Writable) as a PathNode followed by: int tipCount
  *
  *     @author(s); Carla Stegehuis, Rutger Vos
  *     Contributed to:
@@ -59,6 +65,15 @@ public class PathNodeInternal extends PathNode {
      */ 
     int mTipCount;
 
+    /**
+     *     Constructor
+     *     Creates an empty internal pathnode; needed by Hadoop
+     */
+    public PathNodeInternal()
+    {
+        super();
+    }
+
     /**
      *     Constructor
      *
@@ -115,6 +130,20 @@ public class PathNodeInternal extends PathNode {
         return mTipCount;
     }
 
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+        super.write(out);
+        out.writeInt(mTipCount);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+        super.readFields(in);
+        mTipCount = in.readInt();
+    }
+
     @Override
     public String toString ()
     {
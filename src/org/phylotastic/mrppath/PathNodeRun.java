@@ -0,0 +1,268 @@
+package org.phylotastic.mrppath;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+/**
+ *     Class PathNodeRun
+ *
+ *     A run of PathNodes, sorted in ascending order of label and
+ *     without doubles, held in primitive arrays. It is the value of
+ *     the first pass: the tips under an internal node. The mapper
+ *     writes runs of one tip, the combiner and the reducers merge
+ *     the (sorted) runs of a node into one.
+ *
+ *     PathNodeRuns are (Hadoop) Writables. They are serialized as:
+ *     int size, the labels (int), the lengths (double), a boolean that
+ *     tells whether the nodes are named and, if so, the names.
+ */
+public class PathNodeRun implements Writable {
+
+    /**
+     *     Static method: merge
+     *
+     *     Merges a number of runs into one; when more than one run holds
+     *     the same label, the node of the first of those runs is kept
+     *
+     * @param runs      the runs to merge
+     * @return          the merged run
+     */
+    public static PathNodeRun merge(final List<PathNodeRun> runs) {
+        int total = 0;
+        boolean named = false;
+        for (PathNodeRun run : runs) {
+            total += run.mSize;
+            named |= run.mNames != null;
+        }
+        PathNodeRun result = new PathNodeRun(total, named);
+        if (runs.size() == 1) {
+            result.addAll(runs.get(0));
+            return result;
+        }
+        // the next position in each run; the queue holds the runs
+        // that are not done yet, ordered on their next label
+        final int[] positions = new int[runs.size()];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(runs.size(), new java.util.Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int thisValue = runs.get(a).mLabels[positions[a]];
+                int thatValue = runs.get(b).mLabels[positions[b]];
+                if (thisValue != thatValue)
+                    return (thisValue < thatValue ? -1 : 1);
+                return a.compareTo(b);
+            }
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            if (runs.get(i).mSize > 0)
+                queue.add(i);
+        }
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            PathNodeRun run = runs.get(i);
+            int position = positions[i];
+            if (result.mSize == 0 || result.mLabels[result.mSize - 1] != run.mLabels[position])
+                result.add(run.mLabels[position], run.mLengths[position], run.getName(position));
+            positions[i]++;
+            if (positions[i] < run.mSize)
+                queue.add(i);
+        }
+        return result;
+    }
+
+    /**
+     *     Object variables:
+     */
+    protected int mSize;
+    protected int[] mLabels;
+    protected double[] mLengths;
+    protected String[] mNames;      // null when the nodes are not named
+
+    /**
+     *     Constructor
+     *     Creates an empty PathNode run
+     */
+    public PathNodeRun() {
+        this(4, false);
+    }
+
+    /**
+     *     Constructor
+     *     Creates an empty PathNode run with room for a number of nodes
+     *
+     * @param capacity  the number of nodes
+     * @param named     true if the nodes are named
+     */
+    public PathNodeRun(int capacity, boolean named) {
+        super();
+        mLabels = new int[Math.max(1, capacity)];
+        mLengths = new double[mLabels.length];
+        mNames = named ? new String[mLabels.length] : null;
+    }
+
+    /**
+     *     Constructor
+     *     Creates a copy of a run
+     *
+     * @param run       the run to copy
+     */
+    public PathNodeRun(PathNodeRun run) {
+        this(run.mSize, run.mNames != null);
+        this.addAll(run);
+    }
+
+    /**
+     *     Make this a run of a single node
+     *
+     * @param node      the node
+     */
+    public void set(PathNode node) {
+        mSize = 0;
+        boolean named = !node.getName().isEmpty();
+        if (named && mNames == null)
+            mNames = new String[mLabels.length];
+        else if (!named)
+            mNames = null;
+        this.add(node.getLabel(), node.getLength(), node.getName());
+    }
+
+    /**
+     *     Add a node at the end of this run; the label must be
+     *     higher than those of the nodes already in the run
+     *
+     * @param label     the label of the node
+     * @param length    the length of the node
+     * @param name      the name of the node
+     */
+    protected void add(int label, double length, String name) {
+        if (mSize == mLabels.length) {
+            int capacity = 2 * mLabels.length;
+            mLabels = Arrays.copyOf(mLabels, capacity);
+            mLengths = Arrays.copyOf(mLengths, capacity);
+            if (mNames != null)
+                mNames = Arrays.copyOf(mNames, capacity);
+        }
+        mLabels[mSize] = label;
+        mLengths[mSize] = length;
+        if (mNames != null)
+            mNames[mSize] = name;
+        mSize++;
+    }
+
+    private void addAll(PathNodeRun run) {
+        for (int i = 0; i < run.mSize; i++)
+            this.add(run.mLabels[i], run.mLengths[i], run.getName(i));
+    }
+
+    /**
+     *     Return the number of nodes in this run
+     *
+     * @return   the number of nodes in this.run
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @param index     the index of a node in the run
+     * @return          the label of the node
+     */
+    public int getLabel(int index) {
+        return mLabels[index];
+    }
+
+    /**
+     * @param index     the index of a node in the run
+     * @return          the length of the node
+     */
+    public double getLength(int index) {
+        return mLengths[index];
+    }
+
+    /**
+     * @param index     the index of a node in the run
+     * @return          the name of the node; empty if it is not named
+     */
+    public String getName(int index) {
+        return mNames == null || mNames[index] == null ? "" : mNames[index];
+    }
+
+    /**
+     * @param index     the index of a node in the run
+     * @return          the node
+     */
+    public PathNode getNode(int index) {
+        return new PathNode(mLabels[index], mLengths[index], this.getName(index));
+    }
+
+    /**
+     *     Writes this run (implements Writable)
+     *
+     * @param out       the output to write to
+     * @throws IOException
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mSize);
+        for ( int i = 0; i < mSize; i++ )
+            out.writeInt(mLabels[i]);
+        for ( int i = 0; i < mSize; i++ )
+            out.writeDouble(mLengths[i]);
+        out.writeBoolean(mNames != null);
+        if (mNames != null) {
+            for ( int i = 0; i < mSize; i++ )
+                Text.writeString(out, this.getName(i));
+        }
+    }
+
+    /**
+     *     Reads this run, replacing the current nodes (implements Writable)
+     *
+     * @param in        the input to read from
+     * @throws IOException
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        mSize = in.readInt();
+        if (mSize > mLabels.length) {
+            mLabels = new int[mSize];
+            mLengths = new double[mSize];
+        }
+        for ( int i = 0; i < mSize; i++ )
+            mLabels[i] = in.readInt();
+        for ( int i = 0; i < mSize; i++ )
+            mLengths[i] = in.readDouble();
+        if (in.readBoolean()) {
+            if (mNames == null || mNames.length < mLabels.length)
+                mNames = new String[mLabels.length];
+            for ( int i = 0; i < mSize; i++ )
+                mNames[i] = Text.readString(in);
+        } else {
+            mNames = null;
+        }
+    }
+
+    /**
+     *     Return a string representation
+     *     of this.run in whitch the nodes
+     *     are seperated by the "|" character
+     *
+     * @return      the PathNodeRun as a string
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for ( int i = 0; i < mSize; i++ ) {
+            if (i > 0)
+                result.append("|");
+            result.append(this.getNode(i).toString());
+        }
+        return result.toString();
+    }
+}
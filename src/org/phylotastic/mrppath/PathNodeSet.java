@@ -1,7 +1,15 @@
 package org.phylotastic.mrppath;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.TreeSet;
 
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
 /**
  *     Class PathNodeSet
  * 
@@ -17,18 +25,54 @@ import java.util.TreeSet;
  *     PathNodeSets however need to be sorted in descending order and
  *     therefore PathNode implements a "wrong-way-around" compareTo()
  *     method.
+ * 
+ *     PathNodeSets are (Hadoop) WritableComparables, so they can be used
+ *     as key in the map and reduce steps. They are serialized as:
+ *     int size, the labels (int), the lengths (double) and the names,
+ *     all in descending order of label. Two sets are equal when they hold
+ *     the same labels; sets are ordered on size first, then on labels.
  *
  *     @author(s); Carla Stegehuis, Rutger Vos
  *     Contributed to:
  *     Date: 3/11/'14
  *     Version: V2.0
  */
-public class PathNodeSet {
+public class PathNodeSet implements WritableComparable<PathNodeSet> {
     /**
      *     Static variables:
      */ 
     // none
     
+    /**
+     *     Static class: LabelComparator
+     * 
+     *     A (Hadoop) RawComparator for serialized pathnodesets, to be used
+     *     as sort and grouping comparator for keys in the map/reduce shuffle.
+     *     It gives the same order as compareTo(), but reads only the size
+     *     and the labels from the bytes, without creating the objects.
+     */
+    public static class LabelComparator extends WritableComparator {
+        
+        public LabelComparator() {
+            super(PathNodeSet.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int thisSize = readInt(b1, s1);
+            int thatSize = readInt(b2, s2);
+            if (thisSize != thatSize)
+                return (thisSize < thatSize ? -1 : 1);
+            for ( int i = 1; i <= thisSize; i++ ) {
+                int thisValue = readInt(b1, s1 + 4 * i);
+                int thatValue = readInt(b2, s2 + 4 * i);
+                if (thisValue != thatValue)
+                    return (thisValue < thatValue ? -1 : 1);
+            }
+            return 0;
+        }
+    }
+    
     /**
      *     Static method: fromString
      *        
@@ -88,6 +132,96 @@ public class PathNodeSet {
         return mTipSet;    
     }
 
+    /**
+     *     Writes this set (implements Writable)
+     *
+     * @param out       the output to write to
+     * @throws IOException
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mTipSet.size());
+        for ( PathNode node : mTipSet )
+            out.writeInt(node.getLabel());
+        for ( PathNode node : mTipSet )
+            out.writeDouble(node.getLength());
+        for ( PathNode node : mTipSet )
+            Text.writeString(out, node.getName());
+    }
+
+    /**
+     *     Reads this set, replacing the current nodes (implements Writable)
+     *
+     * @param in        the input to read from
+     * @throws IOException
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int size = in.readInt();
+        PathNode[] nodes = new PathNode[size];
+        for ( int i = 0; i < size; i++ )
+            nodes[i] = new PathNode(in.readInt(), 0.0);
+        for ( int i = 0; i < size; i++ )
+            nodes[i].setLength(in.readDouble());
+        for ( int i = 0; i < size; i++ )
+            nodes[i].setName(Text.readString(in));
+        mTipSet.clear();
+        for ( PathNode node : nodes )
+            mTipSet.add(node);
+    }
+
+    /**
+     *     compareTo implements (part of) the Comparable interface
+     *     The smaller set comes first; sets of the same size are
+     *     compared label by label, in descending order of label
+     *
+     * @param that  the PathNodeSet to compare this.set with
+     * @return  a negative, zero or positive number
+     */
+    @Override
+    public int compareTo(PathNodeSet that) {
+        int thisSize = this.getSize();
+        int thatSize = that.getSize();
+        if (thisSize != thatSize)
+            return (thisSize < thatSize ? -1 : 1);
+        Iterator<PathNode> thatNodes = that.getSet().iterator();
+        for ( PathNode node : mTipSet ) {
+            int thisValue = node.getLabel();
+            int thatValue = thatNodes.next().getLabel();
+            if (thisValue != thatValue)
+                return (thisValue < thatValue ? -1 : 1);
+        }
+        return 0;
+    }
+
+    /**
+     *     Return true if this set holds the same
+     *     labels as the other set
+     *
+     * @param _that the object (PathNodeSet) to compare with
+     * @return      true if both sets are equal
+     */
+    @Override
+    public boolean equals(Object _that) {
+        if (_that == null) return false;
+        if (_that.getClass() != this.getClass()) return false;
+        return this.compareTo((PathNodeSet)_that) == 0;
+    }
+
+    /**
+     *     Return this set's hashCode, computed from the labels
+     *     (used by Hadoop to partition the keys over the reducers)
+     *
+     * @return      the PathNodeSet's hashcode
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        for ( PathNode node : mTipSet )
+            hash = 31 * hash + node.getLabel();
+        return hash;
+    }
+
     /**
      *     Return a string representation
      *     of this.pathnodeset in whitch
@@ -0,0 +1,175 @@
+package org.phylotastic.mrppath;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ *     Class: SamplePathNode
+ *
+ *     A pathnode tagged with the sample (input list) it belongs to, used as
+ *     key of the map/reduce passes when a batch of input lists is pruned in
+ *     one run: the records of each sample are sorted and grouped apart,
+ *     while the samples share the tasks (and the cached taxon paths).
+ *
+ *     Serialized as: int sample, followed by the pathnode (int label,
+ *     double length, name).
+ */
+public class SamplePathNode extends PathNode {
+
+    /**
+     *     Static class: LabelComparator
+     *
+     *     A (Hadoop) RawComparator for serialized sample pathnodes, to be used
+     *     as sort and grouping comparator for keys in the map/reduce shuffle.
+     *     It compares the sample (the first 4 bytes), then the label (the
+     *     next 4 bytes), without creating the objects; so within a sample
+     *     the keys are in the same (ascending) order as PathNode.LabelComparator
+     *     gives.
+     */
+    public static class LabelComparator extends WritableComparator {
+
+        public LabelComparator() {
+            super(SamplePathNode.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int result = PathNode.LabelComparator.compareLabels(readInt(b1, s1), readInt(b2, s2));
+            if (result != 0)
+                return result;
+            return PathNode.LabelComparator.compareLabels(readInt(b1, s1 + 4), readInt(b2, s2 + 4));
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public int compare(WritableComparable a, WritableComparable b) {
+            SamplePathNode thisNode = (SamplePathNode)a;
+            SamplePathNode thatNode = (SamplePathNode)b;
+            int result = PathNode.LabelComparator.compareLabels(thisNode.getSample(), thatNode.getSample());
+            if (result != 0)
+                return result;
+            return PathNode.LabelComparator.compareLabels(thisNode.getLabel(), thatNode.getLabel());
+        }
+    }
+
+    /**
+     *     Static method: keyLike()
+     *
+     *     To create an empty key of the same kind as a given key: a
+     *     SamplePathNode of the same sample, or a plain PathNode
+     *
+     * @param key       the key to create a key like
+     * @return          the new (empty) key
+     */
+    public static PathNode keyLike(PathNode key) {
+        if (key instanceof SamplePathNode)
+            return new SamplePathNode(((SamplePathNode)key).getSample());
+        return new PathNode();
+    }
+
+    /**
+     *     Object variables:
+     */
+    int mSample;
+
+    /**
+     *     Constructor
+     *     Creates an empty pathnode (label 0) of sample 0; needed by
+     *     Hadoop to create the object before reading it's fields
+     */
+    public SamplePathNode() {
+        super();
+        mSample = 0;
+    }
+
+    /**
+     *     Constructor
+     *     Creates an empty pathnode (label 0) of a sample
+     *
+     * @param sample    the ID of the sample
+     */
+    public SamplePathNode(int sample) {
+        super();
+        mSample = sample;
+    }
+
+    /**
+     *     Constructor
+     *
+     * @param sample    the ID of the sample
+     * @param node      the pathnode to copy the label, length and name of
+     */
+    public SamplePathNode(int sample, PathNode node) {
+        super(node.getLabel(), node.getLength(), node.getName());
+        mSample = sample;
+    }
+
+    /**
+     *     set this node's sample (ID)
+     *
+     * @param sample    the ID of the sample
+     */
+    public void setSample(int sample) {
+        mSample = sample;
+    }
+
+    /**
+     *     get this node's sample (ID)
+     *
+     * @return          the ID of the sample
+     */
+    public int getSample() {
+        return mSample;
+    }
+
+    /**
+     *     Writes this pathnode's fields (implements Writable)
+     *
+     * @param out       the output to write to
+     * @throws IOException
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mSample);
+        super.write(out);
+    }
+
+    /**
+     *     Reads this pathnode's fields (implements Writable)
+     *
+     * @param in        the input to read from
+     * @throws IOException
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        mSample = in.readInt();
+        super.readFields(in);
+    }
+
+    /**
+     *     Return true if this node is equal to the other
+     *     node, and of the same sample
+     *
+     * @param _that the object (SamplePathNode) to compare with
+     * @return      true if both nodes are equal
+     */
+    @Override
+    public boolean equals(Object _that) {
+        return super.equals(_that) && ((SamplePathNode)_that).getSample() == this.getSample();
+    }
+
+    /**
+     *     Return this node's hashCode; the nodes of the
+     *     samples are spread over the reducers
+     *
+     * @return      the SamplePathNode's hashcode
+     */
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + this.mSample;
+    }
+}
@@ -0,0 +1,204 @@
+package org.phylotastic.mrppath;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ *     Class TipSetKey
+ *
+ *     A fixed size key for the set of tips under an internal node: the
+ *     lowest label, the highest label and the number of tips in the set.
+ *
+ *     With pre-order labels the subtree of a node holds the labels from
+ *     that of the node up to that of it's last descendant. So the tips
+ *     under a node are the selected tips in that range: a contiguous
+ *     run of all selected tips, when sorted on label. Such a run is
+ *     fully determined by it's first and last tip, so two nodes have
+ *     the same tip set exactly when they have the same key. The tips
+ *     themselves can be found back in the (sorted) list of all tips.
+ *
+ *     The empty key (size 0) stands for the ID records: "(=)".
+ *
+ *     TipSetKeys are (Hadoop) WritableComparables, serialized as:
+ *     int size, int lowest label, int highest label. Keys are ordered
+ *     on size first, then on highest and lowest label.
+ */
+public class TipSetKey implements WritableComparable<TipSetKey> {
+
+    /**
+     *     Static class: LabelComparator
+     *
+     *     A (Hadoop) RawComparator for serialized keys, to be used as sort
+     *     and grouping comparator in the map/reduce shuffle. It gives the
+     *     same order as compareTo(), without creating the objects.
+     */
+    public static class LabelComparator extends WritableComparator {
+
+        public LabelComparator() {
+            super(TipSetKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            return TipSetKey.compare(readInt(b1, s1), readInt(b1, s1 + 8), readInt(b1, s1 + 4),
+                    readInt(b2, s2), readInt(b2, s2 + 8), readInt(b2, s2 + 4));
+        }
+    }
+
+    private static int compare(int thisSize, int thisMax, int thisMin, int thatSize, int thatMax, int thatMin) {
+        if (thisSize != thatSize)
+            return (thisSize < thatSize ? -1 : 1);
+        if (thisMax != thatMax)
+            return (thisMax < thatMax ? -1 : 1);
+        if (thisMin != thatMin)
+            return (thisMin < thatMin ? -1 : 1);
+        return 0;
+    }
+
+    /**
+     *     Object variables:
+     */
+    protected int mSize;
+    protected int mMinLabel;
+    protected int mMaxLabel;
+
+    /**
+     *     Constructor
+     *     Creates the empty key
+     */
+    public TipSetKey() {
+        super();
+    }
+
+    /**
+     *     Constructor
+     *
+     * @param size      the number of tips in the set
+     * @param minLabel  the lowest label in the set
+     * @param maxLabel  the highest label in the set
+     */
+    public TipSetKey(int size, int minLabel, int maxLabel) {
+        super();
+        this.set(size, minLabel, maxLabel);
+    }
+
+    /**
+     *     Constructor
+     *     Creates the key of a (sorted) run of tips
+     *
+     * @param tips      the tips
+     */
+    public TipSetKey(PathNodeRun tips) {
+        super();
+        if (tips.getSize() > 0)
+            this.set(tips.getSize(), tips.getLabel(0), tips.getLabel(tips.getSize() - 1));
+    }
+
+    /**
+     * @param size      the number of tips in the set
+     * @param minLabel  the lowest label in the set
+     * @param maxLabel  the highest label in the set
+     */
+    public final void set(int size, int minLabel, int maxLabel) {
+        mSize = size;
+        mMinLabel = minLabel;
+        mMaxLabel = maxLabel;
+    }
+
+    /**
+     * @return      the number of tips in the set; 0 for the ID key
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return      the lowest label in the set
+     */
+    public int getMinLabel() {
+        return mMinLabel;
+    }
+
+    /**
+     * @return      the highest label in the set
+     */
+    public int getMaxLabel() {
+        return mMaxLabel;
+    }
+
+    /**
+     *     Writes this key (implements Writable)
+     *
+     * @param out       the output to write to
+     * @throws IOException
+     */
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mSize);
+        out.writeInt(mMinLabel);
+        out.writeInt(mMaxLabel);
+    }
+
+    /**
+     *     Reads this key (implements Writable)
+     *
+     * @param in        the input to read from
+     * @throws IOException
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        mSize = in.readInt();
+        mMinLabel = in.readInt();
+        mMaxLabel = in.readInt();
+    }
+
+    /**
+     *     compareTo implements (part of) the Comparable interface
+     *
+     * @param that  the TipSetKey to compare this.key with
+     * @return  a negative, zero or positive number
+     */
+    @Override
+    public int compareTo(TipSetKey that) {
+        return compare(this.mSize, this.mMaxLabel, this.mMinLabel,
+                that.mSize, that.mMaxLabel, that.mMinLabel);
+    }
+
+    /**
+     * @param _that the object (TipSetKey) to compare with
+     * @return      true if both keys are equal
+     */
+    @Override
+    public boolean equals(Object _that) {
+        if (_that == null) return false;
+        if (_that.getClass() != this.getClass()) return false;
+        return this.compareTo((TipSetKey)_that) == 0;
+    }
+
+    /**
+     *     Return this key's hashCode
+     *     (used by Hadoop to partition the keys over the reducers)
+     *
+     * @return      the TipSetKey's hashcode
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + mSize;
+        hash = 31 * hash + mMinLabel;
+        hash = 31 * hash + mMaxLabel;
+        return hash;
+    }
+
+    /**
+     * @return      the key as a string, like: 3:620..628
+     */
+    @Override
+    public String toString() {
+        return mSize + ":" + mMinLabel + ".." + mMaxLabel;
+    }
+}
@@ -0,0 +1,317 @@
+package org.phylotastic.mrptree;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.phylotastic.mrppath.*;
+
+/**
+ *     Class CompactTree
+ *
+ *     A tree like the Tree class builds, with the nodes stored in a
+ *     structure of arrays instead of a TreeNode object per node: the
+ *     label, length and name of each node, and the parent, first child
+ *     and next sibling (as indexes in the arrays). The labels are mapped
+ *     to the indexes by an IntIndexMap, the same int table TreeNodeMap
+ *     uses, which also holds the label of each index.
+ *
+ *     While the tree is built only the parents are set; the children of
+ *     the nodes are linked, sorted on label, in one go when the tree is
+ *     rooted (rootTheTree), instead of being sorted on every insert.
+ *     So the tree must be rooted before the children are walked or the
+ *     Newick string is made.
+ *
+ *     The object per node API is still there as a view: toTree() returns
+ *     the tree as a Tree of TreeNodes.
+ */
+public class CompactTree {
+    /**
+     *     the index of "no node"; e.g. the parent of the root
+     */
+    public static final int NONE = -1;
+
+    private final IntIndexMap labels;   // label (ID) => index of each node
+    private double[] lengths;           // the branch length of each node
+    private String[] names;             // the taxon name of each node; null if it has none
+    private int[] parents;              // the parent of each node
+    private int[] firstChildren;        // the first (lowest label) child of each node
+    private int[] nextSiblings;         // the next (higher label) sibling of each node
+    private int root;                   // the root node; NONE if not yet rooted
+
+    // constructors
+    // ------------------------------------------------------------------------
+    /**     Construct an empty CompactTree
+    */
+    public CompactTree() {
+        this(16);
+    }
+
+    /**     Construct an empty CompactTree with room for a number of nodes
+     *
+     * @param _expectedSize     the expected number of nodes
+     */
+    public CompactTree(int _expectedSize) {
+        super();
+        int capacity = Math.max(4, _expectedSize);
+        this.labels = new IntIndexMap(capacity);
+        this.lengths = new double[capacity];
+        this.names = new String[capacity];
+        this.parents = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.root = NONE;
+    }
+
+    private void grow() {
+        int capacity = 2 * this.lengths.length;
+        this.lengths = Arrays.copyOf(this.lengths, capacity);
+        this.names = Arrays.copyOf(this.names, capacity);
+        this.parents = Arrays.copyOf(this.parents, capacity);
+        this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+        this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+    }
+
+    /**
+     *     Add a node to this.tree; when a node with the same label
+     *     is already there, it's length and name are replaced
+     *
+     * @param _label        the label (ID) of the node
+     * @param _length       the distance to the node's parentnode
+     * @param _name         the name of the taxon this is the external node for
+     * @return              the index of the node
+     */
+    public int addNode(int _label, double _length, String _name) {
+        int size = this.labels.size();
+        int index = this.labels.add(_label);
+        if (index == size) {
+            if (index == this.lengths.length)
+                this.grow();
+            this.parents[index] = NONE;
+            this.firstChildren[index] = NONE;
+            this.nextSiblings[index] = NONE;
+        }
+        this.lengths[index] = _length;
+        this.names[index] = (_name == null || _name.isEmpty()) ? null : _name;
+        return index;
+    }
+
+    /**
+     *     Add an internal node to this.tree
+     *
+     * @param _label        the label (ID) of the node
+     * @param _length       the distance to the node's parentnode
+     * @return              the index of the node
+     */
+    public int addNode(int _label, double _length) {
+        return this.addNode(_label, _length, null);
+    }
+
+    /**
+     *     Add a node from a (MrpPath) PathNode
+     *
+     * @param _node     the PathNode to add
+     * @return          the index of the node
+     */
+    public int addNode(PathNode _node) {
+        return this.addNode(_node.getLabel(), _node.getLength(), _node.getName());
+    }
+
+    /**
+     *     Return the index of the node with a label
+     *
+     * @param _label    the label (ID) of a node
+     * @return          the index of the node; NONE if it is not in this.tree
+     */
+    public int indexOf(int _label) {
+        return this.labels.indexOf(_label);
+    }
+
+    /**
+     * @param _label    the label (ID) of a node
+     * @return          true if this.tree contains the node
+     */
+    public boolean hasNode(int _label) {
+        return this.indexOf(_label) != NONE;
+    }
+
+    /**
+     *     Make a node the child of another node; the children
+     *     are linked when the tree is rooted
+     *
+     * @param _parent   the index of the parent node
+     * @param _child    the index of the child node
+     */
+    public void setChild(int _parent, int _child) {
+        this.parents[_child] = _parent;
+    }
+
+    /**
+     *     Add the nodes and the parent links of another (partial) tree
+     *     to this.tree, in one pass over the nodes of the other tree;
+     *     the nodes that are already in this.tree keep their length
+     *     and name. Used to merge trees that were built concurrently.
+     *
+     * @param _other    the tree to add
+     */
+    public void addTree(CompactTree _other) {
+        int[] indexes = new int[_other.getSize()];
+        for (int index = 0; index < _other.getSize(); index++) {
+            int label = _other.labels.getKey(index);
+            indexes[index] = this.indexOf(label);
+            if (indexes[index] == NONE)
+                indexes[index] = this.addNode(label, _other.lengths[index], _other.names[index]);
+        }
+        for (int index = 0; index < _other.getSize(); index++) {
+            if (_other.parents[index] != NONE)
+                this.parents[indexes[index]] = indexes[_other.parents[index]];
+        }
+    }
+
+    /**
+     *     Make this unrooted tree to a rooted tree by designating the
+     *     node with the lowest label as the root node; the nodes that
+     *     do not have a parent become children of the root. Then link
+     *     the children of each node, sorted on label.
+     */
+    public void rootTheTree() {
+        int size = this.labels.size();
+        if (size == 0)
+            return;
+        // the nodes sorted on label: the label in the high and the index in the low bits
+        long[] order = new long[size];
+        for (int index = 0; index < size; index++)
+            order[index] = ((long)this.labels.getKey(index) << 32) | index;
+        Arrays.sort(order, 0, size);
+        int newRoot = (int)order[0];
+        if (this.root != NONE && this.root != newRoot && this.parents[this.root] == NONE)
+            this.parents[this.root] = newRoot;
+        this.root = newRoot;
+        this.parents[this.root] = NONE;
+        Arrays.fill(this.firstChildren, 0, size, NONE);
+        // walk the nodes from the highest label down, putting each in front
+        // of the children of it's parent; so the children end up sorted
+        for (int i = size - 1; i > 0; i--) {
+            int index = (int)order[i];
+            if (this.parents[index] == NONE)
+                this.parents[index] = this.root;
+            this.nextSiblings[index] = this.firstChildren[this.parents[index]];
+            this.firstChildren[this.parents[index]] = index;
+        }
+    }
+
+    /**
+     * @return      the number of nodes
+     */
+    public int getSize() {
+        return this.labels.size();
+    }
+
+    /**
+     * @return      the index of the root node; NONE if not yet rooted
+     */
+    public int getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @param _index    the index of a node
+     * @return          the label (ID) of the node
+     */
+    public int getLabel(int _index) {
+        return this.labels.getKey(_index);
+    }
+
+    /**
+     * @param _index    the index of a node
+     * @return          the distance to the node's parentnode
+     */
+    public double getLength(int _index) {
+        return this.lengths[_index];
+    }
+
+    /**
+     * @param _index    the index of a node
+     * @return          the taxon name of the node; empty if it has none
+     */
+    public String getName(int _index) {
+        return this.names[_index] == null ? "" : this.names[_index];
+    }
+
+    /**
+     *     Return the name of a node as used in the Newick string;
+     *     like TreeNode.getNodeName()
+     *
+     * @param _index    the index of a node
+     * @return          the taxon name, or "i" (internal) or "e"
+     *                  (external) followed by the label
+     */
+    public String getNodeName(int _index) {
+        if (this.names[_index] != null)
+            return this.names[_index];
+        return (this.firstChildren[_index] != NONE ? "i" : "e") + this.labels.getKey(_index);
+    }
+
+    /**
+     * @param _index    the index of a node
+     * @return          the index of the parent; NONE for the root
+     */
+    public int getParent(int _index) {
+        return this.parents[_index];
+    }
+
+    /**
+     * @param _index    the index of a node
+     * @return          the index of the first (lowest label) child; NONE for a tip
+     */
+    public int getFirstChild(int _index) {
+        return this.firstChildren[_index];
+    }
+
+    /**
+     * @param _index    the index of a node
+     * @return          the index of the next (higher label) sibling; NONE for the last child
+     */
+    public int getNextSibling(int _index) {
+        return this.nextSiblings[_index];
+    }
+
+    /**
+     *     Return the tree as a Tree of TreeNode objects
+     *
+     * @return      the (rooted) Tree
+     */
+    public Tree toTree() {
+        int size = this.labels.size();
+        Tree tree = new Tree(size);
+        TreeNode[] nodes = new TreeNode[size];
+        for (int index = 0; index < size; index++)
+            nodes[index] = tree.addNode(this.labels.getKey(index), this.lengths[index], this.getName(index));
+        for (int index = 0; index < size; index++) {
+            if (this.parents[index] != NONE)
+                tree.setChild(nodes[this.parents[index]], nodes[index]);
+        }
+        if (size > 0)
+            tree.rootTheTree();
+        return tree;
+    }
+
+    /**
+     *     return a newick representation of the tree;
+     *     the same as that of Tree.toNewick()
+     *     (to write it to a file, use a NewickWriter)
+     *
+     * @return      the Newick string for this.tree
+     */
+    public String toNewick() {
+        StringBuilder newickString = new StringBuilder();
+        try {
+            NewickWriter writer = new NewickWriter(newickString);
+            writer.write(this);
+            writer.flush();
+        } catch (IOException exc) {
+            // a StringBuilder does not throw IOExceptions
+            throw new RuntimeException(exc);
+        }
+        return newickString.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package org.phylotastic.mrptree;
+
+import java.util.Arrays;
+
+/**
+ *     Class IntIndexMap
+ *
+ *     Numbers (integer) keys, like node labels, in the order they are
+ *     added: the first key added gets index 0, the next one 1, and so on;
+ *     the key of an index is kept as well. The caller keeps what it knows
+ *     about a key in its own arrays, at the index of the key: TreeNodeMap
+ *     the nodes, CompactTree the lengths, names and links of the nodes.
+ *
+ *     The keys are found by an open addressing hash table with linear
+ *     probing on primitive ints, so looking up a key does not box it,
+ *     and a key takes one slot (the index + 1) next to the key itself.
+ *
+ *     Keys can only be added, not removed.
+ */
+public class IntIndexMap {
+    /**
+     *     the index of a key that is not in the map
+     */
+    public static final int NONE = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;     // the maximum fraction of used slots
+
+    private int[] keys;                 // the key of each index
+    private int[] slots;                // key => index + 1; 0 for an empty slot
+    private int size;                   // the number of keys
+
+    // constructors
+    // ------------------------------------------------------------------------
+    /**     Create an empty map
+    */
+    public IntIndexMap() {
+        this(16);
+    }
+
+    /**
+     *     Create an empty map with room for a number of keys
+     *
+     * @param _expectedSize     the expected number of keys
+     */
+    public IntIndexMap(int _expectedSize) {
+        super();
+        int capacity = Math.max(4, _expectedSize);
+        this.keys = new int[capacity];
+        this.slots = new int[slotCount(capacity)];
+        this.size = 0;
+    }
+
+    private static int slotCount(int _capacity) {
+        int slotCount = 16;
+        while (slotCount * LOAD_FACTOR < _capacity)
+            slotCount <<= 1;
+        return slotCount;
+    }
+
+    /**
+     *     Return the slot of a key, or the empty slot where it belongs
+     *     (Fibonacci hashing: takes the high bits of the key times
+     *     2^32 / golden ratio, spreading consecutive keys)
+     */
+    private int findSlot(int _key) {
+        int mask = this.slots.length - 1;
+        int slot = (_key * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+        while (this.slots[slot] != 0 && this.keys[this.slots[slot] - 1] != _key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        this.keys = Arrays.copyOf(this.keys, 2 * this.keys.length);
+        this.slots = new int[slotCount(this.keys.length)];
+        for (int index = 0; index < this.size; index++)
+            this.slots[this.findSlot(this.keys[index])] = index + 1;
+    }
+
+    /**
+     *     Add a key; a key that is already there keeps its index
+     *
+     * @param _key      the key
+     * @return          the index of the key; size() - 1 if it is new
+     */
+    public int add(int _key) {
+        int slot = this.findSlot(_key);
+        if (this.slots[slot] != 0)
+            return this.slots[slot] - 1;
+        if (this.size == this.keys.length) {
+            this.grow();
+            slot = this.findSlot(_key);
+        }
+        int index = this.size++;
+        this.keys[index] = _key;
+        this.slots[slot] = index + 1;
+        return index;
+    }
+
+    /**
+     * @param _key      a key
+     * @return          the index of the key; NONE if it is not in the map
+     */
+    public int indexOf(int _key) {
+        return this.slots[this.findSlot(_key)] - 1;
+    }
+
+    /**
+     * @param _index    the index of a key
+     * @return          the key
+     */
+    public int getKey(int _index) {
+        return this.keys[_index];
+    }
+
+    /**
+     * @return          the number of keys in the map
+     */
+    public int size() {
+        return this.size;
+    }
+}
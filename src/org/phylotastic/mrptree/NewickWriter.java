@@ -0,0 +1,246 @@
+package org.phylotastic.mrptree;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ *     Class NewickWriter
+ *
+ *     Writes a tree as a Newick string to a Writer (or any Appendable),
+ *     without building the string in memory first: the characters go
+ *     through a fixed buffer straight to the output. The tree is walked
+ *     without recursion, so deep (caterpillar) trees do not overflow the
+ *     stack: a CompactTree by it's parent links, a tree of TreeNodes by
+ *     an explicit stack of child iterators.
+ *
+ *     The output is the same as that of TreeNode.toNewick(). The lengths
+ *     are formatted like the "##0.000000#" DecimalFormat of TreeNode, but
+ *     straight into the buffer; only lengths that are negative, 10000 or
+ *     more, or (almost) halfway between two 7 decimal values are left to
+ *     the DecimalFormat, which rounds them on their exact binary value.
+ *
+ *     Call flush() when done, to write the rest of the buffer.
+ */
+public class NewickWriter implements Flushable {
+    private static final int BUFFER_SIZE    = 8192;
+    private static final double FAST_LIMIT  = 10000.0;      // the lengths formatted without DecimalFormat
+    private static final double SCALE       = 10000000.0;   // 10^(maximum number of decimals)
+    private static final double TIE_MARGIN  = 0.0001;       // (scaled) distance to a tie left to DecimalFormat
+
+    private final Appendable out;           // the output
+    private final Writer writer;            // the output, if it is a Writer
+    private final char[] buffer;            // the characters not yet written
+    private final StringBuilder chunk;      // the buffer, for an output that is not a Writer
+    private int position;                   // the number of characters in the buffer
+
+    /**
+     *     Constructor
+     *
+     * @param _out      the output to write the Newick string to;
+     *                  e.g. a Writer or a StringBuilder
+     */
+    public NewickWriter(Appendable _out) {
+        super();
+        this.out = _out;
+        this.writer = (_out instanceof Writer) ? (Writer)_out : null;
+        this.buffer = new char[BUFFER_SIZE];
+        this.chunk = (this.writer == null) ? new StringBuilder(BUFFER_SIZE) : null;
+        this.position = 0;
+    }
+
+    /**
+     *     Static method: formatLength
+     *
+     *     Format a (branch) length like the "##0.000000#" DecimalFormat
+     *     (en/US locale) does, into a character array
+     *
+     * @param _length   the length
+     * @param _buffer   the array to format the length into
+     * @param _offset   the position in the array to start at; there
+     *                  must be room for at least 12 characters
+     * @return          the position after the formatted length; -1 if
+     *                  the length must be formatted by the DecimalFormat
+     */
+    protected static int formatLength(double _length, char[] _buffer, int _offset) {
+        // the same test excludes NaN; -0.0 is printed with it's sign
+        if (!(_length >= 0.0 && _length < FAST_LIMIT) || Double.doubleToRawLongBits(_length) != 0L && _length == 0.0)
+            return -1;
+        // the rounding error of the product is below 2^-15, far less
+        // than the margin, so outside the margin it rounds like the exact value
+        double scaled = _length * SCALE;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN)
+            return -1;
+        long value = (long)floor + (fraction > 0.5 ? 1 : 0);
+        int position = formatLong(value / 10000000L, _buffer, _offset);
+        _buffer[position] = '.';
+        long decimals = value % 10000000L;
+        for (int i = 7; i > 0; i--) {
+            _buffer[position + i] = (char)('0' + decimals % 10);
+            decimals /= 10;
+        }
+        position += 8;
+        // the 7th decimal is optional
+        return _buffer[position - 1] == '0' ? position - 1 : position;
+    }
+
+    private static int formatLong(long _value, char[] _buffer, int _offset) {
+        int position = _offset;
+        if (_value < 0) {
+            _buffer[position++] = '-';
+            _value = -_value;
+        }
+        int digits = 1;
+        for (long rest = _value / 10; rest > 0; rest /= 10)
+            digits++;
+        for (int i = position + digits - 1; i >= position; i--) {
+            _buffer[i] = (char)('0' + _value % 10);
+            _value /= 10;
+        }
+        return position + digits;
+    }
+
+    private void reserve(int _length) throws IOException {
+        if (this.position + _length > this.buffer.length)
+            this.writeBuffer();
+    }
+
+    private void writeBuffer() throws IOException {
+        if (this.position == 0)
+            return;
+        if (this.writer != null) {
+            this.writer.write(this.buffer, 0, this.position);
+        } else {
+            this.chunk.setLength(0);
+            this.chunk.append(this.buffer, 0, this.position);
+            this.out.append(this.chunk);
+        }
+        this.position = 0;
+    }
+
+    private void append(char _char) throws IOException {
+        this.reserve(1);
+        this.buffer[this.position++] = _char;
+    }
+
+    private void append(String _string) throws IOException {
+        int start = 0;
+        while (start < _string.length()) {
+            if (this.position == this.buffer.length)
+                this.writeBuffer();
+            int end = Math.min(_string.length(), start + this.buffer.length - this.position);
+            _string.getChars(start, end, this.buffer, this.position);
+            this.position += end - start;
+            start = end;
+        }
+    }
+
+    /**
+     *     Write the name and the length of a node; the name is made
+     *     from the label like TreeNode.getNodeName() does
+     */
+    private void appendNode(String _name, boolean _internal, int _label, double _length) throws IOException {
+        if (_name == null || _name.isEmpty()) {
+            this.reserve(12);
+            this.buffer[this.position++] = _internal ? 'i' : 'e';
+            this.position = formatLong(_label, this.buffer, this.position);
+        } else {
+            this.append(_name);
+        }
+        this.reserve(1 + 12);
+        this.buffer[this.position++] = ':';
+        int position = formatLength(_length, this.buffer, this.position);
+        if (position >= 0)
+            this.position = position;
+        else
+            this.append(TreeNode.formatLength(_length));
+    }
+
+    /**
+     *     Write a (rooted) CompactTree; an empty string
+     *     if the tree has not been rooted
+     *
+     * @param _tree     the tree
+     * @throws IOException
+     */
+    public void write(CompactTree _tree) throws IOException {
+        int root = _tree.getRoot();
+        if (root == CompactTree.NONE)
+            return;
+        int node = root;
+        while (true) {
+            // down to the first tip
+            while (_tree.getFirstChild(node) != CompactTree.NONE) {
+                this.append('(');
+                node = _tree.getFirstChild(node);
+            }
+            this.appendNode(_tree.getName(node), false, _tree.getLabel(node), _tree.getLength(node));
+            // up to the first node with a next sibling, closing the internal nodes
+            while (node != root && _tree.getNextSibling(node) == CompactTree.NONE) {
+                node = _tree.getParent(node);
+                this.append(')');
+                this.appendNode(_tree.getName(node), true, _tree.getLabel(node), _tree.getLength(node));
+            }
+            if (node == root)
+                break;
+            this.append(',');
+            node = _tree.getNextSibling(node);
+        }
+        if (_tree.getFirstChild(root) != CompactTree.NONE)
+            this.append(';');
+    }
+
+    /**
+     *     Write a TreeNode and it's descendants; closed by a
+     *     semicolon if the node is the root of a tree
+     *
+     * @param _node     the node
+     * @throws IOException
+     */
+    public void write(TreeNode _node) throws IOException {
+        Deque<TreeNode> nodes = new ArrayDeque<>();
+        Deque<Iterator<TreeNode>> children = new ArrayDeque<>();
+        TreeNode node = _node;
+        while (true) {
+            // down to the first tip
+            while (node.hasChildren()) {
+                this.append('(');
+                nodes.push(node);
+                children.push(node.getChildren().iterator());
+                node = children.peek().next();
+            }
+            this.appendNode(node.getName(), false, node.getID(), node.getLength());
+            // up to the first node with a next sibling, closing the internal nodes
+            while (!children.isEmpty() && !children.peek().hasNext()) {
+                children.pop();
+                node = nodes.pop();
+                this.append(')');
+                this.appendNode(node.getName(), true, node.getID(), node.getLength());
+            }
+            if (children.isEmpty())
+                break;
+            this.append(',');
+            node = children.peek().next();
+        }
+        if (_node.isRootNode() && _node.hasChildren())
+            this.append(';');
+    }
+
+    /**
+     *     Write the characters in the buffer to the output,
+     *     and flush the output if it can be flushed
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        this.writeBuffer();
+        if (this.out instanceof Flushable)
+            ((Flushable)this.out).flush();
+    }
+}
@@ -1,8 +1,5 @@
 package org.phylotastic.mrptree;
 
-import java.util.Map;
-import java.util.TreeMap;
-
 import org.phylotastic.mrppath.*;
 
 /**
@@ -18,7 +15,7 @@ import org.phylotastic.mrppath.*;
  */
 public class Tree {
     private TreeNode root;                          // the root node
-    private final Map<Integer, TreeNode> nodes;     // list of added nodes
+    private final TreeNodeMap nodes;                // list of added nodes, by ID
 
     // constructor
     // ------------------------------------------------------------------------
@@ -27,7 +24,17 @@ public class Tree {
     public Tree() {
         super();
         root = null;
-        nodes = new TreeMap<>();
+        nodes = new TreeNodeMap();
+    }
+    
+    /**     Construct a Tree object with room for a number of nodes
+     *
+     * @param _expectedSize     the expected number of nodes
+     */
+    public Tree(int _expectedSize) {
+        super();
+        root = null;
+        nodes = new TreeNodeMap(_expectedSize);
     }
     
     /**
@@ -123,17 +130,15 @@ public class Tree {
     }
     
     /**
-     *     Find the node with the lowest ID (label
+     *     Find the node with the lowest ID (label);
+     *     the node map keeps track of it
      *
      * @return      the lowest of all the nodeID's in the tree
      */
     private TreeNode findTheRoot() {
-        int lowestID = (int)999999999;
-        for (int id : nodes.keySet()) {
-            if (id < lowestID)
-                lowestID = id;
-        }
-        return nodes.get(lowestID);
+        if (nodes.isEmpty())
+            return null;
+        return nodes.get(nodes.getLowestKey());
     }
     
     /**
@@ -143,7 +148,7 @@ public class Tree {
      * @param _root     the TreeNode that is to serve as the rootnode
      */
     private void rootTheNodes(TreeNode _root) {
-        for (TreeNode node : nodes.values()) {
+        for (TreeNode node : nodes) {
             if (!node.hasParent() && !node.isRootNode())
                 this.root.addChild(node);
         }
@@ -1,5 +1,6 @@
 package org.phylotastic.mrptree;
 
+import java.io.IOException;
 import java.util.TreeSet;
 import java.util.Locale;
 import java.text.NumberFormat;
@@ -22,11 +23,19 @@ public class TreeNode implements Comparable<TreeNode> {
      *     Static variable: lengthFormatter
      * 
      *     A locale insensitive formatter for the (branche) length
-     *     used in the toString() and toNewick() methods.
-     *     The formatter, based on the EN/US locale is set by
-     *     the static method:formatLength().
+     *     used in the toString() and toNewick() methods, based on the
+     *     EN/US locale. A DecimalFormat is not thread safe, and trees
+     *     are written by several threads at the same time (jackknife
+     *     replicates, server requests), so each thread has it's own.
      */
-    private static DecimalFormat lengthFormatter = null;
+    private static final ThreadLocal<DecimalFormat> lengthFormatter = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            DecimalFormat formatter = (DecimalFormat)NumberFormat.getNumberInstance(new Locale("en", "US"));
+            formatter.applyPattern("##0.000000#");
+            return formatter;
+        }
+    };
     
     /**
      *     Static method: formatLength()
@@ -37,14 +46,10 @@ public class TreeNode implements Comparable<TreeNode> {
      *     e.g. in NL the separator would be a comma, which would
      *     conflict with the use of the comma in newick as the
      *     node separator.
+     *     (also used by NewickWriter, for the lengths it does not format itself)
      */
-    private static String formatLength(Double _length) {
-        if (lengthFormatter == null) {
-            NumberFormat nf = NumberFormat.getNumberInstance(new Locale("en", "US"));
-            lengthFormatter = (DecimalFormat)nf;
-            lengthFormatter.applyPattern("##0.000000#");
-        }
-        return lengthFormatter.format(_length);
+    static String formatLength(Double _length) {
+        return lengthFormatter.get().format(_length);
     }
     
     /**
@@ -224,6 +229,15 @@ public class TreeNode implements Comparable<TreeNode> {
         _childNode.parent = this;
     }
     
+    /**
+     *     Return the children of this node, sorted on ID
+     *
+     * @return      the child nodes
+     */
+    java.util.SortedSet<TreeNode> getChildren() {
+        return this.children;
+    }
+    
     /**
      *     Return true if this node has children
      *
@@ -322,35 +336,18 @@ public class TreeNode implements Comparable<TreeNode> {
     /**
      *     Return a newick representation of this node
      *     and this node's children and those node's children and ...
-     *     I.e. this method is recursive.
+     *     (written by a NewickWriter, without recursion)
      *
      * @param newickString      a stringbuilder that the node's newick "string" will be added to
      */ 
     public void toNewick(StringBuilder newickString) {
-        if (this.hasChildren()) {
-            // it is an internal node that will have children of it's own
-            // it's representation includes that of it's children.
-            // open a child group for this node (i.e. the "(" character)
-            newickString.append("(");
-            String separator = "";
-            // process this node's children
-            for (TreeNode child : this.children) {
-                newickString.append(separator);
-                child.toNewick(newickString);
-                if (!",".equals(separator)) separator = ",";
-            }
-            // close the child group for this node (the ")" character)
-            newickString.append(")");
-            // add this node's data (name and length)
-            newickString.append(String.format("%s:%s", this.getNodeName(), TreeNode.formatLength(this.length)));
-            if (this.isRoot)
-                // then it is the end of the proces
-                // the newick string should now be complete
-                // close the newick string with a semicolon ";"
-                newickString.append(";");
+        try {
+            NewickWriter writer = new NewickWriter(newickString);
+            writer.write(this);
+            writer.flush();
+        } catch (IOException exc) {
+            // a StringBuilder does not throw IOExceptions
+            throw new RuntimeException(exc);
         }
-        else
-            // it is an external (tip) node that does not have any children of it's own
-            newickString.append(String.format("%s:%s", this.getNodeName(), TreeNode.formatLength(this.length)));
     }
 }
@@ -0,0 +1,141 @@
+package org.phylotastic.mrptree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *     Class TreeNodeMap
+ *
+ *     A map from (integer) node ID's to TreeNodes, used by the Tree class.
+ *     The ID's are indexed by an IntIndexMap (the int table CompactTree
+ *     uses as well), so looking up a node does not box the ID and does not
+ *     walk a red-black tree; the nodes are kept in an array at the index
+ *     of their ID. The lowest ID is kept up to date, to find the root.
+ *
+ *     Nodes can only be added (or replaced), not removed.
+ */
+public class TreeNodeMap implements Iterable<TreeNode> {
+    private final IntIndexMap ids;      // ID => index of each node
+    private TreeNode[] nodes;           // the node of each index
+    private int lowestKey;              // the lowest ID
+
+    // constructors
+    // ------------------------------------------------------------------------
+    /**     Create an empty map
+    */
+    public TreeNodeMap() {
+        this(16);
+    }
+
+    /**
+     *     Create an empty map with room for a number of nodes
+     *
+     * @param _expectedSize     the expected number of nodes
+     */
+    public TreeNodeMap(int _expectedSize) {
+        super();
+        int capacity = Math.max(4, _expectedSize);
+        this.ids = new IntIndexMap(capacity);
+        this.nodes = new TreeNode[capacity];
+        this.lowestKey = Integer.MAX_VALUE;
+    }
+
+    /**
+     *     Add a node; a node with the same ID is replaced
+     *
+     * @param _key      the ID of the node
+     * @param _node     the node
+     * @return          the replaced node; null if there was none
+     */
+    public TreeNode put(int _key, TreeNode _node) {
+        if (_node == null)
+            throw new NullPointerException("TreeNodeMap: no node for ID " + _key);
+        int index = this.ids.add(_key);
+        if (index == this.nodes.length)
+            this.nodes = Arrays.copyOf(this.nodes, 2 * this.nodes.length);
+        TreeNode old = this.nodes[index];
+        this.nodes[index] = _node;
+        if (old == null && _key < this.lowestKey)
+            this.lowestKey = _key;
+        return old;
+    }
+
+    /**
+     * @param _key      the ID of a node
+     * @return          the node; null if it is not in the map
+     */
+    public TreeNode get(int _key) {
+        int index = this.ids.indexOf(_key);
+        return (index == IntIndexMap.NONE) ? null : this.nodes[index];
+    }
+
+    /**
+     * @param _key      the ID of a node
+     * @return          true if the node is in the map
+     */
+    public boolean containsKey(int _key) {
+        return this.ids.indexOf(_key) != IntIndexMap.NONE;
+    }
+
+    /**
+     * @return          the number of nodes in the map
+     */
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * @return          true if the map has no nodes
+     */
+    public boolean isEmpty() {
+        return this.ids.size() == 0;
+    }
+
+    /**
+     * @return          the lowest ID in the map; Integer.MAX_VALUE when empty
+     */
+    public int getLowestKey() {
+        return this.lowestKey;
+    }
+
+    /**
+     * @return          the ID's in the map, sorted
+     */
+    public int[] keys() {
+        int[] result = new int[this.ids.size()];
+        for (int index = 0; index < result.length; index++)
+            result[index] = this.ids.getKey(index);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     *     Return an iterator over the nodes, in the order they were added
+     *
+     * @return          the iterator
+     */
+    @Override
+    public Iterator<TreeNode> iterator() {
+        return new Iterator<TreeNode>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < ids.size();
+            }
+
+            @Override
+            public TreeNode next() {
+                if (!this.hasNext())
+                    throw new NoSuchElementException();
+                return nodes[this.next++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("TreeNodeMap: nodes can not be removed");
+            }
+        };
+    }
+}
@@ -0,0 +1,343 @@
+package org.phylotastic.mrptree;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ *     Class TreeStats
+ *
+ *     The statistics of a (pruned) tree that script/treestats.pl and
+ *     treestats-file.pl compute with Bio::Phylo, computed straight on the
+ *     Tree, in two passes over it's nodes, instead of writing and parsing
+ *     the Newick string again: fiala_stemminess, gamma, imbalance, i2,
+ *     avtd, tree_length and tree_height.
+ *
+ *     The definitions are those of Bio::Phylo, and the steps of the scripts
+ *     are followed: the tree is scaled to a height (the average root to tip
+ *     distance) of 1 first, so tree_height is 1 and tree_length and avtd are
+ *     relative to the height. A tree that is not binary is resolved first,
+ *     and then marked with an asterisk after the file name; the polytomies
+ *     are resolved (with branches of length 0) as a ladder, the children
+ *     in the order of their labels, where the scripts resolve them at random.
+ *
+ *     The statistics are written as tab separated rows, in the same column
+ *     layout as the scripts: the file (name), then the properties.
+ */
+public class TreeStats {
+    /**
+     *     the properties, in the order of the columns
+     */
+    public static final String[] PROPERTIES = {"fiala_stemminess", "gamma", "imbalance",
+        "i2", "avtd", "tree_length", "tree_height"};
+
+    private static final int NONE = -1;
+    private static final MathContext PRECISION = new MathContext(15);   // as Perl prints numbers
+
+    private int size;                   // the number of nodes of the (resolved) tree
+    private int[] parents;              // the parent of each node; parents come before children
+    private double[] lengths;           // the branch length of each node
+    private int[] childCounts;          // the number of children of each node
+    private int[] children;             // the first two children of each node: at 2 * node (+ 1)
+    private boolean resolved;           // true if polytomies were resolved
+    private int terminals;              // the number of tips
+
+    private double fialaStemminess;
+    private double gamma;
+    private double imbalance;
+    private double i2;
+    private double avtd;
+    private double treeLength;
+    private double treeHeight;
+
+    /**
+     *     Constructor
+     *     Computes the statistics of a (rooted) tree
+     *
+     * @param _tree     the tree
+     */
+    public TreeStats(Tree _tree) {
+        super();
+        this.parents = new int[16];
+        this.lengths = new double[16];
+        if (_tree.getRoot() != null)
+            this.addNodes(_tree.getRoot());
+        this.childCounts = new int[this.size];
+        this.children = new int[2 * this.size];
+        for (int node = 1; node < this.size; node++) {
+            int parent = this.parents[node];
+            if (this.childCounts[parent] < 2)
+                this.children[2 * parent + this.childCounts[parent]] = node;
+            this.childCounts[parent]++;
+        }
+        this.compute();
+    }
+
+    /**
+     *     Copies the nodes of the tree into the arrays, top down, inserting
+     *     a ladder of nodes (with length 0) for each polytomy
+     */
+    private void addNodes(TreeNode _root) {
+        Deque<TreeNode> nodes = new ArrayDeque<>();
+        Deque<Integer> nodeParents = new ArrayDeque<>();
+        nodes.push(_root);
+        nodeParents.push(NONE);
+        while (!nodes.isEmpty()) {
+            TreeNode node = nodes.pop();
+            int parent = this.addNode(nodeParents.pop(), node.getLength());
+            List<TreeNode> nodeChildren = new ArrayList<>(node.getChildren());
+            for (int i = 0; i < nodeChildren.size(); i++) {
+                if (nodeChildren.size() > 2 && i > 0 && nodeChildren.size() - i >= 2) {
+                    // a new node for the children from this one on
+                    parent = this.addNode(parent, 0.0);
+                    this.resolved = true;
+                }
+                nodes.push(nodeChildren.get(i));
+                nodeParents.push(parent);
+            }
+        }
+    }
+
+    private int addNode(int _parent, double _length) {
+        if (this.size == this.parents.length) {
+            this.parents = Arrays.copyOf(this.parents, 2 * this.size);
+            this.lengths = Arrays.copyOf(this.lengths, 2 * this.size);
+        }
+        this.parents[this.size] = _parent;
+        this.lengths[this.size] = _length;
+        return this.size++;
+    }
+
+    /**
+     *     Computes the statistics: the distances to the root top down,
+     *     the tips and branch lengths below each node bottom up
+     */
+    private void compute() {
+        double[] depths = new double[this.size];     // the distance from the root, without it's branch
+        double rootLength = (this.size > 0 ? this.lengths[0] : 0.0);
+        double total = 0.0;
+        for (int node = 0; node < this.size; node++) {
+            if (node > 0)
+                depths[node] = depths[this.parents[node]] + this.lengths[node];
+            if (this.childCounts[node] == 0) {
+                this.terminals++;
+                // Bio::Phylo counts the branch of the root in the path to the root
+                total += depths[node] + rootLength;
+            }
+        }
+        int n = this.terminals;
+        double height = (n > 0 ? total / n : Double.NaN);
+        // the scripts scale the tree to a height of 1
+        double scale = (height > 0.0 ? 1.0 / height : 1.0);
+        this.treeHeight = height * scale;
+
+        int[] tips = new int[this.size];
+        double[] below = new double[this.size];      // the length of the branches below each node
+        double stemminess = 0.0;
+        double colless = 0.0;
+        double mooersHeard = 0.0;
+        double pairs = 0.0;
+        int internals = 0;
+        double[] branchingTimes = new double[this.size];
+        int branchings = 0;
+        for (int node = this.size - 1; node >= 0; node--) {
+            double length = this.lengths[node] * scale;
+            this.treeLength += length;
+            if (this.childCounts[node] == 0) {
+                tips[node] = 1;
+            } else {
+                internals++;
+                if (node > 0 && length + below[node] > 0.0)
+                    stemminess += length / (length + below[node]);
+                if (this.childCounts[node] == 2) {
+                    int left = tips[this.children[2 * node]];
+                    int right = tips[this.children[2 * node + 1]];
+                    colless += Math.abs(left - right);
+                    if (left + right > 2)
+                        mooersHeard += (double)Math.abs(left - right) / (left + right - 2);
+                    branchingTimes[branchings++] = depths[node] * scale;
+                }
+            }
+            if (node > 0) {
+                tips[this.parents[node]] += tips[node];
+                below[this.parents[node]] += below[node] + length;
+                // the branch is on the path between each tip below and each tip not below it
+                pairs += length * tips[node] * (n - tips[node]);
+            }
+        }
+        this.fialaStemminess = (internals > 1 ? stemminess / (internals - 1) : Double.NaN);
+        this.imbalance = (n > 2 ? colless / ((n - 1) * (n - 2) / 2.0) : Double.NaN);
+        this.i2 = (n > 2 ? mooersHeard / (n - 2) : Double.NaN);
+        this.avtd = (n > 1 ? pairs / (n * (n - 1) / 2.0) : Double.NaN);
+        // the branching times are measured from the root, not from the start of it's branch
+        this.gamma = gamma(Arrays.copyOf(branchingTimes, branchings), (height - rootLength) * scale, n);
+    }
+
+    /**
+     *     Returns the gamma statistic of Pybus and Harvey, from the
+     *     distances of the branching nodes to the root and the height
+     */
+    private static double gamma(double[] branchingTimes, double height, int n) {
+        if (n <= 2 || branchingTimes.length != n - 1)
+            return Double.NaN;
+        Arrays.sort(branchingTimes);
+        // g[k]: the time during which there are k lineages
+        double[] g = new double[n + 1];
+        for (int k = 2; k < n; k++)
+            g[k] = branchingTimes[k - 1] - branchingTimes[k - 2];
+        g[n] = height - branchingTimes[n - 2];
+        double t = 0.0;
+        for (int k = 2; k <= n; k++)
+            t += k * g[k];
+        double sum = 0.0;
+        double partial = 0.0;
+        for (int i = 2; i < n; i++) {
+            partial += i * g[i];
+            sum += partial;
+        }
+        return (sum / (n - 2) - t / 2.0) / (t * Math.sqrt(1.0 / (12.0 * (n - 2))));
+    }
+
+    /**
+     * @return      true if the tree was not binary, and resolved
+     */
+    public boolean isResolved() {
+        return this.resolved;
+    }
+
+    /**
+     * @return      the number of tips
+     */
+    public int getNumberOfTerminals() {
+        return this.terminals;
+    }
+
+    /**
+     * @return      the stemminess of Fiala and Sokal: the average of the branch
+     *              length of each internal node (not the root) relative to
+     *              the lengths of it's branch and all branches below it
+     */
+    public double getFialaStemminess() {
+        return this.fialaStemminess;
+    }
+
+    /**
+     * @return      the gamma statistic of Pybus and Harvey
+     */
+    public double getGamma() {
+        return this.gamma;
+    }
+
+    /**
+     * @return      the imbalance (Colless' index), normalised to 0 .. 1
+     */
+    public double getImbalance() {
+        return this.imbalance;
+    }
+
+    /**
+     * @return      the I2 imbalance of Mooers and Heard
+     */
+    public double getI2() {
+        return this.i2;
+    }
+
+    /**
+     * @return      the average distance between two tips
+     *              (average taxonomic distinctness)
+     */
+    public double getAvtd() {
+        return this.avtd;
+    }
+
+    /**
+     * @return      the sum of the branch lengths
+     */
+    public double getTreeLength() {
+        return this.treeLength;
+    }
+
+    /**
+     * @return      the average distance from a tip to the root
+     */
+    public double getTreeHeight() {
+        return this.treeHeight;
+    }
+
+    /**
+     *     Returns a property by it's name (see PROPERTIES)
+     *
+     * @param _property     the name of the property
+     * @return              the value
+     */
+    public double get(String _property) {
+        switch (_property) {
+            case "fiala_stemminess":    return this.getFialaStemminess();
+            case "gamma":               return this.getGamma();
+            case "imbalance":           return this.getImbalance();
+            case "i2":                  return this.getI2();
+            case "avtd":                return this.getAvtd();
+            case "tree_length":         return this.getTreeLength();
+            case "tree_height":         return this.getTreeHeight();
+            default:
+                throw new IllegalArgumentException("TreeStats: unknown property: " + _property);
+        }
+    }
+
+    /**
+     *     Writes the header line of the rows: "file" and the properties
+     *
+     * @param _out      the output
+     * @throws IOException
+     */
+    public static void writeHeader(Appendable _out) throws IOException {
+        _out.append("file");
+        for (String property : PROPERTIES)
+            _out.append('\t').append(property);
+        _out.append('\n');
+    }
+
+    /**
+     *     Writes the row of this.tree: the file (name), with an asterisk
+     *     if the tree was resolved, and the properties
+     *
+     * @param _out      the output
+     * @param _file     the file (name) of the tree
+     * @throws IOException
+     */
+    public void writeRow(Appendable _out, String _file) throws IOException {
+        _out.append(_file);
+        if (this.resolved)
+            _out.append('*');
+        for (String property : PROPERTIES)
+            _out.append('\t').append(formatValue(this.get(property)));
+        _out.append('\n');
+    }
+
+    /**
+     *     Formats a value as Perl prints a number: with 15 significant
+     *     digits, without trailing zeros, and with an exponent for very
+     *     small and very large values (like printf "%.15g")
+     *
+     * @param _value    the value
+     * @return          the formatted value
+     */
+    public static String formatValue(double _value) {
+        if (Double.isNaN(_value) || Double.isInfinite(_value))
+            return Double.isNaN(_value) ? "NaN" : (_value > 0 ? "Inf" : "-Inf");
+        if (_value == 0.0)
+            return "0";
+        BigDecimal value = new BigDecimal(_value).round(PRECISION).stripTrailingZeros();
+        int exponent = value.precision() - value.scale() - 1;
+        if (exponent >= -4 && exponent < 15)
+            return value.toPlainString();
+        String mantissa = value.movePointLeft(exponent).toPlainString();
+        return mantissa + (exponent < 0 ? "e-" : "e+") + (Math.abs(exponent) < 10 ? "0" : "")
+                + Math.abs(exponent);
+    }
+}
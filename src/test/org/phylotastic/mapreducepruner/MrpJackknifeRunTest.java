@@ -0,0 +1,46 @@
+package org.phylotastic.mapreducepruner;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpJackknifeRunTest {
+
+    public MrpJackknifeRunTest() {
+    }
+
+    /**
+     * Test of sample method, of class MrpJackknifeRun.
+     * The sample has no doubles and is the same for the same seed.
+     */
+    @Test
+    public void testSample() {
+        System.out.println("* MrpJackknifeRunTest: testSample()");
+        int[] result = MrpJackknifeRun.sample(100, 30, new Random(42));
+        assertEquals(30, result.length);
+        int[] sorted = result.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            assertTrue(sorted[i] >= 0 && sorted[i] < 100);
+            assertTrue(i == 0 || sorted[i] != sorted[i - 1]);
+        }
+        assertArrayEquals(result, MrpJackknifeRun.sample(100, 30, new Random(42)));
+    }
+
+    /**
+     * Test of sample method, of class MrpJackknifeRun.
+     * A sample of all items is a permutation.
+     */
+    @Test
+    public void testSample_all() {
+        System.out.println("* MrpJackknifeRunTest: testSample_all()");
+        int[] result = MrpJackknifeRun.sample(10, 10, new Random(1));
+        Arrays.sort(result);
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, result);
+    }
+}
@@ -0,0 +1,69 @@
+package org.phylotastic.mapreducepruner;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.phylotastic.mrpdatabase.*;
+import org.phylotastic.mrppath.PathNode;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpLcaRunTest {
+    TreeIndex treeIndex;
+    LcaIndex lcaIndex;
+
+    public MrpLcaRunTest() {
+    }
+
+    /**
+     *     The tree:
+     *     1 -- 2 -- 3 -- 4 (A)
+     *     |    |    +--- 5 (B)
+     *     |    +-- 6 (C)
+     *     +--- 7 -- 8 -- 9 (D)
+     */
+    @Before
+    public void setUp() {
+        TreeIndex.Builder builder = new TreeIndex.Builder();
+        builder.addPath("4:2.5|3:0.5|2:1.0|1:0.0");
+        builder.addPath("5:1.5|3:0.5|2:1.0|1:0.0");
+        builder.addPath("6:0.25|2:1.0|1:0.0");
+        builder.addPath("9:3.5|8:1.0|7:2.0|1:0.0");
+        treeIndex = builder.build();
+        lcaIndex = new LcaIndex(treeIndex);
+    }
+
+    /**
+     * Test of prune method, of class MrpLcaRun.
+     * The tips with nodes left out above them are 1 longer.
+     */
+    @Test
+    public void testPrune() {
+        System.out.println("* MrpLcaRunTest: testPrune()");
+        PathNode[] tips = {new PathNode(9, 3.5, "D"), new PathNode(4, 2.5, "A"),
+            new PathNode(6, 0.25, "C")};
+        String expResult = "((A:3.000000,C:0.000000)i2:1.000000,D:4.000000)i1:0.000000;";
+        String result = MrpLcaRun.prune(treeIndex, lcaIndex, tips).toNewick();
+        System.out.println("  expResult = " + expResult);
+        System.out.println("  result    = " + result);
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of prune method, of class MrpLcaRun.
+     * The root gets the lengths of the nodes above it.
+     */
+    @Test
+    public void testPrune_2() {
+        System.out.println("* MrpLcaRunTest: testPrune_2()");
+        PathNode[] tips = {new PathNode(5, 1.5, "B"), new PathNode(4, 2.5, "A")};
+        String expResult = "(A:2.000000,B:1.000000)i3:1.500000;";
+        String result = MrpLcaRun.prune(treeIndex, lcaIndex, tips).toNewick();
+        System.out.println("  expResult = " + expResult);
+        System.out.println("  result    = " + result);
+        assertEquals(expResult, result);
+    }
+}
@@ -1,7 +1,9 @@
 package org.phylotastic.mapreducepruner;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.hadoop.fs.Path;
 import org.junit.After;
@@ -9,6 +11,11 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import org.phylotastic.mrpdatabase.TaxonDatabase;
+import org.phylotastic.mrpdatabase.TaxonFilter;
+import org.phylotastic.mrpdatabase.TaxonKey;
+import org.phylotastic.mrpdatabase.TaxonPath;
+import org.phylotastic.mrpdatabase.TaxonPathCache;
 import org.phylotastic.mrppath.*;
 
 /**
@@ -137,4 +144,149 @@ public class MrpPass1MapperCoreTest {
         assertEquals(expResult, result);
     }
     
+
+    /**
+     * Test of checkFilter method, of class MrpPass1Mapper.Core.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testCheckFilter() throws Exception {
+        System.out.println("* MrpPass1MapperCoreTest: testCheckFilter()");
+        // without a filter every taxon passes
+        instance.checkFilter("Catonacea");
+        TaxonFilter filter = new TaxonFilter(1);
+        filter.add(TaxonKey.digest("Banksia spinulosa collina"));
+        instance.setFilter(filter);
+        instance.checkFilter("Banksia spinulosa collina");
+        assertEquals(0, instance.getFilterRejects());
+        try {
+            instance.checkFilter("Catonacea");
+            fail("Catonacea is not in the filter");
+        } catch (FileNotFoundException ex) {
+            assertEquals(1, instance.getFilterRejects());
+        }
+    }
+
+    /**
+     *     A taxon "database" with one path for every taxon
+     */
+    static TaxonDatabase database(final String taxonPath) {
+        return new TaxonDatabase() {
+            @Override
+            public String readTaxonPath(String taxonName) {
+                return taxonPath;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Test of lookupTaxonNodes method, of class MrpPass1Mapper.Core.
+     * The cached paths are those of the database identity they were
+     * cached under; an updated database has another identity.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testLookupTaxonNodes() throws Exception {
+        System.out.println("* MrpPass1MapperCoreTest: testLookupTaxonNodes()");
+        TaxonPathCache cache = new TaxonPathCache(1 << 20);
+        instance.setDatabase(database("3:1.0|2:0.5|1:0.0"));
+        instance.setCache(cache, "db|version 1");
+        assertEquals(3, instance.lookupTaxonNodes("Agoracea").getLabel(0));
+        // the database is updated in place
+        instance.setDatabase(database("4:1.0|2:0.5|1:0.0"));
+        assertEquals(3, instance.lookupTaxonNodes("Agoracea").getLabel(0));
+        instance.setCache(cache, "db|version 2");
+        assertEquals(4, instance.lookupTaxonNodes("Agoracea").getLabel(0));
+        assertEquals(1, instance.cacheHits.get());
+        assertEquals(2, instance.cacheMisses.get());
+    }
+
+    /**
+     * Test of fetch and fetchBatch methods, of class MrpPass1Mapper.Core.
+     * With 3 fetch threads the taxa are looked up 24 at a time; the
+     * rest of the input is passed on by the last fetchBatch, and the
+     * taxa not found in the worker threads are passed on as missing,
+     * all in the order of the input.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testFetch() throws Exception {
+        System.out.println("* MrpPass1MapperCoreTest: testFetch()");
+        // "Taxon {n}" has tip n + 2; every 5th taxon is not in the database
+        instance.setDatabase(new TaxonDatabase() {
+            @Override
+            public String readTaxonPath(String taxonName) throws IOException {
+                int n = Integer.parseInt(taxonName.substring("Taxon ".length()));
+                if (n % 5 == 0)
+                    throw new FileNotFoundException(taxonName);
+                return (n + 2) + ":1.0|1:0.0";
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        instance.setFetchThreads(3);
+        final List<String> output = new ArrayList<>();
+        MrpPass1Mapper.Core.FetchOutput fetchOutput = new MrpPass1Mapper.Core.FetchOutput() {
+            @Override
+            public void found(String taxonName, TaxonPath taxonPath) {
+                output.add(taxonName + "=" + taxonPath.getLabel(0));
+            }
+
+            @Override
+            public void missing(String taxonName) {
+                output.add(taxonName + "?");
+            }
+        };
+        try {
+            for (int n = 1; n <= 30; n++) {
+                instance.fetch("Taxon " + n, fetchOutput);
+                // nothing is passed on until a batch is full
+                assertEquals(n < 24 ? 0 : 24, output.size());
+            }
+            instance.fetchBatch(fetchOutput);
+        } finally {
+            instance.closeFetch();
+        }
+        assertEquals(30, output.size());
+        for (int n = 1; n <= 30; n++)
+            assertEquals("Taxon " + n + (n % 5 == 0 ? "?" : "=" + (n + 2)), output.get(n - 1));
+        // a last batch that is empty passes nothing on
+        instance.fetchBatch(fetchOutput);
+        assertEquals(30, output.size());
+    }
+
+    /**
+     * Test of fetch method, of class MrpPass1Mapper.Core, with one
+     * fetch thread: each taxon is passed on straight away.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testFetch_2() throws Exception {
+        System.out.println("* MrpPass1MapperCoreTest: testFetch_2()");
+        instance.setDatabase(database("3:1.0|2:0.5|1:0.0"));
+        TaxonFilter filter = new TaxonFilter(1);
+        filter.add(TaxonKey.digest("Agoracea"));
+        instance.setFilter(filter);
+        final List<String> output = new ArrayList<>();
+        MrpPass1Mapper.Core.FetchOutput fetchOutput = new MrpPass1Mapper.Core.FetchOutput() {
+            @Override
+            public void found(String taxonName, TaxonPath taxonPath) {
+                output.add(taxonName);
+            }
+
+            @Override
+            public void missing(String taxonName) {
+                output.add(taxonName + "?");
+            }
+        };
+        instance.fetch("Agoracea", fetchOutput);
+        instance.fetch("Catonacea", fetchOutput);
+        assertEquals(Arrays.asList("Agoracea", "Catonacea?"), output);
+    }
 }
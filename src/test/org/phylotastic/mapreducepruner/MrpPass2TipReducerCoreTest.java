@@ -0,0 +1,66 @@
+package org.phylotastic.mapreducepruner;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.phylotastic.mrppath.*;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpPass2TipReducerCoreTest {
+    MrpPass2TipReducer.Core instance;
+
+    public MrpPass2TipReducerCoreTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new MrpPass2TipReducer.Core();
+        instance.reset();
+    }
+
+    /**
+     * Test of addNode, getTip and getPath methods, of class MrpPass2TipReducer.Core.
+     * The path of tip A (label 5) in the tree of the MrpRun example:
+     * n1,3; n2,3; n3,2; n4,1 and A:Agoracea
+     */
+    @Test
+    public void testPath() {
+        System.out.println("* MrpPass2TipReducerCoreTest: testPath()");
+        instance.addNode(new PathNodeInternal(3, 0.5, 2));
+        instance.addNode(new PathNodeInternal(1, 0.25, 3));
+        PathNodeInternal tip = new PathNodeInternal(5, 2.5, 1);
+        tip.setName("Agoracea");
+        instance.addNode(tip);
+        instance.addNode(new PathNodeInternal(4, 0.75, 1));
+        instance.addNode(new PathNodeInternal(2, 0.5, 3));
+        String expResult = "5:3.0:Agoracea";
+        System.out.println("  expResult = " + expResult);
+        System.out.println("  result    = " + instance.getTip().toString());
+        assertEquals(expResult, instance.getTip().toString());
+        expResult = "3:0.5|2:0.75";
+        System.out.println("  expResult = " + expResult);
+        System.out.println("  result    = " + instance.getPath().toString());
+        assertEquals(expResult, instance.getPath().toString());
+    }
+
+    /**
+     * Test of reset method, of class MrpPass2TipReducer.Core.
+     */
+    @Test
+    public void testReset() {
+        System.out.println("* MrpPass2TipReducerCoreTest: testReset()");
+        instance.addNode(new PathNodeInternal(4, 0.75, 1));
+        instance.addNode(new PathNodeInternal(2, 0.5, 3));
+        instance.reset();
+        PathNodeInternal tip = new PathNodeInternal(7, 1.5, 1);
+        tip.setName("Catonacea");
+        instance.addNode(tip);
+        instance.addNode(new PathNodeInternal(2, 0.5, 3));
+        assertEquals("7:1.0:Catonacea", instance.getTip().toString());
+        assertEquals("2:0.5", instance.getPath().toString());
+    }
+}
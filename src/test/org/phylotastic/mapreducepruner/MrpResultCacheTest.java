@@ -0,0 +1,185 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.phylotastic.mrpdatabase.DatabaseManifest;
+import org.phylotastic.mrpdatabase.TaxonDatabases;
+import org.phylotastic.mrptree.CompactTree;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpResultCacheTest {
+    File cacheDir;
+    FileSystem hadoopFS;
+    CompactTree tree;
+
+    public MrpResultCacheTest() {
+    }
+
+    /**
+     *     The tree: ((A,B)i2,C)i1
+     */
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("mrpcache").toFile();
+        hadoopFS = FileSystem.getLocal(new Configuration());
+        tree = new CompactTree();
+        int root = tree.addNode(1, 0.5);
+        int node = tree.addNode(2, 1.0);
+        tree.setChild(root, node);
+        tree.setChild(node, tree.addNode(3, 2.0, "A"));
+        tree.setChild(node, tree.addNode(4, 3.0, "B"));
+        tree.setChild(root, tree.addNode(5, 4.0, "C"));
+        tree.rootTheTree();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.fullyDelete(cacheDir);
+    }
+
+    /**
+     * Test of makeKey method, of class MrpResultCache.
+     * The order of the taxa does not matter, doubles and the database do.
+     */
+    @Test
+    public void testMakeKey() throws Exception {
+        System.out.println("* MrpResultCacheTest: testMakeKey()");
+        String key = MrpResultCache.makeKey("db", Arrays.asList("Parkia", "Agoracea"));
+        assertEquals(key, MrpResultCache.makeKey("db", Arrays.asList("Agoracea", "Parkia")));
+        assertFalse(key.equals(MrpResultCache.makeKey("db", Arrays.asList("Agoracea", "Parkia", "Parkia"))));
+        assertFalse(key.equals(MrpResultCache.makeKey("db2", Arrays.asList("Agoracea", "Parkia"))));
+        assertEquals(40, key.length());
+    }
+
+    /**
+     * Test of databaseIdentity method, of class MrpResultCache.
+     * A directory database without a manifest has no identity; the
+     * version of the manifest is part of it.
+     */
+    @Test
+    public void testDatabaseIdentity() throws Exception {
+        System.out.println("* MrpResultCacheTest: testDatabaseIdentity()");
+        File dataDir = new File(cacheDir, "db");
+        new File(dataDir, "0/1").mkdirs();
+        Path dataPath = new Path(dataDir.toURI());
+        assertNull(MrpResultCache.databaseIdentity(hadoopFS, dataPath, TaxonDatabases.FORMAT_DIRECTORY));
+        assertNotNull(MrpResultCache.databaseIdentity(hadoopFS, dataPath, TaxonDatabases.FORMAT_PACKED));
+        DatabaseManifest manifest = new DatabaseManifest();
+        manifest.setVersion(1);
+        manifest.write(hadoopFS, dataPath.toString() + Path.SEPARATOR);
+        String identity = MrpResultCache.databaseIdentity(hadoopFS, dataPath, TaxonDatabases.FORMAT_DIRECTORY);
+        assertTrue(identity.contains("|version:1|"));
+        manifest.setVersion(2);
+        manifest.write(hadoopFS, dataPath.toString() + Path.SEPARATOR);
+        assertTrue(MrpResultCache.databaseIdentity(hadoopFS, dataPath, TaxonDatabases.FORMAT_DIRECTORY)
+                .contains("|version:2|"));
+    }
+
+    /**
+     * Test of put and get methods, of class MrpResultCache.
+     */
+    @Test
+    public void testPutGet() throws Exception {
+        System.out.println("* MrpResultCacheTest: testPutGet()");
+        MrpResultCache cache = new MrpResultCache(new Path(cacheDir.toURI()), 1024 * 1024, new Configuration());
+        Path output = new Path(new File(cacheDir, "out/tree.dnd").toURI());
+        assertFalse(cache.get("abc", hadoopFS, output));
+        cache.put("abc", tree);
+        assertTrue(cache.get("abc", hadoopFS, output));
+        String result = new String(Files.readAllBytes(new File(cacheDir, "out/tree.dnd").toPath()), Charset.defaultCharset());
+        assertEquals(tree.toNewick(), result);
+        assertTrue(new File(cacheDir, "abc" + MrpResultCache.STATS_EXTENSION).isFile());
+    }
+
+    /**
+     * Test of put and get methods, of class MrpResultCache.
+     * The missing taxa are copied out on a hit; an entry without
+     * them removes the missing file of an earlier run.
+     */
+    @Test
+    public void testPutGet_2() throws Exception {
+        System.out.println("* MrpResultCacheTest: testPutGet_2()");
+        MrpResultCache cache = new MrpResultCache(new Path(cacheDir.toURI()), 1024 * 1024, new Configuration());
+        Path output = new Path(new File(cacheDir, "out/tree.dnd").toURI());
+        File missingFile = new File(cacheDir, "out/tree.dnd" + MrpResultCache.MISSING_EXTENSION);
+        cache.put("abc", tree, Arrays.asList("Bogus", "Nonesuch"));
+        assertTrue(cache.get("abc", hadoopFS, output));
+        assertEquals(Arrays.asList("Bogus", "Nonesuch"),
+                Files.readAllLines(missingFile.toPath(), StandardCharsets.UTF_8));
+        cache.put("def", tree);
+        assertTrue(cache.get("def", hadoopFS, output));
+        assertFalse(missingFile.exists());
+    }
+
+    /**
+     * Test of evict method, of class MrpResultCache.
+     * The least recently used entry goes first.
+     */
+    @Test
+    public void testEvict() throws Exception {
+        System.out.println("* MrpResultCacheTest: testEvict()");
+        MrpResultCache cache = new MrpResultCache(new Path(cacheDir.toURI()), 1024 * 1024, new Configuration());
+        cache.put("first", tree);
+        cache.put("second", tree);
+        long size = new File(cacheDir, "first.dnd").length() + new File(cacheDir, "first.stats").length();
+        hadoopFS.setTimes(new Path(new File(cacheDir, "first.dnd").toURI()), 2000000000000L, -1);
+        hadoopFS.setTimes(new Path(new File(cacheDir, "second.dnd").toURI()), 1000000000000L, -1);
+        // room for one entry
+        cache = new MrpResultCache(new Path(cacheDir.toURI()), size, new Configuration());
+        cache.evict();
+        assertTrue(new File(cacheDir, "first.dnd").isFile());
+        assertFalse(new File(cacheDir, "second.dnd").exists());
+        assertFalse(new File(cacheDir, "second.stats").exists());
+    }
+
+    /**
+     * Test of writeNodeStats method, of class MrpResultCache.
+     */
+    @Test
+    public void testWriteNodeStats() throws Exception {
+        System.out.println("* MrpResultCacheTest: testWriteNodeStats()");
+        StringWriter writer = new StringWriter();
+        MrpResultCache.writeNodeStats(tree, writer);
+        String expResult = "label\tparent\tlength\tdepth\ttips\tname\n"
+                + "1\t\t0.5\t0.0\t3\t\n"
+                + "2\t1\t1.0\t1.0\t2\t\n"
+                + "3\t2\t2.0\t3.0\t1\tA\n"
+                + "4\t2\t3.0\t4.0\t1\tB\n"
+                + "5\t1\t4.0\t4.0\t1\tC\n";
+        assertEquals(expResult, writer.toString());
+    }
+
+    /**
+     * Test of readNodeStats method, of class MrpResultCache; the tree
+     * read back gives the same Newick string and node statistics.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReadNodeStats() throws Exception {
+        System.out.println("* MrpResultCacheTest: testReadNodeStats()");
+        StringWriter writer = new StringWriter();
+        MrpResultCache.writeNodeStats(tree, writer);
+        CompactTree result = MrpResultCache.readNodeStats(new StringReader(writer.toString()));
+        assertEquals(tree.toNewick(), result.toNewick());
+        StringWriter resultWriter = new StringWriter();
+        MrpResultCache.writeNodeStats(result, resultWriter);
+        assertEquals(writer.toString(), resultWriter.toString());
+    }
+}
@@ -0,0 +1,64 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpResultTest {
+    File resultDir;
+    MrpResult instance;
+
+    public MrpResultTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        resultDir = Files.createTempDirectory("mrpresult").toFile();
+        instance = new MrpResult();
+        instance.setEnviron(FileSystem.getLocal(new Configuration()));
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.fullyDelete(resultDir);
+    }
+
+    /**
+     * Test of process method, of class MrpResult.
+     * The paths of the part files make the tree.
+     */
+    @Test
+    public void testProcess() throws Exception {
+        System.out.println("* MrpResultTest: testProcess()");
+        Files.write(new File(resultDir, "part-r-00000").toPath(),
+                "3:2.0:Agoracea\t2:1.0|1:0.5\n4:3.0:Bendricea\t2:1.0|1:0.5\n".getBytes("UTF-8"));
+        Path output = new Path(new File(resultDir, "tree.dnd").toURI());
+        instance.process(new Path(resultDir.toURI()), output);
+        String result = new String(Files.readAllBytes(new File(resultDir, "tree.dnd").toPath()),
+                Charset.defaultCharset());
+        assertTrue(result.startsWith("((Agoracea:2.000000,Bendricea:3.000000)"));
+    }
+
+    /**
+     * Test of process method, of class MrpResult.
+     * Without part files (e.g. of a failed job) there is no tree.
+     */
+    @Test(expected=FileNotFoundException.class)
+    public void testProcess_2() throws Exception {
+        System.out.println("* MrpResultTest: testProcess_2()");
+        instance.process(new Path(resultDir.toURI()), new Path(new File(resultDir, "tree.dnd").toURI()));
+    }
+}
@@ -0,0 +1,56 @@
+package org.phylotastic.mapreducepruner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpServerTest {
+
+    public MrpServerTest() {
+    }
+
+    /**
+     * Test of readTaxa method, of class MrpServer.
+     * The empty lines are skipped, the names are kept as they are.
+     */
+    @Test
+    public void testReadTaxa() throws Exception {
+        System.out.println("* MrpServerTest: testReadTaxa()");
+        String body = "Parkia\r\n\r\nhomo_sapiens\n  \nPan troglodytes";
+        List<String> expResult = Arrays.asList("Parkia", "homo_sapiens", "Pan troglodytes");
+        List<String> result = MrpServer.readTaxa(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of missingHeader method, of class MrpServer.
+     * The names are URL encoded, so a comma in a name is no separator.
+     */
+    @Test
+    public void testMissingHeader() {
+        System.out.println("* MrpServerTest: testMissingHeader()");
+        assertEquals("", MrpServer.missingHeader(Arrays.<String>asList()));
+        assertEquals("nonexistus+bogus,a%2Cb,na%C3%AFve",
+                MrpServer.missingHeader(Arrays.asList("nonexistus bogus", "a,b", "na\u00efve")));
+    }
+
+    /**
+     * Test of pruneInMemory method, of class MrpServer.
+     */
+    @Test
+    public void testPruneInMemory() {
+        System.out.println("* MrpServerTest: testPruneInMemory()");
+        assertTrue(MrpServer.pruneInMemory(50, 1000));
+        assertTrue(MrpServer.pruneInMemory(1000, 1000));
+        assertFalse(MrpServer.pruneInMemory(1001, 1000));
+        // no limit
+        assertTrue(MrpServer.pruneInMemory(1000000, 0));
+    }
+}
@@ -0,0 +1,71 @@
+package org.phylotastic.mapreducepruner;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpSplitPlanTest {
+
+    public MrpSplitPlanTest() {
+    }
+
+    /**
+     * Test of the plan, of class MrpSplitPlan, for a small input:
+     * all taxa in one split.
+     */
+    @Test
+    public void testSmallInput() {
+        System.out.println("* MrpSplitPlanTest: testSmallInput()");
+        MrpSplitPlan instance = new MrpSplitPlan(10000, 558, 40, 1, 0);
+        System.out.println("  result    = " + instance.toString());
+        assertEquals(558, instance.getTaxaPerSplit());
+        assertEquals(1, instance.getSplits());
+    }
+
+    /**
+     * Test of the plan, of class MrpSplitPlan, for a large input:
+     * spread over all slots, in one wave.
+     */
+    @Test
+    public void testLargeInput() {
+        System.out.println("* MrpSplitPlanTest: testLargeInput()");
+        MrpSplitPlan instance = new MrpSplitPlan(20000000, 1000000, 40, 1, 0);
+        System.out.println("  result    = " + instance.toString());
+        assertEquals(25000, instance.getTaxaPerSplit());
+        assertEquals(500000, instance.getSplitSize());
+        assertEquals(40, instance.getSplits());
+    }
+
+    /**
+     * Test of the plan, of class MrpSplitPlan, for a medium input:
+     * the splits are not made smaller than the start up costs allow,
+     * the more fetch threads the larger the splits.
+     */
+    @Test
+    public void testStartupCost() {
+        System.out.println("* MrpSplitPlanTest: testStartupCost()");
+        MrpSplitPlan instance = new MrpSplitPlan(200000, 20000, 100, 1, 0);
+        System.out.println("  result    = " + instance.toString());
+        assertEquals(1200, instance.getTaxaPerSplit());
+        assertEquals(12000, instance.getSplitSize());
+        instance = new MrpSplitPlan(200000, 20000, 100, 4, 0);
+        assertEquals(4800, instance.getTaxaPerSplit());
+    }
+
+    /**
+     * Test of the plan, of class MrpSplitPlan, with a split size
+     * given by the user.
+     */
+    @Test
+    public void testOverride() {
+        System.out.println("* MrpSplitPlanTest: testOverride()");
+        MrpSplitPlan instance = new MrpSplitPlan(200000, 20000, 100, 1, 2000);
+        System.out.println("  result    = " + instance.toString());
+        assertEquals(2000, instance.getSplitSize());
+        assertEquals(200, instance.getTaxaPerSplit());
+        assertEquals(100, instance.getSplits());
+    }
+}
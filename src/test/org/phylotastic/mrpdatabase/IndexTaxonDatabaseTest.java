@@ -0,0 +1,114 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class IndexTaxonDatabaseTest {
+    String dataPath;
+    FileSystem hadoopFS;
+
+    public IndexTaxonDatabaseTest() {
+    }
+
+    /**
+     *     The tree of TreeIndexTest, with the tips:
+     *     4 (Agoracea), 5 (Bendricea), 6 (Catonacea), 9 (Draconacea)
+     */
+    @Before
+    public void setUp() throws Exception {
+        dataPath = Files.createTempDirectory("mrpdatabase").toString() + File.separator;
+        hadoopFS = FileSystem.getLocal(new Configuration());
+        TreeIndexTest.exampleIndex().write(hadoopFS.create(new Path(dataPath + TreeIndex.INDEX_FILE)));
+        NameIndexWriter writer = new NameIndexWriter();
+        writer.add(TaxonKey.digest("Draconacea"), 9);
+        writer.add(TaxonKey.digest("Agoracea"), 4);
+        writer.add(TaxonKey.digest("Catonacea"), 6);
+        writer.add(TaxonKey.digest("Bendricea"), 5);
+        writer.write(hadoopFS.create(new Path(dataPath + IndexTaxonDatabase.NAMES_FILE)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hadoopFS.delete(new Path(dataPath), true);
+    }
+
+    /**
+     * Test of readTaxonPath method, of class IndexTaxonDatabase,
+     * reading through a Hadoop file system.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReadTaxonPath_1() throws IOException {
+        System.out.println("* IndexTaxonDatabaseTest: testReadTaxonPath_1()");
+        assertTrue(IndexTaxonDatabase.exists(hadoopFS, dataPath));
+        IndexTaxonDatabase instance = new IndexTaxonDatabase(hadoopFS, dataPath);
+        assertEquals(4, instance.getSize());
+        assertEquals("4:2.5|3:0.5|2:1|1:0", instance.readTaxonPath("Agoracea"));
+        assertEquals("9:3.5|8:1|7:2|1:0", instance.readTaxonPath("Draconacea"));
+        instance.close();
+    }
+
+    /**
+     * Test of readTaxonPath method, of class IndexTaxonDatabase,
+     * reading (mapping) through java.nio.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReadTaxonPath_2() throws IOException {
+        System.out.println("* IndexTaxonDatabaseTest: testReadTaxonPath_2()");
+        IndexTaxonDatabase instance = new IndexTaxonDatabase(Paths.get(dataPath));
+        assertEquals("5:1.5|3:0.5|2:1|1:0", instance.readTaxonPath("Bendricea"));
+        assertEquals("6:0.25|2:1|1:0", instance.readTaxonPath("Catonacea"));
+        assertEquals(3, instance.getParent(5));
+        assertEquals(0.5, instance.getLength(3), 0.0);
+        instance.close();
+    }
+
+    /**
+     * Test of readTaxonNodes method, of class IndexTaxonDatabase.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReadTaxonNodes() throws IOException {
+        System.out.println("* IndexTaxonDatabaseTest: testReadTaxonNodes()");
+        IndexTaxonDatabase instance = new IndexTaxonDatabase(Paths.get(dataPath));
+        TaxonPath path = instance.readTaxonNodes("Bendricea");
+        TaxonPath expected = TaxonPath.parse(instance.readTaxonPath("Bendricea"));
+        assertEquals(4, path.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getLabel(i), path.getLabel(i));
+            assertEquals(expected.getLength(i), path.getLength(i), 0.0);
+        }
+        instance.close();
+    }
+
+    /**
+     * Test of readTaxonPath method, of class IndexTaxonDatabase,
+     * for a taxon that is not in the database.
+     * @throws java.io.IOException
+     */
+    @Test(expected=FileNotFoundException.class)
+    public void testReadTaxonPath_3() throws IOException {
+        System.out.println("* IndexTaxonDatabaseTest: testReadTaxonPath_3()");
+        IndexTaxonDatabase instance = new IndexTaxonDatabase(Paths.get(dataPath));
+        try {
+            instance.readTaxonPath("Ephedra");
+        } finally {
+            instance.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.phylotastic.mrpdatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class LcaIndexTest {
+    LcaIndex instance;
+
+    public LcaIndexTest() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new LcaIndex(TreeIndexTest.exampleIndex());
+    }
+
+    /**
+     * Test of getDepth method, of class LcaIndex.
+     */
+    @Test
+    public void testGetDepth() {
+        System.out.println("* LcaIndexTest: testGetDepth()");
+        assertEquals(0, instance.getDepth(1));
+        assertEquals(3, instance.getDepth(4));
+        assertEquals(2, instance.getDepth(6));
+        assertEquals(3, instance.getDepth(9));
+    }
+
+    /**
+     * Test of lca method, of class LcaIndex.
+     */
+    @Test
+    public void testLca() {
+        System.out.println("* LcaIndexTest: testLca()");
+        assertEquals(3, instance.lca(4, 5));
+        assertEquals(3, instance.lca(5, 4));
+        assertEquals(2, instance.lca(4, 6));
+        assertEquals(1, instance.lca(6, 9));
+        assertEquals(1, instance.lca(5, 9));
+        assertEquals(2, instance.lca(2, 5));
+        assertEquals(4, instance.lca(4, 4));
+    }
+
+    /**
+     * Test of the constructor, of class LcaIndex, for labels that
+     * are not in pre-order.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testLcaIndex_2() {
+        System.out.println("* LcaIndexTest: testLcaIndex_2()");
+        TreeIndex.Builder builder = new TreeIndex.Builder();
+        builder.addPath("2:1.0|3:1.0|1:0.0");
+        new LcaIndex(builder.build());
+    }
+}
@@ -0,0 +1,77 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class LocalDirectoryTaxonDatabaseTest {
+    Path dataDir;
+    String dataPath;
+
+    public LocalDirectoryTaxonDatabaseTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = Files.createTempDirectory("mrpdatabase");
+        dataDir.toFile().deleteOnExit();
+        dataPath = dataDir.toString() + File.separator;
+    }
+
+    /**
+     * Test of getTaxonFile method, of class LocalDirectoryTaxonDatabase.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testGetTaxonFile() throws Exception {
+        System.out.println("* LocalDirectoryTaxonDatabaseTest: testGetTaxonFile()");
+        LocalDirectoryTaxonDatabase instance = new LocalDirectoryTaxonDatabase(dataPath, 5);
+        Path expResult = dataDir.resolve("1/5/d/1/8/15d18c5423b7d99034a97ecc9a59f78d");
+        Path result = instance.getTaxonFile("Banksia spinulosa collina");
+        System.out.println("  expResult = " + expResult);
+        System.out.println("  result    = " + result);
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of readTaxonPath method, of class LocalDirectoryTaxonDatabase.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReadTaxonPath() throws Exception {
+        System.out.println("* LocalDirectoryTaxonDatabaseTest: testReadTaxonPath()");
+        LocalDirectoryTaxonDatabase instance = new LocalDirectoryTaxonDatabase(dataPath, 2);
+        Path taxonFile = instance.getTaxonFile("Parkia");
+        Files.createDirectories(taxonFile.getParent());
+        Files.write(taxonFile, Arrays.asList("628:18.0|625:1.0|1:0.0"), StandardCharsets.UTF_8);
+        String result = instance.readTaxonPath("Parkia");
+        System.out.println("  result    = " + result);
+        assertEquals("628:18.0|625:1.0|1:0.0", result);
+        Files.delete(taxonFile);
+        Files.delete(taxonFile.getParent());
+        Files.delete(taxonFile.getParent().getParent());
+    }
+
+    /**
+     * Test of readTaxonPath method, of class LocalDirectoryTaxonDatabase,
+     * for a taxon that is not in the database.
+     * @throws java.io.IOException
+     */
+    @Test(expected=FileNotFoundException.class)
+    public void testReadTaxonPath_2() throws IOException {
+        System.out.println("* LocalDirectoryTaxonDatabaseTest: testReadTaxonPath_2()");
+        LocalDirectoryTaxonDatabase instance = new LocalDirectoryTaxonDatabase(dataPath, 5);
+        instance.readTaxonPath("Catonacea");
+    }
+}
@@ -0,0 +1,108 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class MappedPackedTaxonDatabaseTest {
+    String dataPath;
+    FileSystem hadoopFS;
+
+    public MappedPackedTaxonDatabaseTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dataPath = Files.createTempDirectory("mrpdatabase").toString() + File.separator;
+        hadoopFS = FileSystem.getLocal(new Configuration());
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(hadoopFS, dataPath);
+        writer.add(TaxonKey.digest("Parkia"), "628:18.0|625:1.0|1:0.0");
+        writer.add(TaxonKey.digest("Agoracea"), "12:0.5|2:1.5E-4|1:0");
+        writer.add(TaxonKey.digest("Banksia spinulosa collina"), "40:0.25|1:0.0");
+        writer.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hadoopFS.delete(new Path(dataPath), true);
+    }
+
+    /**
+     * Test of readTaxonPath method, of class MappedPackedTaxonDatabase.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReadTaxonPath() throws IOException {
+        System.out.println("* MappedPackedTaxonDatabaseTest: testReadTaxonPath()");
+        MappedPackedTaxonDatabase instance = new MappedPackedTaxonDatabase(Paths.get(dataPath));
+        assertEquals(3, instance.getSize());
+        assertEquals("628:18.0|625:1.0|1:0.0", instance.readTaxonPath("Parkia"));
+        assertEquals("12:0.5|2:1.5E-4|1:0", instance.readTaxonPath("Agoracea"));
+        instance.close();
+    }
+
+    /**
+     * Test of readTaxonNodes method, of class MappedPackedTaxonDatabase.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReadTaxonNodes() throws IOException {
+        System.out.println("* MappedPackedTaxonDatabaseTest: testReadTaxonNodes()");
+        MappedPackedTaxonDatabase instance = new MappedPackedTaxonDatabase(Paths.get(dataPath));
+        TaxonPath path = instance.readTaxonNodes("Agoracea");
+        assertEquals(3, path.size());
+        assertEquals(12, path.getLabel(0));
+        assertEquals(0.5, path.getLength(0), 0.0);
+        assertEquals(2, path.getLabel(1));
+        assertEquals(1.5E-4, path.getLength(1), 0.0);
+        assertEquals(1, path.getLabel(2));
+        path = instance.readTaxonNodes("Banksia spinulosa collina");
+        assertEquals(2, path.size());
+        assertEquals(40, path.getLabel(0));
+        assertEquals(0.25, path.getLength(0), 0.0);
+        instance.close();
+    }
+
+    /**
+     * Test of readTaxonNodes method, of class MappedPackedTaxonDatabase,
+     * for a taxon that is not in the database.
+     * @throws java.io.IOException
+     */
+    @Test(expected=FileNotFoundException.class)
+    public void testReadTaxonNodes_2() throws IOException {
+        System.out.println("* MappedPackedTaxonDatabaseTest: testReadTaxonNodes_2()");
+        MappedPackedTaxonDatabase instance = new MappedPackedTaxonDatabase(Paths.get(dataPath));
+        try {
+            instance.readTaxonNodes("Catonacea");
+        } finally {
+            instance.close();
+        }
+    }
+
+    /**
+     * Test of TaxonDatabases.open on a file:// file system,
+     * which maps the packed database.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testOpen() throws IOException {
+        System.out.println("* MappedPackedTaxonDatabaseTest: testOpen()");
+        TaxonDatabase instance = TaxonDatabases.open(TaxonDatabases.FORMAT_PACKED, hadoopFS, dataPath, 0);
+        assertTrue(instance instanceof MappedPackedTaxonDatabase);
+        assertEquals("40:0.25|1:0.0", instance.readTaxonPath("Banksia spinulosa collina"));
+        instance.close();
+    }
+}
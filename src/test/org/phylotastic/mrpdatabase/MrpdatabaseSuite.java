@@ -0,0 +1,39 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.phylotastic.mrpdatabase;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ *
+ * @author Jan
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({org.phylotastic.mrpdatabase.LocalDirectoryTaxonDatabaseTest.class, org.phylotastic.mrpdatabase.PackedTaxonDatabaseTest.class, org.phylotastic.mrpdatabase.TreeIndexTest.class, org.phylotastic.mrpdatabase.LcaIndexTest.class, org.phylotastic.mrpdatabase.TaxonPathTest.class, org.phylotastic.mrpdatabase.TaxonPathCacheTest.class, org.phylotastic.mrpdatabase.TaxonDatabaseBuilderTest.class, org.phylotastic.mrpdatabase.IndexTaxonDatabaseTest.class, org.phylotastic.mrpdatabase.MappedPackedTaxonDatabaseTest.class, org.phylotastic.mrpdatabase.TaxonFilterTest.class, org.phylotastic.mrpdatabase.TaxonDatabaseUpdaterTest.class, org.phylotastic.mrpdatabase.TaxonDatabasesTest.class})
+public class MrpdatabaseSuite {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+    }
+
+    @After
+    public void tearDown() throws Exception {
+    }
+    
+}
@@ -0,0 +1,179 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class PackedTaxonDatabaseTest {
+    Path dataDir;
+    String dataPath;
+    FileSystem hadoopFS;
+
+    public PackedTaxonDatabaseTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = Files.createTempDirectory("mrpdatabase");
+        dataPath = dataDir.toString() + File.separator;
+        hadoopFS = FileSystem.getLocal(new Configuration());
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(hadoopFS, dataPath);
+        writer.add(TaxonKey.digest("Parkia"), "628:18.0|625:1.0|1:0.0");
+        writer.add(TaxonKey.digest("Agoracea"), "12:0.5|2:1.0|1:0.0");
+        writer.add(TaxonKey.digest("Banksia spinulosa collina"), "40:0.25|1:0.0");
+        writer.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hadoopFS.delete(new org.apache.hadoop.fs.Path(dataPath), true);
+    }
+
+    /**
+     * Test of readTaxonPath method, of class PackedTaxonDatabase,
+     * reading through a Hadoop file system.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReadTaxonPath_1() throws IOException {
+        System.out.println("* PackedTaxonDatabaseTest: testReadTaxonPath_1()");
+        assertTrue(PackedTaxonDatabase.exists(hadoopFS, dataPath));
+        PackedTaxonDatabase instance = new PackedTaxonDatabase(hadoopFS, dataPath);
+        assertEquals(3, instance.getSize());
+        assertEquals("628:18.0|625:1.0|1:0.0", instance.readTaxonPath("Parkia"));
+        assertEquals("12:0.5|2:1.0|1:0.0", instance.readTaxonPath("Agoracea"));
+        assertEquals("40:0.25|1:0.0", instance.readTaxonPath("Banksia spinulosa collina"));
+        instance.close();
+    }
+
+    /**
+     * Test of readTaxonPath method, of class PackedTaxonDatabase,
+     * for a taxon that is not in the database.
+     * @throws java.io.IOException
+     */
+    @Test(expected=FileNotFoundException.class)
+    public void testReadTaxonPath_2() throws IOException {
+        System.out.println("* PackedTaxonDatabaseTest: testReadTaxonPath_2()");
+        PackedTaxonDatabase instance = new PackedTaxonDatabase(hadoopFS, dataPath);
+        try {
+            instance.readTaxonPath("Catonacea");
+        } finally {
+            instance.close();
+        }
+    }
+
+    /**
+     * Test of readTaxonPath method, of class PackedTaxonDatabase,
+     * for a name that was added twice: one entry, the path added last;
+     * read memory mapped (see MappedPackedTaxonDatabase).
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReadTaxonPath_3() throws Exception {
+        System.out.println("* PackedTaxonDatabaseTest: testReadTaxonPath_3()");
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(hadoopFS, dataPath);
+        writer.add(TaxonKey.digest("Parkia"), "628:18.0|625:1.0|1:0.0");
+        writer.add(TaxonKey.digest("Agoracea"), "12:0.5|2:1.0|1:0.0");
+        writer.add(TaxonKey.digest("Parkia"), "629:17.0|625:1.0|1:0.0");
+        writer.close();
+        assertEquals(2, writer.getSize());
+        MappedPackedTaxonDatabase instance = new MappedPackedTaxonDatabase(Paths.get(dataPath));
+        assertEquals(2, instance.getSize());
+        assertEquals("629:17.0|625:1.0|1:0.0", instance.readTaxonPath("Parkia"));
+        assertEquals("12:0.5|2:1.0|1:0.0", instance.readTaxonPath("Agoracea"));
+        instance.close();
+    }
+
+    /**
+     * Test of the constructor of class PackedTaxonDatabase, with the
+     * index of an earlier data file: the data file was written as a whole
+     * again, but the new index is not there yet. It fails instead of
+     * reading paths at the wrong offsets.
+     * @throws java.lang.Exception
+     */
+    @Test(expected=IOException.class)
+    public void testOpen() throws Exception {
+        System.out.println("* PackedTaxonDatabaseTest: testOpen()");
+        Path indexFile = dataDir.resolve(PackedTaxonDatabase.INDEX_FILE);
+        byte[] oldIndex = Files.readAllBytes(indexFile);
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(hadoopFS, dataPath);
+        writer.add(TaxonKey.digest("Agoracea"), "12:0.5|2:1.0|1:0.0");
+        writer.add(TaxonKey.digest("Parkia"), "628:18.0|625:1.0|1:0.0");
+        writer.close();
+        Files.write(indexFile, oldIndex);
+        new PackedTaxonDatabase(hadoopFS, dataPath).close();
+    }
+
+    /**
+     * Test of the constructor of class MappedPackedTaxonDatabase, with
+     * the index of an earlier data file (see testOpen).
+     * @throws java.lang.Exception
+     */
+    @Test(expected=IOException.class)
+    public void testOpen_2() throws Exception {
+        System.out.println("* PackedTaxonDatabaseTest: testOpen_2()");
+        Path indexFile = dataDir.resolve(PackedTaxonDatabase.INDEX_FILE);
+        byte[] oldIndex = Files.readAllBytes(indexFile);
+        PackedDatabaseWriter writer = new PackedDatabaseWriter(hadoopFS, dataPath);
+        writer.add(TaxonKey.digest("Agoracea"), "12:0.5|2:1.0|1:0.0");
+        writer.close();
+        Files.write(indexFile, oldIndex);
+        new MappedPackedTaxonDatabase(dataDir).close();
+    }
+
+    /**
+     * Test of convert method, of class PackedDatabaseConverter.
+     * The packed database gives the same paths as the directory layout
+     * it was converted from, and the same missing taxa.
+     *     The tree: ((A,B)2,C)1
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testConvert() throws Exception {
+        System.out.println("* PackedTaxonDatabaseTest: testConvert()");
+        File convertDir = Files.createTempDirectory("mrpconvert").toFile();
+        try {
+            String convertPath = convertDir.getPath() + File.separator;
+            LocalDirectoryTaxonDatabase directory = new LocalDirectoryTaxonDatabase(convertPath, 5);
+            String[] taxa = {"Agoracea", "Bendricea", "Catonacea"};
+            String[] paths = {"3:1.0|2:0.5|1:0.0", "4:2.0|2:0.5|1:0.0", "5:1.5|1:0.0"};
+            for (int i = 0; i < taxa.length; i++) {
+                Path taxonFile = directory.getTaxonFile(taxa[i]);
+                Files.createDirectories(taxonFile.getParent());
+                Files.write(taxonFile, Arrays.asList(paths[i]), StandardCharsets.UTF_8);
+            }
+            int count = new PackedDatabaseConverter(hadoopFS).convert(convertPath);
+            assertEquals(taxa.length, count);
+            MappedPackedTaxonDatabase instance = new MappedPackedTaxonDatabase(convertDir.toPath());
+            assertEquals(taxa.length, instance.getSize());
+            for (String taxon : taxa)
+                assertEquals(directory.readTaxonPath(taxon), instance.readTaxonPath(taxon));
+            try {
+                instance.readTaxonPath("Parkia");
+                fail("Parkia is not in the converted database");
+            } catch (FileNotFoundException ex) {
+                // as in the directory layout
+            } finally {
+                instance.close();
+            }
+        } finally {
+            FileUtil.fullyDelete(convertDir);
+        }
+    }
+}
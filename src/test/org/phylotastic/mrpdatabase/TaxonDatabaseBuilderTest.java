@@ -0,0 +1,143 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TaxonDatabaseBuilderTest {
+    String dataPath;
+    FileSystem hadoopFS;
+
+    /**
+     *     The tree, labeled in pre-order:
+     *     1 -- 2 -- 3 (Agoracea)
+     *     |    +--- 4 (Bendricea)
+     *     +--- 5 (Catonacea d'Or)
+     *     +--- 6 -- 7 (Draconacea)
+     *          +--- 8 (Ephedra)
+     */
+    static final String NEWICK = "((Agoracea:1,Bendricea:2.5)0.95:3,\n"
+            + "  'catonacea_d''Or':4 [a comment], (Draconacea, ephedra:0.00015):5):7;";
+
+    public TaxonDatabaseBuilderTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dataPath = Files.createTempDirectory("mrpdatabase").toString() + File.separator;
+        hadoopFS = FileSystem.getLocal(new Configuration());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hadoopFS.delete(new Path(dataPath), true);
+    }
+
+    static TaxonDatabaseBuilder exampleBuilder() throws IOException {
+        TaxonDatabaseBuilder builder = new TaxonDatabaseBuilder();
+        builder.parse(new StringReader(NEWICK));
+        return builder;
+    }
+
+    /**
+     * Test of parse method, of class TaxonDatabaseBuilder.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testParse() throws IOException {
+        System.out.println("* TaxonDatabaseBuilderTest: testParse()");
+        TaxonDatabaseBuilder instance = exampleBuilder();
+        assertEquals(5, instance.getNumberOfTips());
+        assertEquals(3, instance.getTipLabel(0));
+        assertEquals("Agoracea", instance.getTipName(0));
+        assertEquals(5, instance.getTipLabel(2));
+        assertEquals("Catonacea d'or", instance.getTipName(2));
+        assertEquals(8, instance.getTipLabel(4));
+        assertEquals("Ephedra", instance.getTipName(4));
+        TreeIndex treeIndex = instance.getTreeIndex();
+        assertEquals(9, treeIndex.getSize());
+        assertEquals("4:2.5|2:3|1:0", treeIndex.getPath(4));
+        assertEquals("5:4|1:0", treeIndex.getPath(5));
+        assertEquals("7:0|6:5|1:0", treeIndex.getPath(7));
+        assertEquals("8:0.00015|6:5|1:0", treeIndex.getPath(8));
+    }
+
+    /**
+     * Test of parse method, of class TaxonDatabaseBuilder, for a tree
+     * that is not closed.
+     * @throws java.io.IOException
+     */
+    @Test(expected=IOException.class)
+    public void testParse_2() throws IOException {
+        System.out.println("* TaxonDatabaseBuilderTest: testParse_2()");
+        new TaxonDatabaseBuilder().parse(new StringReader("((A:1,B:2):3,C:4;"));
+    }
+
+    /**
+     * Test of write method, of class TaxonDatabaseBuilder, in the
+     * directory layout.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWrite_1() throws IOException {
+        System.out.println("* TaxonDatabaseBuilderTest: testWrite_1()");
+        assertEquals(5, exampleBuilder().write(hadoopFS, dataPath,
+                TaxonDatabases.FORMAT_DIRECTORY, 5, 2));
+        DirectoryTaxonDatabase instance = new DirectoryTaxonDatabase(hadoopFS, dataPath, 5, "/");
+        assertEquals("3:1|2:3|1:0", instance.readTaxonPath("Agoracea"));
+        assertEquals("5:4|1:0", instance.readTaxonPath("Catonacea d'or"));
+        assertEquals("8:0.00015|6:5|1:0", instance.readTaxonPath("Ephedra"));
+        assertEquals(9, TreeIndex.readLocal(Paths.get(dataPath)).getSize());
+    }
+
+    /**
+     * Test of write method, of class TaxonDatabaseBuilder, in the
+     * packed layout.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWrite_2() throws IOException {
+        System.out.println("* TaxonDatabaseBuilderTest: testWrite_2()");
+        assertEquals(5, exampleBuilder().write(hadoopFS, dataPath,
+                TaxonDatabases.FORMAT_PACKED, 5, 2));
+        MappedPackedTaxonDatabase instance = new MappedPackedTaxonDatabase(Paths.get(dataPath));
+        assertEquals(5, instance.getSize());
+        assertEquals("4:2.5|2:3|1:0", instance.readTaxonPath("Bendricea"));
+        assertEquals("7:0|6:5|1:0", instance.readTaxonPath("Draconacea"));
+        instance.close();
+    }
+
+    /**
+     * Test of write method, of class TaxonDatabaseBuilder, in the
+     * index layout.
+     * @throws java.io.IOException
+     * @throws java.security.NoSuchAlgorithmException
+     */
+    @Test
+    public void testWrite_3() throws IOException, NoSuchAlgorithmException {
+        System.out.println("* TaxonDatabaseBuilderTest: testWrite_3()");
+        assertEquals(5, exampleBuilder().write(hadoopFS, dataPath,
+                TaxonDatabases.FORMAT_INDEX, 5, 2));
+        IndexTaxonDatabase instance = new IndexTaxonDatabase(Paths.get(dataPath));
+        assertEquals(5, instance.getSize());
+        assertEquals("5:4|1:0", instance.readTaxonPath("Catonacea d'or"));
+        assertEquals("8:0.00015|6:5|1:0", instance.readTaxonPath("Ephedra"));
+        instance.close();
+        TaxonFilter filter = TaxonFilter.load(hadoopFS, dataPath);
+        assertTrue(filter.mightContain(TaxonKey.digest("Ephedra")));
+    }
+}
@@ -0,0 +1,169 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TaxonDatabaseUpdaterTest {
+    String dataPath;
+    FileSystem hadoopFS;
+
+    /**
+     *     The tree of TaxonDatabaseBuilderTest, with a longer branch to
+     *     Catonacea d'Or (5) and a tip Fabacea (9) grafted on the last clade
+     */
+    static final String GRAFTED = "((Agoracea:1,Bendricea:2.5)0.95:3,\n"
+            + "  'catonacea_d''Or':4.5, (Draconacea, ephedra:0.00015, Fabacea:1):5):7;";
+
+    /**
+     *     The tree of TaxonDatabaseBuilderTest without Agoracea, so the
+     *     labels of the nodes after it go down by one
+     */
+    static final String PRUNED = "((Bendricea:2.5)0.95:3,\n"
+            + "  'catonacea_d''Or':4, (Draconacea, ephedra:0.00015):5):7;";
+
+    public TaxonDatabaseUpdaterTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dataPath = Files.createTempDirectory("mrpdatabase").toString() + File.separator;
+        hadoopFS = FileSystem.getLocal(new Configuration());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hadoopFS.delete(new Path(dataPath), true);
+    }
+
+    static TaxonDatabaseBuilder parse(String newick) throws IOException {
+        TaxonDatabaseBuilder builder = new TaxonDatabaseBuilder();
+        builder.parse(new StringReader(newick));
+        return builder;
+    }
+
+    /**
+     * Test of update method, of class TaxonDatabaseUpdater, in the
+     * packed layout: the changed and new paths are appended.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testUpdate_1() throws IOException {
+        System.out.println("* TaxonDatabaseUpdaterTest: testUpdate_1()");
+        TaxonDatabaseBuilderTest.exampleBuilder().write(hadoopFS, dataPath,
+                TaxonDatabases.FORMAT_PACKED, 5, 1);
+        long dataLength = hadoopFS.getFileStatus(new Path(dataPath + PackedTaxonDatabase.DATA_FILE)).getLen();
+        TaxonDatabaseUpdater instance = new TaxonDatabaseUpdater(hadoopFS, dataPath);
+        DatabaseManifest manifest = instance.update(parse(GRAFTED), "grafted.tre",
+                TaxonDatabases.FORMAT_PACKED, 5, 1);
+        assertEquals(4, instance.getUnchanged());
+        assertEquals(1, instance.getChanged());
+        assertEquals(1, instance.getAdded());
+        assertEquals(0, instance.getRemoved());
+        // the clade of Agoracea and Bendricea is kept; the root and the
+        // clade of Draconacea and Ephedra have a new tip
+        assertEquals(1, instance.getCladesKept());
+        assertEquals(2, instance.getCladesAdded());
+        assertEquals(2, instance.getCladesRemoved());
+        assertEquals(1, manifest.getVersion());
+        // the old path of Catonacea d'Or: "5:4|1:0\n"
+        assertEquals(8, manifest.getLong("packed.garbage"));
+        assertEquals(dataLength + "5:4.5|1:0\n9:1|6:5|1:0\n".length(),
+                hadoopFS.getFileStatus(new Path(dataPath + PackedTaxonDatabase.DATA_FILE)).getLen());
+        PackedTaxonDatabase database = new PackedTaxonDatabase(hadoopFS, dataPath);
+        assertEquals(6, database.getSize());
+        assertEquals("3:1|2:3|1:0", database.readTaxonPath("Agoracea"));
+        assertEquals("5:4.5|1:0", database.readTaxonPath("Catonacea d'or"));
+        assertEquals("9:1|6:5|1:0", database.readTaxonPath("Fabacea"));
+        database.close();
+        assertEquals(1, DatabaseManifest.load(hadoopFS, dataPath).getVersion());
+    }
+
+    /**
+     * Test of update method, of class TaxonDatabaseUpdater, in the
+     * directory layout, for a taxon removed.
+     * @throws java.io.IOException
+     * @throws java.security.NoSuchAlgorithmException
+     */
+    @Test
+    public void testUpdate_2() throws IOException, NoSuchAlgorithmException {
+        System.out.println("* TaxonDatabaseUpdaterTest: testUpdate_2()");
+        TaxonDatabaseBuilderTest.exampleBuilder().write(hadoopFS, dataPath,
+                TaxonDatabases.FORMAT_DIRECTORY, 5, 1);
+        TaxonDatabaseUpdater instance = new TaxonDatabaseUpdater(hadoopFS, dataPath);
+        instance.update(parse(PRUNED), "pruned.tre", TaxonDatabases.FORMAT_DIRECTORY, 5, 2);
+        assertEquals(0, instance.getUnchanged());
+        assertEquals(4, instance.getChanged());
+        assertEquals(0, instance.getAdded());
+        assertEquals(1, instance.getRemoved());
+        DirectoryTaxonDatabase database = new DirectoryTaxonDatabase(hadoopFS, dataPath, 5, "/");
+        assertEquals("3:2.5|2:3|1:0", database.readTaxonPath("Bendricea"));
+        assertEquals("7:0.00015|5:5|1:0", database.readTaxonPath("Ephedra"));
+        try {
+            database.readTaxonPath("Agoracea");
+            fail("Agoracea is no longer in the tree");
+        } catch (FileNotFoundException ex) {
+            // the file is deleted
+        }
+        assertEquals(-1, new IndexTaxonDatabase(hadoopFS, dataPath).find(TaxonKey.digest("Agoracea")));
+    }
+
+    /**
+     * Test of update method, of class TaxonDatabaseUpdater, for a
+     * database in another format than the one asked for.
+     * @throws java.io.IOException
+     */
+    @Test(expected=IOException.class)
+    public void testUpdate_3() throws IOException {
+        System.out.println("* TaxonDatabaseUpdaterTest: testUpdate_3()");
+        TaxonDatabaseBuilderTest.exampleBuilder().write(hadoopFS, dataPath,
+                TaxonDatabases.FORMAT_INDEX, 5, 1);
+        DatabaseManifest manifest = new DatabaseManifest();
+        manifest.setVersion(1);
+        manifest.set("format", TaxonDatabases.FORMAT_INDEX);
+        manifest.write(hadoopFS, dataPath);
+        new TaxonDatabaseUpdater(hadoopFS, dataPath).update(parse(GRAFTED), "grafted.tre",
+                TaxonDatabases.FORMAT_PACKED, 5, 1);
+    }
+
+    /**
+     * Test of update method, of class TaxonDatabaseUpdater, in the
+     * packed layout, written as a whole: a reader that mapped the
+     * database before the update keeps reading the old paths, a new
+     * reader gets the new ones, and no temporary file is left.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testUpdate_4() throws IOException {
+        System.out.println("* TaxonDatabaseUpdaterTest: testUpdate_4()");
+        TaxonDatabaseBuilderTest.exampleBuilder().write(hadoopFS, dataPath,
+                TaxonDatabases.FORMAT_PACKED, 5, 1);
+        MappedPackedTaxonDatabase oldDatabase = new MappedPackedTaxonDatabase(Paths.get(dataPath));
+        String oldPath = oldDatabase.readTaxonPath("Bendricea");
+        new TaxonDatabaseUpdater(hadoopFS, dataPath).update(parse(PRUNED), "pruned.tre",
+                TaxonDatabases.FORMAT_PACKED, 5, 1);
+        assertEquals(oldPath, oldDatabase.readTaxonPath("Bendricea"));
+        oldDatabase.close();
+        MappedPackedTaxonDatabase database = new MappedPackedTaxonDatabase(Paths.get(dataPath));
+        assertEquals("3:2.5|2:3|1:0", database.readTaxonPath("Bendricea"));
+        database.close();
+        for (FileStatus file : hadoopFS.listStatus(new Path(dataPath)))
+            assertFalse(file.getPath().getName().endsWith(TaxonDatabases.TEMP_EXTENSION));
+    }
+}
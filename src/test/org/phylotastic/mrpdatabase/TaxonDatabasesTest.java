@@ -0,0 +1,102 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TaxonDatabasesTest {
+    File dataDir;
+    Configuration conf;
+
+    public TaxonDatabasesTest() {
+    }
+
+    /**
+     *     A local file system whose rename does not overwrite, like HDFS
+     */
+    static class NoOverwriteFileSystem extends FilterFileSystem {
+        NoOverwriteFileSystem(Configuration conf) throws IOException {
+            super(FileSystem.getLocal(conf).getRawFileSystem());
+            this.setConf(conf);
+        }
+
+        @Override
+        public boolean rename(Path src, Path dst) throws IOException {
+            return !this.exists(dst) && super.rename(src, dst);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = Files.createTempDirectory("mrpdatabase").toFile();
+        conf = new Configuration();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.fullyDelete(dataDir);
+    }
+
+    private static void write(FileSystem hadoopFS, Path file, String text) throws IOException {
+        try (OutputStream stream = TaxonDatabases.createTemp(hadoopFS, file)) {
+            stream.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(dataDir, name).toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test of createTemp and replace methods, of class TaxonDatabases,
+     * on the local file system.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReplace_1() throws IOException {
+        System.out.println("* TaxonDatabasesTest: testReplace_1()");
+        FileSystem hadoopFS = FileSystem.getLocal(conf);
+        Path file = new Path(new File(dataDir, "names.idx").toURI());
+        write(hadoopFS, file, "old");
+        TaxonDatabases.replace(hadoopFS, file);
+        write(hadoopFS, file, "new");
+        TaxonDatabases.replace(hadoopFS, file);
+        assertEquals("new", read("names.idx"));
+        assertFalse(new File(dataDir, "names.idx" + TaxonDatabases.TEMP_EXTENSION).exists());
+    }
+
+    /**
+     * Test of replace method, of class TaxonDatabases, on a file system
+     * that does not rename over an existing file: it renames with
+     * overwrite through the FileContext.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testReplace_2() throws IOException {
+        System.out.println("* TaxonDatabasesTest: testReplace_2()");
+        FileSystem hadoopFS = new NoOverwriteFileSystem(conf);
+        Path file = new Path(new File(dataDir, "paths.idx").toURI());
+        write(hadoopFS, file, "old");
+        TaxonDatabases.replace(hadoopFS, file);
+        write(hadoopFS, file, "new");
+        assertFalse(hadoopFS.rename(file.suffix(TaxonDatabases.TEMP_EXTENSION), file));
+        TaxonDatabases.replace(hadoopFS, file);
+        assertEquals("new", read("paths.idx"));
+        assertFalse(new File(dataDir, "paths.idx" + TaxonDatabases.TEMP_EXTENSION).exists());
+    }
+}
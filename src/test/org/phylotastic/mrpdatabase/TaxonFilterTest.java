@@ -0,0 +1,67 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TaxonFilterTest {
+
+    public TaxonFilterTest() {
+    }
+
+    /**
+     * Test of mightContain method, of class TaxonFilter.
+     * @throws java.security.NoSuchAlgorithmException
+     */
+    @Test
+    public void testMightContain() throws NoSuchAlgorithmException {
+        System.out.println("* TaxonFilterTest: testMightContain()");
+        TaxonFilter instance = new TaxonFilter(1000);
+        for (int i = 0; i < 1000; i++)
+            instance.add(TaxonKey.digest("Taxon " + i));
+        for (int i = 0; i < 1000; i++)
+            assertTrue(instance.mightContain(TaxonKey.digest("Taxon " + i)));
+        // about 1% false positives
+        int positives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (instance.mightContain(TaxonKey.digest("Taxon " + i)))
+                positives++;
+        }
+        assertTrue("false positives: " + positives, positives < 300);
+    }
+
+    /**
+     * Test of write and read method, of class TaxonFilter.
+     * @throws java.io.IOException
+     * @throws java.security.NoSuchAlgorithmException
+     */
+    @Test
+    public void testWrite() throws IOException, NoSuchAlgorithmException {
+        System.out.println("* TaxonFilterTest: testWrite()");
+        TaxonFilter filter = new TaxonFilter(2);
+        filter.add(TaxonKey.digest("Agoracea"));
+        filter.add(TaxonKey.digest("Bendricea"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.write(bytes);
+        TaxonFilter instance = TaxonFilter.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(instance.mightContain(TaxonKey.digest("Agoracea")));
+        assertTrue(instance.mightContain(TaxonKey.digest("Bendricea")));
+    }
+
+    /**
+     * Test of read method, of class TaxonFilter, for a file that is not a filter.
+     * @throws java.io.IOException
+     */
+    @Test(expected=IOException.class)
+    public void testRead() throws IOException {
+        System.out.println("* TaxonFilterTest: testRead()");
+        TaxonFilter.read(new ByteArrayInputStream(new byte[] {0, 1, 2, 3, 4, 5, 6, 7}));
+    }
+}
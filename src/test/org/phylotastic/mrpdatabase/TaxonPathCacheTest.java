@@ -0,0 +1,68 @@
+package org.phylotastic.mrpdatabase;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TaxonPathCacheTest {
+
+    public TaxonPathCacheTest() {
+    }
+
+    /**
+     * Test of get and put methods, of class TaxonPathCache.
+     */
+    @Test
+    public void testGetPut() {
+        System.out.println("* TaxonPathCacheTest: testGetPut()");
+        TaxonPathCache instance = new TaxonPathCache(1 << 20);
+        assertNull(instance.get("data/", "Parkia"));
+        TaxonPath path = TaxonPath.parse("628:18.0|625:1.0|1:0.0");
+        instance.put("data/", "Parkia", path);
+        assertSame(path, instance.get("data/", "Parkia"));
+        // the paths are cached per data path
+        assertNull(instance.get("other/", "Parkia"));
+        assertEquals(1, instance.getCount());
+        assertEquals(1, instance.getHits());
+        assertEquals(2, instance.getMisses());
+    }
+
+    /**
+     * Test of put method, of class TaxonPathCache; the least
+     * recently used paths are removed when the cache is full.
+     */
+    @Test
+    public void testEvict() {
+        System.out.println("* TaxonPathCacheTest: testEvict()");
+        TaxonPath path = TaxonPath.parse("628:18.0|625:1.0|1:0.0");
+        TaxonPathCache instance = new TaxonPathCache(1 << 20);
+        instance.put("data/", "Agoracea", path);
+        long entrySize = instance.getSize();
+        instance.setMaxSize(2 * entrySize);
+        instance.put("data/", "Bromelia", path);
+        instance.get("data/", "Agoracea");
+        instance.put("data/", "Cactacea", path);
+        assertEquals(2, instance.getCount());
+        assertEquals(2 * entrySize, instance.getSize());
+        assertNotNull(instance.get("data/", "Agoracea"));
+        assertNull(instance.get("data/", "Bromelia"));
+        assertNotNull(instance.get("data/", "Cactacea"));
+        instance.setMaxSize(entrySize);
+        assertEquals(1, instance.getCount());
+        assertNotNull(instance.get("data/", "Cactacea"));
+    }
+
+    /**
+     * Test of getShared method, of class TaxonPathCache.
+     */
+    @Test
+    public void testGetShared() {
+        System.out.println("* TaxonPathCacheTest: testGetShared()");
+        assertNull(TaxonPathCache.getShared(0));
+        TaxonPathCache instance = TaxonPathCache.getShared(16);
+        assertSame(instance, TaxonPathCache.getShared(32));
+    }
+}
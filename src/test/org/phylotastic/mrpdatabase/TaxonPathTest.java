@@ -0,0 +1,75 @@
+package org.phylotastic.mrpdatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TaxonPathTest {
+
+    public TaxonPathTest() {
+    }
+
+    /**
+     * Test of parse method, of class TaxonPath.
+     */
+    @Test
+    public void testParse() {
+        System.out.println("* TaxonPathTest: testParse()");
+        TaxonPath instance = TaxonPath.parse("628:18.0|625:1|1:0.00279");
+        assertEquals(3, instance.size());
+        assertEquals(628, instance.getLabel(0));
+        assertEquals(18.0, instance.getLength(0), 0.0);
+        assertEquals(625, instance.getLabel(1));
+        assertEquals(1.0, instance.getLength(1), 0.0);
+        assertEquals(1, instance.getLabel(2));
+        assertEquals(0.00279, instance.getLength(2), 0.0);
+    }
+
+    /**
+     * Test of parse method, of class TaxonPath, for a path of just a root.
+     */
+    @Test
+    public void testParse_2() {
+        System.out.println("* TaxonPathTest: testParse_2()");
+        TaxonPath instance = TaxonPath.parse("1:0.5");
+        assertEquals(1, instance.size());
+        assertEquals(1, instance.getLabel(0));
+        assertEquals(0.5, instance.getLength(0), 0.0);
+    }
+
+    /**
+     * Test of parse method, of class TaxonPath, from the bytes of a buffer;
+     * the lengths must be the same doubles as Double.parseDouble gives.
+     */
+    @Test
+    public void testParse_3() {
+        System.out.println("* TaxonPathTest: testParse_3()");
+        String path = "628:18.0|625:1|40:0.00279|12:1.5E-4|7:0.1234567890123456789|1:0";
+        byte[] bytes = ("xx" + path + "\n").getBytes(StandardCharsets.UTF_8);
+        TaxonPath instance = TaxonPath.parse(ByteBuffer.wrap(bytes), 2, bytes.length - 3);
+        TaxonPath expected = TaxonPath.parse(path);
+        assertEquals(expected.size(), instance.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getLabel(i), instance.getLabel(i));
+            assertEquals(expected.getLength(i), instance.getLength(i), 0.0);
+        }
+        assertEquals(0.00279, instance.getLength(2), 0.0);
+        assertEquals(1.5E-4, instance.getLength(3), 0.0);
+    }
+
+    /**
+     * Test of parse method, of class TaxonPath, from bytes that are not a path.
+     */
+    @Test(expected=NumberFormatException.class)
+    public void testParse_4() {
+        System.out.println("* TaxonPathTest: testParse_4()");
+        byte[] bytes = "628:18|x25:1".getBytes(StandardCharsets.UTF_8);
+        TaxonPath.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+}
@@ -0,0 +1,104 @@
+package org.phylotastic.mrpdatabase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TreeIndexTest {
+
+    public TreeIndexTest() {
+    }
+
+    /**
+     *     The index of the tree:
+     *     1 -- 2 -- 3 -- 4 (A)
+     *     |    |    +--- 5 (B)
+     *     |    +-- 6 (C)
+     *     +--- 7 -- 8 -- 9 (D)
+     *
+     * @return      the index
+     */
+    static TreeIndex exampleIndex() {
+        TreeIndex.Builder builder = new TreeIndex.Builder();
+        builder.addPath("9:3.5|8:1.0|7:2.0|1:0.0");
+        builder.addPath("4:2.5|3:0.5|2:1.0|1:0.0");
+        builder.addPath("6:0.25|2:1.0|1:0.0");
+        builder.addPath("5:1.5|3:0.5|2:1.0|1:0.0");
+        return builder.build();
+    }
+
+    /**
+     * Test of the Builder class, of class TreeIndex.
+     */
+    @Test
+    public void testBuilder() {
+        System.out.println("* TreeIndexTest: testBuilder()");
+        TreeIndex instance = exampleIndex();
+        assertEquals(10, instance.getSize());
+        assertEquals(0, instance.getParent(1));
+        assertEquals(1, instance.getParent(2));
+        assertEquals(3, instance.getParent(5));
+        assertEquals(8, instance.getParent(9));
+        assertEquals(0.25, instance.getLength(6), 0.0);
+        assertEquals(2.0, instance.getLength(7), 0.0);
+    }
+
+    /**
+     * Test of write and read methods, of class TreeIndex.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        System.out.println("* TreeIndexTest: testWriteRead()");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        exampleIndex().write(stream);
+        TreeIndex instance = TreeIndex.read(new ByteArrayInputStream(stream.toByteArray()));
+        assertEquals(10, instance.getSize());
+        for (int label = 0; label < 10; label++) {
+            assertEquals(exampleIndex().getParent(label), instance.getParent(label));
+            assertEquals(exampleIndex().getLength(label), instance.getLength(label), 0.0);
+        }
+    }
+
+    /**
+     * Test of read method, of class TreeIndex, for a file that is not an index.
+     * @throws java.io.IOException
+     */
+    @Test(expected=IOException.class)
+    public void testRead_2() throws IOException {
+        System.out.println("* TreeIndexTest: testRead_2()");
+        TreeIndex.read(new ByteArrayInputStream("628:18.0|625:1.0|1:0.0".getBytes()));
+    }
+
+    /**
+     * Test of getPath method, of class TreeIndex.
+     */
+    @Test
+    public void testGetPath() {
+        System.out.println("* TreeIndexTest: testGetPath()");
+        TreeIndex instance = exampleIndex();
+        assertEquals("9:3.5|8:1|7:2|1:0", instance.getPath(9));
+        assertEquals("6:0.25|2:1|1:0", instance.getPath(6));
+        assertEquals("1:0", instance.getPath(1));
+    }
+
+    /**
+     * Test of formatLength method, of class TreeIndex.
+     */
+    @Test
+    public void testFormatLength() {
+        System.out.println("* TreeIndexTest: testFormatLength()");
+        assertEquals("0", TreeIndex.formatLength(0.0));
+        assertEquals("18", TreeIndex.formatLength(18.0));
+        assertEquals("0.0049", TreeIndex.formatLength(0.0049));
+        assertEquals("0.00015", TreeIndex.formatLength(0.00015));
+        assertEquals("0.0001", TreeIndex.formatLength(1.0E-4));
+        assertEquals("12345678", TreeIndex.formatLength(1.2345678E7));
+    }
+}
@@ -0,0 +1,64 @@
+package org.phylotastic.mrpoption;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class MrpChoiceOptionTest {
+
+    public MrpChoiceOptionTest() {
+    }
+
+    /**
+     * Test of set- and getValue methods, of class MrpChoiceOption.
+     */
+    @Test
+    public void testValue() {
+        System.out.println();
+        System.out.println("* MrpChoiceOptionTest: testValue()");
+        MrpChoiceOption instance = new MrpChoiceOption("directory", "packed");
+        assertNotNull(instance);
+        System.out.println("  expResult = " + "");
+        System.out.println("  result    = " + instance.getValue());
+        assertEquals("", instance.getValue());
+        instance.setValue(" Packed ");
+        System.out.println("  -");
+        System.out.println("  expResult = " + "packed");
+        System.out.println("  result    = " + instance.getValue());
+        assertEquals("packed", instance.getValue());
+        assertTrue(instance.is("packed"));
+        assertFalse(instance.is("directory"));
+    }
+
+    /**
+     * Test of checkValue method, of class MrpChoiceOption.
+     */
+    @Test
+    public void testCheckValue1() {
+        System.out.println();
+        System.out.println("* MrpChoiceOptionTest: testCheckValue1()");
+        MrpChoiceOption instance = new MrpChoiceOption("directory", "packed");
+        instance.setProperties("description", "short", "long","argument", "section", "key");
+        instance.setValue("directory");
+        instance.checkValue();
+        System.out.println("  result    = OK");
+    }
+
+    /**
+     * Test of checkValue method, of class MrpChoiceOption.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCheckValue2() {
+        System.out.println();
+        System.out.println("* MrpChoiceOptionTest: testCheckValue2()");
+        MrpChoiceOption instance = new MrpChoiceOption("directory", "packed");
+        instance.setProperties("description", "short", "long","argument", "section", "key");
+        instance.setValue("zipped");
+        instance.checkValue();
+        System.out.println("  result    = Not OK");
+    }
+
+}
@@ -12,7 +12,7 @@ import org.junit.runners.Suite;
  * @author ...
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.phylotastic.mrpoption.MrpFolderOptionTest.class, org.phylotastic.mrpoption.MrpUrlOptionTest.class, org.phylotastic.mrpoption.MrpFileOptionTest.class, org.phylotastic.mrpoption.MrpIntOptionTest.class, org.phylotastic.mrpoption.MrpOptionTest.class, org.phylotastic.mrpoption.MrpPathOptionTest.class, org.phylotastic.mrpoption.MrpArgumentOptionTest.class})
+@Suite.SuiteClasses({org.phylotastic.mrpoption.MrpFolderOptionTest.class, org.phylotastic.mrpoption.MrpUrlOptionTest.class, org.phylotastic.mrpoption.MrpFileOptionTest.class, org.phylotastic.mrpoption.MrpIntOptionTest.class, org.phylotastic.mrpoption.MrpOptionTest.class, org.phylotastic.mrpoption.MrpPathOptionTest.class, org.phylotastic.mrpoption.MrpArgumentOptionTest.class, org.phylotastic.mrpoption.MrpChoiceOptionTest.class})
 public class MrpoptionSuite {
 
     @BeforeClass
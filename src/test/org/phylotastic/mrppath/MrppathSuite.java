@@ -17,7 +17,7 @@ import org.junit.runners.Suite;
  * @author Jan
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.phylotastic.mrppath.PathNodeInternalTest.class, org.phylotastic.mrppath.PathNodeSetTest.class, org.phylotastic.mrppath.PathNodeTest.class})
+@Suite.SuiteClasses({org.phylotastic.mrppath.PathNodeInternalTest.class, org.phylotastic.mrppath.PathNodeSetTest.class, org.phylotastic.mrppath.PathNodeTest.class, org.phylotastic.mrppath.PathNodeRunTest.class, org.phylotastic.mrppath.TipSetKeyTest.class, org.phylotastic.mrppath.SamplePathNodeTest.class})
 public class MrppathSuite {
 
     @BeforeClass
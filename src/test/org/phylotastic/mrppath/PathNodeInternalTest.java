@@ -1,5 +1,8 @@
 package org.phylotastic.mrppath;
 
+import java.io.IOException;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -126,5 +129,25 @@ public class PathNodeInternalTest {
         System.out.println("  result    = " + instance.toString());
         assertEquals(expResult, result);
     }
-    
+
+    /**
+     * Test of write and readFields methods, of class PathNodeInternal.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWritable() throws IOException {
+        System.out.println();
+        System.out.println("* PathNodeInternalTest: testWritable()");
+        PathNodeInternal instance = new PathNodeInternal(625, 0.1, 3);
+        DataOutputBuffer out = new DataOutputBuffer();
+        instance.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        PathNodeInternal result = new PathNodeInternal();
+        result.readFields(in);
+        System.out.println("  expResult = " + instance.toString());
+        System.out.println("  result    = " + result.toString());
+        assertEquals(instance.toString(), result.toString());
+        assertEquals(3, result.getTipCount());
+    }
 }
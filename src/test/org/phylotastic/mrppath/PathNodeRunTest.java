@@ -0,0 +1,88 @@
+package org.phylotastic.mrppath;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class PathNodeRunTest {
+
+    public PathNodeRunTest() {
+    }
+
+    private static PathNodeRun run(PathNode... nodes) {
+        PathNodeRun[] runs = new PathNodeRun[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            runs[i] = new PathNodeRun();
+            runs[i].set(nodes[i]);
+        }
+        return PathNodeRun.merge(Arrays.asList(runs));
+    }
+
+    /**
+     * Test of set method, of class PathNodeRun.
+     */
+    @Test
+    public void testSet() {
+        System.out.println();
+        System.out.println("* PathNodeRunTest: testSet()");
+        PathNodeRun instance = new PathNodeRun();
+        instance.set(new PathNode(628, 1.8, "Parkia"));
+        assertEquals(1, instance.getSize());
+        assertEquals("628:1.8:Parkia", instance.toString());
+        instance.set(new PathNode(625, 0.1));
+        assertEquals(1, instance.getSize());
+        assertEquals("", instance.getName(0));
+        assertEquals("625:0.1", instance.toString());
+    }
+
+    /**
+     * Test of merge method, of class PathNodeRun; the merged
+     * run is sorted on label, without doubles.
+     */
+    @Test
+    public void testMerge() {
+        System.out.println();
+        System.out.println("* PathNodeRunTest: testMerge()");
+        PathNodeRun first = run(new PathNode(628, 1.8), new PathNode(620, 0.4), new PathNode(624, 0.3));
+        PathNodeRun second = run(new PathNode(625, 0.1), new PathNode(624, 0.3));
+        PathNodeRun third = new PathNodeRun();
+        String expString = "620:0.4|624:0.3|625:0.1|628:1.8";
+        PathNodeRun instance = PathNodeRun.merge(Arrays.asList(first, third, second));
+        System.out.println("  expString = " + expString);
+        System.out.println("  string    = " + instance.toString());
+        assertEquals(4, instance.getSize());
+        assertEquals(expString, instance.toString());
+    }
+
+    /**
+     * Test of write and readFields methods, of class PathNodeRun.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWriteReadFields() throws IOException {
+        System.out.println();
+        System.out.println("* PathNodeRunTest: testWriteReadFields()");
+        PathNodeRun instance = run(new PathNode(628, 1.8), new PathNode(620, 0.4), new PathNode(624, 0.3));
+        DataOutputBuffer out = new DataOutputBuffer();
+        instance.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        PathNodeRun result = new PathNodeRun();
+        result.readFields(in);
+        assertEquals(instance.toString(), result.toString());
+        PathNodeRun named = new PathNodeRun();
+        named.set(new PathNode(628, 1.8, "Parkia"));
+        out.reset();
+        named.write(out);
+        in.reset(out.getData(), out.getLength());
+        result.readFields(in);
+        assertEquals("628:1.8:Parkia", result.toString());
+    }
+}
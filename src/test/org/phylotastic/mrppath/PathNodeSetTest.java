@@ -1,5 +1,8 @@
 package org.phylotastic.mrppath;
 
+import java.io.IOException;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -105,5 +108,72 @@ public class PathNodeSetTest {
         System.out.println("  result    = " + result);
         assertEquals(expResult, result);
     }
-    
+
+    /**
+     * Test of write and readFields methods, of class PathNodeSet.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWritable() throws IOException {
+        System.out.println();
+        System.out.println("* PathNodeSetTest: testWritable()");
+        String _string = "628:1.8|625:0.1|624:0.3|623:0.6";
+        PathNodeSet instance = PathNodeSet.fromString(_string);
+        DataOutputBuffer out = new DataOutputBuffer();
+        instance.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        PathNodeSet result = PathNodeSet.fromString("1:0.0");
+        result.readFields(in);
+        System.out.println("  expString = " + _string);
+        System.out.println("  string    = " + result.toString());
+        assertEquals(_string, result.toString());
+        assertEquals(instance, result);
+        assertEquals(instance.hashCode(), result.hashCode());
+    }
+
+    /**
+     * Test of compareTo method, of class PathNodeSet.
+     */
+    @Test
+    public void testCompareTo() {
+        System.out.println();
+        System.out.println("* PathNodeSetTest: testCompareTo()");
+        PathNodeSet instance1 = PathNodeSet.fromString("628:1.8|625:0.1");
+        PathNodeSet instance2 = PathNodeSet.fromString("628:1.8|624:0.3");
+        PathNodeSet instance3 = PathNodeSet.fromString("628:1.8|625:0.1|624:0.3");
+        System.out.println("  result    = " + instance1.compareTo(instance2));
+        assertTrue(instance1.compareTo(instance2) > 0);
+        assertTrue(instance2.compareTo(instance1) < 0);
+        System.out.println("  result    = " + instance1.compareTo(instance3));
+        assertTrue(instance1.compareTo(instance3) < 0);
+        assertEquals(0, instance1.compareTo(PathNodeSet.fromString("628:1.8|625:0.1")));
+        assertTrue(new PathNodeSet().compareTo(instance1) < 0);
+    }
+
+    /**
+     * Test of class LabelComparator, of class PathNodeSet.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testLabelComparator() throws IOException {
+        System.out.println();
+        System.out.println("* PathNodeSetTest: testLabelComparator()");
+        PathNodeSet.LabelComparator comparator = new PathNodeSet.LabelComparator();
+        String[] sets = {"628:1.8|625:0.1", "628:1.8|624:0.3", "628:1.8|625:0.1|624:0.3", "628:1.8|625:0.1"};
+        DataOutputBuffer[] outs = new DataOutputBuffer[sets.length];
+        for (int i = 0; i < sets.length; i++) {
+            outs[i] = new DataOutputBuffer();
+            PathNodeSet.fromString(sets[i]).write(outs[i]);
+        }
+        for (int i = 0; i < sets.length; i++) {
+            for (int j = 0; j < sets.length; j++) {
+                int expResult = Integer.signum(PathNodeSet.fromString(sets[i]).compareTo(PathNodeSet.fromString(sets[j])));
+                int result = Integer.signum(comparator.compare(outs[i].getData(), 0, outs[i].getLength(),
+                        outs[j].getData(), 0, outs[j].getLength()));
+                System.out.println("  " + sets[i] + " <> " + sets[j] + " = " + result);
+                assertEquals(expResult, result);
+            }
+        }
+    }
 }
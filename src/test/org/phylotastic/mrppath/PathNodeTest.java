@@ -1,5 +1,8 @@
 package org.phylotastic.mrppath;
 
+import java.io.IOException;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -299,5 +302,59 @@ public class PathNodeTest {
         System.out.println("  result    = " + instance1.equals(instance2));
         assertTrue(instance1.equals(instance2));
     }
-    
+
+    /**
+     * Test of write and readFields methods, of class PathNode.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWritable() throws IOException {
+        System.out.println();
+        System.out.println("* PathNodeTest: testWritable()");
+        PathNode instance1 = new PathNode(628, 1.8, "Parkia");
+        PathNode instance2 = new PathNode(625, 0.1);
+        DataOutputBuffer out = new DataOutputBuffer();
+        instance1.write(out);
+        instance2.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        PathNode result = new PathNode();
+        result.readFields(in);
+        System.out.println("  expResult = " + instance1.toString());
+        System.out.println("  result    = " + result.toString());
+        assertEquals(instance1, result);
+        result.readFields(in);
+        System.out.println("  -");
+        System.out.println("  expResult = " + instance2.toString());
+        System.out.println("  result    = " + result.toString());
+        assertEquals(instance2, result);
+    }
+
+    /**
+     * Test of class LabelComparator, of class PathNode.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testLabelComparator() throws IOException {
+        System.out.println();
+        System.out.println("* PathNodeTest: testLabelComparator()");
+        PathNode.LabelComparator comparator = new PathNode.LabelComparator();
+        DataOutputBuffer out1 = new DataOutputBuffer();
+        new PathNode(625, 0.1).write(out1);
+        DataOutputBuffer out2 = new DataOutputBuffer();
+        new PathNode(628, 1.8, "Parkia").write(out2);
+        int result = comparator.compare(out1.getData(), 0, out1.getLength(),
+                out2.getData(), 0, out2.getLength());
+        System.out.println("  result    = " + result);
+        assertTrue(result < 0);
+        result = comparator.compare(out2.getData(), 0, out2.getLength(),
+                out1.getData(), 0, out1.getLength());
+        assertTrue(result > 0);
+        DataOutputBuffer out3 = new DataOutputBuffer();
+        new PathNode(625, 0.1).write(out3);
+        result = comparator.compare(out1.getData(), 0, out1.getLength(),
+                out3.getData(), 0, out3.getLength());
+        assertEquals(0, result);
+        assertTrue(comparator.compare(new PathNode(), new PathNode(625, 0.1)) < 0);
+    }
 }
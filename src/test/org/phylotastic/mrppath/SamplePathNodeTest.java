@@ -0,0 +1,84 @@
+package org.phylotastic.mrppath;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class SamplePathNodeTest {
+
+    public SamplePathNodeTest() {
+    }
+
+    private static byte[] bytes(SamplePathNode node) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        node.write(out);
+        return Arrays.copyOf(out.getData(), out.getLength());
+    }
+
+    /**
+     * Test of write and readFields methods, of class SamplePathNode.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWriteReadFields() throws IOException {
+        System.out.println();
+        System.out.println("* SamplePathNodeTest: testWriteReadFields()");
+        SamplePathNode instance = new SamplePathNode(3, new PathNode(628, 1.8, "parkia"));
+        byte[] data = bytes(instance);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(data, data.length);
+        SamplePathNode result = new SamplePathNode();
+        result.readFields(in);
+        assertEquals(instance, result);
+        assertEquals(instance.hashCode(), result.hashCode());
+        assertEquals(3, result.getSample());
+        assertEquals(628, result.getLabel());
+        assertEquals("parkia", result.getName());
+        assertFalse(instance.equals(new SamplePathNode(2, new PathNode(628, 1.8, "parkia"))));
+    }
+
+    /**
+     * Test of the LabelComparator, of class SamplePathNode;
+     * sorts on sample, then on label (ascending).
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testCompare() throws IOException {
+        System.out.println();
+        System.out.println("* SamplePathNodeTest: testCompare()");
+        SamplePathNode[] keys = {new SamplePathNode(0), new SamplePathNode(0, new PathNode(620, 0.4)),
+            new SamplePathNode(0, new PathNode(628, 1.8, "parkia")), new SamplePathNode(1),
+            new SamplePathNode(1, new PathNode(3, 1.0)), new SamplePathNode(2, new PathNode(1, 2.0))};
+        SamplePathNode.LabelComparator comparator = new SamplePathNode.LabelComparator();
+        for (int i = 0; i < keys.length; i++) {
+            for (int j = 0; j < keys.length; j++) {
+                byte[] b1 = bytes(keys[i]);
+                byte[] b2 = bytes(keys[j]);
+                int expResult = Integer.signum(Integer.compare(i, j));
+                assertEquals(expResult, Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)));
+                assertEquals(expResult, Integer.signum(comparator.compare(keys[i], keys[j])));
+            }
+        }
+    }
+
+    /**
+     * Test of keyLike method, of class SamplePathNode.
+     */
+    @Test
+    public void testKeyLike() {
+        System.out.println();
+        System.out.println("* SamplePathNodeTest: testKeyLike()");
+        PathNode result = SamplePathNode.keyLike(new SamplePathNode(4, new PathNode(628, 1.8)));
+        assertEquals(SamplePathNode.class, result.getClass());
+        assertEquals(4, ((SamplePathNode)result).getSample());
+        assertEquals(0, result.getLabel());
+        assertEquals(PathNode.class, SamplePathNode.keyLike(new PathNode(628, 1.8)).getClass());
+    }
+}
@@ -0,0 +1,85 @@
+package org.phylotastic.mrppath;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TipSetKeyTest {
+
+    public TipSetKeyTest() {
+    }
+
+    private static byte[] bytes(TipSetKey key) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        key.write(out);
+        return Arrays.copyOf(out.getData(), out.getLength());
+    }
+
+    /**
+     * Test of the constructor from a run, of class TipSetKey.
+     */
+    @Test
+    public void testRunKey() {
+        System.out.println();
+        System.out.println("* TipSetKeyTest: testRunKey()");
+        PathNodeRun first = new PathNodeRun();
+        first.set(new PathNode(628, 1.8));
+        PathNodeRun second = new PathNodeRun();
+        second.set(new PathNode(620, 0.4));
+        TipSetKey instance = new TipSetKey(PathNodeRun.merge(Arrays.asList(first, second)));
+        assertEquals(2, instance.getSize());
+        assertEquals(620, instance.getMinLabel());
+        assertEquals(628, instance.getMaxLabel());
+        assertEquals("2:620..628", instance.toString());
+        assertEquals(0, new TipSetKey(new PathNodeRun()).getSize());
+    }
+
+    /**
+     * Test of write and readFields methods, of class TipSetKey.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWriteReadFields() throws IOException {
+        System.out.println();
+        System.out.println("* TipSetKeyTest: testWriteReadFields()");
+        TipSetKey instance = new TipSetKey(3, 620, 628);
+        byte[] data = bytes(instance);
+        assertEquals(12, data.length);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(data, data.length);
+        TipSetKey result = new TipSetKey();
+        result.readFields(in);
+        assertEquals(instance, result);
+        assertEquals(instance.hashCode(), result.hashCode());
+    }
+
+    /**
+     * Test of compareTo method and of the LabelComparator, of class
+     * TipSetKey; both give the same order: on size, then on labels.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testCompare() throws IOException {
+        System.out.println();
+        System.out.println("* TipSetKeyTest: testCompare()");
+        TipSetKey[] keys = {new TipSetKey(), new TipSetKey(1, 628, 628), new TipSetKey(2, 620, 624),
+            new TipSetKey(2, 624, 628), new TipSetKey(2, 625, 628), new TipSetKey(3, 620, 628)};
+        TipSetKey.LabelComparator comparator = new TipSetKey.LabelComparator();
+        for (int i = 0; i < keys.length; i++) {
+            for (int j = 0; j < keys.length; j++) {
+                byte[] b1 = bytes(keys[i]);
+                byte[] b2 = bytes(keys[j]);
+                int expResult = Integer.signum(Integer.compare(i, j));
+                assertEquals(expResult, Integer.signum(keys[i].compareTo(keys[j])));
+                assertEquals(expResult, Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length)));
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.phylotastic.mrptree;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class CompactTreeTest {
+
+    public CompactTreeTest() {
+    }
+
+    /**
+     * Build the tree of TreeTest.testRoot_2(), adding the nodes
+     * in no particular order; N1 and E do not get a parent.
+     */
+    private static CompactTree exampleTree() {
+        CompactTree instance = new CompactTree(2);
+        int instanceD  = instance.addNode(130, 0.5, "Draconacea");
+        int instanceN3 = instance.addNode(30, 0.5);
+        int instanceA  = instance.addNode(100, 0.5, "Agoracea");
+        int instanceN2 = instance.addNode(20, 0.5);
+        int instanceE  = instance.addNode(140, 0.5, "Elegoracea");
+        int instanceB  = instance.addNode(110, 0.5, "Bendricea");
+        int instanceN4 = instance.addNode(40, 0.5);
+        int instanceC  = instance.addNode(120, 0.5, "Catonacea");
+        int instanceN1 = instance.addNode(10, 0.5);
+        instance.setChild(instanceN4, instanceB);
+        instance.setChild(instanceN2, instanceN3);
+        instance.setChild(instanceN3, instanceC);
+        instance.setChild(instanceN2, instanceD);
+        instance.setChild(instanceN3, instanceN4);
+        instance.setChild(instanceN4, instanceA);
+        return instance;
+    }
+
+    /**
+     * Test of addNode, indexOf and hasNode methods, of class CompactTree.
+     */
+    @Test
+    public void testAddNode() {
+        System.out.println();
+        System.out.println("* CompactTreeTest: testAddNode()");
+        CompactTree instance = exampleTree();
+        assertEquals(9, instance.getSize());
+        assertTrue(instance.hasNode(40));
+        assertFalse(instance.hasNode(50));
+        assertEquals(CompactTree.NONE, instance.indexOf(50));
+        int index = instance.indexOf(110);
+        assertEquals(110, instance.getLabel(index));
+        assertEquals("Bendricea", instance.getName(index));
+        assertEquals(index, instance.addNode(110, 0.7, "Bendricea"));
+        assertEquals(9, instance.getSize());
+        assertEquals(0.7, instance.getLength(index), 0.0);
+    }
+
+    /**
+     * Test of rootTheTree method, of class CompactTree; the children
+     * are sorted on label, the nodes without a parent go to the root.
+     */
+    @Test
+    public void testRootTheTree() {
+        System.out.println();
+        System.out.println("* CompactTreeTest: testRootTheTree()");
+        CompactTree instance = exampleTree();
+        assertEquals(CompactTree.NONE, instance.getRoot());
+        instance.rootTheTree();
+        int root = instance.getRoot();
+        assertEquals(10, instance.getLabel(root));
+        assertEquals(CompactTree.NONE, instance.getParent(root));
+        int first = instance.getFirstChild(root);
+        assertEquals(20, instance.getLabel(first));
+        assertEquals(140, instance.getLabel(instance.getNextSibling(first)));
+        assertEquals(CompactTree.NONE, instance.getNextSibling(instance.getNextSibling(first)));
+        assertEquals(CompactTree.NONE, instance.getFirstChild(instance.indexOf(100)));
+        assertEquals("i30", instance.getNodeName(instance.indexOf(30)));
+    }
+
+    /**
+     * Test of toNewick and toTree methods, of class CompactTree;
+     * the Newick string is the same as that of the Tree.
+     */
+    @Test
+    public void testToNewick() {
+        System.out.println();
+        System.out.println("* CompactTreeTest: testToNewick()");
+        CompactTree instance = exampleTree();
+        assertEquals("", instance.toNewick());
+        instance.rootTheTree();
+        String expResult = "((((Agoracea:0.500000,Bendricea:0.500000)i40:0.500000,Catonacea:0.500000)i30:0.500000,"
+                + "Draconacea:0.500000)i20:0.500000,Elegoracea:0.500000)i10:0.500000;";
+        String result = instance.toNewick();
+        System.out.println("  expResult = " + expResult);
+        System.out.println("  result    = " + result);
+        assertEquals(expResult, result);
+        Tree tree = instance.toTree();
+        assertEquals(10, tree.getRoot().getID());
+        assertEquals(expResult, tree.toNewick());
+    }
+
+    /**
+     * Test of addTree method, of class CompactTree; merging two partial
+     * trees gives the same tree as building it in one go.
+     */
+    @Test
+    public void testAddTree() {
+        System.out.println();
+        System.out.println("* CompactTreeTest: testAddTree()");
+        CompactTree first = new CompactTree();
+        first.setChild(first.addNode(40, 0.5), first.addNode(100, 0.5, "Agoracea"));
+        first.setChild(first.addNode(40, 0.5), first.addNode(110, 0.5, "Bendricea"));
+        first.setChild(first.addNode(30, 0.5), first.indexOf(40));
+        first.setChild(first.addNode(20, 0.5), first.indexOf(30));
+        CompactTree second = new CompactTree();
+        second.setChild(second.addNode(30, 0.9), second.addNode(120, 0.5, "Catonacea"));
+        second.setChild(second.addNode(20, 0.5), second.indexOf(30));
+        second.setChild(second.indexOf(20), second.addNode(130, 0.5, "Draconacea"));
+        second.addNode(140, 0.5, "Elegoracea");
+        second.addNode(10, 0.5);
+        CompactTree instance = new CompactTree();
+        instance.addTree(first);
+        instance.addTree(second);
+        assertEquals(9, instance.getSize());
+        assertEquals(0.5, instance.getLength(instance.indexOf(30)), 0.0);
+        instance.rootTheTree();
+        CompactTree expResult = exampleTree();
+        expResult.rootTheTree();
+        assertEquals(expResult.toNewick(), instance.toNewick());
+    }
+}
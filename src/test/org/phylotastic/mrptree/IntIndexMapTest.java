@@ -0,0 +1,49 @@
+package org.phylotastic.mrptree;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class IntIndexMapTest {
+
+    public IntIndexMapTest() {
+    }
+
+    /**
+     * Test of add, indexOf and getKey methods, of class IntIndexMap;
+     * the keys get their indexes in the order they are added, and the
+     * map grows past it's initial capacity.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println();
+        System.out.println("* IntIndexMapTest: testAdd()");
+        IntIndexMap instance = new IntIndexMap(2);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, instance.add(7 * i - 100));
+        assertEquals(1000, instance.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, instance.indexOf(7 * i - 100));
+            assertEquals(7 * i - 100, instance.getKey(i));
+            assertEquals(IntIndexMap.NONE, instance.indexOf(7 * i - 99));
+        }
+        assertEquals(3, instance.add(-79));
+        assertEquals(1000, instance.size());
+    }
+
+    /**
+     * Test of indexOf and size methods, of class IntIndexMap, on an empty map.
+     */
+    @Test
+    public void testEmpty() {
+        System.out.println();
+        System.out.println("* IntIndexMapTest: testEmpty()");
+        IntIndexMap instance = new IntIndexMap();
+        assertEquals(0, instance.size());
+        assertEquals(IntIndexMap.NONE, instance.indexOf(0));
+        assertEquals(IntIndexMap.NONE, instance.indexOf(Integer.MIN_VALUE));
+    }
+}
@@ -15,7 +15,7 @@ import org.junit.runners.Suite;
  * @author ...
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.phylotastic.mrptree.TreeNodeTest.class, org.phylotastic.mrptree.TreeTest.class})
+@Suite.SuiteClasses({org.phylotastic.mrptree.TreeNodeTest.class, org.phylotastic.mrptree.TreeTest.class, org.phylotastic.mrptree.TreeNodeMapTest.class, org.phylotastic.mrptree.IntIndexMapTest.class, org.phylotastic.mrptree.CompactTreeTest.class, org.phylotastic.mrptree.NewickWriterTest.class, org.phylotastic.mrptree.TreeStatsTest.class})
 public class MrptreeSuite {
 
     @BeforeClass
@@ -0,0 +1,164 @@
+package org.phylotastic.mrptree;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class NewickWriterTest {
+
+    public NewickWriterTest() {
+    }
+
+    private static String format(double length) {
+        char[] buffer = new char[16];
+        int end = NewickWriter.formatLength(length, buffer, 0);
+        return end < 0 ? null : new String(buffer, 0, end);
+    }
+
+    /**
+     * Test of formatLength method, of class NewickWriter; it gives
+     * the same result as the DecimalFormat of TreeNode, or leaves it to that.
+     */
+    @Test
+    public void testFormatLength() {
+        System.out.println();
+        System.out.println("* NewickWriterTest: testFormatLength()");
+        assertEquals("0.500000", format(0.5));
+        assertEquals("18.000000", format(18));
+        assertEquals("1.2345679", format(1.23456789));
+        assertEquals("0.000000", format(0.0));
+        assertNull(format(-0.0));
+        assertNull(format(-1.5));
+        assertNull(format(12345.5));
+        assertNull(format(Double.NaN));
+        Random random = new Random(42);
+        double[] lengths = new double[100000];
+        for (int i = 0; i < lengths.length; i++) {
+            switch (i % 4) {
+                case 0:  lengths[i] = random.nextDouble(); break;
+                case 1:  lengths[i] = random.nextInt(10000) / 1000.0; break;
+                case 2:  lengths[i] = random.nextInt(20000000) / 20000000.0; break;
+                default: lengths[i] = random.nextDouble() * 10000; break;
+            }
+        }
+        int fast = 0;
+        for (double length : lengths) {
+            String result = format(length);
+            if (result != null) {
+                assertEquals("length " + length, TreeNode.formatLength(length), result);
+                fast++;
+            }
+        }
+        System.out.println("  formatted = " + fast + " of " + lengths.length);
+        // half of the (i / 20000000) lengths are ties, left to the DecimalFormat
+        assertTrue(fast > lengths.length * 0.8);
+    }
+
+    /**
+     * Test of write methods, of class NewickWriter, on a caterpillar tree
+     * too deep for a recursive writer; both trees give the same string.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWriteDeepTree() throws IOException {
+        System.out.println();
+        System.out.println("* NewickWriterTest: testWriteDeepTree()");
+        int depth = 100000;
+        CompactTree instance = new CompactTree();
+        int parent = instance.addNode(1, 0.25);
+        for (int label = 2; label < 2 * depth; label += 2) {
+            instance.setChild(parent, instance.addNode(label, 0.5, "tip" + label));
+            int child = instance.addNode(label + 1, 0.75);
+            instance.setChild(parent, child);
+            parent = child;
+        }
+        instance.rootTheTree();
+        StringWriter result = new StringWriter();
+        NewickWriter writer = new NewickWriter(result);
+        writer.write(instance);
+        writer.flush();
+        String newick = result.toString();
+        assertTrue(newick.startsWith("(tip2:0.500000,(tip4:0.500000,("));
+        assertTrue(newick.endsWith(")i3:0.750000)i1:0.250000;"));
+        StringBuilder expResult = new StringBuilder();
+        instance.toTree().getRoot().toNewick(expResult);
+        assertEquals(expResult.toString(), newick);
+    }
+
+    /**
+     * Test of write method, of class NewickWriter, with a name that
+     * does not fit in the buffer.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWriteLongName() throws IOException {
+        System.out.println();
+        System.out.println("* NewickWriterTest: testWriteLongName()");
+        char[] name = new char[20000];
+        Arrays.fill(name, 'a');
+        CompactTree instance = new CompactTree();
+        instance.setChild(instance.addNode(1, 0.5), instance.addNode(2, 0.5, new String(name)));
+        instance.setChild(instance.indexOf(1), instance.addNode(3, 1.0));
+        instance.rootTheTree();
+        StringBuilder result = new StringBuilder();
+        NewickWriter writer = new NewickWriter(result);
+        writer.write(instance);
+        writer.flush();
+        assertEquals("(" + new String(name) + ":0.500000,e3:1.000000)i1:0.500000;", result.toString());
+    }
+
+    /**
+     * Test of write method, of class NewickWriter, by several threads at
+     * the same time; the lengths are left to the DecimalFormat of TreeNode,
+     * which every thread has of it's own.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWriteThreads() throws Exception {
+        System.out.println();
+        System.out.println("* NewickWriterTest: testWriteThreads()");
+        final CompactTree instance = new CompactTree();
+        int root = instance.addNode(1, 0.0);
+        for (int label = 2; label < 2000; label++)
+            instance.setChild(root, instance.addNode(label, 10000.0 + label * 1.234567891, "tip" + label));
+        instance.rootTheTree();
+        StringBuilder expResult = new StringBuilder();
+        NewickWriter expWriter = new NewickWriter(expResult);
+        expWriter.write(instance);
+        expWriter.flush();
+        final String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        StringBuilder result = new StringBuilder();
+                        for (int j = 0; j < 20; j++) {
+                            result.setLength(0);
+                            NewickWriter writer = new NewickWriter(result);
+                            writer.write(instance);
+                            writer.flush();
+                        }
+                        results[thread] = result.toString();
+                    } catch (IOException ex) {
+                        results[thread] = ex.toString();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        for (String result : results)
+            assertEquals(expResult.toString(), result);
+    }
+}
@@ -0,0 +1,63 @@
+package org.phylotastic.mrptree;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TreeNodeMapTest {
+
+    public TreeNodeMapTest() {
+    }
+
+    /**
+     * Test of put, get and containsKey methods, of class TreeNodeMap;
+     * the map grows past it's initial capacity.
+     */
+    @Test
+    public void testPutGet() {
+        System.out.println();
+        System.out.println("* TreeNodeMapTest: testPutGet()");
+        TreeNodeMap instance = new TreeNodeMap();
+        for (int id = 1; id <= 1000; id++)
+            assertNull(instance.put(7 * id, new TreeNode(7 * id, 0.5)));
+        assertEquals(1000, instance.size());
+        for (int id = 1; id <= 1000; id++) {
+            assertTrue(instance.containsKey(7 * id));
+            assertEquals(7 * id, instance.get(7 * id).getID());
+            assertFalse(instance.containsKey(7 * id + 1));
+            assertNull(instance.get(7 * id + 1));
+        }
+        TreeNode elephant = new TreeNode(14, 0.7, "Elephant");
+        assertEquals(14, instance.put(14, elephant).getID());
+        assertEquals(1000, instance.size());
+        assertSame(elephant, instance.get(14));
+    }
+
+    /**
+     * Test of getLowestKey and keys methods and of the iterator, of class TreeNodeMap.
+     */
+    @Test
+    public void testKeys() {
+        System.out.println();
+        System.out.println("* TreeNodeMapTest: testKeys()");
+        TreeNodeMap instance = new TreeNodeMap(2);
+        assertTrue(instance.isEmpty());
+        int[] ids = {130, 40, 0, 1 << 30, 10, -5};
+        Set<Integer> expResult = new HashSet<>();
+        for (int id : ids) {
+            instance.put(id, new TreeNode(id, 0.5));
+            expResult.add(id);
+        }
+        assertEquals(-5, instance.getLowestKey());
+        assertArrayEquals(new int[] {-5, 0, 10, 40, 130, 1 << 30}, instance.keys());
+        Set<Integer> result = new HashSet<>();
+        for (TreeNode node : instance)
+            result.add(node.getID());
+        assertEquals(expResult, result);
+    }
+}
@@ -0,0 +1,132 @@
+package org.phylotastic.mrptree;
+
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author ...
+ */
+public class TreeStatsTest {
+
+    public TreeStatsTest() {
+    }
+
+    /**
+     * The balanced tree ((A:1,B:1)n2:1,(C:1,D:1)n3:1)n1:0;
+     */
+    private static Tree balancedTree() {
+        CompactTree tree = new CompactTree();
+        int n1 = tree.addNode(1, 0.0);
+        int n2 = tree.addNode(2, 1.0);
+        int n3 = tree.addNode(5, 1.0);
+        tree.setChild(n1, n2);
+        tree.setChild(n1, n3);
+        tree.setChild(n2, tree.addNode(3, 1.0, "A"));
+        tree.setChild(n2, tree.addNode(4, 1.0, "B"));
+        tree.setChild(n3, tree.addNode(6, 1.0, "C"));
+        tree.setChild(n3, tree.addNode(7, 1.0, "D"));
+        tree.rootTheTree();
+        return tree.toTree();
+    }
+
+    /**
+     * The caterpillar tree (((A:1,B:1)n3:1,C:2)n2:1,D:3)n1:0;
+     */
+    private static Tree caterpillarTree() {
+        CompactTree tree = new CompactTree();
+        int n1 = tree.addNode(1, 0.0);
+        int n2 = tree.addNode(2, 1.0);
+        int n3 = tree.addNode(3, 1.0);
+        tree.setChild(n1, n2);
+        tree.setChild(n2, n3);
+        tree.setChild(n3, tree.addNode(4, 1.0, "A"));
+        tree.setChild(n3, tree.addNode(5, 1.0, "B"));
+        tree.setChild(n2, tree.addNode(6, 2.0, "C"));
+        tree.setChild(n1, tree.addNode(7, 3.0, "D"));
+        tree.rootTheTree();
+        return tree.toTree();
+    }
+
+    /**
+     * Test of the statistics of a balanced tree, of class TreeStats;
+     * the tree is scaled to a height of 1.
+     */
+    @Test
+    public void testBalanced() {
+        System.out.println();
+        System.out.println("* TreeStatsTest: testBalanced()");
+        TreeStats instance = new TreeStats(balancedTree());
+        assertFalse(instance.isResolved());
+        assertEquals(4, instance.getNumberOfTerminals());
+        assertEquals(1.0, instance.getTreeHeight(), 1e-12);
+        assertEquals(3.0, instance.getTreeLength(), 1e-12);
+        assertEquals(1.0 / 3.0, instance.getFialaStemminess(), 1e-12);
+        assertEquals(0.0, instance.getImbalance(), 1e-12);
+        assertEquals(0.0, instance.getI2(), 1e-12);
+        assertEquals(5.0 / 3.0, instance.getAvtd(), 1e-12);
+        assertEquals(-0.5 / (3.0 * Math.sqrt(1.0 / 24.0)), instance.getGamma(), 1e-12);
+    }
+
+    /**
+     * Test of the imbalance of a caterpillar tree, of class TreeStats.
+     */
+    @Test
+    public void testCaterpillar() {
+        System.out.println();
+        System.out.println("* TreeStatsTest: testCaterpillar()");
+        TreeStats instance = new TreeStats(caterpillarTree());
+        assertEquals(1.0, instance.getImbalance(), 1e-12);
+        assertEquals(1.0, instance.getI2(), 1e-12);
+        assertEquals(1.0, instance.getTreeHeight(), 1e-12);
+        assertEquals(3.0, instance.getTreeLength(), 1e-12);
+    }
+
+    /**
+     * Test of a tree with a polytomy, of class TreeStats; it is
+     * resolved and marked with an asterisk.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testPolytomy() throws IOException {
+        System.out.println();
+        System.out.println("* TreeStatsTest: testPolytomy()");
+        CompactTree tree = new CompactTree();
+        int n1 = tree.addNode(1, 0.0);
+        tree.setChild(n1, tree.addNode(2, 1.0, "A"));
+        tree.setChild(n1, tree.addNode(3, 1.0, "B"));
+        tree.setChild(n1, tree.addNode(4, 1.0, "C"));
+        tree.rootTheTree();
+        TreeStats instance = new TreeStats(tree.toTree());
+        assertTrue(instance.isResolved());
+        assertEquals(3, instance.getNumberOfTerminals());
+        assertEquals(1.0, instance.getImbalance(), 1e-12);
+        assertEquals(3.0, instance.getTreeLength(), 1e-12);
+        StringBuilder out = new StringBuilder();
+        TreeStats.writeHeader(out);
+        instance.writeRow(out, "x.dnd");
+        String[] lines = out.toString().split("\n");
+        assertEquals("file\tfiala_stemminess\tgamma\timbalance\ti2\tavtd\ttree_length\ttree_height", lines[0]);
+        assertTrue(lines[1].startsWith("x.dnd*\t"));
+        assertTrue(lines[1].endsWith("\t3\t1"));
+        assertEquals(8, lines[1].split("\t").length);
+    }
+
+    /**
+     * Test of formatValue method, of class TreeStats.
+     */
+    @Test
+    public void testFormatValue() {
+        System.out.println();
+        System.out.println("* TreeStatsTest: testFormatValue()");
+        assertEquals("1", TreeStats.formatValue(1.0));
+        assertEquals("0", TreeStats.formatValue(0.0));
+        assertEquals("0.5", TreeStats.formatValue(0.5));
+        assertEquals("-2.25", TreeStats.formatValue(-2.25));
+        assertEquals("0.333333333333333", TreeStats.formatValue(1.0 / 3.0));
+        assertEquals("1.5e-05", TreeStats.formatValue(1.5e-5));
+        assertEquals("1e+20", TreeStats.formatValue(1e20));
+        assertEquals("NaN", TreeStats.formatValue(Double.NaN));
+    }
+}